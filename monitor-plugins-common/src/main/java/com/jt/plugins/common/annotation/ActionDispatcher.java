@@ -0,0 +1,219 @@
+package com.jt.plugins.common.annotation;
+
+import com.alibaba.fastjson.JSONObject;
+import com.jt.plugins.common.http.ExtensionRequestParam;
+import com.jt.plugins.common.log.PluginLogger;
+import com.jt.plugins.common.result.ResultMsg;
+
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * @BelongsProject: jt-server-monitor
+ * @BelongsPackage: com.jt.plugins.common.annotation
+ * @Author: 别来无恙qb
+ * @CreateTime: 2026-03-23  14:00
+ * @Description: {@link ActionHandler} 分发器 - 按 targetAction 调用扩展中标注的处理方法
+ *
+ * 创建时把处理方法一次性绑定为函数接口（LambdaMetafactory 生成，与直接调用一样可内联），
+ * 不再每次通过 Method.invoke 反射调用；处理方法抛出的异常不经 InvocationTargetException 包装，
+ * 由统一的异常映射转换为失败结果。
+ * 处理方法签名必须为 ResultMsg&lt;JSONObject&gt; xxx(ExtensionRequestParam)。
+ *
+ * 用法（lookup 必须在扩展类中创建，才能为插件类加载器中的类生成调用代码）：
+ * <pre>
+ * private static final ActionDispatcher DISPATCHER =
+ *         ActionDispatcher.create(MethodHandles.lookup(), XxxProviderImpl.class, "XX监控", logger);
+ *
+ * public ResultMsg&lt;JSONObject&gt; execute(ExtensionRequestParam request) {
+ *     return DISPATCHER.dispatch(this, request);
+ * }
+ * </pre>
+ * @Version: 1.0
+ */
+public final class ActionDispatcher {
+
+    /**
+     * 绑定后的处理方法
+     */
+    @FunctionalInterface
+    public interface Handler {
+        ResultMsg<JSONObject> handle(Object target, ExtensionRequestParam request);
+    }
+
+    private static final MethodType HANDLE_TYPE =
+            MethodType.methodType(ResultMsg.class, Object.class, ExtensionRequestParam.class);
+
+    private final String name;
+    private final PluginLogger logger;
+    private final Map<String, Handler> handlers;
+    private final Map<String, Long> cacheTtls;
+    private final Map<String, Long> timeouts;
+    private final Set<String> readOnlyActions;
+
+    private ActionDispatcher(String name, PluginLogger logger, Map<String, Handler> handlers,
+                             Map<String, Long> cacheTtls, Map<String, Long> timeouts, Set<String> readOnlyActions) {
+        this.name = name;
+        this.logger = logger;
+        this.handlers = handlers;
+        this.cacheTtls = cacheTtls;
+        this.timeouts = timeouts;
+        this.readOnlyActions = readOnlyActions;
+    }
+
+    /**
+     * 绑定类中所有 {@link ActionHandler} 方法
+     * @param lookup 扩展类中的 MethodHandles.lookup()
+     * @param type 扩展实现类
+     * @param name 操作类别名称（用于日志，如 "数据库监控"）
+     * @param logger 插件日志
+     */
+    public static ActionDispatcher create(MethodHandles.Lookup lookup, Class<?> type, String name, PluginLogger logger) {
+        Map<String, Handler> handlers = new HashMap<>();
+        Map<String, Long> cacheTtls = new HashMap<>();
+        Map<String, Long> timeouts = new HashMap<>();
+        Set<String> readOnlyActions = new HashSet<>();
+        for (Method method : type.getDeclaredMethods()) {
+            ActionHandler annotation = method.getAnnotation(ActionHandler.class);
+            if (annotation == null) {
+                continue;
+            }
+            if (Modifier.isStatic(method.getModifiers())
+                    || method.getParameterCount() != 1
+                    || method.getParameterTypes()[0] != ExtensionRequestParam.class
+                    || !ResultMsg.class.isAssignableFrom(method.getReturnType())) {
+                throw new IllegalStateException("处理方法签名不正确，应为 ResultMsg<JSONObject> "
+                        + method.getName() + "(ExtensionRequestParam)：" + type.getName());
+            }
+            if (handlers.put(annotation.value(), bind(lookup, type, method)) != null) {
+                throw new IllegalStateException("重复的操作名称：" + annotation.value() + "（" + type.getName() + "）");
+            }
+            if (annotation.cacheTtlMs() > 0) {
+                cacheTtls.put(annotation.value(), annotation.cacheTtlMs());
+            }
+            if (annotation.timeoutMs() > 0) {
+                timeouts.put(annotation.value(), annotation.timeoutMs());
+            }
+            if (annotation.readOnly() || annotation.cacheTtlMs() > 0) {
+                readOnlyActions.add(annotation.value());
+            }
+        }
+        return new ActionDispatcher(name, logger, Collections.unmodifiableMap(handlers),
+                Collections.unmodifiableMap(cacheTtls), Collections.unmodifiableMap(timeouts),
+                Collections.unmodifiableSet(readOnlyActions));
+    }
+
+    private static Handler bind(MethodHandles.Lookup lookup, Class<?> type, Method method) {
+        MethodHandle target;
+        try {
+            target = lookup.unreflect(method);
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException("无法访问处理方法：" + type.getName() + "." + method.getName(), e);
+        }
+        try {
+            CallSite site = LambdaMetafactory.metafactory(lookup, "handle",
+                    MethodType.methodType(Handler.class),
+                    HANDLE_TYPE,
+                    target,
+                    MethodType.methodType(method.getReturnType(), type, ExtensionRequestParam.class));
+            return (Handler) site.getTarget().invoke();
+        } catch (Throwable e) {
+            // 无法生成函数接口时（如 lookup 权限不足）退回到 MethodHandle 调用
+            MethodHandle handle = target.asType(HANDLE_TYPE);
+            return (instance, request) -> invokeExact(handle, instance, request);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static ResultMsg<JSONObject> invokeExact(MethodHandle handle, Object instance, ExtensionRequestParam request) {
+        try {
+            return (ResultMsg<JSONObject>) (ResultMsg<?>) handle.invokeExact(instance, request);
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new IllegalStateException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 按 targetAction 调用处理方法
+     */
+    public ResultMsg<JSONObject> dispatch(Object target, ExtensionRequestParam request) {
+        String targetAction = request.getTargetAction();
+        logger.info("开始执行{}操作: {}", name, targetAction);
+
+        if (targetAction == null || targetAction.isEmpty()) {
+            logger.warn("操作类型不能为空");
+            return ResultMsg.fail("操作类型不能为空");
+        }
+
+        Handler handler = handlers.get(targetAction);
+        if (handler == null) {
+            logger.warn("不支持的操作类型: {}", targetAction);
+            return ResultMsg.fail("不支持的操作类型：" + targetAction);
+        }
+
+        try {
+            ResultMsg<JSONObject> result = handler.handle(target, request);
+            logger.info("{}操作执行完成: {}", name, targetAction);
+            return result;
+        } catch (Exception e) {
+            logger.error("执行{}操作失败: {}", e, name, targetAction);
+            return mapError(e);
+        }
+    }
+
+    /**
+     * 处理方法异常到失败结果的统一映射
+     */
+    public static <T> ResultMsg<T> mapError(Throwable e) {
+        if (e instanceof SecurityException) {
+            return ResultMsg.fail("权限不足：" + e.getMessage());
+        } else if (e instanceof IllegalArgumentException) {
+            return ResultMsg.fail("参数错误：" + e.getMessage());
+        } else if (e instanceof IllegalStateException) {
+            return ResultMsg.fail("状态错误：" + e.getMessage());
+        }
+        return ResultMsg.fail("执行操作失败：" + e.getMessage());
+    }
+
+    /**
+     * 支持的操作名称
+     */
+    public Set<String> getActions() {
+        return handlers.keySet();
+    }
+
+    /**
+     * 操作结果缓存时间（毫秒），见 {@link ActionHandler#cacheTtlMs()}；未配置或未知操作为 0
+     */
+    public long getCacheTtlMs(String targetAction) {
+        Long ttl = targetAction == null ? null : cacheTtls.get(targetAction);
+        return ttl == null ? 0 : ttl;
+    }
+
+    /**
+     * 操作执行超时时间（毫秒），见 {@link ActionHandler#timeoutMs()}；未配置或未知操作为 0
+     */
+    public long getTimeoutMs(String targetAction) {
+        Long timeout = targetAction == null ? null : timeouts.get(targetAction);
+        return timeout == null ? 0 : timeout;
+    }
+
+    /**
+     * 是否只读操作，见 {@link ActionHandler#readOnly()}；未知操作为 false
+     */
+    public boolean isReadOnly(String targetAction) {
+        return targetAction != null && readOnlyActions.contains(targetAction);
+    }
+}
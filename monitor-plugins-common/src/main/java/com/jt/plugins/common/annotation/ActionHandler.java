@@ -18,4 +18,21 @@ import java.lang.annotation.Target;
 @Target(ElementType.METHOD)
 public @interface ActionHandler {
     String value();
+
+    /**
+     * 结果缓存时间（毫秒），默认 0 不缓存。
+     * 大于 0 时，相同参数的请求在该时间内直接返回上次的成功结果，只适用于只读查询操作
+     */
+    long cacheTtlMs() default 0;
+
+    /**
+     * 执行超时时间（毫秒），默认 0 使用管理端的默认超时；堆转储、日志清洗等长时间操作需要单独声明
+     */
+    long timeoutMs() default 0;
+
+    /**
+     * 是否只读操作（不改变目标进程、数据库或插件状态），默认 false。
+     * 只有只读操作可以被订阅定时执行；声明了 cacheTtlMs 的操作视为只读
+     */
+    boolean readOnly() default false;
 }
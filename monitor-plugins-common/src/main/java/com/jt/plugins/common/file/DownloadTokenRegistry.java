@@ -0,0 +1,112 @@
+package com.jt.plugins.common.file;
+
+import java.io.File;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * @BelongsProject: jt-server-monitor
+ * @BelongsPackage: com.jt.plugins.common.file
+ * @Author: 别来无恙qb
+ * @CreateTime: 2026-03-13  10:05
+ * @Description: 文件下载令牌注册表
+ * 插件生成令牌，主程序 /api/download/{token} 按令牌提供文件下载（支持 Range 断点续传）
+ * @Version: 1.0
+ */
+public class DownloadTokenRegistry {
+
+    // 下载地址前缀
+    public static final String DOWNLOAD_URL_PREFIX = "/api/download/";
+
+    // 令牌缓存：token -> 令牌信息
+    private static final Map<String, TokenInfo> TOKENS = new ConcurrentHashMap<>();
+
+    private DownloadTokenRegistry() {
+    }
+
+    /**
+     * 令牌信息
+     */
+    public static class TokenInfo {
+        private final String filePath;
+        private final String fileName;
+        private final long expireTime;
+
+        public TokenInfo(String filePath, String fileName, long expireTime) {
+            this.filePath = filePath;
+            this.fileName = fileName;
+            this.expireTime = expireTime;
+        }
+
+        public String getFilePath() { return filePath; }
+        public String getFileName() { return fileName; }
+        public long getExpireTime() { return expireTime; }
+        public boolean isExpired() { return System.currentTimeMillis() > expireTime; }
+    }
+
+    /**
+     * 为文件生成下载令牌
+     * @param file 文件
+     * @param expireSeconds 过期时间（秒）
+     * @return 令牌
+     */
+    public static String issue(File file, int expireSeconds) {
+        cleanupExpired();
+        String token = UUID.randomUUID().toString().replace("-", "");
+        long expireTime = System.currentTimeMillis() + expireSeconds * 1000L;
+        TOKENS.put(token, new TokenInfo(file.getAbsolutePath(), file.getName(), expireTime));
+        return token;
+    }
+
+    /**
+     * 获取令牌对应的文件信息
+     * @param token 令牌
+     * @return 令牌信息，不存在或已过期返回null
+     */
+    public static TokenInfo resolve(String token) {
+        if (token == null) {
+            return null;
+        }
+        TokenInfo info = TOKENS.get(token);
+        if (info == null) {
+            return null;
+        }
+        if (info.isExpired()) {
+            TOKENS.remove(token);
+            return null;
+        }
+        return info;
+    }
+
+    /**
+     * 撤销令牌
+     */
+    public static void revoke(String token) {
+        if (token != null) {
+            TOKENS.remove(token);
+        }
+    }
+
+    /**
+     * 撤销指向某个文件的所有令牌（文件被删除时调用）
+     */
+    public static void revokeFile(File file) {
+        String path = file.getAbsolutePath();
+        TOKENS.entrySet().removeIf(entry -> entry.getValue().getFilePath().equals(path));
+    }
+
+    /**
+     * 生成下载地址
+     */
+    public static String downloadUrl(String token) {
+        return DOWNLOAD_URL_PREFIX + token;
+    }
+
+    /**
+     * 清理过期令牌
+     */
+    public static void cleanupExpired() {
+        TOKENS.entrySet().removeIf(entry -> entry.getValue().isExpired());
+    }
+}
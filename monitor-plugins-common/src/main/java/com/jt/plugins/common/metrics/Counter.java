@@ -0,0 +1,31 @@
+package com.jt.plugins.common.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * @BelongsProject: jt-server-monitor
+ * @BelongsPackage: com.jt.plugins.common.metrics
+ * @Author: 别来无恙qb
+ * @CreateTime: 2026-03-26  09:20
+ * @Description: 单调递增计数器（LongAdder 分段累加，高并发递增无锁竞争）
+ * @Version: 1.0
+ */
+public final class Counter {
+
+    private final LongAdder value = new LongAdder();
+
+    Counter() {
+    }
+
+    public void increment() {
+        value.increment();
+    }
+
+    public void add(long delta) {
+        value.add(delta);
+    }
+
+    public long get() {
+        return value.sum();
+    }
+}
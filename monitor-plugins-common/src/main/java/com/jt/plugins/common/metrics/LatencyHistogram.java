@@ -0,0 +1,141 @@
+package com.jt.plugins.common.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * @BelongsProject: jt-server-monitor
+ * @BelongsPackage: com.jt.plugins.common.metrics
+ * @Author: 别来无恙qb
+ * @CreateTime: 2026-03-26  09:30
+ * @Description: 耗时直方图 - 对数-线性分桶（与 HdrHistogram 相同的思路），以微秒为单位记录
+ *
+ * 每个 2 的幂区间再等分为 16 个子桶，相对误差约 6%，覆盖 1 微秒到约 12 天；
+ * 记录只做一次数组下标计算和原子递增，不加锁、不分配对象。读取（分位数、导出）时遍历各桶，
+ * 与并发写入之间不保证严格一致，对监控展示足够。
+ * @Version: 1.0
+ */
+public final class LatencyHistogram {
+
+    // 每个 2 的幂区间的子桶数 = 2^SUB_BUCKET_BITS
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    // 可记录的最大指数（2^40 微秒约 12.7 天），更大的值计入最后一个桶
+    private static final int MAX_EXPONENT = 40;
+
+    private static final int BUCKET_COUNT = (MAX_EXPONENT - SUB_BUCKET_BITS + 2) * SUB_BUCKETS;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sumMicros = new LongAdder();
+    private final AtomicLong maxMicros = new AtomicLong();
+
+    LatencyHistogram() {
+    }
+
+    /**
+     * 记录一次耗时（纳秒，通常为两次 System.nanoTime() 之差）
+     */
+    public void recordNanos(long nanos) {
+        recordMicros(nanos / 1000);
+    }
+
+    /**
+     * 记录一次耗时（毫秒）
+     */
+    public void recordMillis(long millis) {
+        recordMicros(millis * 1000);
+    }
+
+    public void recordMicros(long micros) {
+        long value = Math.max(0, micros);
+        buckets.incrementAndGet(bucketIndex(value));
+        count.increment();
+        sumMicros.add(value);
+        long current;
+        while (value > (current = maxMicros.get()) && !maxMicros.compareAndSet(current, value)) {
+            // 只有出现新的最大值时才需要 CAS
+        }
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    public long getSumMicros() {
+        return sumMicros.sum();
+    }
+
+    public long getMaxMicros() {
+        return maxMicros.get();
+    }
+
+    /**
+     * 分位数（微秒），取所在桶的上界，不超过记录到的最大值
+     * @param quantile 0-1，如 0.99
+     */
+    public long getQuantileMicros(double quantile) {
+        long total = 0;
+        long[] snapshot = new long[BUCKET_COUNT];
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            snapshot[i] = buckets.get(i);
+            total += snapshot[i];
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(quantile * total));
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += snapshot[i];
+            if (seen >= rank) {
+                return Math.min(bucketUpperBound(i), getMaxMicros());
+            }
+        }
+        return getMaxMicros();
+    }
+
+    /**
+     * 不超过指定上界（微秒）的记录数，用于导出 Prometheus 累积分桶
+     */
+    public long countAtOrBelow(long upperMicros) {
+        long total = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            if (bucketUpperBound(i) > upperMicros) {
+                break;
+            }
+            total += buckets.get(i);
+        }
+        return total;
+    }
+
+    static int bucketIndex(long micros) {
+        if (micros < SUB_BUCKETS) {
+            return (int) micros;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(micros);
+        if (exponent > MAX_EXPONENT) {
+            return BUCKET_COUNT - 1;
+        }
+        int subBucket = (int) (micros >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    static long bucketLowerBound(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int exponent = index / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        long subBucket = index % SUB_BUCKETS;
+        return (SUB_BUCKETS + subBucket) << (exponent - SUB_BUCKET_BITS);
+    }
+
+    static long bucketUpperBound(int index) {
+        if (index == BUCKET_COUNT - 1) {
+            return Long.MAX_VALUE;
+        }
+        return bucketLowerBound(index + 1) - 1;
+    }
+}
@@ -0,0 +1,233 @@
+package com.jt.plugins.common.metrics;
+
+import com.alibaba.fastjson.JSONArray;
+import com.alibaba.fastjson.JSONObject;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * @BelongsProject: jt-server-monitor
+ * @BelongsPackage: com.jt.plugins.common.metrics
+ * @Author: 别来无恙qb
+ * @CreateTime: 2026-03-26  10:00
+ * @Description: 进程内指标注册表 - 计数器与耗时直方图，主程序和各插件共用
+ *
+ * 指标按（名称, 标签）注册，首次获取时创建，之后返回同一实例；标签固定的调用点可以把实例保存为常量，
+ * 热点路径上只剩原子递增。主程序通过 /metrics 以 Prometheus 文本格式导出。
+ * 用法：
+ * <pre>
+ * LatencyHistogram timer = MetricsRegistry.timer("jt_jmx_call", "operation", "collectMetrics");
+ * long start = System.nanoTime();
+ * ...
+ * timer.recordNanos(System.nanoTime() - start);
+ * MetricsRegistry.counter("jt_extension_action_total", "plugin", pluginId, "outcome", "cached").increment();
+ * </pre>
+ * 耗时直方图导出为 &lt;名称&gt;_seconds 的 Prometheus histogram，计数器按名称原样导出。
+ * @Version: 1.0
+ */
+public final class MetricsRegistry {
+
+    // Prometheus 导出的累积分桶上界（秒）
+    private static final double[] EXPORT_BUCKETS = {
+            0.001, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10, 30, 60, 300
+    };
+
+    // 每个指标族的最大标签组合数，超出后计入 overflow="true"，防止标签取自请求参数时无限增长
+    private static final int MAX_SERIES_PER_FAMILY = 1000;
+
+    private static final String[] OVERFLOW_LABELS = {"overflow", "true"};
+
+    // 名称 -> 指标族（同名不同标签的指标）
+    private static final Map<String, Family<?>> FAMILIES = new ConcurrentHashMap<>();
+
+    private MetricsRegistry() {
+    }
+
+    /**
+     * 获取计数器
+     * @param name 指标名称（Prometheus 命名规则，计数器以 _total 结尾）
+     * @param labels 标签，按 名称, 值, 名称, 值 ... 成对传入
+     */
+    public static Counter counter(String name, String... labels) {
+        return family(name, Counter.class).get(labels);
+    }
+
+    /**
+     * 获取耗时直方图
+     * @param name 指标名称（不含单位，导出时追加 _seconds）
+     * @param labels 标签，按 名称, 值, 名称, 值 ... 成对传入
+     */
+    public static LatencyHistogram timer(String name, String... labels) {
+        return family(name, LatencyHistogram.class).get(labels);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <M> Family<M> family(String name, Class<M> type) {
+        Family<?> family = FAMILIES.computeIfAbsent(name, n -> new Family<>(n, type));
+        if (family.type != type) {
+            throw new IllegalArgumentException("指标 " + name + " 已注册为 " + family.type.getSimpleName());
+        }
+        return (Family<M>) family;
+    }
+
+    /**
+     * Prometheus 文本格式（0.0.4）导出
+     */
+    public static String toPrometheus() {
+        StringBuilder out = new StringBuilder(4096);
+        for (Family<?> family : new TreeMap<>(FAMILIES).values()) {
+            if (family.type == Counter.class) {
+                out.append("# TYPE ").append(family.name).append(" counter\n");
+                for (Meter<?> meter : family.meters.values()) {
+                    out.append(family.name).append(meter.labelText).append(' ')
+                            .append(((Counter) meter.value).get()).append('\n');
+                }
+            } else {
+                String name = family.name + "_seconds";
+                out.append("# TYPE ").append(name).append(" histogram\n");
+                for (Meter<?> meter : family.meters.values()) {
+                    LatencyHistogram histogram = (LatencyHistogram) meter.value;
+                    long count = histogram.getCount();
+                    for (double le : EXPORT_BUCKETS) {
+                        out.append(name).append("_bucket").append(withLabel(meter.labelText, "le", formatDouble(le)))
+                                .append(' ').append(histogram.countAtOrBelow((long) (le * 1_000_000))).append('\n');
+                    }
+                    out.append(name).append("_bucket").append(withLabel(meter.labelText, "le", "+Inf"))
+                            .append(' ').append(count).append('\n');
+                    out.append(name).append("_sum").append(meter.labelText).append(' ')
+                            .append(formatDouble(histogram.getSumMicros() / 1_000_000.0)).append('\n');
+                    out.append(name).append("_count").append(meter.labelText).append(' ').append(count).append('\n');
+                }
+            }
+        }
+        return out.toString();
+    }
+
+    /**
+     * JSON 快照：计数器取当前值，直方图给出次数、平均与分位数（毫秒）
+     */
+    public static JSONObject snapshot() {
+        JSONArray counters = new JSONArray();
+        JSONArray timers = new JSONArray();
+        for (Family<?> family : new TreeMap<>(FAMILIES).values()) {
+            for (Meter<?> meter : family.meters.values()) {
+                JSONObject json = new JSONObject(true);
+                json.put("name", family.name);
+                json.put("labels", meter.labels);
+                if (family.type == Counter.class) {
+                    json.put("value", ((Counter) meter.value).get());
+                    counters.add(json);
+                } else {
+                    LatencyHistogram histogram = (LatencyHistogram) meter.value;
+                    long count = histogram.getCount();
+                    json.put("count", count);
+                    json.put("avgMs", count == 0 ? 0 : round(histogram.getSumMicros() / 1000.0 / count));
+                    json.put("p50Ms", round(histogram.getQuantileMicros(0.5) / 1000.0));
+                    json.put("p90Ms", round(histogram.getQuantileMicros(0.9) / 1000.0));
+                    json.put("p99Ms", round(histogram.getQuantileMicros(0.99) / 1000.0));
+                    json.put("maxMs", round(histogram.getMaxMicros() / 1000.0));
+                    timers.add(json);
+                }
+            }
+        }
+        JSONObject result = new JSONObject();
+        result.put("counters", counters);
+        result.put("timers", timers);
+        return result;
+    }
+
+    private static String withLabel(String labelText, String name, String value) {
+        String label = name + "=\"" + value + "\"";
+        return labelText.isEmpty() ? "{" + label + "}"
+                : labelText.substring(0, labelText.length() - 1) + "," + label + "}";
+    }
+
+    private static String formatDouble(double value) {
+        return value == Math.rint(value) && Math.abs(value) < 1e15 ? String.valueOf((long) value) : String.valueOf(value);
+    }
+
+    private static double round(double value) {
+        return Math.round(value * 1000) / 1000.0;
+    }
+
+    private static String escape(String value) {
+        if (value == null) {
+            return "";
+        }
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    /**
+     * 同名指标族
+     */
+    private static final class Family<M> {
+        private final String name;
+        private final Class<M> type;
+        // 标签文本 -> 指标
+        private final Map<String, Meter<M>> meters = new ConcurrentHashMap<>();
+
+        Family(String name, Class<M> type) {
+            this.name = name;
+            this.type = type;
+        }
+
+        M get(String[] labels) {
+            if (labels.length % 2 != 0) {
+                throw new IllegalArgumentException("标签必须按 名称, 值 成对传入：" + name);
+            }
+            String labelText = labelText(labels);
+            Meter<M> meter = meters.get(labelText);
+            if (meter == null) {
+                String[] actual = meters.size() >= MAX_SERIES_PER_FAMILY ? OVERFLOW_LABELS : labels;
+                meter = meters.computeIfAbsent(labelText(actual), text -> new Meter<>(text, labelMap(actual), newValue()));
+            }
+            return meter.value;
+        }
+
+        @SuppressWarnings("unchecked")
+        private M newValue() {
+            return type == Counter.class ? (M) new Counter() : (M) new LatencyHistogram();
+        }
+
+        private static String labelText(String[] labels) {
+            if (labels.length == 0) {
+                return "";
+            }
+            StringBuilder text = new StringBuilder("{");
+            for (int i = 0; i < labels.length; i += 2) {
+                if (i > 0) {
+                    text.append(',');
+                }
+                text.append(labels[i]).append("=\"").append(escape(labels[i + 1])).append('"');
+            }
+            return text.append('}').toString();
+        }
+
+        private static Map<String, String> labelMap(String[] labels) {
+            Map<String, String> map = new LinkedHashMap<>();
+            for (int i = 0; i < labels.length; i += 2) {
+                map.put(labels[i], labels[i + 1]);
+            }
+            return Collections.unmodifiableMap(map);
+        }
+    }
+
+    /**
+     * 带标签的单个指标
+     */
+    private static final class Meter<M> {
+        private final String labelText;
+        private final Map<String, String> labels;
+        private final M value;
+
+        Meter(String labelText, Map<String, String> labels, M value) {
+            this.labelText = labelText;
+            this.labels = labels;
+            this.value = value;
+        }
+    }
+}
@@ -5,9 +5,12 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.support.AbstractAutowireCapableBeanFactory;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 
 /**
  * @author blwy_qb
@@ -25,6 +28,15 @@ public class ExtensionsInjector {
     }
 
     public void injectExtensions() {
+        injectExtensions(Runnable::run);
+    }
+
+    /**
+     * 注入扩展：各插件扩展类的加载（含静态初始化）在 executor 中按插件并行执行，
+     * 注册到 Spring 仍在调用线程中按插件顺序逐个进行。
+     * 扩展索引在第一次查询（下方 classpath 查询）时一次性读取，之后按插件读取只是查表。
+     */
+    public void injectExtensions(Executor executor) {
         // add extensions from classpath (non plugin)
         Set<String> extensionClassNames = springPluginManager.getExtensionClassNames(null);
         for (String extensionClassName : extensionClassNames) {
@@ -37,21 +49,34 @@ public class ExtensionsInjector {
             }
         }
 
-        // add extensions for each started plugin
+        // load extension classes of each started plugin in parallel
         List<PluginWrapper> startedPlugins = springPluginManager.getStartedPlugins();
+        List<CompletableFuture<List<Class<?>>>> loaded = new ArrayList<>(startedPlugins.size());
         for (PluginWrapper plugin : startedPlugins) {
-            log.debug("Registering extensions of the plugin '{}' as beans", plugin.getPluginId());
-            extensionClassNames = springPluginManager.getExtensionClassNames(plugin.getPluginId());
-            for (String extensionClassName : extensionClassNames) {
-                try {
-                    log.debug("Register extension '{}' as bean", extensionClassName);
-                    Class<?> extensionClass = plugin.getPluginClassLoader().loadClass(extensionClassName);
-                    registerExtension(extensionClass);
-                } catch (ClassNotFoundException e) {
-                    log.error(e.getMessage(), e);
-                }
+            loaded.add(CompletableFuture.supplyAsync(() -> loadExtensionClasses(plugin), executor));
+        }
+
+        // add extensions for each started plugin
+        for (int i = 0; i < startedPlugins.size(); i++) {
+            log.debug("Registering extensions of the plugin '{}' as beans", startedPlugins.get(i).getPluginId());
+            for (Class<?> extensionClass : loaded.get(i).join()) {
+                log.debug("Register extension '{}' as bean", extensionClass.getName());
+                registerExtension(extensionClass);
+            }
+        }
+    }
+
+    private List<Class<?>> loadExtensionClasses(PluginWrapper plugin) {
+        Set<String> extensionClassNames = springPluginManager.getExtensionClassNames(plugin.getPluginId());
+        List<Class<?>> extensionClasses = new ArrayList<>(extensionClassNames.size());
+        for (String extensionClassName : extensionClassNames) {
+            try {
+                extensionClasses.add(Class.forName(extensionClassName, true, plugin.getPluginClassLoader()));
+            } catch (ClassNotFoundException | LinkageError e) {
+                log.error(e.getMessage(), e);
             }
         }
+        return extensionClasses;
     }
 
     /**
@@ -1,22 +1,55 @@
 package com.jt.plugins.core;
 
 import org.pf4j.PluginManager;
+import org.pf4j.PluginState;
+import org.pf4j.PluginStateEvent;
+import org.pf4j.PluginStateListener;
+import org.pf4j.PluginWrapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.util.Arrays;
-import java.util.HashMap;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * 一个 {@link SpringExtensionFactory}，它始终返回一个特定的实例。可选：您可以指定要为其使用单例的扩展类。
+ * <p>
+ * 缓存按插件分组，并发调用时每个扩展只创建一次（其余调用等待同一次创建的结果），
+ * 创建过程不持有缓存的锁，扩展在自动装配中再获取其他扩展不会死锁；同一线程在创建某个扩展的过程中
+ * 再次请求该扩展（循环依赖）时直接抛出异常，不会等待自己正在进行的创建。
+ * 插件停止或卸载时清除该插件的缓存，不再持有旧类加载器创建的实例。
  *
  * @author blwy_qb
  */
-public class SingletonSpringExtensionFactory extends SpringExtensionFactory {
+public class SingletonSpringExtensionFactory extends SpringExtensionFactory implements PluginStateListener {
+
+    private static final Logger log = LoggerFactory.getLogger(SingletonSpringExtensionFactory.class);
+
+    // 不属于任何插件（主程序 classpath）的扩展的分组名
+    private static final String SYSTEM = "system";
 
     private final List<String> extensionClassNames;
 
-    private Map<String, Object> cache;
+    // 插件 ID -> (扩展类名 -> 扩展实例)
+    private final Map<String, Map<String, FutureTask<Object>>> cache = new ConcurrentHashMap<>();
+
+    // 扩展类名 -> 创建次数与耗时
+    private final Map<String, CreationStatistics> statistics = new ConcurrentHashMap<>();
+
+    private final LongAdder hits = new LongAdder();
+
+    // 当前线程正在创建的扩展类
+    private static final ThreadLocal<Set<Class<?>>> CREATING = ThreadLocal.withInitial(HashSet::new);
 
     public SingletonSpringExtensionFactory(PluginManager pluginManager) {
         this(pluginManager, true);
@@ -31,24 +64,168 @@ public class SingletonSpringExtensionFactory extends SpringExtensionFactory {
 
         this.extensionClassNames = Arrays.asList(extensionClassNames);
 
-        // simple cache implementation
-        cache = new HashMap<>();
+        pluginManager.addPluginStateListener(this);
     }
 
     @Override
     @SuppressWarnings("unchecked")
     public <T> T create(Class<T> extensionClass) {
         String extensionClassName = extensionClass.getName();
-        if (cache.containsKey(extensionClassName)) {
-            return (T) cache.get(extensionClassName);
+        if (!extensionClassNames.isEmpty() && !extensionClassNames.contains(extensionClassName)) {
+            return createAndRecord(extensionClass);
         }
 
-        T extension = super.create(extensionClass);
-        if (extensionClassNames.isEmpty() || extensionClassNames.contains(extensionClassName)) {
-            cache.put(extensionClassName, extension);
+        Map<String, FutureTask<Object>> pluginCache = cache.computeIfAbsent(pluginIdOf(extensionClass),
+                pluginId -> new ConcurrentHashMap<>());
+        while (true) {
+            FutureTask<Object> task = pluginCache.get(extensionClassName);
+            boolean creator = false;
+            if (task == null) {
+                FutureTask<Object> created = new FutureTask<>(() -> createAndRecord(extensionClass));
+                task = pluginCache.putIfAbsent(extensionClassName, created);
+                if (task == null) {
+                    task = created;
+                    creator = true;
+                    task.run();
+                }
+            }
+
+            if (!creator && CREATING.get().contains(extensionClass)) {
+                throw circularCreation(extensionClass);
+            }
+
+            Object extension;
+            try {
+                extension = task.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for extension '" + extensionClassName + "'", e);
+            } catch (ExecutionException e) {
+                // 创建失败不缓存，下次调用重新创建
+                pluginCache.remove(extensionClassName, task);
+                Throwable cause = e.getCause();
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                }
+                if (cause instanceof Error) {
+                    throw (Error) cause;
+                }
+                throw new IllegalStateException(cause);
+            }
+
+            if (extension.getClass() != extensionClass) {
+                // 插件重新加载后同名类来自新的类加载器，旧实例作废
+                pluginCache.remove(extensionClassName, task);
+                continue;
+            }
+            if (!creator) {
+                hits.increment();
+            }
+            return (T) extension;
         }
+    }
 
+    private <T> T createAndRecord(Class<T> extensionClass) {
+        Set<Class<?>> creating = CREATING.get();
+        if (!creating.add(extensionClass)) {
+            throw circularCreation(extensionClass);
+        }
+        long start = System.nanoTime();
+        T extension;
+        try {
+            extension = super.create(extensionClass);
+        } finally {
+            creating.remove(extensionClass);
+            if (creating.isEmpty()) {
+                CREATING.remove();
+            }
+        }
+        long elapsedNanos = System.nanoTime() - start;
+        statistics.computeIfAbsent(extensionClass.getName(), name -> new CreationStatistics()).record(elapsedNanos);
+        log.debug("Created extension '{}' in {} ms", extensionClass.getName(), TimeUnit.NANOSECONDS.toMillis(elapsedNanos));
         return extension;
     }
 
+    private static IllegalStateException circularCreation(Class<?> extensionClass) {
+        return new IllegalStateException("Circular creation of extension '" + extensionClass.getName()
+                + "': it is requested again while being created on the same thread");
+    }
+
+    private String pluginIdOf(Class<?> extensionClass) {
+        PluginWrapper plugin = pluginManager.whichPlugin(extensionClass);
+        return plugin != null ? plugin.getPluginId() : SYSTEM;
+    }
+
+    @Override
+    public void pluginStateChanged(PluginStateEvent event) {
+        if (event.getPluginState() != PluginState.STARTED) {
+            invalidate(event.getPlugin().getPluginId());
+        }
+    }
+
+    /**
+     * 清除插件的扩展缓存
+     *
+     * @param pluginId 插件 ID
+     */
+    public void invalidate(String pluginId) {
+        Map<String, FutureTask<Object>> removed = cache.remove(pluginId);
+        if (removed != null && !removed.isEmpty()) {
+            log.debug("Evicted {} cached extension(s) of plugin '{}'", removed.size(), pluginId);
+        }
+    }
+
+    /**
+     * 当前缓存的扩展实例数
+     */
+    public int getCachedCount() {
+        int count = 0;
+        for (Map<String, FutureTask<Object>> pluginCache : cache.values()) {
+            count += pluginCache.size();
+        }
+        return count;
+    }
+
+    /**
+     * 直接返回已缓存实例的次数
+     */
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    /**
+     * 各扩展类的创建次数与耗时
+     */
+    public Map<String, CreationStatistics> getCreationStatistics() {
+        return Collections.unmodifiableMap(statistics);
+    }
+
+    /**
+     * 单个扩展类的创建次数与耗时
+     */
+    public static class CreationStatistics {
+
+        private final LongAdder count = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final AtomicLong maxNanos = new AtomicLong();
+
+        void record(long nanos) {
+            count.increment();
+            totalNanos.add(nanos);
+            maxNanos.accumulateAndGet(nanos, Math::max);
+        }
+
+        public long getCount() {
+            return count.sum();
+        }
+
+        public long getTotalMillis() {
+            return TimeUnit.NANOSECONDS.toMillis(totalNanos.sum());
+        }
+
+        public long getMaxMillis() {
+            return TimeUnit.NANOSECONDS.toMillis(maxNanos.get());
+        }
+    }
+
 }
@@ -47,6 +47,16 @@ public abstract class SpringPlugin extends Plugin {
         }
     }
 
+    /**
+     * 插件是否有后台工作（定时采集、进行中的任务、只保存在内存中的登记信息等）。
+     * 按需启动的空闲检查不会停止、卸载返回 true 的插件
+     *
+     * @return 默认 false
+     */
+    public boolean isBusy() {
+        return false;
+    }
+
     /**
      * spring ApplicationContext
      *
@@ -2,6 +2,12 @@ package com.jt.plugins.core;
 
 import org.pf4j.DefaultPluginManager;
 import org.pf4j.ExtensionFactory;
+import org.pf4j.PluginDependency;
+import org.pf4j.PluginState;
+import org.pf4j.PluginStateEvent;
+import org.pf4j.PluginWrapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.BeansException;
 import org.springframework.beans.factory.support.AbstractAutowireCapableBeanFactory;
 import org.springframework.context.ApplicationContext;
@@ -9,15 +15,45 @@ import org.springframework.context.ApplicationContextAware;
 
 import javax.annotation.PostConstruct;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * @author blwy_qb
  */
 public class SpringPluginManager extends DefaultPluginManager implements ApplicationContextAware {
 
+    private static final Logger log = LoggerFactory.getLogger(SpringPluginManager.class);
+
     private ApplicationContext applicationContext;
 
+    /**
+     * 并行启动插件的线程数，0 表示按 CPU 核数（最多 8），1 表示按原顺序串行启动
+     */
+    private int startupThreads;
+
+    /**
+     * 按需启动：初始化时只加载、解析插件，不启动，由使用方在首次调用时启动
+     */
+    private boolean lazyStart;
+
+    // 最近一次启动各阶段耗时（毫秒）
+    private volatile long loadTimeMillis;
+    private volatile long startTimeMillis;
+    private volatile long injectTimeMillis;
+
+    // 最近一次启动中每个插件 start() 的耗时（毫秒），按启动顺序
+    private volatile Map<String, Long> pluginStartTimes = Collections.emptyMap();
+
     public SpringPluginManager() {
         super();
     }
@@ -32,7 +68,7 @@ public class SpringPluginManager extends DefaultPluginManager implements Applica
 
     @Override
     protected ExtensionFactory createExtensionFactory() {
-        return new SpringExtensionFactory(this);
+        return new SingletonSpringExtensionFactory(this);
     }
 
     @Override
@@ -44,16 +80,203 @@ public class SpringPluginManager extends DefaultPluginManager implements Applica
         return applicationContext;
     }
 
+    public int getStartupThreads() {
+        return startupThreads;
+    }
+
+    public void setStartupThreads(int startupThreads) {
+        this.startupThreads = startupThreads;
+    }
+
+    public boolean isLazyStart() {
+        return lazyStart;
+    }
+
+    public void setLazyStart(boolean lazyStart) {
+        this.lazyStart = lazyStart;
+    }
+
+    public long getLoadTimeMillis() {
+        return loadTimeMillis;
+    }
+
+    public long getStartTimeMillis() {
+        return startTimeMillis;
+    }
+
+    public long getInjectTimeMillis() {
+        return injectTimeMillis;
+    }
+
+    public Map<String, Long> getPluginStartTimes() {
+        return pluginStartTimes;
+    }
+
     /**
      * This method load, start plugins and inject extensions in Spring
      */
     @PostConstruct
     public void init() {
+        long begin = System.currentTimeMillis();
         loadPlugins();
-        startPlugins();
+        loadTimeMillis = System.currentTimeMillis() - begin;
+
+        if (lazyStart) {
+            log.info("Lazy start enabled, {} plugin(s) resolved but not started", getResolvedPlugins().size());
+        } else {
+            startPlugins();
+        }
 
+        long injectBegin = System.currentTimeMillis();
         AbstractAutowireCapableBeanFactory beanFactory = (AbstractAutowireCapableBeanFactory) applicationContext.getAutowireCapableBeanFactory();
         ExtensionsInjector extensionsInjector = new ExtensionsInjector(this, beanFactory);
-        extensionsInjector.injectExtensions();
+        int threads = resolveStartupThreads();
+        if (threads > 1) {
+            ExecutorService executor = newStartupExecutor(threads);
+            try {
+                extensionsInjector.injectExtensions(executor);
+            } finally {
+                executor.shutdownNow();
+            }
+        } else {
+            extensionsInjector.injectExtensions();
+        }
+        injectTimeMillis = System.currentTimeMillis() - injectBegin;
+
+        log.info("Plugins ready in {} ms (load {} ms, start {} ms, inject extensions {} ms, {} thread(s))",
+                System.currentTimeMillis() - begin, loadTimeMillis, startTimeMillis, injectTimeMillis, threads);
+    }
+
+    /**
+     * 按依赖分层并行启动插件：同一层的插件互不依赖，并发执行 start()（各自创建 Spring 上下文），
+     * 一层全部完成后再启动依赖它们的下一层。状态更新、startedPlugins 和状态事件仍在调用线程中按解析顺序处理。
+     * 线程数为 1 时在调用线程中逐个启动，与 pf4j 默认行为一致。
+     */
+    @Override
+    public void startPlugins() {
+        long begin = System.currentTimeMillis();
+        int threads = resolveStartupThreads();
+        Map<String, Long> times = new LinkedHashMap<>();
+        ExecutorService executor = threads > 1 ? newStartupExecutor(threads) : null;
+        try {
+            for (List<PluginWrapper> wave : dependencyWaves()) {
+                List<Future<StartResult>> futures = new ArrayList<>(wave.size());
+                if (executor != null) {
+                    for (PluginWrapper plugin : wave) {
+                        futures.add(executor.submit(() -> startPluginInstance(plugin)));
+                    }
+                }
+                for (int i = 0; i < wave.size(); i++) {
+                    PluginWrapper plugin = wave.get(i);
+                    StartResult result = executor != null ? await(futures.get(i)) : startPluginInstance(plugin);
+                    times.put(plugin.getPluginId(), result.elapsedMillis);
+                    completeStart(plugin, result.failure);
+                }
+            }
+        } finally {
+            if (executor != null) {
+                executor.shutdownNow();
+            }
+        }
+        pluginStartTimes = Collections.unmodifiableMap(times);
+        startTimeMillis = System.currentTimeMillis() - begin;
+    }
+
+    /**
+     * 按依赖关系把待启动的插件分层（resolvedPlugins 已按依赖排序，依赖总在前面）
+     */
+    private List<List<PluginWrapper>> dependencyWaves() {
+        Map<String, Integer> levels = new HashMap<>();
+        List<List<PluginWrapper>> waves = new ArrayList<>();
+        for (PluginWrapper plugin : resolvedPlugins) {
+            PluginState state = plugin.getPluginState();
+            if (state == PluginState.DISABLED || state == PluginState.STARTED) {
+                continue;
+            }
+            int level = 0;
+            for (PluginDependency dependency : plugin.getDescriptor().getDependencies()) {
+                Integer dependencyLevel = levels.get(dependency.getPluginId());
+                if (dependencyLevel != null) {
+                    level = Math.max(level, dependencyLevel + 1);
+                }
+            }
+            levels.put(plugin.getPluginId(), level);
+            while (waves.size() <= level) {
+                waves.add(new ArrayList<>());
+            }
+            waves.get(level).add(plugin);
+        }
+        return waves;
+    }
+
+    /**
+     * 执行插件的 start()，记录耗时与启动异常
+     */
+    private StartResult startPluginInstance(PluginWrapper plugin) {
+        log.info("Start plugin '{}'", getPluginLabel(plugin.getDescriptor()));
+        long begin = System.currentTimeMillis();
+        Throwable failure = null;
+        try {
+            plugin.getPlugin().start();
+        } catch (Exception | LinkageError e) {
+            failure = e;
+        }
+        long elapsed = System.currentTimeMillis() - begin;
+        log.debug("Plugin '{}' start() took {} ms", plugin.getPluginId(), elapsed);
+        return new StartResult(failure, elapsed);
+    }
+
+    private void completeStart(PluginWrapper plugin, Throwable failure) {
+        PluginState oldState = plugin.getPluginState();
+        if (failure == null) {
+            plugin.setPluginState(PluginState.STARTED);
+            plugin.setFailedException(null);
+            startedPlugins.add(plugin);
+        } else {
+            plugin.setPluginState(PluginState.FAILED);
+            plugin.setFailedException(failure);
+            log.error("Unable to start plugin '{}'", getPluginLabel(plugin.getDescriptor()), failure);
+        }
+        firePluginStateEvent(new PluginStateEvent(this, plugin, oldState));
+    }
+
+    private static StartResult await(Future<StartResult> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return new StartResult(e, 0);
+        } catch (ExecutionException e) {
+            return new StartResult(e.getCause(), 0);
+        }
+    }
+
+    private int resolveStartupThreads() {
+        if (startupThreads > 0) {
+            return startupThreads;
+        }
+        return Math.min(Runtime.getRuntime().availableProcessors(), 8);
+    }
+
+    private static ExecutorService newStartupExecutor(int threads) {
+        AtomicInteger threadNumber = new AtomicInteger();
+        return Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "plugin-startup-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * 单个插件 start() 的结果
+     */
+    private static class StartResult {
+        private final Throwable failure;
+        private final long elapsedMillis;
+
+        StartResult(Throwable failure, long elapsedMillis) {
+            this.failure = failure;
+            this.elapsedMillis = elapsedMillis;
+        }
     }
-}
\ No newline at end of file
+}
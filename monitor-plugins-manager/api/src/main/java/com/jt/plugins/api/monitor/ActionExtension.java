@@ -38,4 +38,34 @@ public interface ActionExtension extends ExtensionPoint {
      * @return 操作结果
      */
     <T> ResultMsg<T> execute(ExtensionRequestParam request);
+
+    /**
+     * 操作结果缓存时间（毫秒），0 表示不缓存
+     *
+     * @param targetAction 目标操作名称
+     * @return 相同参数的请求在该时间内可直接复用上次的成功结果
+     */
+    default long cacheTtlMs(String targetAction) {
+        return 0;
+    }
+
+    /**
+     * 操作执行超时时间（毫秒），0 表示使用管理端默认超时
+     *
+     * @param targetAction 目标操作名称
+     * @return 超时时间
+     */
+    default long timeoutMs(String targetAction) {
+        return 0;
+    }
+
+    /**
+     * 是否只读操作（不改变目标或插件状态），只有只读操作可以被订阅定时执行
+     *
+     * @param targetAction 目标操作名称
+     * @return 是否只读
+     */
+    default boolean readOnly(String targetAction) {
+        return false;
+    }
 }
@@ -6,10 +6,14 @@ import com.jt.plugins.api.OperationButtonExtension;
 import com.jt.plugins.common.http.ExtensionRequestParam;
 import com.jt.plugins.common.result.ResultMsg;
 import com.jt.plugins.service.ExtensionManagerService;
+import com.jt.plugins.service.PluginActivator;
+import com.jt.plugins.service.PluginExecutors;
+import com.jt.plugins.service.SubscriptionService;
 import org.pf4j.PluginManager;
 import org.pf4j.PluginWrapper;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 import java.util.List;
 
 /**
@@ -22,6 +26,15 @@ public class ExtensionManagerController {
     @Autowired
     private ExtensionManagerService extensionManagerService;
 
+    @Autowired
+    private SubscriptionService subscriptionService;
+
+    @Autowired
+    private PluginExecutors pluginExecutors;
+
+    @Autowired
+    private PluginActivator pluginActivator;
+
     private PluginManager pluginManager;
 
     @Autowired
@@ -76,13 +89,91 @@ public class ExtensionManagerController {
      * 指定插件进行操作
      * @param extensionRequestParam
      * @return 操作结果
-     * @throws ClassNotFoundException
      */
     @RequestMapping(value = "/action", method = RequestMethod.POST)
-    public ResultMsg<JSONObject> action(@RequestBody ExtensionRequestParam extensionRequestParam) throws ClassNotFoundException {
+    public ResultMsg<JSONObject> action(@RequestBody ExtensionRequestParam extensionRequestParam) {
         return extensionManagerService.action(extensionRequestParam);
     }
 
+    /**
+     * 批量执行插件操作：一次请求执行多个操作，各操作并发执行，结果按请求顺序返回
+     * @param requests 操作列表（与 /action 的请求体相同），最多 50 个
+     * @param timeout 超时时间（秒），默认 30，超时未完成的操作返回失败
+     * @return 与请求一一对应的操作结果
+     */
+    @RequestMapping(value = "/batch", method = RequestMethod.POST)
+    public ResultMsg<List<ResultMsg<JSONObject>>> batch(@RequestBody List<ExtensionRequestParam> requests,
+                                                        @RequestParam(defaultValue = "30") int timeout) {
+        if (requests == null || requests.isEmpty()) {
+            return ResultMsg.fail("参数错误：操作列表不能为空");
+        }
+        if (requests.size() > ExtensionManagerService.MAX_BATCH_SIZE) {
+            return ResultMsg.fail("参数错误：单次最多 " + ExtensionManagerService.MAX_BATCH_SIZE + " 个操作");
+        }
+        if (timeout < 1 || timeout > 300) {
+            return ResultMsg.fail("参数错误：timeout 取值范围为 1-300");
+        }
+        return ResultMsg.success(extensionManagerService.batch(requests, timeout * 1000L));
+    }
+
+    /**
+     * 登记订阅：服务端按间隔执行操作，客户端用返回的 ID 连接 /ext/subscribe/{id} 接收结果，
+     * 相同操作、参数与间隔的订阅共用一次执行。操作参数放在请求体中，不会出现在 URL 和访问日志里；
+     * 只能订阅只读操作，登记后 60 秒内未连接的订阅自动移除。
+     * @param request 操作请求（与 /action 的请求体相同）
+     * @param interval 执行间隔（秒），默认 5
+     * @return 订阅 ID 与连接地址
+     */
+    @PostMapping("/subscriptions")
+    public ResultMsg<JSONObject> register(@RequestBody ExtensionRequestParam request,
+                                          @RequestParam(defaultValue = "5") int interval) {
+        if (interval < 1 || interval > 3600) {
+            return ResultMsg.fail("参数错误：interval 取值范围为 1-3600");
+        }
+        if (request.getParameters() == null) {
+            request.setParameters(new JSONObject());
+        }
+        if (!extensionManagerService.isReadOnly(request)) {
+            return ResultMsg.fail("参数错误：扩展不存在或操作 " + request.getTargetAction() + " 不是只读操作，不能订阅");
+        }
+        String id = subscriptionService.register(request, interval);
+        return ResultMsg.success(new JSONObject().fluentPut("id", id).fluentPut("url", "/ext/subscribe/" + id));
+    }
+
+    /**
+     * 连接订阅（Server-Sent Events）
+     * 事件 snapshot 为完整结果（ResultMsg 字段 + type）；事件 delta 只包含 data 中变化的顶层字段（changed）与被移除的字段（removed）
+     * @param id 登记订阅返回的 ID
+     * @return SSE 连接
+     */
+    @GetMapping(value = "/subscribe/{id}", produces = "text/event-stream")
+    public SseEmitter subscribe(@PathVariable String id) {
+        return subscriptionService.subscribe(id);
+    }
+
+    /**
+     * 当前订阅状态（密码等敏感参数已隐藏）
+     */
+    @GetMapping("/subscriptions")
+    public ResultMsg<JSONArray> subscriptions() {
+        return ResultMsg.success(subscriptionService.getSubscriptions());
+    }
+
+    /**
+     * 各插件执行线程池状态：活动线程、排队数、拒绝与超时次数、平均/最大执行耗时
+     */
+    @GetMapping("/executors")
+    public ResultMsg<JSONArray> executors() {
+        return ResultMsg.success(pluginExecutors.getStats());
+    }
+
+    /**
+     * 插件按需启动状态：各插件当前状态、正在执行的调用数、空闲时间与按需启动次数
+     */
+    @GetMapping("/activations")
+    public ResultMsg<JSONObject> activations() {
+        return ResultMsg.success(pluginActivator.getStats());
+    }
 
 //    @RequestMapping(value = "/logCleanPlugin", method = RequestMethod.POST)
 //    public ResultMsg<JSONObject> logCleanPlugin(@RequestBody ExtensionRequestParam extensionRequestParam ) throws Exception {
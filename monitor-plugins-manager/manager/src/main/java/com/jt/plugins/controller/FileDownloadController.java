@@ -0,0 +1,57 @@
+package com.jt.plugins.controller;
+
+import com.jt.plugins.common.file.DownloadTokenRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.io.File;
+
+/**
+ * @author blwy_qb
+ * @description 插件文件下载控制器（令牌下载）
+ * 返回 Resource 时 Spring MVC 会自动处理 Range 请求头（206 分段响应），支持大文件断点续传
+ */
+@RestController
+@RequestMapping("/api/download")
+public class FileDownloadController {
+
+    private static final Logger logger = LoggerFactory.getLogger(FileDownloadController.class);
+
+    /**
+     * 按令牌下载文件
+     */
+    @GetMapping("/{token}")
+    public ResponseEntity<Resource> download(@PathVariable String token) {
+        DownloadTokenRegistry.TokenInfo tokenInfo = DownloadTokenRegistry.resolve(token);
+        if (tokenInfo == null) {
+            logger.warn("下载令牌无效或已过期: {}", token);
+            return ResponseEntity.notFound().build();
+        }
+
+        File file = new File(tokenInfo.getFilePath());
+        if (!file.isFile()) {
+            logger.warn("下载文件不存在: {}", tokenInfo.getFilePath());
+            DownloadTokenRegistry.revoke(token);
+            return ResponseEntity.notFound().build();
+        }
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.add(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + tokenInfo.getFileName() + "\"");
+        headers.add(HttpHeaders.ACCESS_CONTROL_EXPOSE_HEADERS, HttpHeaders.CONTENT_DISPOSITION);
+        headers.add(HttpHeaders.ACCEPT_RANGES, "bytes");
+
+        return ResponseEntity.ok()
+                .headers(headers)
+                .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                .body(new FileSystemResource(file));
+    }
+}
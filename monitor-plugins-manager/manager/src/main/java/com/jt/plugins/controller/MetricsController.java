@@ -0,0 +1,22 @@
+package com.jt.plugins.controller;
+
+import com.jt.plugins.common.metrics.MetricsRegistry;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * @author blwy_qb
+ * @description 自身运行指标导出（Prometheus 文本格式），包含扩展操作、插件线程池、DMV 查询、JMX 调用与日志去重的计数和耗时
+ */
+@RestController
+public class MetricsController {
+
+    private static final MediaType PROMETHEUS_TEXT = MediaType.parseMediaType("text/plain;version=0.0.4;charset=utf-8");
+
+    @GetMapping("/metrics")
+    public ResponseEntity<String> metrics() {
+        return ResponseEntity.ok().contentType(PROMETHEUS_TEXT).body(MetricsRegistry.toPrometheus());
+    }
+}
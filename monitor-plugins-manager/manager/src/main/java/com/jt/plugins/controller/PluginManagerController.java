@@ -106,4 +106,12 @@ public class PluginManagerController {
     public ResultMsg<List<JSONObject>> listPlugin() {
         return pluginManagerService.getPlugins();
     }
+
+    /**
+     * 获取插件加载与启动耗时（含扩展实例缓存统计）
+     */
+    @PostMapping("startupTimings")
+    public ResultMsg<JSONObject> startupTimings() {
+        return pluginManagerService.getStartupTimings();
+    }
 }
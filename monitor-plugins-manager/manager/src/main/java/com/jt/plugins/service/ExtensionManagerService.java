@@ -1,44 +1,282 @@
 package com.jt.plugins.service;
 
 import com.alibaba.fastjson.JSONObject;
-import com.jt.plugins.api.monitor.ActionExtension;
 import com.jt.plugins.common.http.ExtensionRequestParam;
+import com.jt.plugins.common.metrics.MetricsRegistry;
 import com.jt.plugins.common.result.ResultMsg;
-import org.pf4j.PluginManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
-import org.springframework.web.bind.annotation.RequestBody;
 
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * @BelongsProject: jt-server-monitor
  * @BelongsPackage: com.jt.plugins.service
  * @Author: 别来无恙qb
  * @CreateTime: 2025-09-02  16:29
- * @Description: TODO
+ * @Description: 扩展操作分发服务
+ *
+ * 只读操作（readOnly）的相同请求（扩展点、扩展名称、操作和参数均相同，见 {@link ExtensionRequestKey}）并发到达时只执行一次，
+ * 其余请求等待并共享同一个结果，有副作用的操作每次请求都单独执行；扩展通过 cacheTtlMs 声明的只读操作，成功结果在该时间内直接复用。
+ * 共享的结果对象不应被调用方修改。
+ * 操作在所属插件的隔离线程池中执行（见 {@link PluginExecutors}），调用线程最多等待到操作超时。
+ * 扩展经 {@link PluginActivator} 查找，开启按需启动时所属插件在首次调用时启动，调用期间不会被空闲检查停止。
  * @Version: 1.0
  */
 
 @Service
 public class ExtensionManagerService {
 
-    private PluginManager pluginManager;
+    private static final Logger logger = LoggerFactory.getLogger(ExtensionManagerService.class);
+
+    // 单次批量请求的最大操作数
+    public static final int MAX_BATCH_SIZE = 50;
+
+    // 批量执行线程数与排队上限（所有批量请求共享）
+    private static final int BATCH_THREADS = 16;
+    private static final int BATCH_QUEUE_SIZE = 256;
+
+    // 结果缓存条目数超过该值时清理过期条目
+    private static final int RESULT_CACHE_PRUNE_SIZE = 1024;
+
+    private PluginExecutors pluginExecutors;
+
+    private PluginActivator pluginActivator;
+
+    // 正在执行的请求：请求键 -> 执行结果
+    private final Map<String, CompletableFuture<ResultMsg<JSONObject>>> inFlight = new ConcurrentHashMap<>();
+
+    // 短时结果缓存：请求键 -> 成功结果与过期时间
+    private final Map<String, CachedResult> resultCache = new ConcurrentHashMap<>();
+
+    private final ThreadPoolExecutor batchExecutor = createBatchExecutor();
 
     @Autowired
-    public void setPluginManager(PluginManager pluginManager) {
-        this.pluginManager = pluginManager;
+    public void setPluginActivator(PluginActivator pluginActivator) {
+        this.pluginActivator = pluginActivator;
+    }
+
+    @Autowired
+    public void setPluginExecutors(PluginExecutors pluginExecutors) {
+        this.pluginExecutors = pluginExecutors;
+    }
+
+    public ResultMsg<JSONObject> action(ExtensionRequestParam extensionRequestParam) {
+        try (PluginActivator.Lease lease = pluginActivator.acquire(
+                extensionRequestParam.getExtensionClass(), extensionRequestParam.getExtensionName())) {
+            if (lease == null) {
+                MetricsRegistry.counter("jt_extension_not_found_total").increment();
+                return ResultMsg.fail("Extension not found or unavailable(未找到扩展名或无法使用)");
+            }
+            return action(lease, extensionRequestParam);
+        }
+    }
+
+    /**
+     * 目标操作是否只读（扩展通过 readOnly 声明），扩展不存在时为 false
+     */
+    public boolean isReadOnly(ExtensionRequestParam extensionRequestParam) {
+        try (PluginActivator.Lease lease = pluginActivator.acquire(
+                extensionRequestParam.getExtensionClass(), extensionRequestParam.getExtensionName())) {
+            return lease != null && lease.getRoute().getExtension().readOnly(extensionRequestParam.getTargetAction());
+        }
+    }
+
+    private ResultMsg<JSONObject> action(PluginActivator.Lease lease, ExtensionRequestParam extensionRequestParam) {
+        ExtensionRouteTable.Route route = lease.getRoute();
+        // 按插件和操作记录调用耗时（含排队、等待相同请求的时间）与失败次数
+        String pluginId = route.getPluginId();
+        String targetAction = String.valueOf(extensionRequestParam.getTargetAction());
+        long start = System.nanoTime();
+        boolean succeeded = false;
+        try {
+            ResultMsg<JSONObject> result = dispatch(lease, extensionRequestParam, targetAction);
+            succeeded = result != null && Integer.valueOf(1).equals(result.getState());
+            return result;
+        } finally {
+            MetricsRegistry.timer("jt_extension_action", "plugin", pluginId, "action", targetAction)
+                    .recordNanos(System.nanoTime() - start);
+            if (!succeeded) {
+                MetricsRegistry.counter("jt_extension_action_failed_total", "plugin", pluginId, "action", targetAction)
+                        .increment();
+            }
+        }
+    }
+
+    private ResultMsg<JSONObject> dispatch(PluginActivator.Lease lease, ExtensionRequestParam extensionRequestParam,
+                                           String targetAction) {
+        ExtensionRouteTable.Route route = lease.getRoute();
+        String key = ExtensionRequestKey.of(extensionRequestParam);
+        long ttl = route.getExtension().cacheTtlMs(extensionRequestParam.getTargetAction());
+        if (ttl > 0) {
+            CachedResult cached = resultCache.get(key);
+            if (cached != null && cached.expiresAt > System.currentTimeMillis()) {
+                countOutcome(route, targetAction, "cached");
+                return cached.result;
+            }
+        }
+
+        if (!route.getExtension().readOnly(extensionRequestParam.getTargetAction())) {
+            // 有副作用的操作（清理、GC、堆转储、注册目标等）每次请求都必须真正执行，不合并
+            countOutcome(route, targetAction, "executed");
+            return execute(lease, route, extensionRequestParam, key, ttl);
+        }
+
+        CompletableFuture<ResultMsg<JSONObject>> execution = new CompletableFuture<>();
+        CompletableFuture<ResultMsg<JSONObject>> running = inFlight.putIfAbsent(key, execution);
+        if (running != null) {
+            // 相同的只读请求正在执行，等待其结果
+            countOutcome(route, targetAction, "coalesced");
+            return await(running);
+        }
+        countOutcome(route, targetAction, "executed");
+        try {
+            ResultMsg<JSONObject> result = execute(lease, route, extensionRequestParam, key, ttl);
+            execution.complete(result);
+            return result;
+        } catch (RuntimeException | Error e) {
+            execution.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, execution);
+        }
+    }
+
+    private ResultMsg<JSONObject> execute(PluginActivator.Lease lease, ExtensionRouteTable.Route route,
+                                          ExtensionRequestParam extensionRequestParam, String key, long ttl) {
+        // 超时返回后操作可能仍在执行，另占用一次插件，操作真正结束时才释放
+        PluginActivator.Lease hold = lease.retain();
+        ResultMsg<JSONObject> result = pluginExecutors.execute(route.getPluginId(), route.getExtension(),
+                extensionRequestParam, hold::close);
+        if (ttl > 0 && result != null && Integer.valueOf(1).equals(result.getState())) {
+            cacheResult(key, result, ttl);
+        }
+        return result;
+    }
+
+    private static void countOutcome(ExtensionRouteTable.Route route, String targetAction, String outcome) {
+        MetricsRegistry.counter("jt_extension_action_total",
+                "plugin", route.getPluginId(), "action", targetAction, "outcome", outcome).increment();
     }
-    public ResultMsg<JSONObject> action(ExtensionRequestParam extensionRequestParam) throws ClassNotFoundException {
-        String extensionName = extensionRequestParam.getExtensionName();
-        String extensionClass = extensionRequestParam.getExtensionClass();
-        List extensions = pluginManager.getExtensions(Class.forName(extensionClass));
-        for (Object extension : extensions) {
-            if (extension instanceof ActionExtension && ((ActionExtension) extension).name().equals(extensionName)) {
-                return ((ActionExtension) extension).execute(extensionRequestParam);
+
+    private static ResultMsg<JSONObject> await(CompletableFuture<ResultMsg<JSONObject>> running) {
+        try {
+            return running.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return ResultMsg.fail("执行被中断");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
             }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    private void cacheResult(String key, ResultMsg<JSONObject> result, long ttl) {
+        long now = System.currentTimeMillis();
+        if (resultCache.size() >= RESULT_CACHE_PRUNE_SIZE) {
+            for (Iterator<CachedResult> it = resultCache.values().iterator(); it.hasNext(); ) {
+                if (it.next().expiresAt <= now) {
+                    it.remove();
+                }
+            }
+        }
+        resultCache.put(key, new CachedResult(result, now + ttl));
+    }
+
+    /**
+     * 批量执行扩展操作：各操作并发执行，共用同一个截止时间，结果按请求顺序返回
+     * @param requests 操作列表
+     * @param timeoutMs 超时时间（毫秒），超时未完成的操作取消并返回失败
+     * @return 与 requests 一一对应的结果
+     */
+    public List<ResultMsg<JSONObject>> batch(List<ExtensionRequestParam> requests, long timeoutMs) {
+        long deadline = System.currentTimeMillis() + timeoutMs;
+        List<Future<ResultMsg<JSONObject>>> futures = new ArrayList<>(requests.size());
+        for (ExtensionRequestParam request : requests) {
+            try {
+                futures.add(batchExecutor.submit(() -> action(request)));
+            } catch (RejectedExecutionException e) {
+                futures.add(null);
+            }
+        }
+
+        List<ResultMsg<JSONObject>> results = new ArrayList<>(requests.size());
+        for (int i = 0; i < requests.size(); i++) {
+            Future<ResultMsg<JSONObject>> future = futures.get(i);
+            ExtensionRequestParam request = requests.get(i);
+            if (future == null) {
+                logger.warn("批量执行队列已满，拒绝操作: {}.{}", request.getExtensionName(), request.getTargetAction());
+                results.add(ResultMsg.fail("系统繁忙，操作被拒绝，请稍后重试"));
+                continue;
+            }
+            try {
+                results.add(future.get(Math.max(0, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS));
+            } catch (TimeoutException e) {
+                future.cancel(true);
+                logger.warn("批量操作执行超时: {}.{}", request.getExtensionName(), request.getTargetAction());
+                results.add(ResultMsg.fail("执行超时（超过 " + timeoutMs / 1000 + " 秒）"));
+            } catch (ExecutionException e) {
+                logger.error("批量操作执行失败: {}.{}", request.getExtensionName(), request.getTargetAction(), e.getCause());
+                results.add(ResultMsg.fail("执行操作失败：" + e.getCause().getMessage()));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                future.cancel(true);
+                results.add(ResultMsg.fail("执行被中断"));
+            }
+        }
+        return results;
+    }
+
+    private static ThreadPoolExecutor createBatchExecutor() {
+        AtomicInteger threadNumber = new AtomicInteger();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(BATCH_THREADS, BATCH_THREADS,
+                60L, TimeUnit.SECONDS, new ArrayBlockingQueue<>(BATCH_QUEUE_SIZE), runnable -> {
+            Thread thread = new Thread(runnable, "ext-batch-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        batchExecutor.shutdownNow();
+    }
+
+    /**
+     * 缓存的成功结果
+     */
+    private static class CachedResult {
+        private final ResultMsg<JSONObject> result;
+        private final long expiresAt;
+
+        CachedResult(ResultMsg<JSONObject> result, long expiresAt) {
+            this.result = result;
+            this.expiresAt = expiresAt;
         }
-        return ResultMsg.fail("Extension not found or unavailable(未找到扩展名或无法使用)");
     }
 
 }
@@ -0,0 +1,27 @@
+package com.jt.plugins.service;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.serializer.SerializerFeature;
+import com.jt.plugins.common.http.ExtensionRequestParam;
+
+/**
+ * @BelongsProject: jt-server-monitor
+ * @BelongsPackage: com.jt.plugins.service
+ * @Author: 别来无恙qb
+ * @CreateTime: 2026-03-24  10:00
+ * @Description: 扩展请求的规范化键 - 扩展点接口、扩展名称、操作和按键排序的参数，
+ * 参数顺序不同但内容相同的请求得到相同的键
+ * @Version: 1.0
+ */
+public final class ExtensionRequestKey {
+
+    private ExtensionRequestKey() {
+    }
+
+    public static String of(ExtensionRequestParam request) {
+        String parameters = request.getParameters() == null ? "{}"
+                : JSON.toJSONString(request.getParameters(), SerializerFeature.MapSortField);
+        return request.getExtensionClass() + '|' + request.getExtensionName() + '|'
+                + request.getTargetAction() + '|' + parameters;
+    }
+}
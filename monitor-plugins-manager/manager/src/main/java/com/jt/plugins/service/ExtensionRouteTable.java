@@ -0,0 +1,170 @@
+package com.jt.plugins.service;
+
+import com.jt.plugins.api.monitor.ActionExtension;
+import org.pf4j.ExtensionPoint;
+import org.pf4j.PluginManager;
+import org.pf4j.PluginState;
+import org.pf4j.PluginStateEvent;
+import org.pf4j.PluginStateListener;
+import org.pf4j.PluginWrapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * @BelongsProject: jt-server-monitor
+ * @BelongsPackage: com.jt.plugins.service
+ * @Author: 别来无恙qb
+ * @CreateTime: 2026-03-23  09:30
+ * @Description: 扩展路由表 - (扩展点接口类名, 扩展名称) -> 扩展实例
+ *
+ * 插件启动/停止时（pf4j PluginStateListener）重建该插件的路由，请求分发只需一次 Map 查找，
+ * 不再每次 Class.forName、由 pf4j 创建扩展实例并线性比较名称。
+ * 扩展点接口类名取扩展类实现的所有 ExtensionPoint 子接口，与原先 getExtensions(Class.forName(extensionClass)) 的匹配范围一致；
+ * 目标操作（targetAction）仍由扩展内部按 @ActionHandler 映射分发。
+ * @Version: 1.0
+ */
+@Component
+public class ExtensionRouteTable implements PluginStateListener {
+
+    private static final Logger logger = LoggerFactory.getLogger(ExtensionRouteTable.class);
+
+    private PluginManager pluginManager;
+
+    // 路由表整体替换（写时复制），读取无需加锁
+    private volatile Map<String, Route> routes = Collections.emptyMap();
+
+    // 曾经注册过的路由 -> 所属插件，插件停止后保留，供按需启动时定位插件
+    private final Map<String, String> knownOwners = new ConcurrentHashMap<>();
+
+    @Autowired
+    public void setPluginManager(PluginManager pluginManager) {
+        this.pluginManager = pluginManager;
+    }
+
+    @PostConstruct
+    public void init() {
+        // PluginManager 初始化时插件已经启动，这里先按当前状态建表，之后由状态事件增量维护
+        pluginManager.addPluginStateListener(this);
+        rebuild();
+    }
+
+    /**
+     * 查找扩展
+     * @param extensionClass 扩展点接口类名
+     * @param extensionName 扩展名称
+     * @return 路由，未找到时为 null
+     */
+    public Route find(String extensionClass, String extensionName) {
+        return routes.get(key(extensionClass, extensionName));
+    }
+
+    /**
+     * 查找曾提供该扩展的插件（插件当前可能未启动）
+     * @return 插件 ID，从未见过该扩展时为 null
+     */
+    public String findOwner(String extensionClass, String extensionName) {
+        return knownOwners.get(key(extensionClass, extensionName));
+    }
+
+    /**
+     * 当前路由数
+     */
+    public int size() {
+        return routes.size();
+    }
+
+    @Override
+    public void pluginStateChanged(PluginStateEvent event) {
+        String pluginId = event.getPlugin().getPluginId();
+        logger.debug("插件状态变化，更新扩展路由: {} {} -> {}", pluginId, event.getOldState(), event.getPluginState());
+        synchronized (this) {
+            Map<String, Route> updated = new HashMap<>();
+            for (Map.Entry<String, Route> entry : routes.entrySet()) {
+                if (!pluginId.equals(entry.getValue().getPluginId())) {
+                    updated.put(entry.getKey(), entry.getValue());
+                }
+            }
+            if (event.getPluginState() == PluginState.STARTED) {
+                addRoutes(updated, pluginId);
+            }
+            routes = updated;
+        }
+    }
+
+    /**
+     * 按所有已启动插件重建路由表
+     */
+    public synchronized void rebuild() {
+        Map<String, Route> updated = new HashMap<>();
+        for (PluginWrapper plugin : pluginManager.getStartedPlugins()) {
+            addRoutes(updated, plugin.getPluginId());
+        }
+        routes = updated;
+        logger.info("扩展路由表已重建，共 {} 条", updated.size());
+    }
+
+    private void addRoutes(Map<String, Route> table, String pluginId) {
+        for (ActionExtension extension : pluginManager.getExtensions(ActionExtension.class, pluginId)) {
+            Route route = new Route(pluginId, extension);
+            for (String extensionClass : extensionPointNames(extension.getClass())) {
+                String key = key(extensionClass, extension.name());
+                knownOwners.put(key, pluginId);
+                Route previous = table.put(key, route);
+                if (previous != null && !previous.getPluginId().equals(pluginId)) {
+                    logger.warn("扩展名称重复，{} 的 {} 覆盖了插件 {} 中的同名扩展",
+                            pluginId, extension.name(), previous.getPluginId());
+                }
+            }
+        }
+    }
+
+    /**
+     * 扩展类实现的所有扩展点接口（含父接口）
+     */
+    static Set<String> extensionPointNames(Class<?> extensionClass) {
+        Set<String> names = new HashSet<>();
+        Deque<Class<?>> pending = new ArrayDeque<>();
+        for (Class<?> type = extensionClass; type != null; type = type.getSuperclass()) {
+            Collections.addAll(pending, type.getInterfaces());
+        }
+        while (!pending.isEmpty()) {
+            Class<?> type = pending.poll();
+            if (ExtensionPoint.class.isAssignableFrom(type) && type != ExtensionPoint.class && names.add(type.getName())) {
+                Collections.addAll(pending, type.getInterfaces());
+            }
+        }
+        return names;
+    }
+
+    private static String key(String extensionClass, String extensionName) {
+        return extensionClass + '#' + extensionName;
+    }
+
+    /**
+     * 路由目标：所属插件与扩展实例
+     */
+    public static class Route {
+        private final String pluginId;
+        private final ActionExtension extension;
+
+        Route(String pluginId, ActionExtension extension) {
+            this.pluginId = pluginId;
+            this.extension = extension;
+        }
+
+        public String getPluginId() { return pluginId; }
+        public ActionExtension getExtension() { return extension; }
+    }
+}
@@ -0,0 +1,455 @@
+package com.jt.plugins.service;
+
+import com.alibaba.fastjson.JSONArray;
+import com.alibaba.fastjson.JSONObject;
+import com.jt.plugins.common.metrics.MetricsRegistry;
+import com.jt.plugins.config.Pf4jManagerProperties;
+import com.jt.plugins.core.SpringPlugin;
+import org.pf4j.PluginDependency;
+import org.pf4j.PluginManager;
+import org.pf4j.PluginState;
+import org.pf4j.PluginStateEvent;
+import org.pf4j.PluginStateListener;
+import org.pf4j.PluginWrapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * @BelongsProject: jt-server-monitor
+ * @BelongsPackage: com.jt.plugins.service
+ * @Author: 别来无恙qb
+ * @CreateTime: 2026-03-27  09:30
+ * @Description: 插件按需启动 - spring.pf4j.lazy=true 时插件在首次调用其扩展时才启动，空闲超时后停止并卸载
+ *
+ * 启动时插件只加载、解析（见 SpringPluginManager.lazyStart），这里按插件读取扩展索引、加载扩展类（不初始化、不创建实例），
+ * 记录每个插件提供的扩展点。请求的扩展不在路由表中时，先找曾提供该扩展的插件，否则按扩展点找候选插件依次启动，
+ * 直到路由表中出现该扩展；扩展名称只有实例化后才知道，第一次定位时可能多启动候选插件，之后按已知归属直接启动。
+ * 每次调用持有所属插件的使用计数，空闲检查只停止计数为 0、超过空闲时间且没有其他已加载插件依赖的插件，
+ * 停止后卸载以释放类加载器，下次调用时按原路径重新加载。手动启动的插件不会被自动停止，
+ * 仍有后台工作的插件（{@link SpringPlugin#isBusy()} 返回 true，如定时采集、进行中的堆转储）也不会被停止。
+ * 调用超时返回后操作可能仍在插件线程池中执行，此时占用计数保持到操作真正结束（见 {@link Lease#retain()}）。
+ * @Version: 1.0
+ */
+@Component
+public class PluginActivator implements PluginStateListener {
+
+    private static final Logger logger = LoggerFactory.getLogger(PluginActivator.class);
+
+    private PluginManager pluginManager;
+
+    private Pf4jManagerProperties pf4jManagerProperties;
+
+    private ExtensionRouteTable extensionRouteTable;
+
+    private boolean enabled;
+
+    private long idleTimeoutMs;
+
+    // 扩展点接口类名 -> 提供该扩展点的插件
+    private final Map<String, Set<String>> extensionPointIndex = new ConcurrentHashMap<>();
+
+    // 插件 ID -> 插件文件路径，空闲卸载后按此重新加载
+    private final Map<String, Path> pluginPaths = new ConcurrentHashMap<>();
+
+    // 由本类启动、可被空闲检查停止的插件
+    private final Set<String> activated = ConcurrentHashMap.newKeySet();
+
+    // 因空闲被卸载的插件，只有这些插件会被重新加载（手动卸载的插件不再自动加载）
+    private final Set<String> unloaded = ConcurrentHashMap.newKeySet();
+
+    // 插件 ID -> 正在执行的调用数，-1 表示正在停止
+    private final Map<String, AtomicInteger> usage = new ConcurrentHashMap<>();
+
+    // 插件 ID -> 最近一次调用时间
+    private final Map<String, Long> lastUsed = new ConcurrentHashMap<>();
+
+    // 插件 ID -> 按需启动次数
+    private final Map<String, AtomicInteger> activations = new ConcurrentHashMap<>();
+
+    // 启动、停止插件时持有，pf4j 的插件管理器本身不是线程安全的
+    private final Object lifecycleLock = new Object();
+
+    private ScheduledExecutorService reaper;
+
+    @Autowired
+    public void setPluginManager(PluginManager pluginManager) {
+        this.pluginManager = pluginManager;
+    }
+
+    @Autowired
+    public void setPf4jManagerProperties(Pf4jManagerProperties pf4jManagerProperties) {
+        this.pf4jManagerProperties = pf4jManagerProperties;
+    }
+
+    @Autowired
+    public void setExtensionRouteTable(ExtensionRouteTable extensionRouteTable) {
+        this.extensionRouteTable = extensionRouteTable;
+    }
+
+    @PostConstruct
+    public void init() {
+        enabled = pf4jManagerProperties.isLazy();
+        if (!enabled) {
+            return;
+        }
+        pluginManager.addPluginStateListener(this);
+        for (PluginWrapper plugin : pluginManager.getResolvedPlugins()) {
+            index(plugin);
+        }
+        logger.info("插件按需启动已开启，已索引 {} 个插件，{} 个扩展点", pluginPaths.size(), extensionPointIndex.size());
+
+        idleTimeoutMs = TimeUnit.MINUTES.toMillis(pf4jManagerProperties.getIdleTimeoutMinutes());
+        if (idleTimeoutMs > 0) {
+            long period = Math.max(1000L, Math.min(60 * 1000L, idleTimeoutMs / 2));
+            reaper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "plugin-idle-reaper");
+                thread.setDaemon(true);
+                return thread;
+            });
+            reaper.scheduleWithFixedDelay(this::stopIdlePlugins, period, period, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 获取扩展路由并占用所属插件，调用结束后必须 {@link Lease#close()}；插件未启动时按需启动
+     * @param extensionClass 扩展点接口类名
+     * @param extensionName 扩展名称
+     * @return 占用凭证，找不到扩展时为 null
+     */
+    public Lease acquire(String extensionClass, String extensionName) {
+        for (int attempt = 0; attempt < 3; attempt++) {
+            ExtensionRouteTable.Route route = extensionRouteTable.find(extensionClass, extensionName);
+            if (!enabled) {
+                return route == null ? null : new Lease(route, null);
+            }
+            if (route == null) {
+                route = activate(extensionClass, extensionName);
+                if (route == null) {
+                    return null;
+                }
+            }
+            String pluginId = route.getPluginId();
+            AtomicInteger counter = usage.computeIfAbsent(pluginId, id -> new AtomicInteger());
+            if (!tryIncrement(counter)) {
+                // 插件正在因空闲停止，等停止完成后重新启动
+                continue;
+            }
+            if (extensionRouteTable.find(extensionClass, extensionName) != route) {
+                // 取到路由后插件被停止并重新启动过，路由已失效
+                release(pluginId, counter);
+                continue;
+            }
+            lastUsed.put(pluginId, System.currentTimeMillis());
+            return new Lease(route, counter);
+        }
+        return null;
+    }
+
+    /**
+     * 启动提供该扩展的插件
+     */
+    private ExtensionRouteTable.Route activate(String extensionClass, String extensionName) {
+        synchronized (lifecycleLock) {
+            ExtensionRouteTable.Route route = extensionRouteTable.find(extensionClass, extensionName);
+            if (route != null) {
+                return route;
+            }
+            for (String pluginId : candidates(extensionClass, extensionName)) {
+                if (!startPlugin(pluginId)) {
+                    continue;
+                }
+                route = extensionRouteTable.find(extensionClass, extensionName);
+                if (route != null) {
+                    return route;
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * 候选插件：已知归属优先，其余按扩展点索引，插件 ID 与扩展名称相近的排在前面
+     */
+    private List<String> candidates(String extensionClass, String extensionName) {
+        Set<String> candidates = new LinkedHashSet<>();
+        String owner = extensionRouteTable.findOwner(extensionClass, extensionName);
+        if (owner != null) {
+            candidates.add(owner);
+        }
+        Set<String> providers = extensionPointIndex.get(extensionClass);
+        if (providers != null) {
+            String hint = normalize(extensionName);
+            List<String> similar = new ArrayList<>();
+            List<String> others = new ArrayList<>();
+            for (String pluginId : providers) {
+                (!hint.isEmpty() && normalize(pluginId).contains(hint) ? similar : others).add(pluginId);
+            }
+            candidates.addAll(similar);
+            candidates.addAll(others);
+        }
+        return new ArrayList<>(candidates);
+    }
+
+    private boolean startPlugin(String pluginId) {
+        PluginWrapper plugin = pluginManager.getPlugin(pluginId);
+        if (plugin == null) {
+            Path path = pluginPaths.get(pluginId);
+            if (path == null || !unloaded.contains(pluginId)) {
+                return false;
+            }
+            String loadedPluginId = pluginManager.loadPlugin(path);
+            unloaded.remove(pluginId);
+            plugin = loadedPluginId == null ? null : pluginManager.getPlugin(loadedPluginId);
+            if (plugin == null) {
+                return false;
+            }
+        }
+        if (plugin.getPluginState() == PluginState.STARTED) {
+            return true;
+        }
+        if (plugin.getPluginState() == PluginState.DISABLED) {
+            return false;
+        }
+
+        long start = System.nanoTime();
+        PluginState state = pluginManager.startPlugin(pluginId);
+        long elapsedNanos = System.nanoTime() - start;
+        MetricsRegistry.timer("jt_plugin_activation", "plugin", pluginId).recordNanos(elapsedNanos);
+        if (state != PluginState.STARTED) {
+            logger.warn("按需启动插件失败: {} 状态 {}", pluginId, state);
+            return false;
+        }
+        activated.add(pluginId);
+        lastUsed.put(pluginId, System.currentTimeMillis());
+        activations.computeIfAbsent(pluginId, id -> new AtomicInteger()).incrementAndGet();
+        logger.info("按需启动插件 {}，耗时 {} 毫秒", pluginId, TimeUnit.NANOSECONDS.toMillis(elapsedNanos));
+        return true;
+    }
+
+    /**
+     * 停止并卸载空闲的插件
+     */
+    private void stopIdlePlugins() {
+        try {
+            long now = System.currentTimeMillis();
+            for (String pluginId : new ArrayList<>(activated)) {
+                Long used = lastUsed.get(pluginId);
+                if (used != null && now - used < idleTimeoutMs) {
+                    continue;
+                }
+                synchronized (lifecycleLock) {
+                    stopIfIdle(pluginId);
+                }
+            }
+        } catch (RuntimeException e) {
+            logger.error("空闲插件检查失败", e);
+        }
+    }
+
+    private void stopIfIdle(String pluginId) {
+        PluginWrapper plugin = pluginManager.getPlugin(pluginId);
+        if (!activated.contains(pluginId) || plugin == null || plugin.getPluginState() != PluginState.STARTED) {
+            return;
+        }
+        if (hasLoadedDependents(pluginId)) {
+            return;
+        }
+        AtomicInteger counter = usage.get(pluginId);
+        if (counter != null && !counter.compareAndSet(0, -1)) {
+            // 有调用正在执行
+            return;
+        }
+        boolean stopping = false;
+        try {
+            if (isBusy(plugin)) {
+                return;
+            }
+            stopping = true;
+            activated.remove(pluginId);
+            pluginManager.stopPlugin(pluginId);
+            if (pluginManager.unloadPlugin(pluginId)) {
+                unloaded.add(pluginId);
+            }
+            MetricsRegistry.counter("jt_plugin_idle_stop_total", "plugin", pluginId).increment();
+            logger.info("插件 {} 空闲超过 {} 分钟，已停止并卸载", pluginId, TimeUnit.MILLISECONDS.toMinutes(idleTimeoutMs));
+        } finally {
+            if (counter != null) {
+                if (stopping) {
+                    usage.remove(pluginId, counter);
+                } else {
+                    counter.set(0);
+                }
+            }
+        }
+    }
+
+    /**
+     * 插件是否有后台工作，检查失败时按忙碌处理
+     */
+    private static boolean isBusy(PluginWrapper plugin) {
+        try {
+            return plugin.getPlugin() instanceof SpringPlugin && ((SpringPlugin) plugin.getPlugin()).isBusy();
+        } catch (RuntimeException | LinkageError e) {
+            logger.warn("检查插件 {} 是否有后台工作失败，本次不停止: {}", plugin.getPluginId(), e.toString());
+            return true;
+        }
+    }
+
+    private boolean hasLoadedDependents(String pluginId) {
+        for (PluginWrapper plugin : pluginManager.getPlugins()) {
+            for (PluginDependency dependency : plugin.getDescriptor().getDependencies()) {
+                if (pluginId.equals(dependency.getPluginId())) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 读取插件的扩展索引，记录其提供的扩展点；扩展类只加载不初始化，也不保留类引用，避免卸载后类加载器无法回收
+     */
+    private void index(PluginWrapper plugin) {
+        String pluginId = plugin.getPluginId();
+        pluginPaths.put(pluginId, plugin.getPluginPath());
+        ClassLoader classLoader = plugin.getPluginClassLoader();
+        for (String extensionClassName : pluginManager.getExtensionClassNames(pluginId)) {
+            try {
+                Class<?> extensionClass = Class.forName(extensionClassName, false, classLoader);
+                for (String extensionPoint : ExtensionRouteTable.extensionPointNames(extensionClass)) {
+                    extensionPointIndex.computeIfAbsent(extensionPoint, name -> ConcurrentHashMap.newKeySet()).add(pluginId);
+                }
+            } catch (ClassNotFoundException | LinkageError e) {
+                logger.warn("插件 {} 的扩展类 {} 无法加载: {}", pluginId, extensionClassName, e.toString());
+            }
+        }
+    }
+
+    @Override
+    public void pluginStateChanged(PluginStateEvent event) {
+        String pluginId = event.getPlugin().getPluginId();
+        if (event.getOldState() == PluginState.STARTED && event.getPluginState() != PluginState.STARTED) {
+            // 手动停止的插件不再由空闲检查管理
+            activated.remove(pluginId);
+        } else if (event.getPluginState() == PluginState.RESOLVED && !pluginPaths.containsKey(pluginId)) {
+            // 运行期间新加载的插件
+            index(event.getPlugin());
+        }
+    }
+
+    /**
+     * 按需启动状态：各插件当前状态、是否由按需启动管理、正在执行的调用数、空闲时间与启动次数
+     */
+    public JSONObject getStats() {
+        long now = System.currentTimeMillis();
+        JSONArray plugins = new JSONArray();
+        for (Map.Entry<String, Path> entry : new LinkedHashMap<>(pluginPaths).entrySet()) {
+            String pluginId = entry.getKey();
+            PluginWrapper plugin = pluginManager.getPlugin(pluginId);
+            AtomicInteger counter = usage.get(pluginId);
+            Long used = lastUsed.get(pluginId);
+            AtomicInteger count = activations.get(pluginId);
+            JSONObject json = new JSONObject(true);
+            json.put("pluginId", pluginId);
+            json.put("state", plugin != null ? plugin.getPluginState().toString() : "UNLOADED");
+            json.put("managed", activated.contains(pluginId));
+            json.put("inUse", counter == null ? 0 : Math.max(0, counter.get()));
+            json.put("idleMs", used == null ? null : now - used);
+            json.put("activations", count == null ? 0 : count.get());
+            plugins.add(json);
+        }
+        JSONObject result = new JSONObject(true);
+        result.put("enabled", enabled);
+        result.put("idleTimeoutMinutes", TimeUnit.MILLISECONDS.toMinutes(idleTimeoutMs));
+        result.put("plugins", plugins);
+        return result;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (reaper != null) {
+            reaper.shutdownNow();
+        }
+    }
+
+    private static boolean tryIncrement(AtomicInteger counter) {
+        int value;
+        do {
+            value = counter.get();
+            if (value < 0) {
+                return false;
+            }
+        } while (!counter.compareAndSet(value, value + 1));
+        return true;
+    }
+
+    private void release(String pluginId, AtomicInteger counter) {
+        counter.decrementAndGet();
+        lastUsed.put(pluginId, System.currentTimeMillis());
+    }
+
+    private static String normalize(String name) {
+        return name == null ? "" : name.replaceAll("[^A-Za-z0-9]", "").toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * 扩展路由与所属插件的占用凭证
+     */
+    public class Lease implements AutoCloseable {
+        private final ExtensionRouteTable.Route route;
+        private final AtomicInteger counter;
+        private boolean closed;
+
+        Lease(ExtensionRouteTable.Route route, AtomicInteger counter) {
+            this.route = route;
+            this.counter = counter;
+        }
+
+        public ExtensionRouteTable.Route getRoute() {
+            return route;
+        }
+
+        /**
+         * 在本凭证之外再占用一次所属插件，供本凭证关闭后仍在执行的操作使用（如超时返回后仍在运行的线程池任务），
+         * 返回的凭证在操作真正结束时关闭
+         */
+        public Lease retain() {
+            if (counter == null) {
+                return new Lease(route, null);
+            }
+            // 本凭证未关闭时计数至少为 1，空闲检查不会把它置为 -1
+            counter.incrementAndGet();
+            return new Lease(route, counter);
+        }
+
+        @Override
+        public synchronized void close() {
+            if (!closed && counter != null) {
+                closed = true;
+                release(route.getPluginId(), counter);
+            }
+        }
+    }
+}
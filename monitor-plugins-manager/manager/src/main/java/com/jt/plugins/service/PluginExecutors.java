@@ -0,0 +1,253 @@
+package com.jt.plugins.service;
+
+import com.alibaba.fastjson.JSONArray;
+import com.alibaba.fastjson.JSONObject;
+import com.jt.plugins.api.monitor.ActionExtension;
+import com.jt.plugins.common.http.ExtensionRequestParam;
+import com.jt.plugins.common.metrics.MetricsRegistry;
+import com.jt.plugins.common.result.ResultMsg;
+import org.pf4j.PluginManager;
+import org.pf4j.PluginState;
+import org.pf4j.PluginStateEvent;
+import org.pf4j.PluginStateListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * @BelongsProject: jt-server-monitor
+ * @BelongsPackage: com.jt.plugins.service
+ * @Author: 别来无恙qb
+ * @CreateTime: 2026-03-25  09:30
+ * @Description: 插件隔离执行器 - 每个插件的扩展操作在各自有界的线程池中执行
+ *
+ * 线程数与排队数有上限，队列满时直接拒绝；每个操作有超时时间（扩展通过 timeoutMs 声明，未声明取默认值），
+ * 超时后中断执行线程并返回失败（线程可能不响应中断，操作结束时才回调 onFinished）。一个插件的慢操作（如堆转储、挂起的 SQL 查询）最多占满自己的线程池，
+ * 不会占住 Tomcat 工作线程，也不影响其他插件。插件停止时关闭其线程池。
+ * @Version: 1.0
+ */
+@Component
+public class PluginExecutors implements PluginStateListener {
+
+    private static final Logger logger = LoggerFactory.getLogger(PluginExecutors.class);
+
+    // 队列已满，操作被拒绝
+    public static final String ERROR_REJECTED = "EXTENSION_REJECTED";
+
+    // 操作执行超时
+    public static final String ERROR_TIMEOUT = "EXTENSION_TIMEOUT";
+
+    // 每个插件的线程数与排队上限
+    private static final int PLUGIN_THREADS = 8;
+    private static final int PLUGIN_QUEUE_SIZE = 32;
+
+    // 扩展未声明超时时间时的默认值（毫秒）
+    private static final long DEFAULT_TIMEOUT_MS = 60 * 1000L;
+
+    // 操作的执行阶段
+    private static final int QUEUED = 0;
+    private static final int RUNNING = 1;
+    private static final int CANCELLED = 2;
+
+    private PluginManager pluginManager;
+
+    private final Map<String, Bulkhead> bulkheads = new ConcurrentHashMap<>();
+
+    @Autowired
+    public void setPluginManager(PluginManager pluginManager) {
+        this.pluginManager = pluginManager;
+    }
+
+    @PostConstruct
+    public void init() {
+        pluginManager.addPluginStateListener(this);
+    }
+
+    /**
+     * 在插件的线程池中执行扩展操作，等待结果直到超时
+     * @param pluginId 插件 ID
+     * @param extension 扩展
+     * @param request 请求参数
+     * @return 操作结果；队列已满或超时返回带错误码的失败结果
+     */
+    public ResultMsg<JSONObject> execute(String pluginId, ActionExtension extension, ExtensionRequestParam request) {
+        return execute(pluginId, extension, request, () -> { });
+    }
+
+    /**
+     * 在插件的线程池中执行扩展操作，等待结果直到超时
+     * @param pluginId 插件 ID
+     * @param extension 扩展
+     * @param request 请求参数
+     * @param onFinished 操作真正结束（执行完毕、被拒绝或排队中被取消）时回调一次；超时返回时操作可能仍在执行，
+     *                   回调在执行线程结束操作后才发生
+     * @return 操作结果；队列已满或超时返回带错误码的失败结果
+     */
+    public ResultMsg<JSONObject> execute(String pluginId, ActionExtension extension, ExtensionRequestParam request,
+                                         Runnable onFinished) {
+        String targetAction = request.getTargetAction();
+        long timeoutMs;
+        try {
+            timeoutMs = extension.timeoutMs(targetAction);
+        } catch (RuntimeException e) {
+            onFinished.run();
+            throw e;
+        }
+        if (timeoutMs <= 0) {
+            timeoutMs = DEFAULT_TIMEOUT_MS;
+        }
+
+        Bulkhead bulkhead = bulkheads.computeIfAbsent(pluginId, Bulkhead::new);
+        // QUEUED -> RUNNING 由执行线程切换，QUEUED -> CANCELLED 由超时或中断的调用线程切换，只有一方会回调 onFinished
+        AtomicInteger phase = new AtomicInteger(QUEUED);
+        Future<ResultMsg<JSONObject>> future;
+        try {
+            future = bulkhead.executor.submit(() -> {
+                if (!phase.compareAndSet(QUEUED, RUNNING)) {
+                    return null;
+                }
+                try {
+                    return bulkhead.run(extension, request);
+                } finally {
+                    onFinished.run();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            onFinished.run();
+            bulkhead.rejected.incrementAndGet();
+            MetricsRegistry.counter("jt_plugin_executor_rejected_total", "plugin", pluginId).increment();
+            logger.warn("插件 {} 执行队列已满，拒绝操作: {}.{}", pluginId, request.getExtensionName(), targetAction);
+            return ResultMsg.fail(ERROR_REJECTED, "插件 " + pluginId + " 繁忙，操作被拒绝，请稍后重试");
+        }
+
+        try {
+            return future.get(timeoutMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            cancel(future, phase, onFinished);
+            bulkhead.timeouts.incrementAndGet();
+            MetricsRegistry.counter("jt_plugin_executor_timeouts_total", "plugin", pluginId).increment();
+            logger.warn("插件 {} 操作执行超时（{} 毫秒）: {}.{}", pluginId, timeoutMs, request.getExtensionName(), targetAction);
+            return ResultMsg.fail(ERROR_TIMEOUT, "执行超时（超过 " + timeoutMs / 1000 + " 秒）");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            cancel(future, phase, onFinished);
+            return ResultMsg.fail("执行被中断");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    /**
+     * 取消操作：仍在排队的操作不会再执行，直接回调；已开始执行的操作中断线程，由执行线程结束时回调
+     */
+    private static void cancel(Future<?> future, AtomicInteger phase, Runnable onFinished) {
+        future.cancel(true);
+        if (phase.compareAndSet(QUEUED, CANCELLED)) {
+            onFinished.run();
+        }
+    }
+
+    /**
+     * 各插件线程池状态：线程、排队、完成数、拒绝数、超时数与执行耗时
+     */
+    public JSONArray getStats() {
+        JSONArray array = new JSONArray();
+        for (Bulkhead bulkhead : bulkheads.values()) {
+            ThreadPoolExecutor executor = bulkhead.executor;
+            long executed = bulkhead.executed.get();
+            JSONObject json = new JSONObject();
+            json.put("pluginId", bulkhead.pluginId);
+            json.put("poolSize", executor.getPoolSize());
+            json.put("activeThreads", executor.getActiveCount());
+            json.put("maxThreads", executor.getMaximumPoolSize());
+            json.put("queueDepth", executor.getQueue().size());
+            json.put("queueCapacity", PLUGIN_QUEUE_SIZE);
+            json.put("executed", executed);
+            json.put("rejected", bulkhead.rejected.get());
+            json.put("timeouts", bulkhead.timeouts.get());
+            json.put("avgExecutionMs", executed == 0 ? 0 : bulkhead.totalExecutionMs.get() / executed);
+            json.put("maxExecutionMs", bulkhead.maxExecutionMs.get());
+            array.add(json);
+        }
+        return array;
+    }
+
+    @Override
+    public void pluginStateChanged(PluginStateEvent event) {
+        if (event.getOldState() == PluginState.STARTED && event.getPluginState() != PluginState.STARTED) {
+            Bulkhead bulkhead = bulkheads.remove(event.getPlugin().getPluginId());
+            if (bulkhead != null) {
+                // 插件已停止，正在执行的操作一并中断，线程不再持有插件类加载器
+                bulkhead.executor.shutdownNow();
+                logger.info("插件 {} 已停止，关闭其执行线程池", bulkhead.pluginId);
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        for (Bulkhead bulkhead : bulkheads.values()) {
+            bulkhead.executor.shutdownNow();
+        }
+        bulkheads.clear();
+    }
+
+    /**
+     * 单个插件的线程池与统计
+     */
+    private static class Bulkhead {
+        private final String pluginId;
+        private final ThreadPoolExecutor executor;
+        private final AtomicLong executed = new AtomicLong();
+        private final AtomicLong rejected = new AtomicLong();
+        private final AtomicLong timeouts = new AtomicLong();
+        private final AtomicLong totalExecutionMs = new AtomicLong();
+        private final AtomicLong maxExecutionMs = new AtomicLong();
+
+        Bulkhead(String pluginId) {
+            this.pluginId = pluginId;
+            AtomicInteger threadNumber = new AtomicInteger();
+            this.executor = new ThreadPoolExecutor(PLUGIN_THREADS, PLUGIN_THREADS,
+                    60L, TimeUnit.SECONDS, new ArrayBlockingQueue<>(PLUGIN_QUEUE_SIZE), runnable -> {
+                Thread thread = new Thread(runnable, "ext-" + pluginId + "-" + threadNumber.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+            this.executor.allowCoreThreadTimeOut(true);
+        }
+
+        ResultMsg<JSONObject> run(ActionExtension extension, ExtensionRequestParam request) {
+            long start = System.currentTimeMillis();
+            try {
+                return extension.execute(request);
+            } finally {
+                long elapsed = System.currentTimeMillis() - start;
+                executed.incrementAndGet();
+                totalExecutionMs.addAndGet(elapsed);
+                maxExecutionMs.accumulateAndGet(elapsed, Math::max);
+            }
+        }
+    }
+}
@@ -1,10 +1,13 @@
 package com.jt.plugins.service;
 
+import com.alibaba.fastjson.JSONArray;
 import com.alibaba.fastjson.JSONObject;
 import com.jt.plugins.common.constant.PluginConstants;
 import com.jt.plugins.common.http.ExtensionRequestParam;
 import com.jt.plugins.common.result.ResultMsg;
 import com.jt.plugins.config.Pf4jManagerProperties;
+import com.jt.plugins.core.SingletonSpringExtensionFactory;
+import com.jt.plugins.core.SpringPluginManager;
 import org.pf4j.PluginManager;
 import org.pf4j.PluginState;
 import org.pf4j.PluginWrapper;
@@ -21,6 +24,7 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 
 /**
@@ -383,4 +387,54 @@ public class PluginManagerService {
             return ResultMsg.fail("获取插件列表失败: " + e.getMessage());
         }
     }
+
+    /**
+     * 获取最近一次插件加载、启动与扩展注入的耗时
+     * @return 各阶段耗时（毫秒）、每个插件 start() 的耗时与扩展实例缓存统计
+     */
+    public ResultMsg<JSONObject> getStartupTimings() {
+        if (!(pluginManager instanceof SpringPluginManager)) {
+            return ResultMsg.fail("当前插件管理器不支持启动耗时统计");
+        }
+        SpringPluginManager springPluginManager = (SpringPluginManager) pluginManager;
+        JSONArray plugins = new JSONArray();
+        for (Map.Entry<String, Long> entry : springPluginManager.getPluginStartTimes().entrySet()) {
+            PluginWrapper plugin = pluginManager.getPlugin(entry.getKey());
+            plugins.add(new JSONObject(true)
+                    .fluentPut("id", entry.getKey())
+                    .fluentPut("startMs", entry.getValue())
+                    .fluentPut("state", plugin != null ? plugin.getPluginState().toString() : "UNLOADED"));
+        }
+        JSONObject result = new JSONObject(true)
+                .fluentPut("loadMs", springPluginManager.getLoadTimeMillis())
+                .fluentPut("startMs", springPluginManager.getStartTimeMillis())
+                .fluentPut("injectMs", springPluginManager.getInjectTimeMillis())
+                .fluentPut("startupThreads", springPluginManager.getStartupThreads())
+                .fluentPut("plugins", plugins);
+        if (springPluginManager.getExtensionFactory() instanceof SingletonSpringExtensionFactory) {
+            result.put("extensions", getExtensionFactoryStats(
+                    (SingletonSpringExtensionFactory) springPluginManager.getExtensionFactory()));
+        }
+        return ResultMsg.success(result);
+    }
+
+    /**
+     * 扩展实例缓存统计：缓存数、命中数与各扩展类的创建次数和耗时
+     */
+    private static JSONObject getExtensionFactoryStats(SingletonSpringExtensionFactory extensionFactory) {
+        JSONArray created = new JSONArray();
+        for (Map.Entry<String, SingletonSpringExtensionFactory.CreationStatistics> entry
+                : extensionFactory.getCreationStatistics().entrySet()) {
+            SingletonSpringExtensionFactory.CreationStatistics statistics = entry.getValue();
+            created.add(new JSONObject(true)
+                    .fluentPut("extensionClass", entry.getKey())
+                    .fluentPut("count", statistics.getCount())
+                    .fluentPut("totalMs", statistics.getTotalMillis())
+                    .fluentPut("maxMs", statistics.getMaxMillis()));
+        }
+        return new JSONObject(true)
+                .fluentPut("cached", extensionFactory.getCachedCount())
+                .fluentPut("hits", extensionFactory.getHitCount())
+                .fluentPut("created", created);
+    }
 }
@@ -0,0 +1,340 @@
+package com.jt.plugins.service;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONArray;
+import com.alibaba.fastjson.JSONObject;
+import com.jt.plugins.common.http.ExtensionRequestParam;
+import com.jt.plugins.common.result.ResultMsg;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
+
+/**
+ * @BelongsProject: jt-server-monitor
+ * @BelongsPackage: com.jt.plugins.service
+ * @Author: 别来无恙qb
+ * @CreateTime: 2026-03-24  10:30
+ * @Description: 扩展操作订阅服务 - 服务端定时执行，通过 Server-Sent Events 推送给所有订阅者
+ *
+ * 订阅先通过 POST 登记（操作参数在请求体中，不出现在 URL 和访问日志里），得到服务端生成的订阅 ID，
+ * 客户端再用 ID 建立 SSE 连接；只有只读操作可以订阅。
+ * 相同的（扩展, 操作, 参数, 间隔）只建立一个订阅，每个间隔只执行一次，结果推送给该订阅的全部客户端；
+ * 客户端首次收到完整结果（snapshot），之后只推送 data 中发生变化的顶层字段（delta），
+ * 变化字段超过一半或结果状态变化时推送完整结果。最后一个订阅者断开后停止执行，
+ * 订阅保留一段时间供客户端（EventSource）重连，期间无人连接则移除。
+ * @Version: 1.0
+ */
+@Service
+public class SubscriptionService {
+
+    private static final Logger logger = LoggerFactory.getLogger(SubscriptionService.class);
+
+    // 不同订阅数上限
+    public static final int MAX_SUBSCRIPTIONS = 100;
+
+    // 执行订阅的线程数
+    private static final int SCHEDULER_THREADS = 4;
+
+    // SSE 连接超时，超时后客户端（EventSource）自动重连
+    private static final long EMITTER_TIMEOUT_MS = 30 * 60 * 1000L;
+
+    // 订阅没有连接后保留的时间（秒），登记后未连接或连接断开超过该时间即移除
+    private static final long UNUSED_EXPIRY_SECONDS = 60;
+
+    // 参数名包含这些词时在订阅列表中隐藏取值
+    private static final Pattern SECRET_KEY = Pattern.compile("(?i).*(password|passwd|pwd|secret|token|credential|key).*");
+
+    private ExtensionManagerService extensionManagerService;
+
+    // 订阅键 -> 订阅
+    private final Map<String, Subscription> subscriptions = new ConcurrentHashMap<>();
+
+    // 订阅 ID -> 订阅
+    private final Map<String, Subscription> subscriptionsById = new ConcurrentHashMap<>();
+
+    private final ScheduledThreadPoolExecutor scheduler = createScheduler();
+
+    @Autowired
+    public void setExtensionManagerService(ExtensionManagerService extensionManagerService) {
+        this.extensionManagerService = extensionManagerService;
+    }
+
+    /**
+     * 登记订阅，相同操作、参数与间隔的订阅共用同一个 ID；调用方需先确认操作为只读
+     * @param request 扩展操作请求
+     * @param intervalSeconds 执行间隔（秒）
+     * @return 订阅 ID，在 {@link #UNUSED_EXPIRY_SECONDS} 秒内连接有效
+     */
+    public String register(ExtensionRequestParam request, int intervalSeconds) {
+        String key = ExtensionRequestKey.of(request) + '|' + intervalSeconds;
+        synchronized (subscriptions) {
+            Subscription subscription = subscriptions.get(key);
+            if (subscription == null) {
+                if (subscriptions.size() >= MAX_SUBSCRIPTIONS) {
+                    throw new IllegalStateException("订阅数已达上限 " + MAX_SUBSCRIPTIONS);
+                }
+                subscription = new Subscription(UUID.randomUUID().toString().replace("-", ""), key, request, intervalSeconds);
+                subscriptions.put(key, subscription);
+                subscriptionsById.put(subscription.id, subscription);
+                logger.info("登记订阅: {}.{}，间隔 {} 秒", request.getExtensionName(), request.getTargetAction(), intervalSeconds);
+            }
+            scheduleExpiry(subscription);
+            return subscription.id;
+        }
+    }
+
+    /**
+     * 连接订阅
+     * @param id 订阅 ID
+     * @return SSE 连接
+     */
+    public SseEmitter subscribe(String id) {
+        SseEmitter emitter = new SseEmitter(EMITTER_TIMEOUT_MS);
+        Subscription subscription;
+        synchronized (subscriptions) {
+            subscription = id == null ? null : subscriptionsById.get(id);
+            if (subscription == null) {
+                throw new IllegalArgumentException("参数错误：订阅不存在或已过期，请重新登记");
+            }
+            subscription.subscribers.add(emitter);
+            if (subscription.future == null) {
+                Subscription started = subscription;
+                subscription.future = scheduler.scheduleWithFixedDelay(() -> run(started),
+                        0, subscription.intervalSeconds, TimeUnit.SECONDS);
+                logger.info("开始执行订阅: {}.{}", subscription.request.getExtensionName(), subscription.request.getTargetAction());
+            }
+        }
+
+        Subscription target = subscription;
+        emitter.onCompletion(() -> unsubscribe(target, emitter));
+        emitter.onTimeout(() -> unsubscribe(target, emitter));
+        emitter.onError(e -> unsubscribe(target, emitter));
+
+        // 已有结果时立即发送，不必等下一次执行
+        JSONObject snapshot = target.snapshot;
+        if (snapshot != null) {
+            send(target, emitter, snapshotEvent(snapshot));
+        }
+        return emitter;
+    }
+
+    private void unsubscribe(Subscription subscription, SseEmitter emitter) {
+        synchronized (subscriptions) {
+            subscription.subscribers.remove(emitter);
+            subscription.initialized.remove(emitter);
+            if (subscription.subscribers.isEmpty() && subscription.future != null) {
+                subscription.future.cancel(false);
+                subscription.future = null;
+                scheduleExpiry(subscription);
+                logger.info("订阅已无订阅者，停止执行: {}.{}",
+                        subscription.request.getExtensionName(), subscription.request.getTargetAction());
+            }
+        }
+    }
+
+    /**
+     * 一段时间后仍没有订阅者时移除订阅
+     */
+    private void scheduleExpiry(Subscription subscription) {
+        // 只有最近一次安排的移除有效，重复登记或重新连接后之前安排的移除作废
+        int generation = ++subscription.expiryGeneration;
+        scheduler.schedule(() -> {
+            synchronized (subscriptions) {
+                if (generation == subscription.expiryGeneration && subscription.subscribers.isEmpty()
+                        && subscriptions.remove(subscription.key, subscription)) {
+                    subscriptionsById.remove(subscription.id, subscription);
+                    logger.info("订阅未被使用，已移除: {}.{}",
+                            subscription.request.getExtensionName(), subscription.request.getTargetAction());
+                }
+            }
+        }, UNUSED_EXPIRY_SECONDS, TimeUnit.SECONDS);
+    }
+
+    /**
+     * 执行一次订阅的操作并推送结果
+     */
+    private void run(Subscription subscription) {
+        if (subscription.subscribers.isEmpty()) {
+            return;
+        }
+        ResultMsg<JSONObject> result;
+        try {
+            result = extensionManagerService.action(subscription.request);
+        } catch (Exception e) {
+            logger.error("订阅执行失败: {}.{}", subscription.request.getExtensionName(),
+                    subscription.request.getTargetAction(), e);
+            result = ResultMsg.fail("执行操作失败：" + e.getMessage());
+        }
+
+        JSONObject snapshot = (JSONObject) JSON.toJSON(result);
+        JSONObject event = delta(subscription.snapshot, snapshot);
+        subscription.snapshot = snapshot;
+        if (event == null) {
+            // 结果与上次相同，不推送
+            return;
+        }
+        for (SseEmitter emitter : subscription.subscribers) {
+            send(subscription, emitter, event);
+        }
+    }
+
+    /**
+     * 与上次结果比较：首次或状态变化时为完整结果，否则只包含变化的 data 顶层字段；无变化返回 null
+     */
+    static JSONObject delta(JSONObject previous, JSONObject current) {
+        JSONObject previousData = previous == null ? null : previous.getJSONObject("data");
+        JSONObject currentData = current.getJSONObject("data");
+        if (previousData == null || currentData == null
+                || !Objects.equals(previous.get("state"), current.get("state"))) {
+            return snapshotEvent(current);
+        }
+
+        JSONObject changed = new JSONObject();
+        for (Map.Entry<String, Object> entry : currentData.entrySet()) {
+            if (!Objects.equals(entry.getValue(), previousData.get(entry.getKey()))) {
+                changed.put(entry.getKey(), entry.getValue());
+            }
+        }
+        JSONArray removed = new JSONArray();
+        for (String field : previousData.keySet()) {
+            if (!currentData.containsKey(field)) {
+                removed.add(field);
+            }
+        }
+        if (changed.isEmpty() && removed.isEmpty()) {
+            return null;
+        }
+        if ((changed.size() + removed.size()) * 2 > currentData.size()) {
+            return snapshotEvent(current);
+        }
+        JSONObject event = new JSONObject();
+        event.put("type", "delta");
+        event.put("state", current.get("state"));
+        event.put("message", current.get("message"));
+        event.put("timestamp", current.get("timestamp"));
+        event.put("changed", changed);
+        event.put("removed", removed);
+        return event;
+    }
+
+    private static JSONObject snapshotEvent(JSONObject result) {
+        JSONObject event = new JSONObject(result);
+        event.put("type", "snapshot");
+        return event;
+    }
+
+    private void send(Subscription subscription, SseEmitter emitter, JSONObject event) {
+        try {
+            // 新加入的订阅者没有基准数据，第一条消息总是完整结果
+            boolean first = subscription.initialized.add(emitter);
+            JSONObject payload = first && "delta".equals(event.getString("type"))
+                    ? snapshotEvent(subscription.snapshot) : event;
+            emitter.send(SseEmitter.event().name(payload.getString("type")).data(payload.toJSONString()));
+        } catch (IOException | IllegalStateException e) {
+            logger.debug("推送订阅结果失败，移除订阅者: {}", e.getMessage());
+            unsubscribe(subscription, emitter);
+        }
+    }
+
+    /**
+     * 当前订阅状态
+     */
+    public JSONArray getSubscriptions() {
+        JSONArray array = new JSONArray();
+        for (Subscription subscription : subscriptions.values()) {
+            JSONObject json = new JSONObject();
+            json.put("extensionClass", subscription.request.getExtensionClass());
+            json.put("extensionName", subscription.request.getExtensionName());
+            json.put("targetAction", subscription.request.getTargetAction());
+            json.put("parameters", redact(subscription.request.getParameters()));
+            json.put("interval", subscription.intervalSeconds);
+            json.put("subscribers", subscription.subscribers.size());
+            array.add(json);
+        }
+        return array;
+    }
+
+    /**
+     * 隐藏密码等敏感参数的取值（含嵌套对象）
+     */
+    static JSONObject redact(JSONObject parameters) {
+        if (parameters == null) {
+            return null;
+        }
+        JSONObject redacted = new JSONObject(true);
+        for (Map.Entry<String, Object> entry : parameters.entrySet()) {
+            Object value = entry.getValue();
+            if (SECRET_KEY.matcher(entry.getKey()).matches()) {
+                value = "******";
+            } else if (value instanceof JSONObject) {
+                value = redact((JSONObject) value);
+            }
+            redacted.put(entry.getKey(), value);
+        }
+        return redacted;
+    }
+
+    private static ScheduledThreadPoolExecutor createScheduler() {
+        AtomicInteger threadNumber = new AtomicInteger();
+        ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(SCHEDULER_THREADS, runnable -> {
+            Thread thread = new Thread(runnable, "ext-subscription-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.setRemoveOnCancelPolicy(true);
+        return executor;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+        for (Subscription subscription : subscriptions.values()) {
+            for (SseEmitter emitter : subscription.subscribers) {
+                emitter.complete();
+            }
+        }
+        subscriptions.clear();
+        subscriptionsById.clear();
+    }
+
+    /**
+     * 一个不同的（扩展, 操作, 参数, 间隔）订阅
+     */
+    private static class Subscription {
+        private final String id;
+        private final String key;
+        private final ExtensionRequestParam request;
+        private final int intervalSeconds;
+        private final Set<SseEmitter> subscribers = new CopyOnWriteArraySet<>();
+        // 已收到过完整结果的订阅者
+        private final Set<SseEmitter> initialized = ConcurrentHashMap.newKeySet();
+        private volatile JSONObject snapshot;
+        // 正在定时执行时不为 null
+        private ScheduledFuture<?> future;
+        // 最近一次安排移除的序号（在 subscriptions 锁内读写）
+        private int expiryGeneration;
+
+        Subscription(String id, String key, ExtensionRequestParam request, int intervalSeconds) {
+            this.id = id;
+            this.key = key;
+            this.request = request;
+            this.intervalSeconds = intervalSeconds;
+        }
+    }
+}
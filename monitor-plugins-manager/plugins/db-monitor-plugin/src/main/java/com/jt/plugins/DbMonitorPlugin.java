@@ -6,7 +6,10 @@ import com.jt.plugins.extension.SpringConfiguration;
 import com.jt.plugins.api.monitor.ActionExtension;
 import com.jt.plugins.common.http.ExtensionRequestParam;
 import com.jt.plugins.common.result.ResultMsg;
+import com.jt.plugins.collector.DbMetricsScheduler;
+import com.jt.plugins.collector.SqlServerMetricsCollector;
 import com.jt.plugins.core.SpringPlugin;
+import com.jt.plugins.sqlserver.SqlServerPoolRegistry;
 import org.pf4j.Extension;
 import org.pf4j.PluginWrapper;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -47,6 +50,30 @@ public class DbMonitorPlugin extends SpringPlugin {
         return applicationContext;
     }
 
+    @Override
+    public void start() {
+        super.start();
+        // 插件重新启动后恢复已登记目标的后台采集
+        DbMetricsScheduler.getInstance().start();
+    }
+
+    @Override
+    public void stop() {
+        // 停止后台采集并把时序数据落盘
+        DbMetricsScheduler.getInstance().shutdown();
+        // 关闭所有长期连接池
+        SqlServerPoolRegistry.getInstance().shutdown();
+        // 停止并发采集线程池
+        SqlServerMetricsCollector.shutdown();
+        super.stop();
+    }
+
+    @Override
+    public boolean isBusy() {
+        // 已登记命名目标时不允许空闲卸载：目标与凭据只在内存中，卸载后后台采集随之中断
+        return SqlServerPoolRegistry.getInstance().hasNamedTargets();
+    }
+
     @Extension
     public static class DbMonitorExtension implements ActionExtension {
 
@@ -73,5 +100,20 @@ public class DbMonitorPlugin extends SpringPlugin {
             return dbMonitorProvider.execute(extensionRequestParam);
 		}
 
+        @Override
+        public long cacheTtlMs(String targetAction) {
+            return dbMonitorProvider.cacheTtlMs(targetAction);
+        }
+
+        @Override
+        public long timeoutMs(String targetAction) {
+            return dbMonitorProvider.timeoutMs(targetAction);
+        }
+
+        @Override
+        public boolean readOnly(String targetAction) {
+            return dbMonitorProvider.readOnly(targetAction);
+        }
+
 	}
 }
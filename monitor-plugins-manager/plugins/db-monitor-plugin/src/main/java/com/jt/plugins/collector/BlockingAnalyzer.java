@@ -0,0 +1,315 @@
+package com.jt.plugins.collector;
+
+import com.alibaba.fastjson.JSONArray;
+import com.alibaba.fastjson.JSONObject;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * @BelongsProject: jt-server-monitor
+ * @BelongsPackage: com.jt.plugins.collector
+ * @Author: 别来无恙qb
+ * @CreateTime: 2026-03-21  10:00
+ * @Description: 阻塞关系分析 - 由被阻塞请求的扁平列表（会话 -> 阻塞者）在内存中构建阻塞森林
+ *
+ * 每个被阻塞会话只有一个阻塞者，关系图每个节点出度不超过 1：
+ * 自身未被阻塞的阻塞者为头阻塞者（树根）；沿阻塞者回溯回到自身的为环（互相阻塞，等待死锁检测处理）。
+ * 统计每个头阻塞者直接/间接阻塞的会话数、最大阻塞深度和最长等待时间。
+ * @Version: 1.0
+ */
+public class BlockingAnalyzer {
+
+    private BlockingAnalyzer() {
+    }
+
+    /**
+     * 分析阻塞关系
+     * @param rows 被阻塞请求，包含 session_id/blocking_session_id/wait_type/wait_time/wait_resource 等列
+     */
+    public static Result analyze(List<Map<String, Object>> rows) {
+        Map<Integer, Node> blocked = new LinkedHashMap<>();
+        for (Map<String, Object> row : rows) {
+            Node node = new Node(row);
+            if (node.sessionId != node.blockingSessionId) {
+                blocked.put(node.sessionId, node);
+            }
+        }
+        Map<Integer, List<Node>> children = new HashMap<>();
+        for (Node node : blocked.values()) {
+            children.computeIfAbsent(node.blockingSessionId, id -> new ArrayList<>()).add(node);
+        }
+
+        Result result = new Result(blocked);
+
+        // 沿阻塞者回溯找环：1 = 当前路径上，2 = 已处理
+        Map<Integer, Integer> state = new HashMap<>();
+        for (Integer start : blocked.keySet()) {
+            List<Integer> path = new ArrayList<>();
+            int current = start;
+            while (blocked.containsKey(current) && !state.containsKey(current)) {
+                state.put(current, 1);
+                path.add(current);
+                current = blocked.get(current).blockingSessionId;
+            }
+            if (blocked.containsKey(current) && state.get(current) == 1) {
+                Root cycle = new Root(current, true);
+                for (Integer member : path.subList(path.indexOf(current), path.size())) {
+                    blocked.get(member).inCycle = true;
+                    blocked.get(member).rootSessionId = current;
+                    cycle.cycleMembers.add(member);
+                }
+                result.cycles.add(cycle);
+            }
+            for (Integer sessionId : path) {
+                state.put(sessionId, 2);
+            }
+        }
+
+        // 头阻塞者：自身未被阻塞的阻塞者
+        Set<Integer> heads = new LinkedHashSet<>();
+        for (Node node : blocked.values()) {
+            if (!blocked.containsKey(node.blockingSessionId)) {
+                heads.add(node.blockingSessionId);
+            }
+        }
+        for (Integer head : heads) {
+            Root root = new Root(head, false);
+            walk(root, Collections.singletonList(head), children);
+            result.headBlockers.add(root);
+        }
+        for (Root cycle : result.cycles) {
+            walk(cycle, cycle.cycleMembers, children);
+        }
+
+        result.headBlockers.sort(Comparator.comparingInt((Root r) -> r.totalBlocked).reversed()
+                .thenComparing(Comparator.comparingLong((Root r) -> r.maxWaitTime).reversed()));
+        return result;
+    }
+
+    /**
+     * 从根（头阻塞者或环上的会话）按层遍历被阻塞的会话
+     */
+    private static void walk(Root root, List<Integer> starts, Map<Integer, List<Node>> children) {
+        Deque<Node> queue = new ArrayDeque<>();
+        for (Integer start : starts) {
+            for (Node child : children.getOrDefault(start, Collections.emptyList())) {
+                if (child.inCycle) {
+                    continue;
+                }
+                child.level = 1;
+                queue.add(child);
+                root.directBlocked++;
+            }
+        }
+        while (!queue.isEmpty()) {
+            Node node = queue.poll();
+            node.rootSessionId = root.sessionId;
+            root.totalBlocked++;
+            root.maxDepth = Math.max(root.maxDepth, node.level);
+            root.maxWaitTime = Math.max(root.maxWaitTime, node.waitTime);
+            for (Node child : children.getOrDefault(node.sessionId, Collections.emptyList())) {
+                child.level = node.level + 1;
+                queue.add(child);
+            }
+        }
+    }
+
+    private static int getInt(Map<String, Object> row, String key) {
+        Object value = row.get(key);
+        return value instanceof Number ? ((Number) value).intValue() : 0;
+    }
+
+    private static long getLong(Map<String, Object> row, String key) {
+        Object value = row.get(key);
+        return value instanceof Number ? ((Number) value).longValue() : 0L;
+    }
+
+    private static String getString(Map<String, Object> row, String key) {
+        Object value = row.get(key);
+        return value != null ? value.toString() : null;
+    }
+
+    /**
+     * 被阻塞的会话
+     */
+    public static class Node {
+        private final int sessionId;
+        private final int blockingSessionId;
+        private final Map<String, Object> row;
+        private final long waitTime;
+        // 距根的层级（1 = 被根直接阻塞）
+        private int level;
+        // 所属头阻塞者（环中时为环的代表会话）
+        private Integer rootSessionId;
+        private boolean inCycle;
+
+        Node(Map<String, Object> row) {
+            this.row = row;
+            this.sessionId = getInt(row, "session_id");
+            this.blockingSessionId = getInt(row, "blocking_session_id");
+            this.waitTime = getLong(row, "wait_time");
+        }
+
+        public JSONObject toJSON() {
+            JSONObject json = new JSONObject(true);
+            json.put("sessionId", sessionId);
+            json.put("blockingSessionId", blockingSessionId);
+            json.put("headBlocker", rootSessionId);
+            json.put("level", level);
+            json.put("inCycle", inCycle);
+            json.put("waitType", getString(row, "wait_type"));
+            json.put("waitTime", waitTime);
+            json.put("waitResource", getString(row, "wait_resource"));
+            json.put("command", getString(row, "command"));
+            json.put("loginName", getString(row, "login_name"));
+            json.put("hostName", getString(row, "host_name"));
+            json.put("programName", getString(row, "program_name"));
+            json.put("databaseName", getString(row, "database_name"));
+            return json;
+        }
+    }
+
+    /**
+     * 阻塞树的根：头阻塞者或一个阻塞环
+     */
+    public static class Root {
+        private final int sessionId;
+        private final boolean cycle;
+        private final List<Integer> cycleMembers = new ArrayList<>();
+        private int directBlocked;
+        private int totalBlocked;
+        private int maxDepth;
+        private long maxWaitTime;
+
+        // 会话信息与 SQL 文本（分析完成后补充）；环为每个成员一项
+        private final JSONArray members = new JSONArray();
+        private Map<String, Object> session;
+        private String sqlText;
+
+        Root(int sessionId, boolean cycle) {
+            this.sessionId = sessionId;
+            this.cycle = cycle;
+        }
+
+        public JSONObject toJSON() {
+            JSONObject json = new JSONObject(true);
+            if (cycle) {
+                json.put("sessions", cycleMembers);
+            } else {
+                json.put("sessionId", sessionId);
+            }
+            json.put("directBlocked", directBlocked);
+            json.put("totalBlocked", totalBlocked);
+            json.put("maxDepth", maxDepth);
+            json.put("maxWaitTime", maxWaitTime);
+            if (cycle) {
+                json.put("members", members);
+            } else {
+                putSession(json, session, sqlText);
+            }
+            return json;
+        }
+    }
+
+    private static void putSession(JSONObject json, Map<String, Object> session, String sqlText) {
+        if (session != null) {
+            json.put("loginName", getString(session, "login_name"));
+            json.put("hostName", getString(session, "host_name"));
+            json.put("programName", getString(session, "program_name"));
+            json.put("databaseName", getString(session, "database_name"));
+            json.put("status", getString(session, "status"));
+            json.put("command", getString(session, "command"));
+            json.put("waitType", getString(session, "wait_type"));
+            json.put("openTransactionCount", getInt(session, "open_transaction_count"));
+        }
+        json.put("sqlText", sqlText);
+    }
+
+    /**
+     * 分析结果
+     */
+    public static class Result {
+        private final Map<Integer, Node> blocked;
+        private final List<Root> headBlockers = new ArrayList<>();
+        private final List<Root> cycles = new ArrayList<>();
+
+        Result(Map<Integer, Node> blocked) {
+            this.blocked = blocked;
+        }
+
+        public int getHeadBlockerCount() { return headBlockers.size(); }
+        public int getCycleCount() { return cycles.size(); }
+        public int getBlockedCount() { return blocked.size(); }
+
+        /**
+         * 需要补充会话信息和 SQL 文本的会话（头阻塞者与环上的会话）
+         */
+        public Set<Integer> getRootSessionIds() {
+            Set<Integer> ids = new LinkedHashSet<>();
+            for (Root root : headBlockers) {
+                ids.add(root.sessionId);
+            }
+            for (Root cycle : cycles) {
+                ids.addAll(cycle.cycleMembers);
+            }
+            return ids;
+        }
+
+        /**
+         * 补充头阻塞者和环成员的会话信息与 SQL 文本
+         * @param sessions 会话 ID -> 会话信息行
+         * @param texts 会话 ID -> SQL 文本
+         */
+        public void attachSessions(Map<Integer, Map<String, Object>> sessions, Map<Integer, String> texts) {
+            for (Root root : headBlockers) {
+                root.session = sessions.get(root.sessionId);
+                root.sqlText = texts.get(root.sessionId);
+            }
+            for (Root cycle : cycles) {
+                cycle.members.clear();
+                for (Integer member : cycle.cycleMembers) {
+                    JSONObject json = new JSONObject(true);
+                    json.put("sessionId", member);
+                    putSession(json, sessions.get(member), texts.get(member));
+                    cycle.members.add(json);
+                }
+            }
+        }
+
+        public JSONObject toJSON() {
+            List<Node> nodes = new ArrayList<>(blocked.values());
+            nodes.sort(Comparator.comparingInt((Node n) -> n.rootSessionId == null ? Integer.MAX_VALUE : n.rootSessionId)
+                    .thenComparingInt(n -> n.level)
+                    .thenComparing(Comparator.comparingLong((Node n) -> n.waitTime).reversed()));
+            JSONArray chain = new JSONArray();
+            for (Node node : nodes) {
+                chain.add(node.toJSON());
+            }
+            JSONArray heads = new JSONArray();
+            for (Root root : headBlockers) {
+                heads.add(root.toJSON());
+            }
+            JSONArray cycleArray = new JSONArray();
+            for (Root cycle : cycles) {
+                cycleArray.add(cycle.toJSON());
+            }
+            JSONObject json = new JSONObject();
+            json.put("headBlockers", heads);
+            json.put("cycles", cycleArray);
+            json.put("blockingChain", chain);
+            json.put("blockedCount", blocked.size());
+            json.put("count", chain.size());
+            return json;
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package com.jt.plugins.collector;
+
+import com.jt.plugins.common.log.PluginLogger;
+import com.jt.plugins.config.MyBatisConfig;
+import com.jt.plugins.mapper.SqlServerMetricsMapper;
+import com.jt.plugins.model.SqlServerCpuSample;
+import org.apache.ibatis.session.SqlSession;
+
+import javax.sql.DataSource;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * @BelongsProject: jt-server-monitor
+ * @BelongsPackage: com.jt.plugins.collector
+ * @Author: 别来无恙qb
+ * @CreateTime: 2026-03-22  09:30
+ * @Description: CPU 使用率历史 - 读取 dm_os_ring_buffers 中的调度器监视记录（每分钟一条）
+ *
+ * 每条记录包含 SQL Server 进程 CPU 和系统空闲百分比。服务端按 timestamp（ms_ticks）只返回上次读取之后的新记录，
+ * 客户端解析记录 XML 并按 timestamp 去重，解析结果缓存为序列。SQL Server 服务重启后记录 id 从头编号而 ms_ticks
+ * （操作系统启动以来的毫秒数）继续增长，因此与 SqlServerRateCollector 一样按 sqlserver_start_time_ms_ticks 变化识别重启，
+ * 主机重启时 ms_ticks 回退；两种情况都清空序列重新读取。
+ * @Version: 1.0
+ */
+public class CpuHistoryTracker {
+
+    private static final PluginLogger logger = PluginLogger.getLogger("db-monitor-plugin");
+
+    // 缓存的记录数（环形缓冲区本身约保留 256 分钟）
+    private static final int MAX_SAMPLES = 256;
+
+    private final Deque<SqlServerCpuSample> samples = new ArrayDeque<>();
+
+    // 已读取的最后一条记录的 timestamp（ms_ticks）
+    private Long lastTicks;
+
+    // 上次读取时 SQL Server 服务启动时刻的 ms_ticks
+    private long lastStartTicks = -1;
+
+    /**
+     * 在独立会话上读取新的调度器监视记录
+     */
+    public SqlServerCpuSample refresh(DataSource dataSource) {
+        try (SqlSession session = MyBatisConfig.openSession(dataSource)) {
+            return refresh(session.getMapper(SqlServerMetricsMapper.class));
+        }
+    }
+
+    /**
+     * 读取新的调度器监视记录并追加到序列
+     * @param mapper 当前会话的 Mapper
+     * @return 最新一条记录，没有记录时为 null
+     */
+    public synchronized SqlServerCpuSample refresh(SqlServerMetricsMapper mapper) {
+        List<Map<String, Object>> rows = mapper.getSchedulerMonitorRecords(lastTicks);
+        int added = 0;
+        for (Map<String, Object> row : rows) {
+            long ticks = getLong(row, "record_ticks");
+            long msTicks = getLong(row, "ms_ticks");
+            long startTicks = getLong(row, "start_ms_ticks");
+            if (lastStartTicks >= 0 && startTicks != lastStartTicks || lastTicks != null && msTicks < lastTicks) {
+                logger.info("检测到 SQL Server 重启，重新读取 CPU 历史");
+                samples.clear();
+                lastTicks = null;
+            }
+            lastStartTicks = startTicks;
+            if (lastTicks != null && ticks <= lastTicks) {
+                continue;
+            }
+            SqlServerCpuSample sample = parse(row.get("record"), row.get("event_time"));
+            if (sample == null) {
+                continue;
+            }
+            samples.addLast(sample);
+            if (samples.size() > MAX_SAMPLES) {
+                samples.removeFirst();
+            }
+            lastTicks = ticks;
+            added++;
+        }
+        logger.debug("CPU 历史：读取记录 {} 条，新增 {} 条", rows.size(), added);
+        return samples.peekLast();
+    }
+
+    /**
+     * 获取事件时间不早于 since 的记录
+     */
+    public synchronized List<SqlServerCpuSample> getSamples(long since) {
+        List<SqlServerCpuSample> result = new ArrayList<>();
+        for (SqlServerCpuSample sample : samples) {
+            if (sample.getEventTime() >= since) {
+                result.add(sample);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 解析一条调度器监视记录，格式如：
+     * <Record id = "1234" type ="RING_BUFFER_SCHEDULER_MONITOR" ...><SchedulerMonitorEvent><SystemHealth>
+     * <SystemIdle>90</SystemIdle><ProcessUtilization>6</ProcessUtilization>...</SystemHealth></SchedulerMonitorEvent></Record>
+     */
+    static SqlServerCpuSample parse(Object record, Object eventTime) {
+        if (record == null || !(eventTime instanceof Date)) {
+            return null;
+        }
+        String xml = record.toString();
+        long id = attribute(xml, "id");
+        long idle = element(xml, "SystemIdle");
+        long process = element(xml, "ProcessUtilization");
+        if (id < 0 || idle < 0 || process < 0) {
+            return null;
+        }
+        return new SqlServerCpuSample(id, ((Date) eventTime).getTime(), (int) process, (int) idle);
+    }
+
+    private static long attribute(String xml, String name) {
+        int start = xml.indexOf("<Record");
+        if (start < 0) {
+            return -1;
+        }
+        int index = xml.indexOf(" " + name, start);
+        int end = xml.indexOf('>', start);
+        if (index < 0 || index > end) {
+            return -1;
+        }
+        int quote = xml.indexOf('"', index);
+        return quote < 0 || quote > end ? -1 : parseNumber(xml, quote + 1);
+    }
+
+    private static long element(String xml, String name) {
+        int index = xml.indexOf("<" + name + ">");
+        return index < 0 ? -1 : parseNumber(xml, index + name.length() + 2);
+    }
+
+    private static long parseNumber(String xml, int from) {
+        long value = 0;
+        int i = from;
+        while (i < xml.length() && Character.isDigit(xml.charAt(i))) {
+            value = value * 10 + (xml.charAt(i) - '0');
+            i++;
+        }
+        return i == from ? -1 : value;
+    }
+
+    private static long getLong(Map<String, Object> row, String key) {
+        Object value = row.get(key);
+        return value instanceof Number ? ((Number) value).longValue() : 0L;
+    }
+}
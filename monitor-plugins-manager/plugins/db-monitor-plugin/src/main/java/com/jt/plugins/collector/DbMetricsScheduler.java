@@ -0,0 +1,377 @@
+package com.jt.plugins.collector;
+
+import com.alibaba.fastjson.JSONObject;
+import com.jt.plugins.common.file.PluginFileStorage;
+import com.jt.plugins.common.log.PluginLogger;
+import com.jt.plugins.model.SqlServerActivityMetrics;
+import com.jt.plugins.sqlserver.SqlServerConnectionManager;
+import com.jt.plugins.sqlserver.SqlServerPoolRegistry;
+import com.jt.plugins.sqlserver.SqlServerTarget;
+import com.jt.plugins.storage.TimeSeriesStore;
+import com.jt.plugins.storage.TopSqlRollupStore;
+
+import java.io.File;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * @BelongsProject: jt-server-monitor
+ * @BelongsPackage: com.jt.plugins.collector
+ * @Author: 别来无恙qb
+ * @CreateTime: 2026-03-19  11:00
+ * @Description: 数据库指标后台定时采集 - 按目标的采集间隔采集汇总指标并写入时序存储，
+ * 并按 Top SQL 采样间隔记录各区间消耗最高的查询
+ * @Version: 1.0
+ */
+public class DbMetricsScheduler {
+
+    private static final PluginLogger logger = PluginLogger.getLogger("db-monitor-plugin");
+
+    private static final PluginFileStorage fileStorage = PluginFileStorage.getStorage("db-monitor-plugin");
+
+    /**
+     * 存储的指标列（按位置存储，只能在末尾追加新指标）
+     */
+    public static final String[] METRIC_NAMES = {
+            "totalProcesses", "runningProcesses", "suspendedProcesses", "blockedProcesses",
+            "totalWaits", "averageWaitTime", "waitTimeMsPerSec", "signalWaitTimeMsPerSec",
+            "batchRequestsPerSec", "sqlCompilationsPerSec", "sqlRecompilationsPerSec",
+            "transactionsPerSec", "lockWaitsPerSec",
+            "bufferCacheHitRatio", "pageLifeExpectancy", "memoryUsedMB", "memoryAvailableMB",
+            "diskReadsPerSec", "diskWritesPerSec", "diskReadBytesPerSec", "diskWriteBytesPerSec", "avgIoLatencyMs",
+            "cpuUsagePercent", "activeTransactions", "collectDurationMs", "systemCpuPercent"
+    };
+
+    // 时序数据保留天数，可通过系统属性覆盖
+    private static final int RETENTION_DAYS = Integer.getInteger("db.monitor.retentionDays", 7);
+
+    // 缓冲区数据最长保留时间，超过后落盘
+    private static final long FLUSH_AGE_MS = 5 * 60 * 1000L;
+
+    // 过期数据清理间隔
+    private static final long CLEANUP_INTERVAL_MS = 60 * 60 * 1000L;
+
+    // 定时采集的单项查询超时
+    private static final long QUERY_TIMEOUT_MS = 10_000L;
+
+    // Top SQL 增量采样间隔（秒），0 表示不采样
+    private static final int TOP_SQL_INTERVAL_SECONDS = Integer.getInteger("db.monitor.topSqlIntervalSeconds", 60);
+
+    // 并发采集的目标数上限（每个目标内部的查询仍并发执行）
+    private static final int MAX_COLLECT_WORKERS = 4;
+
+    private final File baseDir = fileStorage.createDirectory("tsdb");
+
+    private final Map<String, TargetState> states = new ConcurrentHashMap<>();
+
+    private final Map<String, TimeSeriesStore> stores = new ConcurrentHashMap<>();
+
+    private final File topSqlDir = fileStorage.createDirectory("topsql");
+
+    private final Map<String, TopSqlRollupStore> topSqlStores = new ConcurrentHashMap<>();
+
+    private ScheduledExecutorService ticker;
+    private ExecutorService workers;
+    private volatile long lastCleanupTime;
+
+    /**
+     * 单例实例
+     */
+    private static class SingletonHolder {
+        private static final DbMetricsScheduler INSTANCE = new DbMetricsScheduler();
+    }
+
+    public static DbMetricsScheduler getInstance() {
+        return SingletonHolder.INSTANCE;
+    }
+
+    private DbMetricsScheduler() {
+    }
+
+    /**
+     * 启动调度（重复调用无副作用，插件停止后再次调用会重新创建线程）
+     */
+    public synchronized void start() {
+        if (ticker != null && !ticker.isShutdown()) {
+            return;
+        }
+        AtomicInteger counter = new AtomicInteger();
+        workers = Executors.newFixedThreadPool(MAX_COLLECT_WORKERS, r -> {
+            Thread thread = new Thread(r, "db-metrics-worker-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        ticker = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "db-metrics-scheduler");
+            thread.setDaemon(true);
+            return thread;
+        });
+        ticker.scheduleWithFixedDelay(() -> {
+            try {
+                tick();
+            } catch (Exception e) {
+                logger.warn("数据库指标调度失败", e);
+            }
+        }, 1, 1, TimeUnit.SECONDS);
+        logger.info("数据库指标后台采集已启动，数据目录: {}，保留 {} 天", baseDir.getAbsolutePath(), RETENTION_DAYS);
+    }
+
+    /**
+     * 每秒检查一次到期的目标；同一目标上一次采集未结束时不会重复提交
+     */
+    private void tick() {
+        long now = System.currentTimeMillis();
+        Set<String> active = new HashSet<>();
+        for (SqlServerTarget target : SqlServerPoolRegistry.getInstance().getTargets()) {
+            int interval = target.getCollectIntervalSeconds();
+            if (interval <= 0) {
+                continue;
+            }
+            active.add(target.getName());
+            TargetState state = states.computeIfAbsent(target.getName(), name -> new TargetState());
+            if (now >= state.nextDueTime && state.running.compareAndSet(false, true)) {
+                state.nextDueTime = now + interval * 1000L;
+                try {
+                    workers.submit(() -> collect(target, state));
+                } catch (RejectedExecutionException e) {
+                    state.running.set(false);
+                }
+            }
+        }
+
+        // 已移除或取消定时采集的目标：落盘后释放状态
+        for (String name : states.keySet()) {
+            if (!active.contains(name) && !states.get(name).running.get()) {
+                states.remove(name);
+                TimeSeriesStore store = stores.get(name);
+                if (store != null) {
+                    store.flush();
+                }
+            }
+        }
+        for (TimeSeriesStore store : stores.values()) {
+            store.flushIfOlderThan(FLUSH_AGE_MS);
+        }
+
+        if (now - lastCleanupTime > CLEANUP_INTERVAL_MS) {
+            lastCleanupTime = now;
+            for (TimeSeriesStore store : stores.values()) {
+                store.cleanup(RETENTION_DAYS);
+            }
+            for (TopSqlRollupStore store : topSqlStores.values()) {
+                store.cleanup(RETENTION_DAYS);
+            }
+        }
+    }
+
+    /**
+     * 采集单个目标并写入时序存储
+     */
+    private void collect(SqlServerTarget target, TargetState state) {
+        long start = System.currentTimeMillis();
+        try {
+            SqlServerConnectionManager connectionManager =
+                    SqlServerPoolRegistry.getInstance().getConnectionManager(target.getName());
+            SqlServerMetricsCollector collector = new SqlServerMetricsCollector(connectionManager);
+            SqlServerActivityMetrics metrics = collector.collectActivityMetrics(QUERY_TIMEOUT_MS, false);
+            getStore(target.getName()).append(metrics.getCollectionTime(), toValues(metrics));
+            state.lastError = metrics.getCollectErrors().isEmpty() ? null : String.join(" ", metrics.getCollectErrors().keySet());
+            state.successCount++;
+
+            if (TOP_SQL_INTERVAL_SECONDS > 0 && start >= state.nextTopSqlTime) {
+                state.nextTopSqlTime = start + TOP_SQL_INTERVAL_SECONDS * 1000L;
+                sampleTopSql(target, connectionManager, state);
+            }
+        } catch (Exception e) {
+            state.lastError = e.getMessage();
+            state.failureCount++;
+            logger.warn("后台采集数据库指标失败: {}，原因: {}", target.getName(), e.getMessage());
+        } finally {
+            state.lastCollectTime = start;
+            state.lastDurationMs = System.currentTimeMillis() - start;
+            state.running.set(false);
+        }
+    }
+
+    /**
+     * 采样查询统计增量并写入 Top SQL 汇总（首次采样只建立基线）
+     */
+    private void sampleTopSql(SqlServerTarget target, SqlServerConnectionManager connectionManager, TargetState state) {
+        try {
+            QueryStatsTracker.Interval interval = connectionManager.getQueryStatsTracker()
+                    .sample(connectionManager.getDataSource(), QueryStatsTracker.DEFAULT_TOP_K);
+            if (!interval.isBaseline()) {
+                getTopSqlStore(target.getName()).append(interval.getStartTime(), interval.getEndTime(), interval.getTop());
+            }
+            state.topSqlError = null;
+        } catch (Exception e) {
+            state.topSqlError = e.getMessage();
+            logger.warn("采样查询统计增量失败: {}，原因: {}", target.getName(), e.getMessage());
+        }
+    }
+
+    /**
+     * 把指标转换为存储列；采集失败（-1）记为 NaN，首次采样的启动以来平均速率不写入历史
+     */
+    static double[] toValues(SqlServerActivityMetrics m) {
+        boolean rateValid = !m.isRateSinceStart();
+        return new double[]{
+                value(m.getTotalProcesses()), value(m.getRunningProcesses()),
+                value(m.getSuspendedProcesses()), value(m.getBlockedProcesses()),
+                rate(m.getTotalWaits(), rateValid), rate(m.getAverageWaitTime(), rateValid),
+                rate(m.getWaitTimeMsPerSec(), rateValid), rate(m.getSignalWaitTimeMsPerSec(), rateValid),
+                rate(m.getBatchRequestsPerSec(), rateValid), rate(m.getSqlCompilationsPerSec(), rateValid),
+                rate(m.getSqlRecompilationsPerSec(), rateValid),
+                rate(m.getTransactionsPerSec(), rateValid), rate(m.getLockWaitsPerSec(), rateValid),
+                value(m.getBufferCacheHitRatio()), value(m.getPageLifeExpectancy()),
+                value(m.getMemoryUsedMB()), value(m.getMemoryAvailableMB()),
+                rate(m.getDiskReadsPerSec(), rateValid), rate(m.getDiskWritesPerSec(), rateValid),
+                rate(m.getDiskReadBytesPerSec(), rateValid), rate(m.getDiskWriteBytesPerSec(), rateValid),
+                rate(m.getAvgIoLatencyMs(), rateValid),
+                value(m.getCpuUsagePercent()), value(m.getActiveTransactions()),
+                m.getCollectDurationMs(), value(m.getSystemCpuPercent())
+        };
+    }
+
+    private static double value(double v) {
+        return v == -1 ? Double.NaN : v;
+    }
+
+    private static double rate(double v, boolean valid) {
+        return valid ? value(v) : Double.NaN;
+    }
+
+    /**
+     * 获取目标的时序存储，不存在时创建（仅供采集写入使用）
+     */
+    public TimeSeriesStore getStore(String targetName) {
+        return stores.computeIfAbsent(targetName, name ->
+                new TimeSeriesStore(new File(baseDir, safeDirName(name)), METRIC_NAMES.length));
+    }
+
+    /**
+     * 查找目标的时序存储（供查询使用，目标已移除时仍可查询磁盘上的历史数据）
+     * @return 内存和磁盘上都没有该目标的数据时返回 null，不创建存储和目录
+     */
+    public TimeSeriesStore findStore(String targetName) {
+        TimeSeriesStore store = stores.get(targetName);
+        if (store != null) {
+            return store;
+        }
+        if (!new File(baseDir, safeDirName(targetName)).isDirectory()) {
+            return null;
+        }
+        return getStore(targetName);
+    }
+
+    /**
+     * 获取目标的 Top SQL 汇总存储
+     */
+    public TopSqlRollupStore getTopSqlStore(String targetName) {
+        return topSqlStores.computeIfAbsent(targetName, name ->
+                new TopSqlRollupStore(new File(topSqlDir, safeDirName(name))));
+    }
+
+    /**
+     * Top SQL 增量采样间隔（秒）
+     */
+    public static int getTopSqlIntervalSeconds() {
+        return TOP_SQL_INTERVAL_SECONDS;
+    }
+
+    /**
+     * 指标名 -> 列下标，不存在时返回 -1
+     */
+    public static int metricIndex(String name) {
+        for (int i = 0; i < METRIC_NAMES.length; i++) {
+            if (METRIC_NAMES[i].equals(name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 数据保留天数
+     */
+    public static int getRetentionDays() {
+        return RETENTION_DAYS;
+    }
+
+    /**
+     * 目标的采集状态，未定时采集时返回 null
+     */
+    public JSONObject getStatus(String targetName) {
+        TargetState state = states.get(targetName);
+        if (state == null) {
+            return null;
+        }
+        JSONObject json = new JSONObject();
+        json.put("running", state.running.get());
+        json.put("lastCollectTime", state.lastCollectTime);
+        json.put("lastDurationMs", state.lastDurationMs);
+        json.put("nextDueTime", state.nextDueTime);
+        json.put("successCount", state.successCount);
+        json.put("failureCount", state.failureCount);
+        json.put("lastError", state.lastError);
+        json.put("topSqlError", state.topSqlError);
+        return json;
+    }
+
+    /**
+     * 目标名转为存储目录名，非法字符替换为下划线；只由点组成的名称（"."、".."）会指向上级目录，直接拒绝
+     */
+    private static String safeDirName(String name) {
+        String dirName = name.replaceAll("[^A-Za-z0-9_.-]", "_");
+        if (dirName.isEmpty() || dirName.matches("\\.+")) {
+            throw new IllegalArgumentException("非法的目标名称: " + name);
+        }
+        return dirName;
+    }
+
+    /**
+     * 停止调度并把缓冲区落盘（插件停止时调用）
+     */
+    public synchronized void shutdown() {
+        if (ticker != null) {
+            ticker.shutdownNow();
+        }
+        if (workers != null) {
+            workers.shutdownNow();
+            try {
+                workers.awaitTermination(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        for (TimeSeriesStore store : stores.values()) {
+            store.flush();
+        }
+        states.clear();
+        logger.info("数据库指标后台采集已停止");
+    }
+
+    /**
+     * 单个目标的调度状态
+     */
+    private static class TargetState {
+        private final AtomicBoolean running = new AtomicBoolean();
+        private volatile long nextDueTime;
+        private volatile long lastCollectTime;
+        private volatile long lastDurationMs;
+        private volatile long successCount;
+        private volatile long failureCount;
+        private volatile String lastError;
+        private volatile long nextTopSqlTime;
+        private volatile String topSqlError;
+    }
+}
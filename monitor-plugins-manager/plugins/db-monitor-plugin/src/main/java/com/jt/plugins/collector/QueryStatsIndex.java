@@ -0,0 +1,121 @@
+package com.jt.plugins.collector;
+
+import java.util.Arrays;
+
+/**
+ * @BelongsProject: jt-server-monitor
+ * @BelongsPackage: com.jt.plugins.collector
+ * @Author: 别来无恙qb
+ * @CreateTime: 2026-03-20  09:20
+ * @Description: dm_exec_query_stats 上一次快照的哈希索引（开放寻址，键与各字段均为 long，避免每行一个对象）
+ * @Version: 1.0
+ */
+class QueryStatsIndex {
+
+    // ========== 字段下标 ==========
+    static final int CREATION_TIME = 0;
+    static final int EXECUTION_COUNT = 1;
+    static final int WORKER_TIME = 2;
+    static final int ELAPSED_TIME = 3;
+    static final int LOGICAL_READS = 4;
+    static final int LOGICAL_WRITES = 5;
+    static final int LAST_SEEN = 6;
+    static final int FIELDS = 7;
+
+    private long[] keys;
+    private boolean[] used;
+    private long[] values;
+    private int size;
+
+    QueryStatsIndex() {
+        allocate(1024);
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        used = new boolean[capacity];
+        values = new long[capacity * FIELDS];
+        size = 0;
+    }
+
+    int size() {
+        return size;
+    }
+
+    private int slotOf(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h >>> 33) & (keys.length - 1);
+    }
+
+    /**
+     * 查找键所在槽位，不存在返回 -1
+     */
+    int find(long key) {
+        int slot = slotOf(key);
+        while (used[slot]) {
+            if (keys[slot] == key) {
+                return slot;
+            }
+            slot = (slot + 1) & (keys.length - 1);
+        }
+        return -1;
+    }
+
+    /**
+     * 查找或插入键，返回槽位
+     */
+    int put(long key) {
+        if ((size + 1) * 2 > keys.length) {
+            rehash(keys.length * 2, Long.MIN_VALUE);
+        }
+        int slot = slotOf(key);
+        while (used[slot]) {
+            if (keys[slot] == key) {
+                return slot;
+            }
+            slot = (slot + 1) & (keys.length - 1);
+        }
+        used[slot] = true;
+        keys[slot] = key;
+        size++;
+        return slot;
+    }
+
+    long get(int slot, int field) {
+        return values[slot * FIELDS + field];
+    }
+
+    void set(int slot, int field, long value) {
+        values[slot * FIELDS + field] = value;
+    }
+
+    /**
+     * 移除 LAST_SEEN 早于指定时间的条目（重建索引）
+     */
+    void evictOlderThan(long cutoff) {
+        int capacity = keys.length;
+        while (capacity > 1024 && size * 4 < capacity) {
+            capacity >>= 1;
+        }
+        rehash(capacity, cutoff);
+    }
+
+    private void rehash(int capacity, long cutoff) {
+        long[] oldKeys = keys;
+        boolean[] oldUsed = used;
+        long[] oldValues = values;
+        allocate(capacity);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (!oldUsed[i] || oldValues[i * FIELDS + LAST_SEEN] < cutoff) {
+                continue;
+            }
+            int slot = put(oldKeys[i]);
+            System.arraycopy(oldValues, i * FIELDS, values, slot * FIELDS, FIELDS);
+        }
+    }
+
+    void clear() {
+        Arrays.fill(used, false);
+        size = 0;
+    }
+}
@@ -0,0 +1,277 @@
+package com.jt.plugins.collector;
+
+import com.jt.plugins.common.log.PluginLogger;
+import com.jt.plugins.config.MyBatisConfig;
+import com.jt.plugins.mapper.SqlServerMetricsMapper;
+import com.jt.plugins.model.SqlServerQueryDelta;
+import org.apache.ibatis.session.SqlSession;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * @BelongsProject: jt-server-monitor
+ * @BelongsPackage: com.jt.plugins.collector
+ * @Author: 别来无恙qb
+ * @CreateTime: 2026-03-20  09:40
+ * @Description: 查询统计增量跟踪 - 每次采样与上一次快照对比，得出区间内各查询的 CPU/读取/耗时增量
+ *
+ * 首次采样全量读取 dm_exec_query_stats 作为基线，之后只读取上次采样后执行过的语句；
+ * 语句按 (plan_handle, statement_start_offset) 建索引，creation_time 变化视为计划重建，
+ * 在上次采样之后创建的计划整段计入本区间，基线未知的语句（如长期未执行被移出索引）只记录不计增量。
+ * 语句文本只为每个区间的 Top-K 查询获取，并按 query_hash 缓存。
+ * @Version: 1.0
+ */
+public class QueryStatsTracker {
+
+    private static final PluginLogger logger = PluginLogger.getLogger("db-monitor-plugin");
+
+    // 每个排序维度保留的查询数
+    public static final int DEFAULT_TOP_K = 20;
+
+    // 超过该时间未再执行的语句移出索引
+    private static final long INDEX_EVICT_AGE_MS = 6 * 60 * 60 * 1000L;
+
+    private static final long INDEX_EVICT_INTERVAL_MS = 10 * 60 * 1000L;
+
+    // 语句文本缓存上限（按 query_hash）
+    private static final int TEXT_CACHE_SIZE = 2000;
+
+    private final QueryStatsIndex index = new QueryStatsIndex();
+
+    // 上一次采样的服务器时间（增量扫描条件）与本地时间（区间起点）
+    private Date previousServerTime;
+    private long previousSampleTime;
+    private long lastEvictTime = System.currentTimeMillis();
+
+    private final Map<Long, String[]> textCache = new LinkedHashMap<Long, String[]>(256, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, String[]> eldest) {
+            return size() > TEXT_CACHE_SIZE;
+        }
+    };
+
+    /**
+     * 采样一次并返回与上一次采样之间的增量
+     * @param dataSource 目标连接池
+     * @param topK 每个排序维度（CPU/逻辑读/耗时）保留的查询数
+     */
+    public synchronized Interval sample(DataSource dataSource, int topK) {
+        long sampleTime = System.currentTimeMillis();
+        try (SqlSession session = MyBatisConfig.openSession(dataSource)) {
+            SqlServerMetricsMapper mapper = session.getMapper(SqlServerMetricsMapper.class);
+            Date serverTime = mapper.getServerTime();
+            boolean baseline = previousServerTime == null;
+            long since = baseline ? Long.MIN_VALUE : previousServerTime.getTime();
+
+            Map<Long, SqlServerQueryDelta> deltas = new HashMap<>();
+            int[] scanned = new int[1];
+            mapper.scanQueryStats(previousServerTime, context -> {
+                scanned[0]++;
+                accumulate(context.getResultObject(), baseline, since, sampleTime, deltas);
+            });
+
+            Interval interval = new Interval(baseline ? sampleTime : previousSampleTime, sampleTime, baseline,
+                    scanned[0], index.size(), deltas.size(), selectTop(deltas.values(), topK));
+            previousServerTime = serverTime;
+            previousSampleTime = sampleTime;
+
+            if (sampleTime - lastEvictTime > INDEX_EVICT_INTERVAL_MS) {
+                lastEvictTime = sampleTime;
+                index.evictOlderThan(sampleTime - INDEX_EVICT_AGE_MS);
+            }
+
+            resolveTexts(mapper, interval.getTop());
+            return interval;
+        }
+    }
+
+    /**
+     * 对比一行快照与索引中的上一次值，并更新索引
+     */
+    private void accumulate(Map<String, Object> row, boolean baseline, long since, long now,
+                            Map<Long, SqlServerQueryDelta> deltas) {
+        byte[] planHandle = (byte[]) row.get("plan_handle");
+        int startOffset = getInt(row, "statement_start_offset");
+        long key = statementKey(planHandle, startOffset);
+        Object creation = row.get("creation_time");
+        long creationTime = creation instanceof Date ? ((Date) creation).getTime() : 0L;
+
+        long executions = getLong(row, "execution_count");
+        long workerTime = getLong(row, "total_worker_time");
+        long elapsedTime = getLong(row, "total_elapsed_time");
+        long logicalReads = getLong(row, "total_logical_reads");
+        long logicalWrites = getLong(row, "total_logical_writes");
+
+        int slot = index.find(key);
+        boolean known = slot >= 0 && index.get(slot, QueryStatsIndex.CREATION_TIME) == creationTime;
+        long dExecutions = executions;
+        long dWorker = workerTime;
+        long dElapsed = elapsedTime;
+        long dReads = logicalReads;
+        long dWrites = logicalWrites;
+        boolean counted;
+        if (known) {
+            dExecutions = executions - index.get(slot, QueryStatsIndex.EXECUTION_COUNT);
+            dWorker = workerTime - index.get(slot, QueryStatsIndex.WORKER_TIME);
+            dElapsed = elapsedTime - index.get(slot, QueryStatsIndex.ELAPSED_TIME);
+            dReads = logicalReads - index.get(slot, QueryStatsIndex.LOGICAL_READS);
+            dWrites = logicalWrites - index.get(slot, QueryStatsIndex.LOGICAL_WRITES);
+            counted = dExecutions >= 0 && dWorker >= 0;
+        } else {
+            // 上次采样后新建的计划整段计入本区间
+            counted = !baseline && creationTime >= since;
+        }
+
+        if (slot < 0) {
+            slot = index.put(key);
+        }
+        index.set(slot, QueryStatsIndex.CREATION_TIME, creationTime);
+        index.set(slot, QueryStatsIndex.EXECUTION_COUNT, executions);
+        index.set(slot, QueryStatsIndex.WORKER_TIME, workerTime);
+        index.set(slot, QueryStatsIndex.ELAPSED_TIME, elapsedTime);
+        index.set(slot, QueryStatsIndex.LOGICAL_READS, logicalReads);
+        index.set(slot, QueryStatsIndex.LOGICAL_WRITES, logicalWrites);
+        index.set(slot, QueryStatsIndex.LAST_SEEN, now);
+
+        if (!counted || (dExecutions == 0 && dWorker == 0 && dReads == 0)) {
+            return;
+        }
+        long queryHash = getLong(row, "query_hash");
+        SqlServerQueryDelta delta = deltas.computeIfAbsent(queryHash, SqlServerQueryDelta::new);
+        delta.add(dExecutions, dWorker, dElapsed, Math.max(dReads, 0), Math.max(dWrites, 0));
+        delta.addStatement((byte[]) row.get("sql_handle"), startOffset,
+                getInt(row, "statement_end_offset"), dWorker);
+    }
+
+    /**
+     * 取 CPU、逻辑读、耗时三个维度各自的前 topK 并合并（按 CPU 降序）
+     */
+    static List<SqlServerQueryDelta> selectTop(Collection<SqlServerQueryDelta> deltas, int topK) {
+        if (deltas.isEmpty()) {
+            return Collections.emptyList();
+        }
+        Set<SqlServerQueryDelta> selected = new LinkedHashSet<>();
+        List<SqlServerQueryDelta> sorted = new ArrayList<>(deltas);
+        for (String orderBy : new String[]{"cpu", "reads", "duration"}) {
+            sorted.sort(SqlServerQueryDelta.comparator(orderBy));
+            selected.addAll(sorted.subList(0, Math.min(topK, sorted.size())));
+        }
+        List<SqlServerQueryDelta> top = new ArrayList<>(selected);
+        top.sort(SqlServerQueryDelta.comparator("cpu"));
+        return top;
+    }
+
+    /**
+     * 为 Top-K 查询填充语句文本，缓存未命中的一次批量查询
+     */
+    private void resolveTexts(SqlServerMetricsMapper mapper, List<SqlServerQueryDelta> top) {
+        List<SqlServerQueryDelta> missing = new ArrayList<>();
+        List<Map<String, Object>> handles = new ArrayList<>();
+        for (SqlServerQueryDelta delta : top) {
+            String[] cached = textCache.get(delta.getQueryHash());
+            if (cached != null) {
+                delta.setDatabaseName(cached[0]);
+                delta.setSqlText(cached[1]);
+            } else if (delta.getSqlHandle() != null) {
+                Map<String, Object> handle = new HashMap<>();
+                handle.put("sqlHandle", delta.getSqlHandle());
+                handle.put("startOffset", delta.getStatementStartOffset());
+                handle.put("endOffset", delta.getStatementEndOffset());
+                handles.add(handle);
+                missing.add(delta);
+            }
+        }
+        if (handles.isEmpty()) {
+            return;
+        }
+        try {
+            for (Map<String, Object> row : mapper.getStatementTexts(handles)) {
+                SqlServerQueryDelta delta = missing.get(getInt(row, "idx"));
+                String databaseName = (String) row.get("database_name");
+                String sqlText = (String) row.get("statement_text");
+                delta.setDatabaseName(databaseName);
+                delta.setSqlText(sqlText);
+                textCache.put(delta.getQueryHash(), new String[]{databaseName, sqlText});
+            }
+        } catch (Exception e) {
+            // 文本只用于展示，获取失败不影响增量结果
+            logger.warn("获取查询语句文本失败: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 获取已缓存的语句文本（数据库名, 语句），未缓存时返回 null
+     */
+    public synchronized String[] getCachedText(long queryHash) {
+        return textCache.get(queryHash);
+    }
+
+    /**
+     * 语句键：plan_handle 的 FNV-1a 64 位哈希与语句起始偏移混合
+     */
+    static long statementKey(byte[] planHandle, int startOffset) {
+        long hash = 0xcbf29ce484222325L;
+        if (planHandle != null) {
+            for (byte b : planHandle) {
+                hash ^= b & 0xff;
+                hash *= 0x100000001b3L;
+            }
+        }
+        hash ^= startOffset;
+        hash *= 0x100000001b3L;
+        return hash;
+    }
+
+    private static long getLong(Map<String, Object> row, String key) {
+        Object value = row.get(key);
+        return value instanceof Number ? ((Number) value).longValue() : 0L;
+    }
+
+    private static int getInt(Map<String, Object> row, String key) {
+        Object value = row.get(key);
+        return value instanceof Number ? ((Number) value).intValue() : 0;
+    }
+
+    /**
+     * 一次采样区间的结果
+     */
+    public static class Interval {
+        private final long startTime;
+        private final long endTime;
+        private final boolean baseline;
+        private final int scannedRows;
+        private final int indexedStatements;
+        private final int activeQueries;
+        private final List<SqlServerQueryDelta> top;
+
+        Interval(long startTime, long endTime, boolean baseline, int scannedRows, int indexedStatements,
+                 int activeQueries, List<SqlServerQueryDelta> top) {
+            this.startTime = startTime;
+            this.endTime = endTime;
+            this.baseline = baseline;
+            this.scannedRows = scannedRows;
+            this.indexedStatements = indexedStatements;
+            this.activeQueries = activeQueries;
+            this.top = top;
+        }
+
+        public long getStartTime() { return startTime; }
+        public long getEndTime() { return endTime; }
+        // 是否为首次采样（只建立基线，没有增量）
+        public boolean isBaseline() { return baseline; }
+        public int getScannedRows() { return scannedRows; }
+        public int getIndexedStatements() { return indexedStatements; }
+        public int getActiveQueries() { return activeQueries; }
+        public List<SqlServerQueryDelta> getTop() { return top; }
+    }
+}
@@ -6,14 +6,36 @@ import com.jt.plugins.mapper.SqlServerMetricsMapper;
 import com.jt.plugins.model.SqlServerActivityMetrics;
 import com.jt.plugins.config.MyBatisConfig;
 import com.jt.plugins.common.log.PluginLogger;
+import com.jt.plugins.common.metrics.Counter;
+import com.jt.plugins.common.metrics.LatencyHistogram;
+import com.jt.plugins.common.metrics.MetricsRegistry;
+import com.jt.plugins.model.SqlServerConnectionInfo;
+import com.jt.plugins.model.SqlServerCpuSample;
 import com.jt.plugins.model.SqlServerLockInfo;
 import com.jt.plugins.model.SqlServerProcessDetail;
+import com.jt.plugins.model.SqlServerQueryFilter;
+import com.jt.plugins.sqlserver.SqlServerConnectionManager;
+import org.apache.ibatis.session.ResultHandler;
 import org.apache.ibatis.session.SqlSession;
 
 import javax.sql.DataSource;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Function;
 
 /**
  * SQL Server监控数据采集器（XML版本）
@@ -21,12 +43,64 @@ import java.util.Map;
 public class SqlServerMetricsCollector {
 
     private static final PluginLogger logger = PluginLogger.getLogger("db-monitor-plugin");
-    private DataSource dataSource;
+
+    // 单项查询默认超时时间（毫秒）
+    public static final long DEFAULT_QUERY_TIMEOUT_MS = 10_000L;
+
+    // 汇总采集中附带的进程详情/锁信息条数
+    private static final int DETAIL_LIMIT = 100;
+
+    // 分组统计中输出的 SQL 文本长度
+    private static final int GROUP_SQL_TEXT_LENGTH = 200;
+
+    // 阻塞分析中补充会话信息的根会话数上限
+    private static final int MAX_BLOCKING_ROOT_DETAILS = 200;
+
+    // 采集线程上限（所有目标共享）
+    private static final int MAX_COLLECT_THREADS = 32;
+
+    // 采集任务排队上限，超出时该项直接按采集失败处理
+    private static final int MAX_COLLECT_QUEUE = 64;
+
+    // 一次活动监视器采集的整体耗时
+    private static final LatencyHistogram COLLECT_TIMER = MetricsRegistry.timer("jt_db_collect");
+
+    // 各采集项的查询耗时与失败次数（采集项名称 -> 指标），每个采集项只解析一次
+    private static final Map<String, LatencyHistogram> QUERY_TIMERS = new ConcurrentHashMap<>();
+    private static final Map<String, Counter> QUERY_FAILURES = new ConcurrentHashMap<>();
+
+    // 并发采集线程池
+    private static ExecutorService executor;
+
+    private final DataSource dataSource;
+
+    // 目标的速率计算器（保存上一次累计计数器采样）
+    private final SqlServerRateCollector rateCollector;
+
+    // 目标的 SQL 文本缓存（明细查询只返回 sql_handle，文本由缓存解析）
+    private final SqlTextCache sqlTextCache;
+
+    // 目标的 CPU 使用率历史（只解析上次之后的新记录）
+    private final CpuHistoryTracker cpuHistoryTracker;
 
     public SqlServerMetricsCollector(DataSource dataSource) {
+        this(dataSource, new SqlServerRateCollector(), new SqlTextCache(), new CpuHistoryTracker());
+    }
+
+    /**
+     * 目标的采集器：复用目标连接池及随其保留的速率计算器、SQL 文本缓存和 CPU 历史
+     */
+    public SqlServerMetricsCollector(SqlServerConnectionManager connectionManager) {
+        this(connectionManager.getDataSource(), connectionManager.getRateCollector(),
+                connectionManager.getSqlTextCache(), connectionManager.getCpuHistoryTracker());
+    }
+
+    public SqlServerMetricsCollector(DataSource dataSource, SqlServerRateCollector rateCollector,
+                                     SqlTextCache sqlTextCache, CpuHistoryTracker cpuHistoryTracker) {
         this.dataSource = dataSource;
-        // 初始化MyBatis配置
-        MyBatisConfig.initialize(dataSource);
+        this.rateCollector = rateCollector;
+        this.sqlTextCache = sqlTextCache;
+        this.cpuHistoryTracker = cpuHistoryTracker;
     }
 
     /**
@@ -34,364 +108,442 @@ public class SqlServerMetricsCollector {
      * @return 活动监视器指标
      */
     public SqlServerActivityMetrics collectActivityMetrics() {
-        SqlServerActivityMetrics metrics = new SqlServerActivityMetrics();
-        metrics.setCollectionTime(System.currentTimeMillis());
+        return collectActivityMetrics(DEFAULT_QUERY_TIMEOUT_MS);
+    }
 
-        SqlSession sqlSession = null;
-        try {
-            sqlSession = MyBatisConfig.getSqlSession();
-            SqlServerMetricsMapper mapper = sqlSession.getMapper(SqlServerMetricsMapper.class);
+    public SqlServerActivityMetrics collectActivityMetrics(long queryTimeoutMs) {
+        return collectActivityMetrics(queryTimeoutMs, true);
+    }
 
-            // 采集各种指标
-            collectProcessInfo(mapper, metrics);
-            collectWaitStats(mapper, metrics);
-            collectPerformanceCounters(mapper, metrics);
-            collectMemoryStats(mapper, metrics);
-            collectIOStats(mapper, metrics);
-            collectAdditionalMetrics(mapper, metrics);
+    /**
+     * 采集SQL Server活动监视器数据
+     * 各项 DMV 查询互不依赖，分别从连接池借连接并发执行，整体耗时约等于最慢的单个查询
+     * @param queryTimeoutMs 单项查询超时时间（毫秒），超时的项目按采集失败处理
+     * @param includeDetails 是否采集进程详情与锁信息（后台定时采集只需要汇总指标）
+     * @return 活动监视器指标，失败项目记录在 collectErrors 中
+     */
+    public SqlServerActivityMetrics collectActivityMetrics(long queryTimeoutMs, boolean includeDetails) {
+        SqlServerActivityMetrics metrics = new SqlServerActivityMetrics();
+        long start = System.currentTimeMillis();
+        metrics.setCollectionTime(start);
+
+        List<CollectItem<?>> items = new ArrayList<>();
+        items.add(new CollectItem<>("进程信息", SqlServerMetricsMapper::getProcessInfo,
+                this::applyProcessInfo, this::failProcessInfo));
+        items.add(new CollectItem<>("累计计数器", SqlServerMetricsMapper::getCumulativeCounters,
+                this::applyCumulativeCounters, this::failCumulativeCounters));
+        items.add(new CollectItem<>("性能计数器", SqlServerMetricsMapper::getPerformanceCounters,
+                this::applyPerformanceCounters, this::failPerformanceCounters));
+        items.add(new CollectItem<>("内存统计", SqlServerMetricsMapper::getMemoryStats,
+                this::applyMemoryStats, this::failMemoryStats));
+        items.add(new CollectItem<>("CPU 使用率", cpuHistoryTracker::refresh,
+                this::applyCpuSample, this::failCpuSample));
+        items.add(new CollectItem<>("活跃事务数", SqlServerMetricsMapper::getActiveTransactions,
+                (m, activeTransactions) -> m.setActiveTransactions(requireResult(activeTransactions)),
+                m -> m.setActiveTransactions(-1)));
+        if (includeDetails) {
+            items.add(new CollectItem<>("进程详情",
+                    firstPage(SqlServerMetricsMapper::getProcessDetails,
+                            SqlServerProcessDetail::getSqlHandle, SqlServerProcessDetail::setLastSqlText),
+                    SqlServerActivityMetrics::setProcessDetails, m -> { }));
+            items.add(new CollectItem<>("锁信息",
+                    firstPage(SqlServerMetricsMapper::getLockInformation,
+                            SqlServerLockInfo::getSqlHandle, SqlServerLockInfo::setSqlText),
+                    SqlServerActivityMetrics::setLockInfos, m -> { }));
+        }
 
-            logger.debug("SQL Server活动监视器数据采集完成");
+        ExecutorService executor = getExecutor();
+        int timeoutSeconds = (int) Math.max(1, (queryTimeoutMs + 999) / 1000);
+        for (CollectItem<?> item : items) {
+            item.submit(executor, dataSource, timeoutSeconds);
+        }
 
-        } finally {
-            if (sqlSession != null) {
-                sqlSession.close();
-            }
+        // 所有查询同时开始，统一按截止时间等待
+        long deadline = start + queryTimeoutMs;
+        for (CollectItem<?> item : items) {
+            item.await(metrics, deadline, queryTimeoutMs);
         }
 
+        metrics.setCollectDurationMs(System.currentTimeMillis() - start);
+        COLLECT_TIMER.recordMillis(metrics.getCollectDurationMs());
+        logger.debug("SQL Server活动监视器数据采集完成，耗时 {} ms，失败项目 {} 个",
+                metrics.getCollectDurationMs(), metrics.getCollectErrors().size());
         return metrics;
     }
 
     /**
-     * 采集进程信息
+     * 单项采集任务：在独立会话上执行查询，结果在调用线程中写入指标对象
+     * 会话内语句的查询超时与采集超时一致，超时放弃等待后语句在服务端被取消，连接随即归还
      */
-    private void collectProcessInfo(SqlServerMetricsMapper mapper, SqlServerActivityMetrics metrics) {
-        try {
-            Map<String, Object> processInfo = mapper.getProcessInfo();
-            if (processInfo != null) {
-                metrics.setTotalProcesses(getIntValue(processInfo, "total_processes"));
-                metrics.setRunningProcesses(getIntValue(processInfo, "running_processes"));
-                metrics.setSuspendedProcesses(getIntValue(processInfo, "suspended_processes"));
-                metrics.setBlockedProcesses(getIntValue(processInfo, "blocked_processes"));
+    private static class CollectItem<T> {
+        private final String name;
+        private final Function<SqlServerMetricsMapper, T> query;
+        private final BiConsumer<SqlServerActivityMetrics, T> apply;
+        private final Consumer<SqlServerActivityMetrics> fail;
+        private final LatencyHistogram timer;
+        private final Counter failures;
+        private Future<T> future;
+
+        // 提交被线程池拒绝时的原因
+        private String rejected;
+
+        CollectItem(String name, Function<SqlServerMetricsMapper, T> query,
+                    BiConsumer<SqlServerActivityMetrics, T> apply, Consumer<SqlServerActivityMetrics> fail) {
+            this.name = name;
+            this.query = query;
+            this.apply = apply;
+            this.fail = fail;
+            LatencyHistogram timer = QUERY_TIMERS.get(name);
+            this.timer = timer != null ? timer
+                    : QUERY_TIMERS.computeIfAbsent(name, n -> MetricsRegistry.timer("jt_db_dmv_query", "query", n));
+            Counter failures = QUERY_FAILURES.get(name);
+            this.failures = failures != null ? failures
+                    : QUERY_FAILURES.computeIfAbsent(name, n -> MetricsRegistry.counter("jt_db_dmv_query_failed_total", "query", n));
+        }
+
+        void submit(ExecutorService executor, DataSource dataSource, int timeoutSeconds) {
+            try {
+                future = executor.submit(() -> {
+                    long start = System.nanoTime();
+                    try (SqlSession sqlSession = MyBatisConfig.openSession(dataSource, timeoutSeconds)) {
+                        return query.apply(sqlSession.getMapper(SqlServerMetricsMapper.class));
+                    } finally {
+                        timer.recordNanos(System.nanoTime() - start);
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                rejected = executor.isShutdown() ? "采集线程池已关闭" : "采集线程池已满，本次跳过";
+            }
+        }
+
+        void await(SqlServerActivityMetrics metrics, long deadline, long timeoutMs) {
+            if (future == null) {
+                markFailed(metrics, rejected, null);
+                return;
+            }
+            try {
+                T result = future.get(Math.max(0, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+                apply.accept(metrics, result);
+            } catch (TimeoutException e) {
+                future.cancel(true);
+                markFailed(metrics, "查询超时（" + timeoutMs + " ms）", null);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                future.cancel(true);
+                markFailed(metrics, "采集被中断", null);
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause() != null ? e.getCause() : e;
+                markFailed(metrics, cause.getMessage(), cause);
+            } catch (Exception e) {
+                markFailed(metrics, e.getMessage(), e);
+            }
+        }
+
+        private void markFailed(SqlServerActivityMetrics metrics, String message, Throwable cause) {
+            failures.increment();
+            fail.accept(metrics);
+            metrics.addCollectError(name, message);
+            if (cause != null) {
+                logger.error("采集{}失败", name, cause);
             } else {
-                metrics.setTotalProcesses(-1);
-                metrics.setRunningProcesses(-1);
-                metrics.setSuspendedProcesses(-1);
-                metrics.setBlockedProcesses(-1);
-                logger.error("采集进程信息失败：返回结果为空");
+                logger.error("采集{}失败：{}", name, message);
             }
-        } catch (Exception e) {
-            metrics.setTotalProcesses(-1);
-            metrics.setRunningProcesses(-1);
-            metrics.setSuspendedProcesses(-1);
-            metrics.setBlockedProcesses(-1);
-            logger.error("采集进程信息失败", e);
         }
     }
 
     /**
-     * 采集等待统计
+     * 获取采集线程池，插件停止后再次使用时重新创建
+     * 线程与队列均有上限，满载时直接拒绝，由该采集项记录失败，不在调用线程中无超时地执行
      */
-    private void collectWaitStats(SqlServerMetricsMapper mapper, SqlServerActivityMetrics metrics) {
-        try {
-            Map<String, Object> waitStats = mapper.getWaitStats();
-            if (waitStats != null) {
-                metrics.setTotalWaits(getIntValue(waitStats, "total_waits"));
-                metrics.setAverageWaitTime(getDoubleValue(waitStats, "avg_wait_time"));
-            } else {
-                metrics.setTotalWaits(-1);
-                metrics.setAverageWaitTime(-1.0);
-                logger.error("采集等待统计失败：返回结果为空");
-            }
-        } catch (Exception e) {
-            metrics.setTotalWaits(-1);
-            metrics.setAverageWaitTime(-1.0);
-            logger.error("采集等待统计失败", e);
+    private static synchronized ExecutorService getExecutor() {
+        if (executor == null || executor.isShutdown()) {
+            AtomicInteger counter = new AtomicInteger();
+            ThreadPoolExecutor pool = new ThreadPoolExecutor(MAX_COLLECT_THREADS, MAX_COLLECT_THREADS, 60L, TimeUnit.SECONDS,
+                    new ArrayBlockingQueue<>(MAX_COLLECT_QUEUE),
+                    r -> {
+                        Thread thread = new Thread(r, "sqlserver-collector-" + counter.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    },
+                    new ThreadPoolExecutor.AbortPolicy());
+            pool.allowCoreThreadTimeOut(true);
+            executor = pool;
         }
+        return executor;
     }
 
     /**
-     * 采集性能计数器
+     * 停止采集线程池（插件停止时调用）
      */
-    private void collectPerformanceCounters(SqlServerMetricsMapper mapper, SqlServerActivityMetrics metrics) {
-        try {
-            List<Map<String, Object>> counters = mapper.getPerformanceCounters();
-            if (counters != null && !counters.isEmpty()) {
-                for (Map<String, Object> counter : counters) {
-                    String counterName = getStringValue(counter, "counter_name");
-                    long value = getLongValue(counter, "cntr_value");
-
-                    switch (counterName) {
-                        case "Batch Requests/sec":
-                            metrics.setBatchRequestsPerSec((int) value);
-                            break;
-                        case "SQL Compilations/sec":
-                            metrics.setSqlCompilationsPerSec((int) value);
-                            break;
-                        case "SQL Re-Compilations/sec":
-                            metrics.setSqlRecompilationsPerSec((int) value);
-                            break;
-                        case "Buffer cache hit ratio":
-                            metrics.setBufferCacheHitRatio(value / 100.0);
-                            break;
-                        case "Page life expectancy":
-                            metrics.setPageLifeExpectancy(value);
-                            break;
-                    }
-                }
-            } else {
-                metrics.setBatchRequestsPerSec(-1);
-                metrics.setSqlCompilationsPerSec(-1);
-                metrics.setSqlRecompilationsPerSec(-1);
-                metrics.setBufferCacheHitRatio(-1.0);
-                metrics.setPageLifeExpectancy(-1);
-                logger.error("采集性能计数器失败：返回结果为空");
-            }
-        } catch (Exception e) {
-            metrics.setBatchRequestsPerSec(-1);
-            metrics.setSqlCompilationsPerSec(-1);
-            metrics.setSqlRecompilationsPerSec(-1);
-            metrics.setBufferCacheHitRatio(-1.0);
-            metrics.setPageLifeExpectancy(-1);
-            logger.error("采集性能计数器失败", e);
+    public static synchronized void shutdown() {
+        if (executor != null) {
+            executor.shutdownNow();
         }
     }
 
+    private static <T> T requireResult(T result) {
+        if (result == null) {
+            throw new IllegalStateException("返回结果为空");
+        }
+        return result;
+    }
+
     /**
-     * 采集内存统计
+     * 写入进程信息
      */
-    private void collectMemoryStats(SqlServerMetricsMapper mapper, SqlServerActivityMetrics metrics) {
-        try {
-            Map<String, Object> memoryStats = mapper.getMemoryStats();
-            if (memoryStats != null) {
-                metrics.setMemoryUsedMB(getLongValue(memoryStats, "memory_used_mb"));
-                metrics.setMemoryAvailableMB(getLongValue(memoryStats, "memory_available_mb"));
-            } else {
-                metrics.setMemoryUsedMB(-1);
-                metrics.setMemoryAvailableMB(-1);
-                logger.error("采集内存统计失败：返回结果为空");
-            }
-        } catch (Exception e) {
-            metrics.setMemoryUsedMB(-1);
-            metrics.setMemoryAvailableMB(-1);
-            logger.error("采集内存统计失败", e);
-        }
+    private void applyProcessInfo(SqlServerActivityMetrics metrics, Map<String, Object> processInfo) {
+        requireResult(processInfo);
+        metrics.setTotalProcesses(getIntValue(processInfo, "total_processes"));
+        metrics.setRunningProcesses(getIntValue(processInfo, "running_processes"));
+        metrics.setSuspendedProcesses(getIntValue(processInfo, "suspended_processes"));
+        metrics.setBlockedProcesses(getIntValue(processInfo, "blocked_processes"));
+    }
+
+    private void failProcessInfo(SqlServerActivityMetrics metrics) {
+        metrics.setTotalProcesses(-1);
+        metrics.setRunningProcesses(-1);
+        metrics.setSuspendedProcesses(-1);
+        metrics.setBlockedProcesses(-1);
     }
 
     /**
-     * 采集 I/O 统计
+     * 写入累计计数器的区间速率（批处理/编译/事务/锁等待/等待统计/文件 I/O）
      */
-    private void collectIOStats(SqlServerMetricsMapper mapper, SqlServerActivityMetrics metrics) {
-        try {
-            Map<String, Object> ioStats = mapper.getIOStats();
-            if (ioStats != null) {
-                metrics.setDiskReadsPerSec(getLongValue(ioStats, "disk_reads"));
-                metrics.setDiskWritesPerSec(getLongValue(ioStats, "disk_writes"));
-            } else {
-                metrics.setDiskReadsPerSec(-1);
-                metrics.setDiskWritesPerSec(-1);
-                logger.error("采集 I/O 统计失败：返回结果为空");
-            }
-        } catch (Exception e) {
-            metrics.setDiskReadsPerSec(-1);
-            metrics.setDiskWritesPerSec(-1);
-            logger.error("采集 I/O 统计失败", e);
-        }
+    private void applyCumulativeCounters(SqlServerActivityMetrics metrics, Map<String, Object> counters) {
+        SqlServerRateCollector.RateSample sample = rateCollector.update(requireResult(counters));
+
+        metrics.setBatchRequestsPerSec(sample.rate(SqlServerRateCollector.BATCH_REQUESTS));
+        metrics.setSqlCompilationsPerSec(sample.rate(SqlServerRateCollector.SQL_COMPILATIONS));
+        metrics.setSqlRecompilationsPerSec(sample.rate(SqlServerRateCollector.SQL_RECOMPILATIONS));
+        metrics.setTransactionsPerSec(sample.rate(SqlServerRateCollector.TRANSACTIONS));
+        metrics.setLockWaitsPerSec(sample.rate(SqlServerRateCollector.LOCK_WAITS));
+
+        long waits = sample.delta(SqlServerRateCollector.WAIT_COUNT);
+        metrics.setTotalWaits(waits);
+        metrics.setAverageWaitTime(waits > 0 ? (double) sample.delta(SqlServerRateCollector.WAIT_TIME_MS) / waits : 0.0);
+        metrics.setWaitTimeMsPerSec(sample.rate(SqlServerRateCollector.WAIT_TIME_MS));
+        metrics.setSignalWaitTimeMsPerSec(sample.rate(SqlServerRateCollector.SIGNAL_WAIT_TIME_MS));
+
+        metrics.setDiskReadsPerSec(sample.rate(SqlServerRateCollector.DISK_READS));
+        metrics.setDiskWritesPerSec(sample.rate(SqlServerRateCollector.DISK_WRITES));
+        metrics.setDiskReadBytesPerSec(sample.rate(SqlServerRateCollector.BYTES_READ));
+        metrics.setDiskWriteBytesPerSec(sample.rate(SqlServerRateCollector.BYTES_WRITTEN));
+        long ios = sample.delta(SqlServerRateCollector.DISK_READS) + sample.delta(SqlServerRateCollector.DISK_WRITES);
+        metrics.setAvgIoLatencyMs(ios > 0 ? (double) sample.delta(SqlServerRateCollector.IO_STALL_MS) / ios : 0.0);
+
+        metrics.setRateIntervalMs(sample.getIntervalMs());
+        metrics.setRateSinceStart(sample.isSinceStart());
+    }
+
+    private void failCumulativeCounters(SqlServerActivityMetrics metrics) {
+        metrics.setBatchRequestsPerSec(-1);
+        metrics.setSqlCompilationsPerSec(-1);
+        metrics.setSqlRecompilationsPerSec(-1);
+        metrics.setTransactionsPerSec(-1);
+        metrics.setLockWaitsPerSec(-1);
+        metrics.setTotalWaits(-1);
+        metrics.setAverageWaitTime(-1.0);
+        metrics.setWaitTimeMsPerSec(-1);
+        metrics.setSignalWaitTimeMsPerSec(-1);
+        metrics.setDiskReadsPerSec(-1);
+        metrics.setDiskWritesPerSec(-1);
+        metrics.setDiskReadBytesPerSec(-1);
+        metrics.setDiskWriteBytesPerSec(-1);
+        metrics.setAvgIoLatencyMs(-1);
     }
 
     /**
-     * 采集额外指标
+     * 写入瞬时性能计数器（缓冲区命中率需要除以对应的 base 计数器）
      */
-    private void collectAdditionalMetrics(SqlServerMetricsMapper mapper, SqlServerActivityMetrics metrics) {
-        try {
-            // CPU 使用率
-            Double cpuUsage = mapper.getCpuUsagePercent();
-            if (cpuUsage != null) {
-                metrics.setCpuUsagePercent(cpuUsage);
-            } else {
-                metrics.setCpuUsagePercent(-1.0);
-                logger.error("采集 CPU 使用率失败：返回结果为空");
+    private void applyPerformanceCounters(SqlServerActivityMetrics metrics, List<Map<String, Object>> counters) {
+        if (counters == null || counters.isEmpty()) {
+            throw new IllegalStateException("返回结果为空");
+        }
+        long hitRatio = 0;
+        long hitRatioBase = 0;
+        for (Map<String, Object> counter : counters) {
+            String counterName = getStringValue(counter, "counter_name").trim();
+            long value = getLongValue(counter, "cntr_value");
+
+            switch (counterName) {
+                case "Buffer cache hit ratio":
+                    hitRatio = value;
+                    break;
+                case "Buffer cache hit ratio base":
+                    hitRatioBase = value;
+                    break;
+                case "Page life expectancy":
+                    metrics.setPageLifeExpectancy(value);
+                    break;
             }
+        }
+        metrics.setBufferCacheHitRatio(hitRatioBase > 0 ? hitRatio * 100.0 / hitRatioBase : 0.0);
+    }
 
-            // 活跃事务数
-            Integer activeTransactions = mapper.getActiveTransactions();
-            if (activeTransactions != null) {
-                metrics.setActiveTransactions(activeTransactions);
-            } else {
-                metrics.setActiveTransactions(-1);
-                logger.error("采集活跃事务数失败：返回结果为空");
-            }
+    private void failPerformanceCounters(SqlServerActivityMetrics metrics) {
+        metrics.setBufferCacheHitRatio(-1.0);
+        metrics.setPageLifeExpectancy(-1);
+    }
+
+    private void applyCpuSample(SqlServerActivityMetrics metrics, SqlServerCpuSample sample) {
+        requireResult(sample);
+        metrics.setCpuUsagePercent(sample.getSqlCpuPercent());
+        metrics.setSystemCpuPercent(sample.getSystemCpuPercent());
+    }
 
-            // 采集进程详细信息
-            collectProcessDetails(mapper, metrics);
+    private void failCpuSample(SqlServerActivityMetrics metrics) {
+        metrics.setCpuUsagePercent(-1.0);
+        metrics.setSystemCpuPercent(-1.0);
+    }
 
-            // 采集锁信息
-            collectLockInformation(mapper, metrics);
+    /**
+     * 写入内存统计
+     */
+    private void applyMemoryStats(SqlServerActivityMetrics metrics, Map<String, Object> memoryStats) {
+        requireResult(memoryStats);
+        metrics.setMemoryUsedMB(getLongValue(memoryStats, "memory_used_mb"));
+        metrics.setMemoryAvailableMB(getLongValue(memoryStats, "memory_available_mb"));
+    }
 
-        } catch (Exception e) {
-            metrics.setCpuUsagePercent(-1.0);
-            metrics.setActiveTransactions(-1);
-            logger.error("采集额外指标失败", e);
-        }
+    private void failMemoryStats(SqlServerActivityMetrics metrics) {
+        metrics.setMemoryUsedMB(-1);
+        metrics.setMemoryAvailableMB(-1);
     }
 
     /**
-     * 采集进程详细信息
+     * 读取进程详情的一页，SQL 文本按 sql_handle 从缓存批量解析后逐行交给 consumer
+     * @return 是否还有下一页
      */
-    private void collectProcessDetails(SqlServerMetricsMapper mapper, SqlServerActivityMetrics metrics) {
-        try {
-            List<Map<String, Object>> details = mapper.getProcessDetails();
-            logger.info("进程详情查询结果：{} 条", details == null ? "null" : details.size());
-
-            if (details != null && !details.isEmpty()) {
-                List<SqlServerProcessDetail> processDetails = new ArrayList<>();
-                for (Map<String, Object> row : details) {
-                    SqlServerProcessDetail detail = new SqlServerProcessDetail();
-                    try {
-                        detail.setSessionId(getIntValue(row, "session_id"));
-                        detail.setLoginName(getStringValue(row, "login_name"));
-                        detail.setHostName(getStringValue(row, "host_name"));
-                        detail.setProgramName(getStringValue(row, "program_name"));
-                        detail.setDatabaseName(getStringValue(row, "database_name"));
-                        detail.setStatus(getStringValue(row, "status"));
-                        detail.setCommand(getStringValue(row, "command"));
-                        detail.setCpuTime(getLongValue(row, "cpu_time"));
-                        detail.setLogicalReads(getLongValue(row, "logical_reads"));
-                        detail.setWrites(getLongValue(row, "writes"));
-                        detail.setElapsedTime(getLongValue(row, "elapsed_time"));
-                        detail.setLastSqlText(getStringValue(row, "last_sql_text"));
-                        detail.setStartTime(getStringValue(row, "start_time"));
-
-                        Object blockingId = row.get("blocking_session_id");
-                        if (blockingId instanceof Number) {
-                            detail.setBlockingSessionId(((Number) blockingId).longValue());
-                        }
-
-                        Object waitType = row.get("wait_type");
-                        if (waitType != null) {
-                            detail.setWaitType(waitType.toString());
-                        }
-
-                        Object waitTime = row.get("wait_time");
-                        if (waitTime instanceof Number) {
-                            detail.setWaitTime(((Number) waitTime).longValue());
-                        }
-
-                        processDetails.add(detail);
-                        logger.debug("成功添加进程详情：sessionId={}, program={}, sql={}",
-                                detail.getSessionId(), detail.getProgramName(),
-                                detail.getLastSqlText().substring(0, Math.min(50, detail.getLastSqlText().length())) + "...");
-                    } catch (Exception e) {
-                        logger.warn("处理单个进程详情时出错：row={}, error={}", row, e.getMessage());
-                    }
+    public boolean streamProcessDetails(SqlServerQueryFilter filter, Consumer<SqlServerProcessDetail> consumer) {
+        return streamPage(filter, SqlServerMetricsMapper::getProcessDetails,
+                SqlServerProcessDetail::getSqlHandle, SqlServerProcessDetail::setLastSqlText, consumer, "进程详情");
+    }
 
-                }
-                metrics.setProcessDetails(processDetails);
-                logger.info("成功采集到{}个进程的详细信息", processDetails.size());
-            } else {
-                logger.warn("未采集到进程详细信息，可能是查询结果为空或 SQL 执行失败");
-            }
-        } catch (Exception e) {
-            logger.error("采集进程详细信息失败", e);
-        }
+    /**
+     * 读取锁信息的一页
+     * @return 是否还有下一页
+     */
+    public boolean streamLockInformation(SqlServerQueryFilter filter, Consumer<SqlServerLockInfo> consumer) {
+        return streamPage(filter, SqlServerMetricsMapper::getLockInformation,
+                SqlServerLockInfo::getSqlHandle, SqlServerLockInfo::setSqlText, consumer, "锁信息");
     }
 
     /**
-     * 采集锁信息
+     * 读取活动连接的一页
+     * @return 是否还有下一页
      */
-    private void collectLockInformation(SqlServerMetricsMapper mapper, SqlServerActivityMetrics metrics) {
-        try {
-            List<Map<String, Object>> locks = mapper.getLockInformation();
-            logger.info("锁信息查询结果：{} 条", locks == null ? "null" : locks.size());
-
-            if (locks != null && !locks.isEmpty()) {
-                List<SqlServerLockInfo> lockInfos = new ArrayList<>();
-                for (Map<String, Object> row : locks) {
-                    SqlServerLockInfo lockInfo = new SqlServerLockInfo();
-                    try {
-                        lockInfo.setRequestSessionId(getIntValue(row, "request_session_id"));
-                        lockInfo.setResourceType(getStringValue(row, "resource_type"));
-                        lockInfo.setResourceDescription(getStringValue(row, "resource_description"));
-                        lockInfo.setRequestMode(getStringValue(row, "request_mode"));
-                        lockInfo.setRequestStatus(getStringValue(row, "request_status"));
-                        lockInfo.setDatabaseName(getStringValue(row, "database_name"));
-                        lockInfo.setObjectName(getStringValue(row, "object_name"));
-                        lockInfo.setSqlText(getStringValue(row, "sql_text"));
-
-                        Object waitDuration = row.get("wait_duration_ms");
-                        if (waitDuration instanceof Number) {
-                            lockInfo.setWaitDuration(((Number) waitDuration).longValue());
-                        }
-
-                        lockInfos.add(lockInfo);
-                        logger.debug("成功添加锁信息：sessionId={}, resource={}, sql={}",
-                                lockInfo.getRequestSessionId(), lockInfo.getResourceType(),
-                                lockInfo.getSqlText().substring(0, Math.min(50, lockInfo.getSqlText().length())) + "...");
-                    } catch (Exception e) {
-                        logger.warn("处理单个锁信息时出错：row={}, error={}", row, e.getMessage());
-                    }
+    public boolean streamActiveConnections(SqlServerQueryFilter filter, Consumer<SqlServerConnectionInfo> consumer) {
+        return streamPage(filter, SqlServerMetricsMapper::getActiveConnections,
+                SqlServerConnectionInfo::getSqlHandle, SqlServerConnectionInfo::setSqlText, consumer, "活动连接");
+    }
 
+    /**
+     * 按过滤条件执行分页查询；查询多取的一行只用于判断是否还有下一页。
+     * 一页（最多 {@link SqlServerQueryFilter#MAX_LIMIT} 行）读完后，未缓存的 sql_handle 在同一会话上批量查询一次文本，再逐行回调
+     */
+    private <T> boolean streamPage(SqlServerQueryFilter filter,
+                                   PageQuery<T> query,
+                                   Function<T, byte[]> handleOf,
+                                   BiConsumer<T, String> textSetter,
+                                   Consumer<T> consumer, String name) {
+        boolean[] hasMore = new boolean[1];
+        List<T> rows = new ArrayList<>();
+        try (SqlSession sqlSession = MyBatisConfig.openSession(dataSource)) {
+            SqlServerMetricsMapper mapper = sqlSession.getMapper(SqlServerMetricsMapper.class);
+            query.execute(mapper, filter, context -> {
+                if (context.getResultCount() > filter.getLimit()) {
+                    hasMore[0] = true;
+                    context.stop();
+                    return;
                 }
-                metrics.setLockInfos(lockInfos);
-                logger.info("成功采集到{}个锁的信息", lockInfos.size());
-            } else {
-                logger.info("当前无活跃锁（这是正常状态）");
-            }
-        } catch (Exception e) {
-            logger.error("采集锁信息失败", e);
+                rows.add(context.getResultObject());
+            });
+            resolveSqlTexts(mapper, rows, handleOf, textSetter);
         }
+        rows.forEach(consumer);
+        logger.debug("分页查询{}完成，offset={}，limit={}，hasMore={}", name, filter.getOffset(), filter.getLimit(), hasMore[0]);
+        return hasMore[0];
     }
 
     /**
-     * 直接获取进程详细信息（独立调用）
+     * 汇总采集附带的明细：不带过滤条件取第一页
      */
-    public List<Map<String, Object>> getProcessDetailsDirectly() {
-        SqlSession sqlSession = null;
-        try {
-            sqlSession = MyBatisConfig.getSqlSession();
-            SqlServerMetricsMapper mapper = sqlSession.getMapper(SqlServerMetricsMapper.class);
-            List<Map<String, Object>> details = mapper.getProcessDetails();
-            logger.info("直接查询进程详情：{} 条", details == null ? 0 : details.size());
-            return details;
-        } finally {
-            if (sqlSession != null) {
-                sqlSession.close();
-            }
-        }
+    private <T> Function<SqlServerMetricsMapper, List<T>> firstPage(PageQuery<T> query,
+                                                                     Function<T, byte[]> handleOf,
+                                                                     BiConsumer<T, String> textSetter) {
+        return mapper -> {
+            List<T> rows = new ArrayList<>();
+            query.execute(mapper, SqlServerQueryFilter.firstPage(DETAIL_LIMIT), context -> {
+                if (context.getResultCount() > DETAIL_LIMIT) {
+                    context.stop();
+                    return;
+                }
+                rows.add(context.getResultObject());
+            });
+            resolveSqlTexts(mapper, rows, handleOf, textSetter);
+            return rows;
+        };
     }
 
     /**
-     * 直接获取锁信息（独立调用）
+     * 按 sql_handle 为一批行补充 SQL 文本（没有正在执行的请求或计划已被移出缓存时为空串）
      */
-    public List<Map<String, Object>> getLockInformationDirectly() {
-        SqlSession sqlSession = null;
-        try {
-            sqlSession = MyBatisConfig.getSqlSession();
-            SqlServerMetricsMapper mapper = sqlSession.getMapper(SqlServerMetricsMapper.class);
-            List<Map<String, Object>> locks = mapper.getLockInformation();
-            logger.info("直接查询锁信息：{} 条", locks == null ? 0 : locks.size());
-            return locks;
-        } finally {
-            if (sqlSession != null) {
-                sqlSession.close();
-            }
+    private <T> void resolveSqlTexts(SqlServerMetricsMapper mapper, List<T> rows,
+                                     Function<T, byte[]> handleOf, BiConsumer<T, String> textSetter) {
+        List<byte[]> handles = new ArrayList<>(rows.size());
+        for (T row : rows) {
+            handles.add(handleOf.apply(row));
+        }
+        Map<String, String> texts = sqlTextCache.resolve(mapper, handles);
+        for (T row : rows) {
+            byte[] handle = handleOf.apply(row);
+            String text = handle != null ? texts.get(SqlTextCache.key(handle)) : null;
+            textSetter.accept(row, text != null ? text : "");
         }
     }
 
     /**
-     * 直接获取阻塞链信息（独立调用）
+     * 带过滤条件和结果回调的 Mapper 查询
      */
-    public List<Map<String, Object>> getBlockingChainDirectly() {
-        SqlSession sqlSession = null;
-        try {
-            sqlSession = MyBatisConfig.getSqlSession();
+    @FunctionalInterface
+    private interface PageQuery<T> {
+        void execute(SqlServerMetricsMapper mapper, SqlServerQueryFilter filter, ResultHandler<T> handler);
+    }
+
+    /**
+     * 分析阻塞关系：一次查询取回被阻塞请求的扁平列表，在内存中构建阻塞森林，
+     * 只为头阻塞者（及阻塞环成员）查询会话信息和 SQL 文本，文本按 sql_handle 缓存
+     */
+    public BlockingAnalyzer.Result analyzeBlocking() {
+        try (SqlSession sqlSession = MyBatisConfig.openSession(dataSource)) {
             SqlServerMetricsMapper mapper = sqlSession.getMapper(SqlServerMetricsMapper.class);
-            List<Map<String, Object>> chain = mapper.getBlockingChain();
-            logger.info("直接查询阻塞链：{} 条", chain == null ? 0 : chain.size());
-            return chain;
-        } finally {
-            if (sqlSession != null) {
-                sqlSession.close();
+            BlockingAnalyzer.Result result = BlockingAnalyzer.analyze(mapper.getBlockedRequests());
+
+            List<Integer> rootIds = new ArrayList<>(result.getRootSessionIds());
+            if (rootIds.size() > MAX_BLOCKING_ROOT_DETAILS) {
+                rootIds = rootIds.subList(0, MAX_BLOCKING_ROOT_DETAILS);
             }
+            if (!rootIds.isEmpty()) {
+                Map<Integer, Map<String, Object>> sessions = new HashMap<>();
+                Map<Integer, byte[]> handles = new HashMap<>();
+                for (Map<String, Object> row : mapper.getSessionsBrief(rootIds)) {
+                    int sessionId = getIntValue(row, "session_id");
+                    sessions.put(sessionId, row);
+                    Object handle = row.get("sql_handle");
+                    if (handle instanceof byte[]) {
+                        handles.put(sessionId, (byte[]) handle);
+                    }
+                }
+                Map<String, String> texts = sqlTextCache.resolve(mapper, handles.values());
+                Map<Integer, String> textBySession = new HashMap<>();
+                for (Map.Entry<Integer, byte[]> entry : handles.entrySet()) {
+                    textBySession.put(entry.getKey(), texts.get(SqlTextCache.key(entry.getValue())));
+                }
+                result.attachSessions(sessions, textBySession);
+            }
+            logger.info("阻塞分析完成：被阻塞会话 {} 个，头阻塞者 {} 个，阻塞环 {} 个",
+                    result.getBlockedCount(), result.getHeadBlockerCount(), result.getCycleCount());
+            return result;
         }
     }
 
@@ -401,7 +553,7 @@ public class SqlServerMetricsCollector {
     public List<Map<String, Object>> getTopResourceConsumingSqlDirectly() {
         SqlSession sqlSession = null;
         try {
-            sqlSession = MyBatisConfig.getSqlSession();
+            sqlSession = MyBatisConfig.openSession(dataSource);
             SqlServerMetricsMapper mapper = sqlSession.getMapper(SqlServerMetricsMapper.class);
             List<Map<String, Object>> topSql = mapper.getTopResourceConsumingSql();
             logger.info("直接查询最耗资源 SQL: {} 条", topSql == null ? 0 : topSql.size());
@@ -413,33 +565,34 @@ public class SqlServerMetricsCollector {
         }
     }
 
-    /**
-     * 直接获取活动连接列表（独立调用）
-     */
-    public List<Map<String, Object>> getActiveConnectionsDirectly() {
-        SqlSession sqlSession = null;
-        try {
-            sqlSession = MyBatisConfig.getSqlSession();
-            SqlServerMetricsMapper mapper = sqlSession.getMapper(SqlServerMetricsMapper.class);
-            List<Map<String, Object>> connections = mapper.getActiveConnections();
-            logger.info("直接查询活动连接：{} 条", connections == null ? 0 : connections.size());
-            return connections;
-        } finally {
-            if (sqlSession != null) {
-                sqlSession.close();
-            }
-        }
-    }
-
     /**
      * 直接获取按程序和 SQL 分组的连接统计（独立调用）
      */
     public List<Map<String, Object>> getConnectionsGroupedByProgramAndSqlDirectly() {
         SqlSession sqlSession = null;
         try {
-            sqlSession = MyBatisConfig.getSqlSession();
+            sqlSession = MyBatisConfig.openSession(dataSource);
             SqlServerMetricsMapper mapper = sqlSession.getMapper(SqlServerMetricsMapper.class);
             List<Map<String, Object>> groupedStats = mapper.getConnectionsGroupedByProgramAndSql();
+            List<byte[]> handles = new ArrayList<>(groupedStats.size());
+            for (Map<String, Object> group : groupedStats) {
+                Object handle = group.get("sql_handle");
+                if (handle instanceof byte[]) {
+                    handles.add((byte[]) handle);
+                }
+            }
+            // 分组键是 sql_handle，文本解析后只输出前 200 个字符
+            Map<String, String> texts = sqlTextCache.resolve(mapper, handles);
+            for (Map<String, Object> group : groupedStats) {
+                Object handle = group.remove("sql_handle");
+                String text = handle instanceof byte[] ? texts.get(SqlTextCache.key((byte[]) handle)) : null;
+                if (text == null) {
+                    text = "";
+                } else if (text.length() > GROUP_SQL_TEXT_LENGTH) {
+                    text = text.substring(0, GROUP_SQL_TEXT_LENGTH);
+                }
+                group.put("sql_text", text);
+            }
             logger.info("直接查询分组连接统计：{} 组", groupedStats == null ? 0 : groupedStats.size());
             return groupedStats;
         } finally {
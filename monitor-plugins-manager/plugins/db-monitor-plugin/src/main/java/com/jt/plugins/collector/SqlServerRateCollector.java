@@ -0,0 +1,136 @@
+package com.jt.plugins.collector;
+
+import java.util.Map;
+
+/**
+ * @BelongsProject: jt-server-monitor
+ * @BelongsPackage: com.jt.plugins.collector
+ * @Author: 别来无恙qb
+ * @CreateTime: 2026-03-18  10:20
+ * @Description: 累计计数器速率计算器 - 按目标保存上一次采样，计算真实的每秒速率与区间增量
+ * @Version: 1.0
+ */
+public class SqlServerRateCollector {
+
+    // ========== 计数器ID（对应采样数组下标） ==========
+    public static final int BATCH_REQUESTS = 0;
+    public static final int SQL_COMPILATIONS = 1;
+    public static final int SQL_RECOMPILATIONS = 2;
+    public static final int TRANSACTIONS = 3;
+    public static final int LOCK_WAITS = 4;
+    public static final int WAIT_COUNT = 5;
+    public static final int WAIT_TIME_MS = 6;
+    public static final int SIGNAL_WAIT_TIME_MS = 7;
+    public static final int DISK_READS = 8;
+    public static final int DISK_WRITES = 9;
+    public static final int BYTES_READ = 10;
+    public static final int BYTES_WRITTEN = 11;
+    public static final int IO_STALL_MS = 12;
+
+    // 计数器ID -> 查询结果列名（getCumulativeCounters）
+    private static final String[] COLUMNS = {
+            "batch_requests", "sql_compilations", "sql_recompilations", "transactions", "lock_waits",
+            "wait_count", "wait_time_ms", "signal_wait_time_ms",
+            "disk_reads", "disk_writes", "bytes_read", "bytes_written", "io_stall_ms"
+    };
+
+    public static final int COUNTER_COUNT = COLUMNS.length;
+
+    // 两次采样的最小间隔（毫秒），间隔过短时复用上一次结果，避免并发请求得到噪声很大的速率
+    private static final long MIN_INTERVAL_MS = 1000L;
+
+    // 上一次采样值
+    private final long[] previous = new long[COUNTER_COUNT];
+
+    // 上一次采样时实例已运行时长（毫秒），-1 表示尚无采样
+    private long previousUptimeMs = -1;
+
+    // 实例启动时刻的 ms_ticks，变化说明实例已重启
+    private long previousStartTicks;
+
+    // 最近一次计算结果
+    private RateSample lastSample;
+
+    /**
+     * 用一行累计计数器计算速率
+     * 首次采样或实例重启后，以实例启动时刻（所有计数器为 0）为基线，得到启动以来的平均速率
+     * @param row getCumulativeCounters 查询结果
+     * @return 速率采样
+     */
+    public synchronized RateSample update(Map<String, Object> row) {
+        long uptimeMs = getLong(row, "uptime_ms");
+        long startTicks = getLong(row, "start_ms_ticks");
+
+        boolean restarted = previousUptimeMs < 0 || startTicks != previousStartTicks || uptimeMs < previousUptimeMs;
+        if (!restarted && lastSample != null && uptimeMs - previousUptimeMs < MIN_INTERVAL_MS) {
+            return lastSample;
+        }
+
+        long intervalMs = restarted ? uptimeMs : uptimeMs - previousUptimeMs;
+        long[] deltas = new long[COUNTER_COUNT];
+        double[] rates = new double[COUNTER_COUNT];
+        for (int i = 0; i < COUNTER_COUNT; i++) {
+            long current = getLong(row, COLUMNS[i]);
+            long delta;
+            if (restarted) {
+                delta = current;
+            } else if (current < previous[i]) {
+                // 单个计数器被清零（如 DBCC SQLPERF CLEAR），清零后的累计值即为区间增量
+                delta = current;
+            } else {
+                delta = current - previous[i];
+            }
+            deltas[i] = delta;
+            rates[i] = intervalMs > 0 ? delta * 1000.0 / intervalMs : 0.0;
+            previous[i] = current;
+        }
+        previousUptimeMs = uptimeMs;
+        previousStartTicks = startTicks;
+
+        lastSample = new RateSample(deltas, rates, intervalMs, restarted);
+        return lastSample;
+    }
+
+    private static long getLong(Map<String, Object> row, String key) {
+        Object value = row.get(key);
+        return value instanceof Number ? ((Number) value).longValue() : 0L;
+    }
+
+    /**
+     * 一次速率计算结果
+     */
+    public static class RateSample {
+        private final long[] deltas;
+        private final double[] rates;
+        private final long intervalMs;
+        private final boolean sinceStart;
+
+        RateSample(long[] deltas, double[] rates, long intervalMs, boolean sinceStart) {
+            this.deltas = deltas;
+            this.rates = rates;
+            this.intervalMs = intervalMs;
+            this.sinceStart = sinceStart;
+        }
+
+        /**
+         * 区间增量
+         */
+        public long delta(int counterId) {
+            return deltas[counterId];
+        }
+
+        /**
+         * 每秒速率
+         */
+        public double rate(int counterId) {
+            return rates[counterId];
+        }
+
+        public long getIntervalMs() { return intervalMs; }
+
+        /**
+         * 是否为实例启动以来的平均值（首次采样或实例重启后）
+         */
+        public boolean isSinceStart() { return sinceStart; }
+    }
+}
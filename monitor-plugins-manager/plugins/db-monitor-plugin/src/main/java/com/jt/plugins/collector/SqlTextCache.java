@@ -0,0 +1,147 @@
+package com.jt.plugins.collector;
+
+import com.alibaba.fastjson.JSONObject;
+import com.jt.plugins.mapper.SqlServerMetricsMapper;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * @BelongsProject: jt-server-monitor
+ * @BelongsPackage: com.jt.plugins.collector
+ * @Author: 别来无恙qb
+ * @CreateTime: 2026-03-21  11:00
+ * @Description: 按 sql_handle 缓存的 SQL 文本（每个监控目标一个，LRU 淘汰）
+ *
+ * sql_handle 由批处理文本的哈希生成，同一个句柄对应的文本不会变化，可以长期缓存；
+ * 未命中的句柄分批通过一次 dm_exec_sql_text 查询获取，计划已被移出缓存的句柄不会缓存。
+ * @Version: 1.0
+ */
+public class SqlTextCache {
+
+    // 缓存条目上限
+    private static final int MAX_ENTRIES = 5000;
+
+    // 缓存文本总字符数上限
+    private static final long MAX_TOTAL_CHARS = 8L * 1024 * 1024;
+
+    // 单条文本最多缓存的字符数
+    private static final int MAX_TEXT_LENGTH = 64 * 1024;
+
+    // 每批查询的句柄数（SQL Server 单条语句最多 2100 个参数）
+    private static final int BATCH_SIZE = 200;
+
+    private static final char[] HEX_DIGITS = "0123456789ABCDEF".toCharArray();
+
+    private final LinkedHashMap<String, String> cache = new LinkedHashMap<>(256, 0.75f, true);
+    private long totalChars;
+    private long hits;
+    private long misses;
+
+    /**
+     * 句柄的缓存键（十六进制）
+     */
+    public static String key(byte[] handle) {
+        StringBuilder sb = new StringBuilder(handle.length * 2 + 2).append("0x");
+        for (byte b : handle) {
+            sb.append(HEX_DIGITS[(b >> 4) & 0xF]).append(HEX_DIGITS[b & 0xF]);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * 获取一组句柄的 SQL 文本，未缓存的分批查询
+     * @param mapper 当前会话的 Mapper
+     * @param handles sql_handle 列表（可重复、可包含 null）
+     * @return 句柄键 -> 文本（服务端已不存在的句柄不包含在结果中）
+     */
+    public Map<String, String> resolve(SqlServerMetricsMapper mapper, Collection<byte[]> handles) {
+        Map<String, String> result = new HashMap<>();
+        Map<String, byte[]> missing = new LinkedHashMap<>();
+        synchronized (this) {
+            for (byte[] handle : handles) {
+                if (handle == null) {
+                    continue;
+                }
+                String key = key(handle);
+                if (result.containsKey(key) || missing.containsKey(key)) {
+                    continue;
+                }
+                String text = cache.get(key);
+                if (text != null) {
+                    hits++;
+                    result.put(key, text);
+                } else {
+                    misses++;
+                    missing.put(key, handle);
+                }
+            }
+        }
+
+        List<byte[]> pending = new ArrayList<>(missing.values());
+        for (int from = 0; from < pending.size(); from += BATCH_SIZE) {
+            List<byte[]> batch = pending.subList(from, Math.min(from + BATCH_SIZE, pending.size()));
+            for (Map<String, Object> row : mapper.getSqlTexts(batch)) {
+                Object handle = row.get("sql_handle");
+                Object text = row.get("sql_text");
+                if (!(handle instanceof byte[]) || text == null) {
+                    continue;
+                }
+                String key = key((byte[]) handle);
+                String value = text.toString();
+                if (value.length() > MAX_TEXT_LENGTH) {
+                    value = value.substring(0, MAX_TEXT_LENGTH);
+                }
+                result.put(key, value);
+                put(key, value);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 获取单个句柄的文本，未命中时查询
+     */
+    public String resolve(SqlServerMetricsMapper mapper, byte[] handle) {
+        if (handle == null) {
+            return null;
+        }
+        List<byte[]> handles = new ArrayList<>(1);
+        handles.add(handle);
+        return resolve(mapper, handles).get(key(handle));
+    }
+
+    private synchronized void put(String key, String text) {
+        String previous = cache.put(key, text);
+        if (previous != null) {
+            totalChars -= previous.length();
+        }
+        totalChars += text.length();
+        Iterator<Map.Entry<String, String>> iterator = cache.entrySet().iterator();
+        while ((cache.size() > MAX_ENTRIES || totalChars > MAX_TOTAL_CHARS) && iterator.hasNext()) {
+            Map.Entry<String, String> eldest = iterator.next();
+            if (eldest.getKey().equals(key)) {
+                break;
+            }
+            totalChars -= eldest.getValue().length();
+            iterator.remove();
+        }
+    }
+
+    /**
+     * 缓存统计
+     */
+    public synchronized JSONObject getStats() {
+        JSONObject stats = new JSONObject();
+        stats.put("entries", cache.size());
+        stats.put("totalChars", totalChars);
+        stats.put("hits", hits);
+        stats.put("misses", misses);
+        return stats;
+    }
+}
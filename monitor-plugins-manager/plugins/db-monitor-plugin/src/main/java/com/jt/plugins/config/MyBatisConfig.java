@@ -1,64 +1,74 @@
 package com.jt.plugins.config;
 
 import com.jt.plugins.common.log.PluginLogger;
-import org.apache.ibatis.mapping.Environment;
+import org.apache.ibatis.builder.xml.XMLMapperBuilder;
+import org.apache.ibatis.exceptions.PersistenceException;
 import org.apache.ibatis.session.Configuration;
 import org.apache.ibatis.session.SqlSession;
 import org.apache.ibatis.session.SqlSessionFactory;
 import org.apache.ibatis.session.SqlSessionFactoryBuilder;
-import org.apache.ibatis.transaction.TransactionFactory;
-import org.apache.ibatis.transaction.jdbc.JdbcTransactionFactory;
+import org.apache.ibatis.session.defaults.DefaultSqlSession;
+import org.apache.ibatis.transaction.managed.ManagedTransaction;
 
 import javax.sql.DataSource;
 import java.io.InputStream;
+import java.sql.Connection;
+import java.sql.SQLException;
+
 /**
  * MyBatis配置管理器
+ * 映射语句只解析一次并在所有监控目标间共享；会话按目标的连接池取连接，
+ * 不同目标可并发采集，互不干扰
  */
 public class MyBatisConfig {
 
     private static final PluginLogger logger = PluginLogger.getLogger("db-monitor-plugin");
-    private static SqlSessionFactory sqlSessionFactory;
 
     /**
-     * 初始化 MyBatis 配置
+     * 共享的会话工厂（Configuration 不绑定数据源，类加载时解析一次）
      */
-    public static void initialize(DataSource dataSource) {
-        try {
-            TransactionFactory transactionFactory = new JdbcTransactionFactory();
-            Environment environment = new Environment("development", transactionFactory, dataSource);
+    private static class FactoryHolder {
+        private static final SqlSessionFactory FACTORY = build();
+    }
 
-            Configuration configuration = new Configuration(environment);
+    private MyBatisConfig() {
+    }
+
+    /**
+     * 构建共享配置，注册 Mapper 接口并解析 XML 映射文件
+     */
+    private static SqlSessionFactory build() {
+        try {
+            Configuration configuration = new Configuration();
             configuration.setLazyLoadingEnabled(true);
             configuration.setAggressiveLazyLoading(false);
+            // 语句超时兜底（秒），防止采集超时放弃后查询仍长期占用连接
+            configuration.setDefaultStatementTimeout(30);
 
             // 注册 Mapper 接口
             configuration.addMapper(com.jt.plugins.mapper.SqlServerMetricsMapper.class);
 
-            // 添加 XML 映射文件 - 正确的加载方式
+            // 添加 XML 映射文件
             String xmlPath = "mapper/SqlServerMetricsMapper.xml";
             InputStream xmlStream = MyBatisConfig.class.getClassLoader().getResourceAsStream(xmlPath);
-            
+
             if (xmlStream != null) {
                 logger.info("找到 XML 映射文件：{}", xmlPath);
-                
-                // 使用 XMLMapperBuilder 解析 XML
-                org.apache.ibatis.builder.xml.XMLMapperBuilder xmlMapperBuilder = 
-                    new org.apache.ibatis.builder.xml.XMLMapperBuilder(
+                XMLMapperBuilder xmlMapperBuilder = new XMLMapperBuilder(
                         xmlStream,
                         configuration,
                         xmlPath,
                         configuration.getSqlFragments()
-                    );
-                
+                );
                 xmlMapperBuilder.parse();
                 logger.info("XML 映射文件加载成功");
             } else {
                 logger.warn("未找到 XML 映射文件：{}, 将使用注解方式", xmlPath);
             }
 
-            sqlSessionFactory = new SqlSessionFactoryBuilder().build(configuration);
-
+            SqlSessionFactory factory = new SqlSessionFactoryBuilder().build(configuration);
             logger.info("MyBatis 配置初始化完成");
+            return factory;
 
         } catch (Exception e) {
             logger.error("MyBatis 配置初始化失败", e);
@@ -67,21 +77,62 @@ public class MyBatisConfig {
     }
 
     /**
-     * 获取SqlSession
+     * 获取共享的会话工厂
+     */
+    public static SqlSessionFactory getSqlSessionFactory() {
+        return FactoryHolder.FACTORY;
+    }
+
+    /**
+     * 从目标连接池借出连接并打开会话，会话关闭时连接归还连接池
      */
-    public static SqlSession getSqlSession() {
-        if (sqlSessionFactory == null) {
-            throw new IllegalStateException("MyBatis未初始化，请先调用initialize方法");
+    public static SqlSession openSession(DataSource dataSource) {
+        Connection connection = getConnection(dataSource);
+        try {
+            return FactoryHolder.FACTORY.openSession(connection);
+        } catch (RuntimeException e) {
+            closeQuietly(connection);
+            throw e;
         }
-        return sqlSessionFactory.openSession();
     }
 
     /**
-     * 获取Mapper实例
+     * 打开会话，会话内每条语句的查询超时不超过 timeoutSeconds（取与语句超时兜底中较小者）
+     * 超时由 JDBC 驱动在服务端取消语句，调用方放弃等待后连接不会被慢查询长期占用
      */
-    public static <T> T getMapper(Class<T> mapperClass) {
-        try (SqlSession sqlSession = getSqlSession()) {
-            return sqlSession.getMapper(mapperClass);
+    public static SqlSession openSession(DataSource dataSource, int timeoutSeconds) {
+        Connection connection = getConnection(dataSource);
+        try {
+            Configuration configuration = FactoryHolder.FACTORY.getConfiguration();
+            ManagedTransaction transaction = new ManagedTransaction(connection, true) {
+                @Override
+                public Integer getTimeout() {
+                    return timeoutSeconds;
+                }
+            };
+            return new DefaultSqlSession(configuration, configuration.newExecutor(transaction), connection.getAutoCommit());
+        } catch (SQLException e) {
+            closeQuietly(connection);
+            throw new PersistenceException("打开数据库会话失败：" + e.getMessage(), e);
+        } catch (RuntimeException e) {
+            closeQuietly(connection);
+            throw e;
+        }
+    }
+
+    private static Connection getConnection(DataSource dataSource) {
+        try {
+            return dataSource.getConnection();
+        } catch (SQLException e) {
+            throw new PersistenceException("获取数据库连接失败：" + e.getMessage(), e);
+        }
+    }
+
+    private static void closeQuietly(Connection connection) {
+        try {
+            connection.close();
+        } catch (SQLException ignored) {
+            // 忽略
         }
     }
 }
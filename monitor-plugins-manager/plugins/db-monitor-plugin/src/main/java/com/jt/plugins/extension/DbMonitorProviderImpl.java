@@ -1,17 +1,32 @@
 package com.jt.plugins.extension;
 
+import com.alibaba.fastjson.JSONArray;
 import com.alibaba.fastjson.JSONObject;
 import com.jt.plugins.sqlserver.SqlServerConnectionManager;
+import com.jt.plugins.sqlserver.SqlServerPoolRegistry;
+import com.jt.plugins.sqlserver.SqlServerTarget;
+import com.jt.plugins.storage.TimeSeriesStore;
+import com.jt.plugins.storage.TopSqlRollupStore;
+import com.jt.plugins.collector.BlockingAnalyzer;
+import com.jt.plugins.collector.CpuHistoryTracker;
+import com.jt.plugins.collector.DbMetricsScheduler;
+import com.jt.plugins.collector.QueryStatsTracker;
 import com.jt.plugins.collector.SqlServerMetricsCollector;
 import com.jt.plugins.model.SqlServerActivityMetrics;  // 添加这个导入
+import com.jt.plugins.model.SqlServerCpuSample;
+import com.jt.plugins.model.SqlServerQueryDelta;
+import com.jt.plugins.model.SqlServerQueryFilter;
+import com.jt.plugins.common.annotation.ActionDispatcher;
 import com.jt.plugins.common.annotation.ActionHandler;
 import com.jt.plugins.common.file.PluginFileStorage;
 import com.jt.plugins.common.http.ExtensionRequestParam;
 import com.jt.plugins.common.log.PluginLogger;
 import com.jt.plugins.common.result.ResultMsg;
 
-import java.lang.reflect.Method;
-import java.util.HashMap;
+import java.lang.invoke.MethodHandles;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -31,69 +46,46 @@ public class DbMonitorProviderImpl implements DbMonitorProvider {
     // 插件文件存储管理器
     private static final PluginFileStorage fileStorage = PluginFileStorage.getStorage("db-monitor-plugin");
 
-    // 缓存方法映射，避免每次反射查找
-    private static final Map<String, Method> ACTION_HANDLERS = new HashMap<>();
+    // 历史指标查询未指定步长时的最大返回点数
+    private static final int MAX_QUERY_POINTS = 1000;
 
-    // 在类加载时初始化方法映射
-    static {
-        Method[] methods = DbMonitorProviderImpl.class.getDeclaredMethods();
-        for (Method method : methods) {
-            ActionHandler annotation = method.getAnnotation(ActionHandler.class);
-            if (annotation != null) {
-                ACTION_HANDLERS.put(annotation.value(), method);
-            }
-        }
-    }
+    // 历史指标查询的最大桶数
+    private static final int MAX_QUERY_BUCKETS = 10000;
+
+    // Top SQL 增量查询的最大返回条数
+    private static final int MAX_TOP_SQL = 100;
+
+    // CPU 历史最大时间范围（分钟），与调度器监视环形缓冲区的保留长度一致
+    private static final int MAX_CPU_HISTORY_MINUTES = 256;
+
+    // 处理方法在类加载时一次性绑定，按 targetAction 直接调用
+    private static final ActionDispatcher DISPATCHER =
+            ActionDispatcher.create(MethodHandles.lookup(), DbMonitorProviderImpl.class, "数据库监控", logger);
 
     @Override
     public ResultMsg<JSONObject> execute(ExtensionRequestParam extensionRequestParam) {
-        String targetAction = extensionRequestParam.getTargetAction();
-        logger.info("开始执行数据库监控操作: {}", targetAction);
-
-        // 参数校验
-        if (targetAction == null || targetAction.isEmpty()) {
-            logger.warn("操作类型不能为空");
-            return ResultMsg.fail("操作类型不能为空");
-        }
+        return DISPATCHER.dispatch(this, extensionRequestParam);
+    }
 
-        // 根据targetAction查找对应的处理方法
-        Method handlerMethod = ACTION_HANDLERS.get(targetAction);
+    @Override
+    public long cacheTtlMs(String targetAction) {
+        return DISPATCHER.getCacheTtlMs(targetAction);
+    }
 
-        if (handlerMethod != null) {
-            try {
-                // 调用对应的方法处理请求
-                logger.info("调用处理方法: {}", handlerMethod.getName());
-                ResultMsg<JSONObject> result = (ResultMsg<JSONObject>) handlerMethod.invoke(this, extensionRequestParam);
-                logger.info("数据库监控操作执行完成: {}", targetAction);
-                return result;
-            } catch (Exception e) {
-                logger.error("执行数据库监控操作失败: {}", targetAction, e);
-                // 区分不同类型的异常并抛出相应的错误信息
-                Throwable cause = e.getCause();
-                if (cause != null) {
-                    if (cause instanceof SecurityException) {
-                        return ResultMsg.fail("权限不足：" + cause.getMessage());
-                    } else if (cause instanceof IllegalArgumentException) {
-                        return ResultMsg.fail("参数错误：" + cause.getMessage());
-                    } else if (cause instanceof IllegalStateException) {
-                        return ResultMsg.fail("状态错误：" + cause.getMessage());
-                    } else {
-                        return ResultMsg.fail("执行操作失败：" + cause.getMessage());
-                    }
-                }
-                e.printStackTrace();
-                return ResultMsg.fail("执行操作失败：" + e.getMessage());
-            }
-        }
+    @Override
+    public long timeoutMs(String targetAction) {
+        return DISPATCHER.getTimeoutMs(targetAction);
+    }
 
-        logger.warn("不支持的操作类型: {}", targetAction);
-        return ResultMsg.fail("不支持的操作类型：" + targetAction);
+    @Override
+    public boolean readOnly(String targetAction) {
+        return DISPATCHER.isReadOnly(targetAction);
     }
 
     /**
      * 获取数据库活动监视器完整数据（汇总版）
      *
-     * @param extensionRequestParam 请求参数（host, port, database, username, password）
+     * @param extensionRequestParam 请求参数（target 或 host, port, database, username, password；queryTimeout 单项查询超时秒数，默认 10）
      * @return 包含所有 SSMS 活动监视器指标的完整数据
      *
      * 返回数据结构说明：
@@ -102,100 +94,79 @@ public class DbMonitorProviderImpl implements DbMonitorProvider {
      *   "runningProcesses": 1,             // 正在运行的进程数
      *   "suspendedProcesses": 0,           // 挂起等待的进程数
      *   "blockedProcesses": 0,             // 被阻塞的进程数
-     *   "totalWaits": 1061,                // 总等待次数
-     *   "averageWaitTime": 4772352.0,      // 平均等待时间 (毫秒)
-     *   "batchRequestsPerSec": 0,          // 每秒批处理请求数
-     *   "sqlCompilationsPerSec": 0,        // 每秒 SQL 编译次数
-     *   "sqlRecompilationsPerSec": 0,      // 每秒 SQL 重新编译次数
-     *   "bufferCacheHitRatio": 0.0,        // 缓冲缓存命中率 (%)
+     *   "totalWaits": 1061,                // 采样区间内的等待次数
+     *   "averageWaitTime": 3.2,            // 采样区间内平均每次等待时间 (毫秒)
+     *   "batchRequestsPerSec": 152.4,      // 每秒批处理请求数（区间速率，下同）
+     *   "sqlCompilationsPerSec": 12.0,     // 每秒 SQL 编译次数
+     *   "sqlRecompilationsPerSec": 0.2,    // 每秒 SQL 重新编译次数
+     *   "transactionsPerSec": 98.6,        // 每秒事务数
+     *   "lockWaitsPerSec": 0.4,            // 每秒锁等待次数
+     *   "waitTimeMsPerSec": 850.0,         // 每秒累计等待时间 (毫秒)
+     *   "signalWaitTimeMsPerSec": 40.0,    // 每秒信号等待时间 (毫秒，反映 CPU 压力)
+     *   "bufferCacheHitRatio": 99.8,       // 缓冲缓存命中率 (%)
      *   "pageLifeExpectancy": 0,           // 页面预期生命周期 (秒)
      *   "memoryUsedMB": 128,               // SQL Server 已使用内存 (MB)
      *   "memoryAvailableMB": 540,          // 可用内存 (MB)
-     *   "diskReadsPerSec": 740,            // 每秒磁盘读取次数
-     *   "diskWritesPerSec": 6672,          // 每秒磁盘写入次数
-     *   "cpuUsagePercent": 7.69,           // CPU 使用率 (%)
+     *   "diskReadsPerSec": 74.0,           // 每秒磁盘读取次数
+     *   "diskWritesPerSec": 66.7,          // 每秒磁盘写入次数
+     *   "diskReadBytesPerSec": 606208.0,   // 每秒读取字节数
+     *   "diskWriteBytesPerSec": 546406.4,  // 每秒写入字节数
+     *   "avgIoLatencyMs": 1.8,             // 区间内平均 I/O 延迟 (毫秒/次)
+     *   "rateIntervalMs": 5012,            // 速率计算区间 (毫秒，取自服务端运行时长)
+     *   "rateSinceStart": false,           // true 表示首次采样或实例重启后，速率为实例启动以来的平均值
+     *   "cpuUsagePercent": 6.0,            // SQL Server 进程 CPU 使用率 (%，调度器监视记录最近一分钟)
+     *   "systemCpuPercent": 18.0,          // 整机 CPU 使用率 (%)
      *   "activeTransactions": 7,           // 活跃事务数
+     *   "collectDurationMs": 85,           // 采集耗时 (毫秒，各项并发执行，约等于最慢的单项查询)
      *   "processDetails": [...],           // 进程详细信息列表（见 getProcessDetails 接口）
      *   "lockInfos": [...],                // 锁信息列表（见 getLockInformation 接口）
      *   "errorInfo": {                     // 错误信息对象
      *       "hasError": false,             // 是否有采集失败的项目
      *       "errorItems": "",              // 失败的项目名称
-     *       "errorMessage": ""             // 错误描述
+     *       "errorMessage": "",            // 错误描述
+     *       "errorDetails": {              // 失败项目 -> 失败原因（仅 hasError 为 true 时存在）
+     *           "等待统计": "查询超时（10000 ms）"
+     *       }
      *   }
      * }
      */
-    @ActionHandler("getDbMetrics")
+    @ActionHandler(value = "getDbMetrics", cacheTtlMs = 1000)
     public ResultMsg<JSONObject> getDbMetrics(ExtensionRequestParam extensionRequestParam) {
         logger.debug("开始获取 SQL Server 活动监视器数据");
 
-        SqlServerConnectionManager connectionManager = null;
         try {
-            // 获取数据库连接参数
-            String host = extensionRequestParam.getParameter("host", "localhost");
-            int port = Integer.parseInt(extensionRequestParam.getParameter("port", "1433"));
-            String database = extensionRequestParam.getParameter("database", "master");
-            String username = extensionRequestParam.getParameter("username");
-            String password = extensionRequestParam.getParameter("password");
-            int timeout = Integer.parseInt(extensionRequestParam.getParameter("timeout", "30"));
-
-            // 参数验证
-            if (username == null || username.isEmpty()) {
-                return ResultMsg.fail("用户名不能为空");
-            }
-            if (password == null || password.isEmpty()) {
-                return ResultMsg.fail("密码不能为空");
-            }
-
-            // 创建连接管理器
-            connectionManager = new SqlServerConnectionManager(
-                host, port, database, username, password, timeout);
+            // 从连接池注册表获取长期连接池（不再每次请求新建和关闭）
+            SqlServerConnectionManager connectionManager = getConnectionManager(extensionRequestParam);
 
-            // 测试连接
-            if (!connectionManager.testConnection()) {
-                return ResultMsg.fail("无法连接到 SQL Server 数据库");
+            // 创建数据采集器并采集数据
+            // 单项查询超时（秒）
+            int queryTimeout = Integer.parseInt(extensionRequestParam.getParameter("queryTimeout", "10"));
+            if (queryTimeout <= 0) {
+                return ResultMsg.fail("参数错误：queryTimeout 必须大于 0");
             }
 
-            // 创建数据采集器并采集数据
-            SqlServerMetricsCollector collector = new SqlServerMetricsCollector(connectionManager.getDataSource());
-            SqlServerActivityMetrics metrics = collector.collectActivityMetrics();
+            // 创建数据采集器，各项指标并发采集
+            SqlServerMetricsCollector collector = new SqlServerMetricsCollector(connectionManager);
+            SqlServerActivityMetrics metrics = collector.collectActivityMetrics(queryTimeout * 1000L);
 
             // 构建返回结果
             JSONObject resultData = metrics.toJSON();
-            resultData.put("host", host);
-            resultData.put("port", port);
-            resultData.put("database", database);
-
-            // 检查是否有采集失败的项目（值为 -1）
-            StringBuilder errorItems = new StringBuilder();
-            if (metrics.getTotalProcesses() == -1) {
-                errorItems.append("进程信息 ");
-            }
-            if (metrics.getTotalWaits() == -1) {
-                errorItems.append("等待统计 ");
-            }
-            if (metrics.getBatchRequestsPerSec() == -1) {
-                errorItems.append("性能计数器 ");
-            }
-            if (metrics.getMemoryUsedMB() == -1) {
-                errorItems.append("内存统计 ");
-            }
-            if (metrics.getDiskReadsPerSec() == -1) {
-                errorItems.append("I/O 统计 ");
-            }
-            if (metrics.getCpuUsagePercent() == -1.0) {
-                errorItems.append("CPU 使用率 ");
-            }
-            if (metrics.getActiveTransactions() == -1) {
-                errorItems.append("活跃事务数 ");
-            }
+            resultData.put("host", connectionManager.getHost());
+            resultData.put("port", connectionManager.getPort());
+            resultData.put("database", connectionManager.getDatabase());
+
+            // 检查是否有采集失败的项目（失败项的值为 -1）
+            Map<String, String> collectErrors = metrics.getCollectErrors();
 
             // 将错误信息单独放在一个对象中
             JSONObject errorInfo = new JSONObject();
-            if (errorItems.length() > 0) {
+            if (!collectErrors.isEmpty()) {
+                String errorItems = String.join(" ", collectErrors.keySet());
                 errorInfo.put("hasError", true);
-                errorInfo.put("errorItems", errorItems.toString().trim());
-                errorInfo.put("errorMessage", "部分监控项采集失败（值为 -1），请查看日志获取详细信息");
-                logger.warn("部分监控项采集失败：{}", errorItems.toString());
+                errorInfo.put("errorItems", errorItems);
+                errorInfo.put("errorMessage", "部分监控项采集失败（值为 -1），请查看 errorDetails 或日志获取详细信息");
+                errorInfo.put("errorDetails", new JSONObject(new LinkedHashMap<>(collectErrors)));
+                logger.warn("部分监控项采集失败：{}", errorItems);
             } else {
                 errorInfo.put("hasError", false);
             }
@@ -215,22 +186,23 @@ public class DbMonitorProviderImpl implements DbMonitorProvider {
         } catch (NumberFormatException e) {
             logger.error("参数格式错误", e);
             return ResultMsg.fail("参数格式错误：" + e.getMessage());
+        } catch (IllegalArgumentException e) {
+            return ResultMsg.fail("参数错误：" + e.getMessage());
         } catch (Exception e) {
             logger.error("获取数据库监控数据失败", e);
             return ResultMsg.fail("获取数据库监控数据失败：" + e.getMessage());
-        } finally {
-            // 清理资源
-            if (connectionManager != null) {
-                connectionManager.close();
-            }
         }
     }
 
     /**
      * 获取进程详细信息列表
      *
-     * @param extensionRequestParam 请求参数（host, port, database, username, password）
-     * @return 当前所有活动进程的详细信息
+     * @param extensionRequestParam 请求参数（target 或 host, port, database, username, password）
+     *   filterDatabase  只返回该数据库的会话（可选）
+     *   login           只返回该登录名的会话（可选）
+     *   minWait         最小等待时间（毫秒，可选）
+     *   offset / limit  分页，默认 0 / 100，limit 最大 1000
+     * @return 当前活动进程的详细信息（服务端过滤和分页，按 CPU 耗时降序）
      *
      * 返回数据结构说明：
      * {
@@ -254,56 +226,50 @@ public class DbMonitorProviderImpl implements DbMonitorProvider {
      *       "startTime": "2026-03-05..."     // 会话开始时间
      *     }
      *   ],
-     *   "count": 15                          // 进程总数
+     *   "count": 15,                         // 本页条数
+     *   "offset": 0,                         // 本页起始位置
+     *   "limit": 100,                        // 每页条数
+     *   "hasMore": false                     // 是否还有下一页
      * }
      */
-    @ActionHandler("getProcessDetails")
+    @ActionHandler(value = "getProcessDetails", readOnly = true)
     public ResultMsg<JSONObject> getProcessDetails(ExtensionRequestParam extensionRequestParam) {
         logger.info("开始获取进程详细信息");
 
-        SqlServerConnectionManager connectionManager = null;
         try {
-            // 获取连接参数
-            String host = extensionRequestParam.getParameter("host", "localhost");
-            int port = Integer.parseInt(extensionRequestParam.getParameter("port", "1433"));
-            String database = extensionRequestParam.getParameter("database", "master");
-            String username = extensionRequestParam.getParameter("username");
-            String password = extensionRequestParam.getParameter("password");
-
-            if (username == null || username.isEmpty() || password == null || password.isEmpty()) {
-                return ResultMsg.fail("用户名和密码不能为空");
-            }
-
-            connectionManager = new SqlServerConnectionManager(host, port, database, username, password, 30);
-
-            if (!connectionManager.testConnection()) {
-                return ResultMsg.fail("无法连接到数据库");
-            }
+            SqlServerQueryFilter filter = parseQueryFilter(extensionRequestParam);
+            SqlServerConnectionManager connectionManager = getConnectionManager(extensionRequestParam);
 
-            SqlServerMetricsCollector collector = new SqlServerMetricsCollector(connectionManager.getDataSource());
-            List<Map<String, Object>> processDetails = collector.getProcessDetailsDirectly();
+            SqlServerMetricsCollector collector = new SqlServerMetricsCollector(connectionManager);
+            // 每行映射后直接写入响应数组，不保留中间结果
+            JSONArray processDetails = new JSONArray();
+            boolean hasMore = collector.streamProcessDetails(filter, detail -> processDetails.add(detail.toJSON()));
 
-            JSONObject resultData = new JSONObject();
+            JSONObject resultData = pageResult(filter, hasMore);
             resultData.put("processDetails", processDetails);
             resultData.put("count", processDetails.size());
 
             return ResultMsg.success(resultData, "成功获取进程详细信息，共 " + processDetails.size() + " 条");
 
+        } catch (NumberFormatException e) {
+            return ResultMsg.fail("参数格式错误：" + e.getMessage());
+        } catch (IllegalArgumentException e) {
+            return ResultMsg.fail("参数错误：" + e.getMessage());
         } catch (Exception e) {
             logger.error("获取进程详细信息失败", e);
             return ResultMsg.fail("获取进程详细信息失败：" + e.getMessage());
-        } finally {
-            if (connectionManager != null) {
-                connectionManager.close();
-            }
         }
     }
 
     /**
      * 获取锁信息列表
      *
-     * @param extensionRequestParam 请求参数（host, port, database, username, password）
-     * @return 当前所有活跃的锁信息
+     * @param extensionRequestParam 请求参数（target 或 host, port, database, username, password）
+     *   filterDatabase  只返回该数据库上的锁（可选）
+     *   login           只返回该登录名会话持有或等待的锁（可选）
+     *   minWait         最小等待时间（毫秒，可选，大于 0 时只返回等待中的锁）
+     *   offset / limit  分页，默认 0 / 100，limit 最大 1000
+     * @return 当前活跃的锁信息（服务端过滤和分页，按等待时长降序）
      *
      * 返回数据结构说明：
      * {
@@ -320,122 +286,192 @@ public class DbMonitorProviderImpl implements DbMonitorProvider {
      *       "sqlText": "UPDATE Orders..."    // 导致锁的 SQL 语句
      *     }
      *   ],
-     *   "count": 5                           // 锁的总数
+     *   "count": 5,                          // 本页条数
+     *   "offset": 0,                         // 本页起始位置
+     *   "limit": 100,                        // 每页条数
+     *   "hasMore": false                     // 是否还有下一页
      * }
      */
-    @ActionHandler("getLockInformation")
+    @ActionHandler(value = "getLockInformation", readOnly = true)
     public ResultMsg<JSONObject> getLockInformation(ExtensionRequestParam extensionRequestParam) {
         logger.info("开始获取锁信息");
 
-        SqlServerConnectionManager connectionManager = null;
         try {
-            String host = extensionRequestParam.getParameter("host", "localhost");
-            int port = Integer.parseInt(extensionRequestParam.getParameter("port", "1433"));
-            String database = extensionRequestParam.getParameter("database", "master");
-            String username = extensionRequestParam.getParameter("username");
-            String password = extensionRequestParam.getParameter("password");
+            SqlServerQueryFilter filter = parseQueryFilter(extensionRequestParam);
+            SqlServerConnectionManager connectionManager = getConnectionManager(extensionRequestParam);
 
-            if (username == null || username.isEmpty() || password == null || password.isEmpty()) {
-                return ResultMsg.fail("用户名和密码不能为空");
-            }
-
-            connectionManager = new SqlServerConnectionManager(host, port, database, username, password, 30);
-
-            if (!connectionManager.testConnection()) {
-                return ResultMsg.fail("无法连接到数据库");
-            }
-
-            SqlServerMetricsCollector collector = new SqlServerMetricsCollector(connectionManager.getDataSource());
-            List<Map<String, Object>> lockInfos = collector.getLockInformationDirectly();
+            SqlServerMetricsCollector collector = new SqlServerMetricsCollector(connectionManager);
+            JSONArray lockInfos = new JSONArray();
+            boolean hasMore = collector.streamLockInformation(filter, lockInfo -> lockInfos.add(lockInfo.toJSON()));
 
-            JSONObject resultData = new JSONObject();
+            JSONObject resultData = pageResult(filter, hasMore);
             resultData.put("lockInfos", lockInfos);
             resultData.put("count", lockInfos.size());
 
             return ResultMsg.success(resultData, "成功获取锁信息，共 " + lockInfos.size() + " 条");
 
+        } catch (NumberFormatException e) {
+            return ResultMsg.fail("参数格式错误：" + e.getMessage());
+        } catch (IllegalArgumentException e) {
+            return ResultMsg.fail("参数错误：" + e.getMessage());
         } catch (Exception e) {
             logger.error("获取锁信息失败", e);
             return ResultMsg.fail("获取锁信息失败：" + e.getMessage());
-        } finally {
-            if (connectionManager != null) {
-                connectionManager.close();
-            }
+        }
+    }
+
+    /**
+     * 获取活动连接列表
+     *
+     * @param extensionRequestParam 请求参数（target 或 host, port, database, username, password）
+     *   filterDatabase  只返回该数据库的连接（可选）
+     *   login           只返回该登录名的连接（可选）
+     *   minWait         最小等待时间（毫秒，可选）
+     *   offset / limit  分页，默认 0 / 100，limit 最大 1000
+     * @return 用户会话列表（服务端过滤和分页，按会话累计 CPU 降序）
+     *
+     * 返回数据结构说明：
+     * {
+     *   "connections": [                     // 连接数组
+     *     {
+     *       "sessionId": 52,                 // 会话 ID
+     *       "loginName": "sa",               // 登录用户名
+     *       "hostName": "WEB-SERVER-01",     // 客户端主机名
+     *       "programName": "Java App",       // 应用程序名称
+     *       "status": "sleeping",            // 会话状态
+     *       "databaseName": "TestDB",        // 数据库名称
+     *       "loginTime": "2026-03-05...",    // 登录时间
+     *       "cpuTime": 1250,                 // 会话累计 CPU 时间 (毫秒)
+     *       "reads": 120,                    // 会话累计物理读取
+     *       "writes": 35,                    // 会话累计写入
+     *       "logicalReads": 4500,            // 会话累计逻辑读取
+     *       "requestStatus": "running",      // 当前请求状态（无请求时为空）
+     *       "command": "SELECT",             // 当前请求命令
+     *       "requestCpuTime": 20,            // 当前请求 CPU 时间 (毫秒)
+     *       "totalElapsedTime": 35,          // 当前请求耗时 (毫秒)
+     *       "waitType": null,                // 等待类型
+     *       "waitTime": 0,                   // 等待时间 (毫秒)
+     *       "blockingSessionId": 0,          // 阻塞它的会话 ID
+     *       "sqlText": "SELECT * FROM..."    // 当前请求的 SQL 语句
+     *     }
+     *   ],
+     *   "count": 15,                         // 本页条数
+     *   "offset": 0,                         // 本页起始位置
+     *   "limit": 100,                        // 每页条数
+     *   "hasMore": false                     // 是否还有下一页
+     * }
+     */
+    @ActionHandler(value = "getActiveConnections", readOnly = true)
+    public ResultMsg<JSONObject> getActiveConnections(ExtensionRequestParam extensionRequestParam) {
+        logger.info("开始获取活动连接");
+
+        try {
+            SqlServerQueryFilter filter = parseQueryFilter(extensionRequestParam);
+            SqlServerConnectionManager connectionManager = getConnectionManager(extensionRequestParam);
+
+            SqlServerMetricsCollector collector = new SqlServerMetricsCollector(connectionManager);
+            JSONArray connections = new JSONArray();
+            boolean hasMore = collector.streamActiveConnections(filter, connection -> connections.add(connection.toJSON()));
+
+            JSONObject resultData = pageResult(filter, hasMore);
+            resultData.put("connections", connections);
+            resultData.put("count", connections.size());
+
+            return ResultMsg.success(resultData, "成功获取活动连接，共 " + connections.size() + " 条");
+
+        } catch (NumberFormatException e) {
+            return ResultMsg.fail("参数格式错误：" + e.getMessage());
+        } catch (IllegalArgumentException e) {
+            return ResultMsg.fail("参数错误：" + e.getMessage());
+        } catch (Exception e) {
+            logger.error("获取活动连接失败", e);
+            return ResultMsg.fail("获取活动连接失败：" + e.getMessage());
         }
     }
 
     /**
      * 获取阻塞链信息
      *
-     * @param extensionRequestParam 请求参数（host, port, database, username, password）
-     * @return 数据库阻塞链信息（用于排查死锁和阻塞问题）
+     * @param extensionRequestParam 请求参数（target 或 host, port, database, username, password）
+     * @return 数据库阻塞关系（用于排查阻塞问题）；只取被阻塞请求的扁平列表，在插件内构建阻塞树，
+     *         仅为头阻塞者和阻塞环成员获取 SQL 文本（按 sql_handle 缓存）
      *
      * 返回数据结构说明：
      * {
-     *   "blockingChain": [                   // 阻塞链数组
+     *   "headBlockers": [                    // 头阻塞者（自身未被阻塞），按阻塞会话数降序
+     *     {
+     *       "sessionId": 53,                 // 会话 ID
+     *       "directBlocked": 2,              // 直接阻塞的会话数
+     *       "totalBlocked": 5,               // 直接和间接阻塞的会话总数
+     *       "maxDepth": 3,                   // 阻塞树深度
+     *       "maxWaitTime": 15000,            // 被阻塞会话的最长等待时间 (毫秒)
+     *       "loginName": "user1",            // 登录名
+     *       "hostName": "SERVER-01",         // 主机名
+     *       "programName": "SSMS",           // 程序名
+     *       "databaseName": "TestDB",        // 数据库名
+     *       "status": "sleeping",            // 会话状态（sleeping 且有未提交事务是常见原因）
+     *       "command": "sleeping",           // 当前命令
+     *       "waitType": null,                // 当前等待类型
+     *       "openTransactionCount": 1,       // 未提交事务数
+     *       "sqlText": "UPDATE ..."          // 正在执行（或最近一次执行）的 SQL
+     *     }
+     *   ],
+     *   "cycles": [                          // 阻塞环（互相阻塞）
+     *     {
+     *       "sessions": [60, 61],            // 环上的会话
+     *       "directBlocked": 1,
+     *       "totalBlocked": 1,               // 被环阻塞的其他会话数
+     *       "maxDepth": 1,
+     *       "maxWaitTime": 3000,
+     *       "members": [ { "sessionId": 60, "loginName": "...", "sqlText": "..." } ]
+     *     }
+     *   ],
+     *   "blockingChain": [                   // 被阻塞的会话，按头阻塞者、层级排序
      *     {
      *       "sessionId": 54,                 // 被阻塞的会话 ID
      *       "blockingSessionId": 53,         // 阻塞它的会话 ID
+     *       "headBlocker": 53,               // 所属头阻塞者（环中为环的代表会话）
+     *       "level": 1,                      // 距头阻塞者的层级（1=直接被阻塞，环成员为 0）
+     *       "inCycle": false,                // 是否在阻塞环中
      *       "waitType": "LCK_M_X",           // 等待类型
      *       "waitTime": 15000,               // 等待时间 (毫秒)
      *       "waitResource": "KEY:...",       // 等待的资源
-     *       "level": 1,                      // 阻塞层级（0=最外层，越大表示阻塞越深）
+     *       "command": "UPDATE",             // 命令类型
      *       "loginName": "user1",            // 登录名
      *       "hostName": "SERVER-01",         // 主机名
      *       "programName": "SSMS",           // 程序名
-     *       "databaseName": "TestDB",        // 数据库名
-     *       "command": "UPDATE",             // 命令类型
-     *       "sqlText": "UPDATE ..."          // SQL 语句
+     *       "databaseName": "TestDB"         // 数据库名
      *     }
      *   ],
-     *   "count": 3                           // 阻塞链中的会话数
+     *   "blockedCount": 3,                   // 被阻塞的会话数
+     *   "count": 3                           // blockingChain 条数
      * }
      */
-    @ActionHandler("getBlockingChain")
+    @ActionHandler(value = "getBlockingChain", readOnly = true)
     public ResultMsg<JSONObject> getBlockingChain(ExtensionRequestParam extensionRequestParam) {
         logger.info("开始获取阻塞链信息");
 
-        SqlServerConnectionManager connectionManager = null;
         try {
-            String host = extensionRequestParam.getParameter("host", "localhost");
-            int port = Integer.parseInt(extensionRequestParam.getParameter("port", "1433"));
-            String database = extensionRequestParam.getParameter("database", "master");
-            String username = extensionRequestParam.getParameter("username");
-            String password = extensionRequestParam.getParameter("password");
-
-            if (username == null || username.isEmpty() || password == null || password.isEmpty()) {
-                return ResultMsg.fail("用户名和密码不能为空");
-            }
+            SqlServerConnectionManager connectionManager = getConnectionManager(extensionRequestParam);
 
-            connectionManager = new SqlServerConnectionManager(host, port, database, username, password, 30);
+            SqlServerMetricsCollector collector = new SqlServerMetricsCollector(connectionManager);
+            BlockingAnalyzer.Result result = collector.analyzeBlocking();
 
-            if (!connectionManager.testConnection()) {
-                return ResultMsg.fail("无法连接到数据库");
-            }
-
-            SqlServerMetricsCollector collector = new SqlServerMetricsCollector(connectionManager.getDataSource());
-            List<Map<String, Object>> blockingChain = collector.getBlockingChainDirectly();
-
-            JSONObject resultData = new JSONObject();
-            resultData.put("blockingChain", blockingChain);
-            resultData.put("count", blockingChain.size());
-
-            return ResultMsg.success(resultData, "成功获取阻塞链信息，共 " + blockingChain.size() + " 条");
+            return ResultMsg.success(result.toJSON(), "成功获取阻塞链信息，被阻塞会话 " + result.getBlockedCount()
+                    + " 个，头阻塞者 " + result.getHeadBlockerCount() + " 个");
 
+        } catch (IllegalArgumentException e) {
+            return ResultMsg.fail("参数错误：" + e.getMessage());
         } catch (Exception e) {
             logger.error("获取阻塞链信息失败", e);
             return ResultMsg.fail("获取阻塞链信息失败：" + e.getMessage());
-        } finally {
-            if (connectionManager != null) {
-                connectionManager.close();
-            }
         }
     }
 
     /**
      * 获取最耗资源的 SQL TOP 10
      *
-     * @param extensionRequestParam 请求参数（host, port, database, username, password）
+     * @param extensionRequestParam 请求参数（target 或 host, port, database, username, password）
      * @return 消耗 CPU 资源最多的前 10 条 SQL 语句
      *
      * 返回数据结构说明：
@@ -457,29 +493,14 @@ public class DbMonitorProviderImpl implements DbMonitorProvider {
      *   "count": 10                          // SQL 数量
      * }
      */
-    @ActionHandler("getTopResourceSql")
+    @ActionHandler(value = "getTopResourceSql", readOnly = true)
     public ResultMsg<JSONObject> getTopResourceSql(ExtensionRequestParam extensionRequestParam) {
         logger.info("开始获取最耗资源的 SQL");
 
-        SqlServerConnectionManager connectionManager = null;
         try {
-            String host = extensionRequestParam.getParameter("host", "localhost");
-            int port = Integer.parseInt(extensionRequestParam.getParameter("port", "1433"));
-            String database = extensionRequestParam.getParameter("database", "master");
-            String username = extensionRequestParam.getParameter("username");
-            String password = extensionRequestParam.getParameter("password");
-
-            if (username == null || username.isEmpty() || password == null || password.isEmpty()) {
-                return ResultMsg.fail("用户名和密码不能为空");
-            }
+            SqlServerConnectionManager connectionManager = getConnectionManager(extensionRequestParam);
 
-            connectionManager = new SqlServerConnectionManager(host, port, database, username, password, 30);
-
-            if (!connectionManager.testConnection()) {
-                return ResultMsg.fail("无法连接到数据库");
-            }
-
-            SqlServerMetricsCollector collector = new SqlServerMetricsCollector(connectionManager.getDataSource());
+            SqlServerMetricsCollector collector = new SqlServerMetricsCollector(connectionManager);
             List<Map<String, Object>> topSqlList = collector.getTopResourceConsumingSqlDirectly();
 
             JSONObject resultData = new JSONObject();
@@ -488,20 +509,18 @@ public class DbMonitorProviderImpl implements DbMonitorProvider {
 
             return ResultMsg.success(resultData, "成功获取最耗资源的 SQL TOP 10");
 
+        } catch (IllegalArgumentException e) {
+            return ResultMsg.fail("参数错误：" + e.getMessage());
         } catch (Exception e) {
             logger.error("获取最耗资源的 SQL 失败", e);
             return ResultMsg.fail("获取最耗资源的 SQL 失败：" + e.getMessage());
-        } finally {
-            if (connectionManager != null) {
-                connectionManager.close();
-            }
         }
     }
 
     /**
      * 获取按程序和 SQL 分组的连接统计
      *
-     * @param extensionRequestParam 请求参数（host, port, database, username, password）
+     * @param extensionRequestParam 请求参数（target 或 host, port, database, username, password）
      * @return 按 program_name 和 sql_text 分组的连接使用统计
      *
      * 返回数据结构说明：
@@ -536,29 +555,14 @@ public class DbMonitorProviderImpl implements DbMonitorProvider {
      *   }
      * }
      */
-    @ActionHandler("getConnectionStatsByProgram")
+    @ActionHandler(value = "getConnectionStatsByProgram", cacheTtlMs = 1000)
     public ResultMsg<JSONObject> getConnectionStatsByProgram(ExtensionRequestParam extensionRequestParam) {
         logger.info("开始获取按程序和 SQL 分组的连接统计");
         
-        SqlServerConnectionManager connectionManager = null;
         try {
-            String host = extensionRequestParam.getParameter("host", "localhost");
-            int port = Integer.parseInt(extensionRequestParam.getParameter("port", "1433"));
-            String database = extensionRequestParam.getParameter("database", "master");
-            String username = extensionRequestParam.getParameter("username");
-            String password = extensionRequestParam.getParameter("password");
-            
-            if (username == null || username.isEmpty() || password == null || password.isEmpty()) {
-                return ResultMsg.fail("用户名和密码不能为空");
-            }
+            SqlServerConnectionManager connectionManager = getConnectionManager(extensionRequestParam);
             
-            connectionManager = new SqlServerConnectionManager(host, port, database, username, password, 30);
-            
-            if (!connectionManager.testConnection()) {
-                return ResultMsg.fail("无法连接到数据库");
-            }
-            
-            SqlServerMetricsCollector collector = new SqlServerMetricsCollector(connectionManager.getDataSource());
+            SqlServerMetricsCollector collector = new SqlServerMetricsCollector(connectionManager);
             List<Map<String, Object>> groupedStats = collector.getConnectionsGroupedByProgramAndSqlDirectly();
             
             JSONObject resultData = new JSONObject();
@@ -589,16 +593,511 @@ public class DbMonitorProviderImpl implements DbMonitorProvider {
             return ResultMsg.success(resultData, 
                 "成功获取连接分组统计，共 " + groupedStats.size() + " 个不同的程序/SQL 组合");
             
+        } catch (IllegalArgumentException e) {
+            return ResultMsg.fail("参数错误：" + e.getMessage());
         } catch (Exception e) {
             logger.error("获取连接分组统计失败", e);
             return ResultMsg.fail("获取连接分组统计失败：" + e.getMessage());
-        } finally {
-            if (connectionManager != null) {
-                connectionManager.close();
-            }
         }
     }
     
+    /**
+     * 登记命名监控目标（连接池在首次使用时创建，跨请求复用）
+     *
+     * @param extensionRequestParam 请求参数（name, host, port, database, credentialId, username, password, timeout, collectInterval）
+     *                              username/password 不为空时同时登记凭据，credentialId 默认与 name 相同；
+     *                              collectInterval 为后台定时采集间隔（秒，0 表示不采集，最小 5）
+     * @return 目标定义
+     *
+     * 返回数据结构说明：
+     * {
+     *   "name": "erp-prod",                  // 目标名称（其它操作通过 target 参数引用）
+     *   "host": "10.0.0.12",                 // 主机
+     *   "port": 1433,                        // 端口
+     *   "database": "master",                // 数据库
+     *   "credentialId": "erp-prod",          // 凭据ID
+     *   "connectionTimeout": 30,             // 登录超时 (秒)
+     *   "collectInterval": 15                // 后台定时采集间隔 (秒，0 表示不采集)
+     * }
+     */
+    @ActionHandler("registerDbTarget")
+    public ResultMsg<JSONObject> registerDbTarget(ExtensionRequestParam extensionRequestParam) {
+        try {
+            String name = extensionRequestParam.getParameter("name");
+            if (name == null || name.isEmpty()) {
+                return ResultMsg.fail("目标名称不能为空");
+            }
+            String host = extensionRequestParam.getParameter("host", "localhost");
+            int port = Integer.parseInt(extensionRequestParam.getParameter("port", "1433"));
+            String database = extensionRequestParam.getParameter("database", "master");
+            String credentialId = extensionRequestParam.getParameter("credentialId", name);
+            int timeout = Integer.parseInt(extensionRequestParam.getParameter("timeout", "30"));
+            int collectInterval = Integer.parseInt(extensionRequestParam.getParameter("collectInterval", "0"));
+            String username = extensionRequestParam.getParameter("username");
+            String password = extensionRequestParam.getParameter("password");
+
+            if (collectInterval < 0 || (collectInterval > 0 && collectInterval < 5)) {
+                return ResultMsg.fail("参数错误：collectInterval 必须为 0 或不小于 5 秒");
+            }
+
+            SqlServerPoolRegistry registry = SqlServerPoolRegistry.getInstance();
+            if (username != null && !username.isEmpty() && password != null && !password.isEmpty()) {
+                registry.registerCredential(credentialId, username, password);
+            }
+            SqlServerTarget target = new SqlServerTarget(name, host, port, database, credentialId, timeout, collectInterval);
+            registry.registerTarget(target);
+            if (collectInterval > 0) {
+                DbMetricsScheduler.getInstance().start();
+            }
+
+            return ResultMsg.success(target.toJSON(), "监控目标登记成功：" + name);
+        } catch (NumberFormatException e) {
+            return ResultMsg.fail("参数格式错误：" + e.getMessage());
+        } catch (Exception e) {
+            logger.error("登记监控目标失败", e);
+            return ResultMsg.fail("登记监控目标失败：" + e.getMessage());
+        }
+    }
+
+    /**
+     * 移除命名监控目标并关闭其连接池
+     *
+     * @param extensionRequestParam 请求参数（name）
+     * @return 移除结果
+     *
+     * 返回数据结构说明：
+     * {
+     *   "name": "erp-prod",                  // 目标名称
+     *   "removed": true                      // 目标是否存在并已移除
+     * }
+     */
+    @ActionHandler("removeDbTarget")
+    public ResultMsg<JSONObject> removeDbTarget(ExtensionRequestParam extensionRequestParam) {
+        String name = extensionRequestParam.getParameter("name");
+        if (name == null || name.isEmpty()) {
+            return ResultMsg.fail("目标名称不能为空");
+        }
+        JSONObject resultData = new JSONObject();
+        resultData.put("name", name);
+        resultData.put("removed", SqlServerPoolRegistry.getInstance().removeTarget(name));
+        return ResultMsg.success(resultData, "移除监控目标成功：" + name);
+    }
+
+    /**
+     * 获取所有监控目标及连接池统计
+     *
+     * @param extensionRequestParam 请求参数（无）
+     * @return 目标列表
+     *
+     * 返回数据结构说明：
+     * {
+     *   "targets": [
+     *     {
+     *       "name": "erp-prod",              // 目标名称（临时目标为 adhoc:用户@主机:端口/数据库#凭据摘要）
+     *       "host": "10.0.0.12",
+     *       "port": 1433,
+     *       "database": "master",
+     *       "credentialId": "erp-prod",
+     *       "connectionTimeout": 30,
+     *       "collectInterval": 15,
+     *       "adhoc": false,                  // 是否为请求直接携带连接参数产生的临时目标
+     *       "pooled": true,                  // 连接池是否已创建
+     *       "poolStats": {                   // 连接池统计（pooled 为 true 时存在）
+     *         "numActive": 0,                // 借出中的连接数
+     *         "numIdle": 1,                  // 空闲连接数
+     *         "maxTotal": 10,                // 最大连接数
+     *         "accessCount": 1520,           // 被请求使用次数
+     *         "createTime": 1710640000000,   // 连接池创建时间
+     *         "lastAccessTime": 1710647600000, // 最后使用时间
+     *         "closed": false
+     *       },
+     *       "collector": {                   // 后台采集状态（仅定时采集的目标存在）
+     *         "running": false,              // 是否正在采集
+     *         "lastCollectTime": 1710647600000,
+     *         "lastDurationMs": 85,
+     *         "nextDueTime": 1710647615000,
+     *         "successCount": 240,
+     *         "failureCount": 0,
+     *         "lastError": null              // 最近一次失败原因或失败项目
+     *       }
+     *     }
+     *   ],
+     *   "count": 1
+     * }
+     */
+    @ActionHandler(value = "listDbTargets", readOnly = true)
+    public ResultMsg<JSONObject> listDbTargets(ExtensionRequestParam extensionRequestParam) {
+        JSONArray targets = SqlServerPoolRegistry.getInstance().listTargets();
+        for (int i = 0; i < targets.size(); i++) {
+            JSONObject target = targets.getJSONObject(i);
+            JSONObject status = DbMetricsScheduler.getInstance().getStatus(target.getString("name"));
+            if (status != null) {
+                target.put("collector", status);
+            }
+        }
+        JSONObject resultData = new JSONObject();
+        resultData.put("targets", targets);
+        resultData.put("count", targets.size());
+        return ResultMsg.success(resultData, "成功获取监控目标，共 " + targets.size() + " 个");
+    }
+
+    /**
+     * 查询后台采集的历史指标
+     *
+     * @param extensionRequestParam 请求参数
+     *   target       目标名称（必填）
+     *   metrics      指标名，逗号分隔，默认全部（可选值见 availableMetrics）
+     *   start / end  时间范围（毫秒时间戳），默认最近 1 小时
+     *   step         聚合步长（秒），默认按最多 1000 个点自动计算，原始点数不超过 1000 时返回原始数据
+     *   aggregation  聚合方式 avg/min/max/sum/last/count，默认 avg
+     * @return 按列组织的时间序列
+     *
+     * 返回数据结构说明：
+     * {
+     *   "target": "erp-prod",
+     *   "start": 1710644000000,
+     *   "end": 1710647600000,
+     *   "step": 15,                          // 实际使用的步长 (秒，0 表示原始数据)
+     *   "aggregation": "avg",
+     *   "points": 240,                       // 返回的点数
+     *   "rawPoints": 240,                    // 范围内的原始采样点数
+     *   "timestamps": [1710644000000, ...],  // 时间戳（聚合时为桶起始时间）
+     *   "series": {                          // 指标 -> 数值数组（与 timestamps 对应，采集失败为 null）
+     *     "batchRequestsPerSec": [152.4, ...],
+     *     "cpuUsagePercent": [7.69, ...]
+     *   },
+     *   "availableMetrics": ["totalProcesses", ...]
+     * }
+     */
+    @ActionHandler(value = "queryDbMetrics", readOnly = true)
+    public ResultMsg<JSONObject> queryDbMetrics(ExtensionRequestParam extensionRequestParam) {
+        try {
+            String target = extensionRequestParam.getParameter("target");
+            if (target == null || target.isEmpty()) {
+                return ResultMsg.fail("参数错误：target 不能为空");
+            }
+
+            String[] metricNames = DbMetricsScheduler.METRIC_NAMES;
+            String metricsParam = extensionRequestParam.getParameter("metrics");
+            if (metricsParam != null && !metricsParam.trim().isEmpty()) {
+                metricNames = metricsParam.split("\\s*,\\s*");
+            }
+            int[] columns = new int[metricNames.length];
+            for (int i = 0; i < metricNames.length; i++) {
+                columns[i] = DbMetricsScheduler.metricIndex(metricNames[i].trim());
+                if (columns[i] < 0) {
+                    return ResultMsg.fail("参数错误：不支持的指标 " + metricNames[i]);
+                }
+            }
+
+            long now = System.currentTimeMillis();
+            long end = Long.parseLong(extensionRequestParam.getParameter("end", String.valueOf(now)));
+            long start = Long.parseLong(extensionRequestParam.getParameter("start", String.valueOf(end - 60 * 60 * 1000L)));
+            // 不查询早于保留期限的数据
+            start = Math.max(start, now - (DbMetricsScheduler.getRetentionDays() + 1) * 24L * 60 * 60 * 1000);
+            if (start > end) {
+                return ResultMsg.fail("参数错误：start 不能晚于 end");
+            }
+
+            String aggregation = extensionRequestParam.getParameter("aggregation", "avg");
+            if (!Arrays.asList("avg", "min", "max", "sum", "last", "count").contains(aggregation)) {
+                return ResultMsg.fail("参数错误：不支持的聚合方式 " + aggregation);
+            }
+
+            TimeSeriesStore store;
+            try {
+                store = DbMetricsScheduler.getInstance().findStore(target);
+            } catch (IllegalArgumentException e) {
+                return ResultMsg.fail("参数错误：" + e.getMessage());
+            }
+            if (store == null) {
+                return ResultMsg.fail("参数错误：目标 " + target + " 没有历史指标数据");
+            }
+            TimeSeriesStore.Points raw = store.query(start, end, columns);
+
+            long stepMs = Long.parseLong(extensionRequestParam.getParameter("step", "0")) * 1000L;
+            if (stepMs <= 0 && raw.size() > MAX_QUERY_POINTS) {
+                stepMs = ((end - start) / MAX_QUERY_POINTS / 1000 + 1) * 1000L;
+            }
+            if (stepMs > 0 && (end - start) / stepMs >= MAX_QUERY_BUCKETS) {
+                return ResultMsg.fail("参数错误：step 过小，单次最多返回 " + MAX_QUERY_BUCKETS + " 个点");
+            }
+            TimeSeriesStore.Points points = stepMs > 0 ? raw.downsample(start, end, stepMs, aggregation) : raw;
+
+            JSONArray timestamps = new JSONArray();
+            JSONObject series = new JSONObject(true);
+            JSONArray[] columnsData = new JSONArray[metricNames.length];
+            for (int k = 0; k < metricNames.length; k++) {
+                columnsData[k] = new JSONArray();
+                series.put(metricNames[k].trim(), columnsData[k]);
+            }
+            for (int i = 0; i < points.size(); i++) {
+                timestamps.add(points.timestamp(i));
+                for (int k = 0; k < metricNames.length; k++) {
+                    double value = points.value(i, k);
+                    columnsData[k].add(Double.isNaN(value) ? null : value);
+                }
+            }
+
+            JSONObject resultData = new JSONObject();
+            resultData.put("target", target);
+            resultData.put("start", start);
+            resultData.put("end", end);
+            resultData.put("step", stepMs / 1000);
+            resultData.put("aggregation", aggregation);
+            resultData.put("points", points.size());
+            resultData.put("rawPoints", raw.size());
+            resultData.put("timestamps", timestamps);
+            resultData.put("series", series);
+            resultData.put("availableMetrics", DbMetricsScheduler.METRIC_NAMES);
+            return ResultMsg.success(resultData, "成功查询历史指标，共 " + points.size() + " 个点");
+        } catch (NumberFormatException e) {
+            return ResultMsg.fail("参数格式错误：" + e.getMessage());
+        } catch (Exception e) {
+            logger.error("查询历史指标失败", e);
+            return ResultMsg.fail("查询历史指标失败：" + e.getMessage());
+        }
+    }
+
+    /**
+     * 获取一段时间内消耗增长最多的 SQL（区间增量，而不是实例启动以来的累计值）
+     *
+     * @param extensionRequestParam 请求参数
+     *   target    目标名称；已开启后台采集的目标从 Top SQL 汇总中查询最近 minutes 分钟
+     *   minutes   时间窗口（分钟），默认 5，范围 1-1440，仅后台汇总支持
+     *   orderBy   排序方式 cpu/reads/duration/writes/executions，默认 cpu
+     *   topN      返回条数，默认 10，最多 100
+     *   未开启后台采集的目标（或 host, port, database, username, password 临时连接）实时采样，
+     *   返回与该连接池上一次调用（任意调用方）之间的增量，首次调用只建立基线；此时传入 minutes 返回参数错误。
+     *   实时采样会推进连接池共享的基线，因此该操作不是只读操作，不能被订阅定时执行
+     * @return 按增量排序的查询列表
+     *
+     * 返回数据结构说明：
+     * {
+     *   "source": "history",                 // history：后台汇总；live：实时采样
+     *   "baseline": false,                   // 实时采样首次调用时为 true（无增量数据）
+     *   "from": 1710647300000,               // 实际覆盖的开始时间
+     *   "to": 1710647600000,                 // 实际覆盖的结束时间
+     *   "intervals": 5,                      // 覆盖的采样区间数
+     *   "orderBy": "cpu",
+     *   "topSqlList": [
+     *     {
+     *       "queryHash": "0x1A2B3C4D5E6F7081",  // 查询哈希（相同语句模板的不同计划合并统计）
+     *       "executions": 1200,              // 区间内执行次数
+     *       "cpuTimeMs": 8500.5,             // 区间内 CPU 时间 (毫秒)
+     *       "elapsedTimeMs": 12000.2,        // 区间内总耗时 (毫秒)
+     *       "logicalReads": 450000,          // 区间内逻辑读取
+     *       "logicalWrites": 300,            // 区间内逻辑写入
+     *       "avgCpuTimeMs": 7.08,            // 平均 CPU 时间 (毫秒)
+     *       "avgElapsedTimeMs": 10.0,        // 平均耗时 (毫秒)
+     *       "avgLogicalReads": 375.0,        // 平均逻辑读取
+     *       "databaseName": "TestDB",        // 数据库名称
+     *       "sqlText": "SELECT * FROM..."    // 语句文本
+     *     }
+     *   ],
+     *   "count": 10
+     * }
+     * 后台汇总每个区间只保留 CPU/逻辑读/耗时各自的前 20 名，窗口内的合计是这些区间记录之和。
+     */
+    @ActionHandler("getTopSqlDelta")
+    public ResultMsg<JSONObject> getTopSqlDelta(ExtensionRequestParam extensionRequestParam) {
+        try {
+            String minutesParam = extensionRequestParam.getParameter("minutes");
+            int minutes = minutesParam == null || minutesParam.isEmpty() ? 5 : Integer.parseInt(minutesParam);
+            if (minutes < 1 || minutes > 24 * 60) {
+                return ResultMsg.fail("参数错误：minutes 取值范围为 1-1440");
+            }
+            String orderBy = extensionRequestParam.getParameter("orderBy", "cpu");
+            Comparator<SqlServerQueryDelta> comparator = SqlServerQueryDelta.comparator(orderBy);
+            if (comparator == null) {
+                return ResultMsg.fail("参数错误：不支持的排序方式 " + orderBy);
+            }
+            int topN = Integer.parseInt(extensionRequestParam.getParameter("topN", "10"));
+            if (topN < 1 || topN > MAX_TOP_SQL) {
+                return ResultMsg.fail("参数错误：topN 取值范围为 1-" + MAX_TOP_SQL);
+            }
+
+            String target = extensionRequestParam.getParameter("target");
+            SqlServerTarget registered = target == null || target.isEmpty()
+                    ? null : SqlServerPoolRegistry.getInstance().getTarget(target);
+            boolean history = registered != null && registered.getCollectIntervalSeconds() > 0
+                    && DbMetricsScheduler.getTopSqlIntervalSeconds() > 0;
+
+            JSONObject resultData = new JSONObject();
+            List<SqlServerQueryDelta> queries;
+            if (history) {
+                long end = System.currentTimeMillis();
+                TopSqlRollupStore.Summary summary = DbMetricsScheduler.getInstance().getTopSqlStore(target)
+                        .query(end - minutes * 60 * 1000L, end);
+                queries = summary.getQueries();
+                resultData.put("source", "history");
+                resultData.put("baseline", false);
+                resultData.put("from", summary.getFirstStart());
+                resultData.put("to", summary.getLastEnd());
+                resultData.put("intervals", summary.getIntervals());
+            } else {
+                if (minutesParam != null && !minutesParam.isEmpty()) {
+                    return ResultMsg.fail("参数错误：目标未开启后台采集，实时采样返回与上一次调用之间的增量，不支持 minutes");
+                }
+                SqlServerConnectionManager connectionManager = getConnectionManager(extensionRequestParam);
+                QueryStatsTracker.Interval interval = connectionManager.getQueryStatsTracker()
+                        .sample(connectionManager.getDataSource(), Math.max(topN, QueryStatsTracker.DEFAULT_TOP_K));
+                queries = interval.getTop();
+                resultData.put("source", "live");
+                resultData.put("baseline", interval.isBaseline());
+                resultData.put("from", interval.getStartTime());
+                resultData.put("to", interval.getEndTime());
+                resultData.put("intervals", interval.isBaseline() ? 0 : 1);
+            }
+
+            queries.sort(comparator);
+            JSONArray topSqlList = new JSONArray();
+            for (SqlServerQueryDelta delta : queries.subList(0, Math.min(topN, queries.size()))) {
+                topSqlList.add(delta.toJSON());
+            }
+            resultData.put("orderBy", orderBy);
+            resultData.put("topSqlList", topSqlList);
+            resultData.put("count", topSqlList.size());
+
+            if (Boolean.TRUE.equals(resultData.getBoolean("baseline"))) {
+                return ResultMsg.success(resultData, "已建立查询统计基线，请稍后再次调用获取增量");
+            }
+            return ResultMsg.success(resultData, "成功获取 SQL 资源消耗增量，共 " + topSqlList.size() + " 条");
+        } catch (NumberFormatException e) {
+            return ResultMsg.fail("参数格式错误：" + e.getMessage());
+        } catch (IllegalArgumentException e) {
+            return ResultMsg.fail("参数错误：" + e.getMessage());
+        } catch (Exception e) {
+            logger.error("获取 SQL 资源消耗增量失败", e);
+            return ResultMsg.fail("获取 SQL 资源消耗增量失败：" + e.getMessage());
+        }
+    }
+
+    /**
+     * 获取 CPU 使用率历史（SQL Server 调度器监视环形缓冲区，每分钟一条记录）
+     *
+     * @param extensionRequestParam 请求参数（target 或 host, port, database, username, password）
+     *   minutes  时间范围（分钟），默认 60，最多 256（环形缓冲区约保留 256 分钟）
+     *   每次调用只读取并解析上次之后的新记录，已解析的记录随连接池缓存
+     * @return 按时间排序的 CPU 使用率
+     *
+     * 返回数据结构说明：
+     * {
+     *   "samples": [
+     *     {
+     *       "time": 1710647580000,           // 记录时间
+     *       "sqlCpuPercent": 6,              // SQL Server 进程 CPU (%)
+     *       "otherCpuPercent": 12,           // 其它进程 CPU (%)
+     *       "systemIdlePercent": 82,         // 系统空闲 (%)
+     *       "systemCpuPercent": 18           // 整机 CPU (%)
+     *     }
+     *   ],
+     *   "count": 60,
+     *   "avgSqlCpuPercent": 5.4,             // 范围内 SQL Server 平均 CPU (%)
+     *   "maxSqlCpuPercent": 31               // 范围内 SQL Server 最高 CPU (%)
+     * }
+     */
+    @ActionHandler(value = "getCpuHistory", readOnly = true)
+    public ResultMsg<JSONObject> getCpuHistory(ExtensionRequestParam extensionRequestParam) {
+        try {
+            int minutes = Integer.parseInt(extensionRequestParam.getParameter("minutes", "60"));
+            if (minutes < 1 || minutes > MAX_CPU_HISTORY_MINUTES) {
+                return ResultMsg.fail("参数错误：minutes 取值范围为 1-" + MAX_CPU_HISTORY_MINUTES);
+            }
+            SqlServerConnectionManager connectionManager = getConnectionManager(extensionRequestParam);
+            CpuHistoryTracker tracker = connectionManager.getCpuHistoryTracker();
+            tracker.refresh(connectionManager.getDataSource());
+
+            List<SqlServerCpuSample> samples =
+                    tracker.getSamples(System.currentTimeMillis() - minutes * 60 * 1000L);
+            JSONArray sampleArray = new JSONArray();
+            long totalSqlCpu = 0;
+            int maxSqlCpu = 0;
+            for (SqlServerCpuSample sample : samples) {
+                sampleArray.add(sample.toJSON());
+                totalSqlCpu += sample.getSqlCpuPercent();
+                maxSqlCpu = Math.max(maxSqlCpu, sample.getSqlCpuPercent());
+            }
+
+            JSONObject resultData = new JSONObject();
+            resultData.put("samples", sampleArray);
+            resultData.put("count", samples.size());
+            resultData.put("avgSqlCpuPercent", samples.isEmpty() ? 0.0
+                    : Math.round(totalSqlCpu * 10.0 / samples.size()) / 10.0);
+            resultData.put("maxSqlCpuPercent", maxSqlCpu);
+            return ResultMsg.success(resultData, "成功获取 CPU 使用率历史，共 " + samples.size() + " 条");
+        } catch (NumberFormatException e) {
+            return ResultMsg.fail("参数格式错误：" + e.getMessage());
+        } catch (IllegalArgumentException e) {
+            return ResultMsg.fail("参数错误：" + e.getMessage());
+        } catch (Exception e) {
+            logger.error("获取 CPU 使用率历史失败", e);
+            return ResultMsg.fail("获取 CPU 使用率历史失败：" + e.getMessage());
+        }
+    }
+
+    /**
+     * 获取连接池：指定 target 时使用已登记的命名目标，否则按请求中的连接参数复用临时目标的连接池
+     */
+    private SqlServerConnectionManager getConnectionManager(ExtensionRequestParam extensionRequestParam) {
+        String target = extensionRequestParam.getParameter("target");
+        if (target != null && !target.isEmpty()) {
+            return SqlServerPoolRegistry.getInstance().getConnectionManager(target);
+        }
+
+        String host = extensionRequestParam.getParameter("host", "localhost");
+        int port = Integer.parseInt(extensionRequestParam.getParameter("port", "1433"));
+        String database = extensionRequestParam.getParameter("database", "master");
+        String username = extensionRequestParam.getParameter("username");
+        String password = extensionRequestParam.getParameter("password");
+        int timeout = Integer.parseInt(extensionRequestParam.getParameter("timeout", "30"));
+
+        if (username == null || username.isEmpty() || password == null || password.isEmpty()) {
+            throw new IllegalArgumentException("用户名和密码不能为空");
+        }
+        return SqlServerPoolRegistry.getInstance().getConnectionManager(host, port, database, username, password, timeout);
+    }
+
+    /**
+     * 解析明细查询的过滤与分页参数（database 参数已用于连接，过滤数据库使用 filterDatabase）
+     */
+    private SqlServerQueryFilter parseQueryFilter(ExtensionRequestParam extensionRequestParam) {
+        SqlServerQueryFilter filter = new SqlServerQueryFilter();
+        String database = extensionRequestParam.getParameter("filterDatabase");
+        if (database != null && !database.trim().isEmpty()) {
+            filter.setDatabase(database.trim());
+        }
+        String login = extensionRequestParam.getParameter("login");
+        if (login != null && !login.trim().isEmpty()) {
+            filter.setLoginName(login.trim());
+        }
+        filter.setMinWaitMs(Long.parseLong(extensionRequestParam.getParameter("minWait", "0")));
+        filter.setOffset(Integer.parseInt(extensionRequestParam.getParameter("offset", "0")));
+        filter.setLimit(Integer.parseInt(extensionRequestParam.getParameter("limit",
+                String.valueOf(SqlServerQueryFilter.DEFAULT_LIMIT))));
+        if (filter.getMinWaitMs() < 0) {
+            throw new IllegalArgumentException("minWait 不能小于 0");
+        }
+        if (filter.getOffset() < 0) {
+            throw new IllegalArgumentException("offset 不能小于 0");
+        }
+        if (filter.getLimit() < 1 || filter.getLimit() > SqlServerQueryFilter.MAX_LIMIT) {
+            throw new IllegalArgumentException("limit 取值范围为 1-" + SqlServerQueryFilter.MAX_LIMIT);
+        }
+        return filter;
+    }
+
+    /**
+     * 分页结果的公共字段
+     */
+    private JSONObject pageResult(SqlServerQueryFilter filter, boolean hasMore) {
+        JSONObject resultData = new JSONObject();
+        resultData.put("offset", filter.getOffset());
+        resultData.put("limit", filter.getLimit());
+        resultData.put("hasMore", hasMore);
+        return resultData;
+    }
+
     /**
      * 获取整数值的工具方法
      */
@@ -1,7 +1,15 @@
 package com.jt.plugins.mapper;
 
+import com.jt.plugins.model.SqlServerConnectionInfo;
+import com.jt.plugins.model.SqlServerLockInfo;
+import com.jt.plugins.model.SqlServerProcessDetail;
+import com.jt.plugins.model.SqlServerQueryFilter;
 import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.session.ResultHandler;
 
+import java.util.Collection;
+import java.util.Date;
 import java.util.List;
 import java.util.Map;
 
@@ -13,24 +21,32 @@ public interface SqlServerMetricsMapper {
     
     // ========== 汇总统计 ==========
     Map<String, Object> getProcessInfo();
-    Map<String, Object> getWaitStats();
     List<Map<String, Object>> getPerformanceCounters();
     Map<String, Object> getMemoryStats();
-    Map<String, Object> getIOStats();
-    Double getCpuUsagePercent();
+
+    /**
+     * 获取累计计数器（批处理/编译/事务/锁等待/等待统计/文件 I/O），用于计算区间速率
+     */
+    Map<String, Object> getCumulativeCounters();
+
+    /**
+     * 获取调度器监视环形缓冲区记录（afterTicks 为空时全量）
+     */
+    List<Map<String, Object>> getSchedulerMonitorRecords(@Param("afterTicks") Long afterTicks);
+
     Integer getActiveTransactions();
     
     // ========== 详细信息（新增） ==========
     
     /**
-     * 获取进程详细信息列表
+     * 流式获取进程详细信息（按过滤条件服务端分页）
      */
-    List<Map<String, Object>> getProcessDetails();
+    void getProcessDetails(@Param("filter") SqlServerQueryFilter filter, ResultHandler<SqlServerProcessDetail> handler);
     
     /**
-     * 获取锁信息列表
+     * 流式获取锁信息（按过滤条件服务端分页）
      */
-    List<Map<String, Object>> getLockInformation();
+    void getLockInformation(@Param("filter") SqlServerQueryFilter filter, ResultHandler<SqlServerLockInfo> handler);
     
     /**
      * 获取指定会话的 SQL 语句
@@ -38,9 +54,19 @@ public interface SqlServerMetricsMapper {
     Map<String, Object> getSessionSqlText(Integer sessionId);
     
     /**
-     * 获取阻塞链信息
+     * 获取被阻塞的请求（扁平列表）
+     */
+    List<Map<String, Object>> getBlockedRequests();
+
+    /**
+     * 获取指定会话的概要信息与 sql_handle
      */
-    List<Map<String, Object>> getBlockingChain();
+    List<Map<String, Object>> getSessionsBrief(@Param("sessionIds") Collection<Integer> sessionIds);
+
+    /**
+     * 按 sql_handle 批量获取 SQL 文本
+     */
+    List<Map<String, Object>> getSqlTexts(@Param("handles") Collection<byte[]> handles);
     
     /**
      * 获取最耗资源的 SQL TOP 10
@@ -48,12 +74,29 @@ public interface SqlServerMetricsMapper {
     List<Map<String, Object>> getTopResourceConsumingSql();
     
     /**
-     * 获取活动连接列表
+     * 流式获取活动连接（按过滤条件服务端分页）
      */
-    List<Map<String, Object>> getActiveConnections();
+    void getActiveConnections(@Param("filter") SqlServerQueryFilter filter, ResultHandler<SqlServerConnectionInfo> handler);
     
     /**
      * 按程序名称和 SQL 分组统计连接
      */
     List<Map<String, Object>> getConnectionsGroupedByProgramAndSql();
+
+    // ========== 查询统计增量 ==========
+
+    /**
+     * 获取数据库服务器当前时间
+     */
+    Date getServerTime();
+
+    /**
+     * 流式扫描查询统计快照（since 为空时全量）
+     */
+    void scanQueryStats(@Param("since") Date since, ResultHandler<Map<String, Object>> handler);
+
+    /**
+     * 批量获取语句文本，handles 元素包含 sqlHandle/startOffset/endOffset
+     */
+    List<Map<String, Object>> getStatementTexts(@Param("handles") List<Map<String, Object>> handles);
 }
@@ -3,7 +3,9 @@ package com.jt.plugins.model;
 import com.alibaba.fastjson.JSONArray;
 import com.alibaba.fastjson.JSONObject;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * SQL Server 活动监视器完整指标
@@ -19,28 +21,53 @@ public class SqlServerActivityMetrics {
     private int suspendedProcesses;
     private int blockedProcesses;
     
-    private int totalWaits;
+    // 采样区间内的等待次数与平均每次等待时间（毫秒）
+    private long totalWaits;
     private double averageWaitTime;
     
-    private int batchRequestsPerSec;
-    private int sqlCompilationsPerSec;
-    private int sqlRecompilationsPerSec;
+    // 以下 PerSec 字段均为采样区间内的真实每秒速率
+    private double batchRequestsPerSec;
+    private double sqlCompilationsPerSec;
+    private double sqlRecompilationsPerSec;
     private double bufferCacheHitRatio;
     private long pageLifeExpectancy;
     
     private long memoryUsedMB;
     private long memoryAvailableMB;
     
-    private long diskReadsPerSec;
-    private long diskWritesPerSec;
+    private double diskReadsPerSec;
+    private double diskWritesPerSec;
     private long networkIOBytesPerSec;
-    
+
+    // ========== 区间速率（由累计计数器两次采样差值计算） ==========
+    private double transactionsPerSec;
+    private double lockWaitsPerSec;
+    private double waitTimeMsPerSec;
+    private double signalWaitTimeMsPerSec;
+    private double diskReadBytesPerSec;
+    private double diskWriteBytesPerSec;
+    // 平均 I/O 延迟（毫秒/次）
+    private double avgIoLatencyMs;
+    // 速率计算区间（毫秒）
+    private long rateIntervalMs;
+    // 速率是否为实例启动以来的平均值（首次采样或实例重启后）
+    private boolean rateSinceStart;
+    
+    // SQL Server 进程 CPU (%)，取调度器监视环形缓冲区最近一分钟的记录
     private double cpuUsagePercent;
+    // 整机 CPU (%)
+    private double systemCpuPercent;
     private int activeTransactions;
     
     // ========== 新增：详细信息列表 ==========
     private List<SqlServerProcessDetail> processDetails = new ArrayList<>();
     private List<SqlServerLockInfo> lockInfos = new ArrayList<>();
+
+    // ========== 采集过程信息 ==========
+    // 采集耗时（毫秒）
+    private long collectDurationMs;
+    // 采集失败的项目 -> 失败原因
+    private final Map<String, String> collectErrors = new LinkedHashMap<>();
     
     // Getters and Setters for all fields
     public long getCollectionTime() { return collectionTime; }
@@ -55,17 +82,17 @@ public class SqlServerActivityMetrics {
     public int getBlockedProcesses() { return blockedProcesses; }
     public void setBlockedProcesses(int blockedProcesses) { this.blockedProcesses = blockedProcesses; }
     
-    public int getTotalWaits() { return totalWaits; }
-    public void setTotalWaits(int totalWaits) { this.totalWaits = totalWaits; }
+    public long getTotalWaits() { return totalWaits; }
+    public void setTotalWaits(long totalWaits) { this.totalWaits = totalWaits; }
     public double getAverageWaitTime() { return averageWaitTime; }
     public void setAverageWaitTime(double averageWaitTime) { this.averageWaitTime = averageWaitTime; }
     
-    public int getBatchRequestsPerSec() { return batchRequestsPerSec; }
-    public void setBatchRequestsPerSec(int batchRequestsPerSec) { this.batchRequestsPerSec = batchRequestsPerSec; }
-    public int getSqlCompilationsPerSec() { return sqlCompilationsPerSec; }
-    public void setSqlCompilationsPerSec(int sqlCompilationsPerSec) { this.sqlCompilationsPerSec = sqlCompilationsPerSec; }
-    public int getSqlRecompilationsPerSec() { return sqlRecompilationsPerSec; }
-    public void setSqlRecompilationsPerSec(int sqlRecompilationsPerSec) { this.sqlRecompilationsPerSec = sqlRecompilationsPerSec; }
+    public double getBatchRequestsPerSec() { return batchRequestsPerSec; }
+    public void setBatchRequestsPerSec(double batchRequestsPerSec) { this.batchRequestsPerSec = batchRequestsPerSec; }
+    public double getSqlCompilationsPerSec() { return sqlCompilationsPerSec; }
+    public void setSqlCompilationsPerSec(double sqlCompilationsPerSec) { this.sqlCompilationsPerSec = sqlCompilationsPerSec; }
+    public double getSqlRecompilationsPerSec() { return sqlRecompilationsPerSec; }
+    public void setSqlRecompilationsPerSec(double sqlRecompilationsPerSec) { this.sqlRecompilationsPerSec = sqlRecompilationsPerSec; }
     public double getBufferCacheHitRatio() { return bufferCacheHitRatio; }
     public void setBufferCacheHitRatio(double bufferCacheHitRatio) { this.bufferCacheHitRatio = bufferCacheHitRatio; }
     public long getPageLifeExpectancy() { return pageLifeExpectancy; }
@@ -76,15 +103,36 @@ public class SqlServerActivityMetrics {
     public long getMemoryAvailableMB() { return memoryAvailableMB; }
     public void setMemoryAvailableMB(long memoryAvailableMB) { this.memoryAvailableMB = memoryAvailableMB; }
     
-    public long getDiskReadsPerSec() { return diskReadsPerSec; }
-    public void setDiskReadsPerSec(long diskReadsPerSec) { this.diskReadsPerSec = diskReadsPerSec; }
-    public long getDiskWritesPerSec() { return diskWritesPerSec; }
-    public void setDiskWritesPerSec(long diskWritesPerSec) { this.diskWritesPerSec = diskWritesPerSec; }
+    public double getDiskReadsPerSec() { return diskReadsPerSec; }
+    public void setDiskReadsPerSec(double diskReadsPerSec) { this.diskReadsPerSec = diskReadsPerSec; }
+    public double getDiskWritesPerSec() { return diskWritesPerSec; }
+    public void setDiskWritesPerSec(double diskWritesPerSec) { this.diskWritesPerSec = diskWritesPerSec; }
     public long getNetworkIOBytesPerSec() { return networkIOBytesPerSec; }
     public void setNetworkIOBytesPerSec(long networkIOBytesPerSec) { this.networkIOBytesPerSec = networkIOBytesPerSec; }
+
+    public double getTransactionsPerSec() { return transactionsPerSec; }
+    public void setTransactionsPerSec(double transactionsPerSec) { this.transactionsPerSec = transactionsPerSec; }
+    public double getLockWaitsPerSec() { return lockWaitsPerSec; }
+    public void setLockWaitsPerSec(double lockWaitsPerSec) { this.lockWaitsPerSec = lockWaitsPerSec; }
+    public double getWaitTimeMsPerSec() { return waitTimeMsPerSec; }
+    public void setWaitTimeMsPerSec(double waitTimeMsPerSec) { this.waitTimeMsPerSec = waitTimeMsPerSec; }
+    public double getSignalWaitTimeMsPerSec() { return signalWaitTimeMsPerSec; }
+    public void setSignalWaitTimeMsPerSec(double signalWaitTimeMsPerSec) { this.signalWaitTimeMsPerSec = signalWaitTimeMsPerSec; }
+    public double getDiskReadBytesPerSec() { return diskReadBytesPerSec; }
+    public void setDiskReadBytesPerSec(double diskReadBytesPerSec) { this.diskReadBytesPerSec = diskReadBytesPerSec; }
+    public double getDiskWriteBytesPerSec() { return diskWriteBytesPerSec; }
+    public void setDiskWriteBytesPerSec(double diskWriteBytesPerSec) { this.diskWriteBytesPerSec = diskWriteBytesPerSec; }
+    public double getAvgIoLatencyMs() { return avgIoLatencyMs; }
+    public void setAvgIoLatencyMs(double avgIoLatencyMs) { this.avgIoLatencyMs = avgIoLatencyMs; }
+    public long getRateIntervalMs() { return rateIntervalMs; }
+    public void setRateIntervalMs(long rateIntervalMs) { this.rateIntervalMs = rateIntervalMs; }
+    public boolean isRateSinceStart() { return rateSinceStart; }
+    public void setRateSinceStart(boolean rateSinceStart) { this.rateSinceStart = rateSinceStart; }
     
     public double getCpuUsagePercent() { return cpuUsagePercent; }
     public void setCpuUsagePercent(double cpuUsagePercent) { this.cpuUsagePercent = cpuUsagePercent; }
+    public double getSystemCpuPercent() { return systemCpuPercent; }
+    public void setSystemCpuPercent(double systemCpuPercent) { this.systemCpuPercent = systemCpuPercent; }
     public int getActiveTransactions() { return activeTransactions; }
     public void setActiveTransactions(int activeTransactions) { this.activeTransactions = activeTransactions; }
     
@@ -93,6 +141,12 @@ public class SqlServerActivityMetrics {
     
     public List<SqlServerLockInfo> getLockInfos() { return lockInfos; }
     public void setLockInfos(List<SqlServerLockInfo> lockInfos) { this.lockInfos = lockInfos; }
+
+    public long getCollectDurationMs() { return collectDurationMs; }
+    public void setCollectDurationMs(long collectDurationMs) { this.collectDurationMs = collectDurationMs; }
+
+    public Map<String, String> getCollectErrors() { return collectErrors; }
+    public void addCollectError(String item, String message) { collectErrors.put(item, message); }
     
     /**
      * 转换为 JSON 对象
@@ -118,8 +172,19 @@ public class SqlServerActivityMetrics {
         json.put("diskReadsPerSec", diskReadsPerSec);
         json.put("diskWritesPerSec", diskWritesPerSec);
         json.put("networkIOBytesPerSec", networkIOBytesPerSec);
+        json.put("transactionsPerSec", transactionsPerSec);
+        json.put("lockWaitsPerSec", lockWaitsPerSec);
+        json.put("waitTimeMsPerSec", waitTimeMsPerSec);
+        json.put("signalWaitTimeMsPerSec", signalWaitTimeMsPerSec);
+        json.put("diskReadBytesPerSec", diskReadBytesPerSec);
+        json.put("diskWriteBytesPerSec", diskWriteBytesPerSec);
+        json.put("avgIoLatencyMs", avgIoLatencyMs);
+        json.put("rateIntervalMs", rateIntervalMs);
+        json.put("rateSinceStart", rateSinceStart);
         json.put("cpuUsagePercent", cpuUsagePercent);
+        json.put("systemCpuPercent", systemCpuPercent);
         json.put("activeTransactions", activeTransactions);
+        json.put("collectDurationMs", collectDurationMs);
         
         // 新增：详细信息
         JSONArray processDetailsArray = new JSONArray();
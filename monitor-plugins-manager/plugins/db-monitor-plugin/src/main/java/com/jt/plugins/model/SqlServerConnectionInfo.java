@@ -0,0 +1,96 @@
+package com.jt.plugins.model;
+
+import com.alibaba.fastjson.JSONObject;
+
+/**
+ * SQL Server 活动连接
+ */
+public class SqlServerConnectionInfo {
+    private int sessionId;
+    private String loginName;
+    private String hostName;
+    private String programName;
+    private String status;
+    private String databaseName;
+    private String loginTime;
+    private long cpuTime;
+    private long reads;
+    private long writes;
+    private long logicalReads;
+    private String requestStatus;
+    private String command;
+    private Long requestCpuTime;
+    private Long totalElapsedTime;
+    private String waitType;
+    private Long waitTime;
+    private Integer blockingSessionId;
+    private String sqlText;
+    // 语句的 sql_handle，只用于按缓存解析文本，不输出
+    private byte[] sqlHandle;
+
+    // Getters and Setters
+    public int getSessionId() { return sessionId; }
+    public void setSessionId(int sessionId) { this.sessionId = sessionId; }
+    public String getLoginName() { return loginName; }
+    public void setLoginName(String loginName) { this.loginName = loginName; }
+    public String getHostName() { return hostName; }
+    public void setHostName(String hostName) { this.hostName = hostName; }
+    public String getProgramName() { return programName; }
+    public void setProgramName(String programName) { this.programName = programName; }
+    public String getStatus() { return status; }
+    public void setStatus(String status) { this.status = status; }
+    public String getDatabaseName() { return databaseName; }
+    public void setDatabaseName(String databaseName) { this.databaseName = databaseName; }
+    public String getLoginTime() { return loginTime; }
+    public void setLoginTime(String loginTime) { this.loginTime = loginTime; }
+    public long getCpuTime() { return cpuTime; }
+    public void setCpuTime(long cpuTime) { this.cpuTime = cpuTime; }
+    public long getReads() { return reads; }
+    public void setReads(long reads) { this.reads = reads; }
+    public long getWrites() { return writes; }
+    public void setWrites(long writes) { this.writes = writes; }
+    public long getLogicalReads() { return logicalReads; }
+    public void setLogicalReads(long logicalReads) { this.logicalReads = logicalReads; }
+    public String getRequestStatus() { return requestStatus; }
+    public void setRequestStatus(String requestStatus) { this.requestStatus = requestStatus; }
+    public String getCommand() { return command; }
+    public void setCommand(String command) { this.command = command; }
+    public Long getRequestCpuTime() { return requestCpuTime; }
+    public void setRequestCpuTime(Long requestCpuTime) { this.requestCpuTime = requestCpuTime; }
+    public Long getTotalElapsedTime() { return totalElapsedTime; }
+    public void setTotalElapsedTime(Long totalElapsedTime) { this.totalElapsedTime = totalElapsedTime; }
+    public String getWaitType() { return waitType; }
+    public void setWaitType(String waitType) { this.waitType = waitType; }
+    public Long getWaitTime() { return waitTime; }
+    public void setWaitTime(Long waitTime) { this.waitTime = waitTime; }
+    public Integer getBlockingSessionId() { return blockingSessionId; }
+    public void setBlockingSessionId(Integer blockingSessionId) { this.blockingSessionId = blockingSessionId; }
+    public String getSqlText() { return sqlText; }
+    public void setSqlText(String sqlText) { this.sqlText = sqlText; }
+    public byte[] getSqlHandle() { return sqlHandle; }
+    public void setSqlHandle(byte[] sqlHandle) { this.sqlHandle = sqlHandle; }
+
+    public JSONObject toJSON() {
+        JSONObject json = new JSONObject();
+        json.put("sessionId", sessionId);
+        json.put("loginName", loginName);
+        json.put("hostName", hostName);
+        json.put("programName", programName);
+        json.put("status", status);
+        json.put("databaseName", databaseName);
+        json.put("loginTime", loginTime);
+        json.put("cpuTime", cpuTime);
+        json.put("reads", reads);
+        json.put("writes", writes);
+        json.put("logicalReads", logicalReads);
+        json.put("requestStatus", requestStatus);
+        json.put("command", command);
+        json.put("requestCpuTime", requestCpuTime);
+        json.put("totalElapsedTime", totalElapsedTime);
+        json.put("waitType", waitType);
+        json.put("waitTime", waitTime);
+        json.put("blockingSessionId", blockingSessionId);
+        json.put("sqlText", sqlText);
+        return json;
+    }
+}
@@ -0,0 +1,51 @@
+package com.jt.plugins.model;
+
+import com.alibaba.fastjson.JSONObject;
+
+/**
+ * SQL Server 每分钟 CPU 使用率（来自调度器监视环形缓冲区 RING_BUFFER_SCHEDULER_MONITOR）
+ */
+public class SqlServerCpuSample {
+    private final long recordId;
+    private final long eventTime;
+    // SQL Server 进程 CPU (%)
+    private final int sqlCpuPercent;
+    // 系统空闲 (%)
+    private final int systemIdlePercent;
+
+    public SqlServerCpuSample(long recordId, long eventTime, int sqlCpuPercent, int systemIdlePercent) {
+        this.recordId = recordId;
+        this.eventTime = eventTime;
+        this.sqlCpuPercent = sqlCpuPercent;
+        this.systemIdlePercent = systemIdlePercent;
+    }
+
+    public long getRecordId() { return recordId; }
+    public long getEventTime() { return eventTime; }
+    public int getSqlCpuPercent() { return sqlCpuPercent; }
+    public int getSystemIdlePercent() { return systemIdlePercent; }
+
+    /**
+     * 整机 CPU 使用率 (%)
+     */
+    public int getSystemCpuPercent() {
+        return Math.max(0, 100 - systemIdlePercent);
+    }
+
+    /**
+     * 其它进程 CPU 使用率 (%)
+     */
+    public int getOtherCpuPercent() {
+        return Math.max(0, 100 - systemIdlePercent - sqlCpuPercent);
+    }
+
+    public JSONObject toJSON() {
+        JSONObject json = new JSONObject(true);
+        json.put("time", eventTime);
+        json.put("sqlCpuPercent", sqlCpuPercent);
+        json.put("otherCpuPercent", getOtherCpuPercent());
+        json.put("systemIdlePercent", systemIdlePercent);
+        json.put("systemCpuPercent", getSystemCpuPercent());
+        return json;
+    }
+}
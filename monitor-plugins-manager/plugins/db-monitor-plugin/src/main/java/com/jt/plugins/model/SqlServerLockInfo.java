@@ -15,6 +15,8 @@ public class SqlServerLockInfo {
     private String objectName;
     private Long waitDuration;
     private String sqlText;
+    // 语句的 sql_handle，只用于按缓存解析文本，不输出
+    private byte[] sqlHandle;
     
     // Getters and Setters
     public int getRequestSessionId() { return requestSessionId; }
@@ -35,6 +37,8 @@ public class SqlServerLockInfo {
     public void setWaitDuration(Long waitDuration) { this.waitDuration = waitDuration; }
     public String getSqlText() { return sqlText; }
     public void setSqlText(String sqlText) { this.sqlText = sqlText; }
+    public byte[] getSqlHandle() { return sqlHandle; }
+    public void setSqlHandle(byte[] sqlHandle) { this.sqlHandle = sqlHandle; }
     
     public JSONObject toJSON() {
         JSONObject json = new JSONObject();
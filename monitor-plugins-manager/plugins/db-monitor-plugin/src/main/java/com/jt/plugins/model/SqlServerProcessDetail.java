@@ -18,6 +18,8 @@ public class SqlServerProcessDetail {
     private long writes;
     private long elapsedTime;
     private String lastSqlText;
+    // 语句的 sql_handle，只用于按缓存解析文本，不输出
+    private byte[] sqlHandle;
     private Long blockingSessionId;
     private String waitType;
     private Long waitTime;
@@ -48,6 +50,8 @@ public class SqlServerProcessDetail {
     public void setElapsedTime(long elapsedTime) { this.elapsedTime = elapsedTime; }
     public String getLastSqlText() { return lastSqlText; }
     public void setLastSqlText(String lastSqlText) { this.lastSqlText = lastSqlText; }
+    public byte[] getSqlHandle() { return sqlHandle; }
+    public void setSqlHandle(byte[] sqlHandle) { this.sqlHandle = sqlHandle; }
     public Long getBlockingSessionId() { return blockingSessionId; }
     public void setBlockingSessionId(Long blockingSessionId) { this.blockingSessionId = blockingSessionId; }
     public String getWaitType() { return waitType; }
@@ -0,0 +1,114 @@
+package com.jt.plugins.model;
+
+import com.alibaba.fastjson.JSONObject;
+
+import java.util.Comparator;
+
+/**
+ * SQL Server 查询在一段时间内的资源消耗增量（按 query_hash 汇总）
+ * 时间单位：cpuTimeUs/elapsedTimeUs 为微秒（与 dm_exec_query_stats 一致），输出时转换为毫秒
+ */
+public class SqlServerQueryDelta {
+    private final long queryHash;
+    private long executions;
+    private long cpuTimeUs;
+    private long elapsedTimeUs;
+    private long logicalReads;
+    private long logicalWrites;
+    private int planCount;
+
+    // 用于获取语句文本的样本语句（取 CPU 增量最大的那条）
+    private byte[] sqlHandle;
+    private int statementStartOffset;
+    private int statementEndOffset;
+    private long sampleCpuTimeUs = -1;
+
+    private String databaseName;
+    private String sqlText;
+
+    public SqlServerQueryDelta(long queryHash) {
+        this.queryHash = queryHash;
+    }
+
+    /**
+     * 累加一条语句（或一个区间）的增量
+     */
+    public void add(long executions, long cpuTimeUs, long elapsedTimeUs, long logicalReads, long logicalWrites) {
+        this.executions += executions;
+        this.cpuTimeUs += cpuTimeUs;
+        this.elapsedTimeUs += elapsedTimeUs;
+        this.logicalReads += logicalReads;
+        this.logicalWrites += logicalWrites;
+    }
+
+    /**
+     * 记录一条语句的执行计划，CPU 增量更大时替换样本语句
+     */
+    public void addStatement(byte[] sqlHandle, int startOffset, int endOffset, long cpuTimeUs) {
+        planCount++;
+        if (cpuTimeUs > sampleCpuTimeUs) {
+            this.sqlHandle = sqlHandle;
+            this.statementStartOffset = startOffset;
+            this.statementEndOffset = endOffset;
+            this.sampleCpuTimeUs = cpuTimeUs;
+        }
+    }
+
+    /**
+     * 排序方式：cpu/reads/duration/writes/executions，不支持时返回 null
+     */
+    public static Comparator<SqlServerQueryDelta> comparator(String orderBy) {
+        switch (orderBy) {
+            case "cpu":
+                return Comparator.comparingLong(SqlServerQueryDelta::getCpuTimeUs).reversed();
+            case "reads":
+                return Comparator.comparingLong(SqlServerQueryDelta::getLogicalReads).reversed();
+            case "duration":
+                return Comparator.comparingLong(SqlServerQueryDelta::getElapsedTimeUs).reversed();
+            case "writes":
+                return Comparator.comparingLong(SqlServerQueryDelta::getLogicalWrites).reversed();
+            case "executions":
+                return Comparator.comparingLong(SqlServerQueryDelta::getExecutions).reversed();
+            default:
+                return null;
+        }
+    }
+
+    public static String formatHash(long queryHash) {
+        return String.format("0x%016X", queryHash);
+    }
+
+    // Getters and Setters
+    public long getQueryHash() { return queryHash; }
+    public long getExecutions() { return executions; }
+    public long getCpuTimeUs() { return cpuTimeUs; }
+    public long getElapsedTimeUs() { return elapsedTimeUs; }
+    public long getLogicalReads() { return logicalReads; }
+    public long getLogicalWrites() { return logicalWrites; }
+    public int getPlanCount() { return planCount; }
+    public byte[] getSqlHandle() { return sqlHandle; }
+    public int getStatementStartOffset() { return statementStartOffset; }
+    public int getStatementEndOffset() { return statementEndOffset; }
+    public String getDatabaseName() { return databaseName; }
+    public void setDatabaseName(String databaseName) { this.databaseName = databaseName; }
+    public String getSqlText() { return sqlText; }
+    public void setSqlText(String sqlText) { this.sqlText = sqlText; }
+
+    public JSONObject toJSON() {
+        JSONObject json = new JSONObject();
+        json.put("queryHash", formatHash(queryHash));
+        json.put("executions", executions);
+        json.put("cpuTimeMs", cpuTimeUs / 1000.0);
+        json.put("elapsedTimeMs", elapsedTimeUs / 1000.0);
+        json.put("logicalReads", logicalReads);
+        json.put("logicalWrites", logicalWrites);
+        if (executions > 0) {
+            json.put("avgCpuTimeMs", cpuTimeUs / 1000.0 / executions);
+            json.put("avgElapsedTimeMs", elapsedTimeUs / 1000.0 / executions);
+            json.put("avgLogicalReads", (double) logicalReads / executions);
+        }
+        json.put("databaseName", databaseName);
+        json.put("sqlText", sqlText);
+        return json;
+    }
+}
@@ -0,0 +1,46 @@
+package com.jt.plugins.model;
+
+/**
+ * SQL Server 明细查询的过滤与分页条件（传入 Mapper XML，在服务端过滤和分页）
+ */
+public class SqlServerQueryFilter {
+
+    // 单页最大条数
+    public static final int MAX_LIMIT = 1000;
+
+    public static final int DEFAULT_LIMIT = 100;
+
+    private String database;
+    private String loginName;
+    private long minWaitMs;
+    private int offset;
+    private int limit = DEFAULT_LIMIT;
+
+    /**
+     * 第一页，不带过滤条件
+     */
+    public static SqlServerQueryFilter firstPage(int limit) {
+        SqlServerQueryFilter filter = new SqlServerQueryFilter();
+        filter.setLimit(limit);
+        return filter;
+    }
+
+    /**
+     * 实际查询条数：多取一条用于判断是否还有下一页
+     */
+    public int getFetchLimit() {
+        return limit + 1;
+    }
+
+    // Getters and Setters
+    public String getDatabase() { return database; }
+    public void setDatabase(String database) { this.database = database; }
+    public String getLoginName() { return loginName; }
+    public void setLoginName(String loginName) { this.loginName = loginName; }
+    public long getMinWaitMs() { return minWaitMs; }
+    public void setMinWaitMs(long minWaitMs) { this.minWaitMs = minWaitMs; }
+    public int getOffset() { return offset; }
+    public void setOffset(int offset) { this.offset = offset; }
+    public int getLimit() { return limit; }
+    public void setLimit(int limit) { this.limit = limit; }
+}
@@ -3,12 +3,20 @@ package com.jt.plugins.sqlserver;
 import com.jt.plugins.common.log.PluginLogger;
 import org.apache.commons.dbcp2.BasicDataSource;
 
+import com.alibaba.fastjson.JSONObject;
+import com.jt.plugins.collector.CpuHistoryTracker;
+import com.jt.plugins.collector.QueryStatsTracker;
+import com.jt.plugins.collector.SqlServerRateCollector;
+import com.jt.plugins.collector.SqlTextCache;
+
 import javax.sql.DataSource;
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * SQL Server连接管理器（支持DataSource）
+ * 由 SqlServerPoolRegistry 按目标长期持有，连接池跨请求复用
  */
 public class SqlServerConnectionManager {
     
@@ -21,6 +29,27 @@ public class SqlServerConnectionManager {
     private String password;
     private int connectionTimeout;
     private BasicDataSource dataSource;
+
+    // 连接池创建时间
+    private final long createTime = System.currentTimeMillis();
+
+    // 最后一次被请求使用的时间，用于注册表回收长期空闲的连接池
+    private volatile long lastAccessTime = createTime;
+
+    // 被请求使用的次数
+    private final AtomicLong accessCount = new AtomicLong();
+
+    // 累计计数器速率计算器，随连接池一起跨请求保留
+    private final SqlServerRateCollector rateCollector = new SqlServerRateCollector();
+
+    // 查询统计增量跟踪（保存上一次 dm_exec_query_stats 快照）
+    private final QueryStatsTracker queryStatsTracker = new QueryStatsTracker();
+
+    // 按 sql_handle 缓存的 SQL 文本
+    private final SqlTextCache sqlTextCache = new SqlTextCache();
+
+    // 调度器监视记录解析出的 CPU 使用率历史
+    private final CpuHistoryTracker cpuHistoryTracker = new CpuHistoryTracker();
     
     public SqlServerConnectionManager(String host, int port, String database, 
                                     String username, String password, int connectionTimeout) {
@@ -44,11 +73,20 @@ public class SqlServerConnectionManager {
         dataSource.setUsername(username);
         dataSource.setPassword(password);
         dataSource.setInitialSize(1);
-        dataSource.setMaxTotal(10);
-        dataSource.setMaxIdle(5);
+        // 活动监视器各项指标并发采集，每次约占用 9 个连接；归还后保持空闲，避免反复登录
+        dataSource.setMaxTotal(12);
+        dataSource.setMaxIdle(12);
         dataSource.setMinIdle(1);
-        dataSource.setTestOnBorrow(true);
-        dataSource.setValidationQuery("SELECT 1");
+        dataSource.setMaxWaitMillis(connectionTimeout * 1000L);
+        // 借用时不再校验，由后台驱逐线程校验空闲连接（未设置校验SQL时使用 JDBC4 isValid）
+        dataSource.setTestOnBorrow(false);
+        dataSource.setTestWhileIdle(true);
+        dataSource.setValidationQueryTimeout(5);
+        dataSource.setTimeBetweenEvictionRunsMillis(30 * 1000L);
+        dataSource.setNumTestsPerEvictionRun(3);
+        dataSource.setMinEvictableIdleTimeMillis(5 * 60 * 1000L);
+        // 定期重建物理连接，避免服务端故障转移后长期持有失效连接
+        dataSource.setMaxConnLifetimeMillis(30 * 60 * 1000L);
         
         logger.debug("DataSource初始化完成: {}:{}", host, port);
     }
@@ -60,6 +98,34 @@ public class SqlServerConnectionManager {
         return dataSource;
     }
     
+    /**
+     * 获取速率计算器
+     */
+    public SqlServerRateCollector getRateCollector() {
+        return rateCollector;
+    }
+
+    /**
+     * 获取查询统计增量跟踪器
+     */
+    public QueryStatsTracker getQueryStatsTracker() {
+        return queryStatsTracker;
+    }
+
+    /**
+     * 获取 SQL 文本缓存
+     */
+    public SqlTextCache getSqlTextCache() {
+        return sqlTextCache;
+    }
+
+    /**
+     * 获取 CPU 使用率历史
+     */
+    public CpuHistoryTracker getCpuHistoryTracker() {
+        return cpuHistoryTracker;
+    }
+
     /**
      * 获取传统连接（向后兼容）
      */
@@ -79,6 +145,44 @@ public class SqlServerConnectionManager {
         }
     }
     
+    /**
+     * 记录一次使用
+     */
+    public void touch() {
+        lastAccessTime = System.currentTimeMillis();
+        accessCount.incrementAndGet();
+    }
+
+    /**
+     * 是否空闲超时（无活动连接且超过指定时间未被使用）
+     */
+    public boolean isIdle(long idleTimeoutMs) {
+        return dataSource.getNumActive() == 0 && System.currentTimeMillis() - lastAccessTime > idleTimeoutMs;
+    }
+
+    /**
+     * 连接池是否已关闭
+     */
+    public boolean isClosed() {
+        return dataSource.isClosed();
+    }
+
+    /**
+     * 连接池统计信息
+     */
+    public JSONObject getPoolStats() {
+        JSONObject stats = new JSONObject();
+        stats.put("numActive", dataSource.getNumActive());
+        stats.put("numIdle", dataSource.getNumIdle());
+        stats.put("maxTotal", dataSource.getMaxTotal());
+        stats.put("accessCount", accessCount.get());
+        stats.put("createTime", createTime);
+        stats.put("lastAccessTime", lastAccessTime);
+        stats.put("closed", dataSource.isClosed());
+        stats.put("sqlTextCache", sqlTextCache.getStats());
+        return stats;
+    }
+
     /**
      * 关闭DataSource
      */
@@ -0,0 +1,304 @@
+package com.jt.plugins.sqlserver;
+
+import com.alibaba.fastjson.JSONArray;
+import com.alibaba.fastjson.JSONObject;
+import com.jt.plugins.common.log.PluginLogger;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @BelongsProject: jt-server-monitor
+ * @BelongsPackage: com.jt.plugins.sqlserver
+ * @Author: 别来无恙qb
+ * @CreateTime: 2026-03-17  09:45
+ * @Description: SQL Server 连接池注册表 - 按命名目标懒加载长期连接池，空闲回收
+ * @Version: 1.0
+ */
+public class SqlServerPoolRegistry {
+
+    private static final PluginLogger logger = PluginLogger.getLogger("db-monitor-plugin");
+
+    // 临时目标（请求中直接携带连接参数）的名称前缀
+    private static final String ADHOC_PREFIX = "adhoc:";
+
+    // 连接池空闲回收时间（分钟），可通过系统属性覆盖
+    private static final long POOL_IDLE_TIMEOUT_MS =
+            Long.getLong("db.monitor.poolIdleTimeoutMinutes", 10L) * 60 * 1000;
+
+    // 空闲回收检查间隔（秒）
+    private static final long EVICT_INTERVAL_SECONDS = 60;
+
+    // 临时目标名称中凭据摘要的密钥，进程内随机生成，名称可以出现在日志和列表中而不泄露可离线比对的密码摘要
+    private static final byte[] CREDENTIAL_DIGEST_KEY = randomKey();
+
+    // 凭据ID -> 凭据（仅保存在内存中，不落盘）
+    private final Map<String, Credential> credentials = new ConcurrentHashMap<>();
+
+    // 目标名称 -> 目标定义
+    private final Map<String, SqlServerTarget> targets = new ConcurrentHashMap<>();
+
+    // 目标名称 -> 连接池
+    private final Map<String, SqlServerConnectionManager> pools = new ConcurrentHashMap<>();
+
+    private ScheduledExecutorService evictor;
+
+    /**
+     * 单例实例
+     */
+    private static class SingletonHolder {
+        private static final SqlServerPoolRegistry INSTANCE = new SqlServerPoolRegistry();
+    }
+
+    public static SqlServerPoolRegistry getInstance() {
+        return SingletonHolder.INSTANCE;
+    }
+
+    private SqlServerPoolRegistry() {
+    }
+
+    /**
+     * 登记凭据，凭据变化时关闭引用它的连接池
+     */
+    public void registerCredential(String credentialId, String username, String password) {
+        Credential credential = new Credential(username, password);
+        Credential previous = credentials.put(credentialId, credential);
+        if (previous != null && !previous.equals(credential)) {
+            for (SqlServerTarget target : targets.values()) {
+                if (target.getCredentialId().equals(credentialId)) {
+                    closePool(target.getName());
+                }
+            }
+            logger.info("凭据已更新，相关连接池已重建: {}", credentialId);
+        }
+    }
+
+    /**
+     * 登记监控目标，连接参数变化时关闭旧连接池
+     */
+    public void registerTarget(SqlServerTarget target) {
+        SqlServerTarget previous = targets.put(target.getName(), target);
+        if (previous != null && !previous.sameConnection(target)) {
+            closePool(target.getName());
+        }
+        logger.info("SQL Server 监控目标已登记: {} -> {}:{}/{}",
+                target.getName(), target.getHost(), target.getPort(), target.getDatabase());
+    }
+
+    /**
+     * 移除监控目标并关闭其连接池
+     * @return 目标是否存在
+     */
+    public boolean removeTarget(String name) {
+        SqlServerTarget removed = targets.remove(name);
+        closePool(name);
+        if (removed != null && name.startsWith(ADHOC_PREFIX)) {
+            credentials.remove(removed.getCredentialId());
+        }
+        return removed != null;
+    }
+
+    public SqlServerTarget getTarget(String name) {
+        return targets.get(name);
+    }
+
+    /**
+     * 是否有命名目标（临时目标除外）；命名目标与凭据只保存在内存中，插件卸载后丢失
+     */
+    public boolean hasNamedTargets() {
+        for (String name : targets.keySet()) {
+            if (!name.startsWith(ADHOC_PREFIX)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 所有已登记目标（快照）
+     */
+    public List<SqlServerTarget> getTargets() {
+        return new ArrayList<>(targets.values());
+    }
+
+    /**
+     * 获取命名目标的连接池，不存在时创建
+     */
+    public SqlServerConnectionManager getConnectionManager(String name) {
+        SqlServerTarget target = targets.get(name);
+        if (target == null) {
+            throw new IllegalArgumentException("监控目标不存在：" + name);
+        }
+        Credential credential = credentials.get(target.getCredentialId());
+        if (credential == null) {
+            throw new IllegalArgumentException("凭据不存在：" + target.getCredentialId());
+        }
+        ensureEvictor();
+        // 在 compute 中完成创建与 touch，保证不会与空闲回收并发交错
+        return pools.compute(name, (key, manager) -> {
+            if (manager == null || manager.isClosed()) {
+                manager = new SqlServerConnectionManager(target.getHost(), target.getPort(), target.getDatabase(),
+                        credential.username, credential.password, target.getConnectionTimeout());
+                logger.info("创建 SQL Server 连接池: {}", key);
+            }
+            manager.touch();
+            return manager;
+        });
+    }
+
+    /**
+     * 获取请求中直接携带连接参数的临时目标的连接池（相同参数复用同一连接池）
+     */
+    public SqlServerConnectionManager getConnectionManager(String host, int port, String database,
+                                                           String username, String password, int connectionTimeout) {
+        // 名称包含凭据摘要：不同密码使用各自的连接池，一次错误的密码不会替换或关闭其他调用方正在使用的连接池
+        String name = ADHOC_PREFIX + username + "@" + host + ":" + port + "/" + database
+                + "#" + credentialDigest(username, password);
+        credentials.putIfAbsent(name, new Credential(username, password));
+        SqlServerTarget target = new SqlServerTarget(name, host, port, database, name, connectionTimeout);
+        SqlServerTarget existing = targets.get(name);
+        if (existing == null || !existing.sameConnection(target)) {
+            registerTarget(target);
+        }
+        return getConnectionManager(name);
+    }
+
+    private static String credentialDigest(String username, String password) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(CREDENTIAL_DIGEST_KEY, "HmacSHA256"));
+            byte[] digest = mac.doFinal((username + '\0' + password).getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder(16);
+            for (int i = 0; i < 8; i++) {
+                hex.append(String.format("%02x", digest[i]));
+            }
+            return hex.toString();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("无法计算凭据摘要", e);
+        }
+    }
+
+    private static byte[] randomKey() {
+        byte[] key = new byte[32];
+        new SecureRandom().nextBytes(key);
+        return key;
+    }
+
+    /**
+     * 所有目标及其连接池统计
+     */
+    public JSONArray listTargets() {
+        JSONArray array = new JSONArray();
+        for (SqlServerTarget target : targets.values()) {
+            JSONObject json = target.toJSON();
+            json.put("adhoc", target.getName().startsWith(ADHOC_PREFIX));
+            SqlServerConnectionManager manager = pools.get(target.getName());
+            json.put("pooled", manager != null);
+            if (manager != null) {
+                json.put("poolStats", manager.getPoolStats());
+            }
+            array.add(json);
+        }
+        return array;
+    }
+
+    /**
+     * 回收长期未使用的连接池；临时目标连同定义和凭据一起移除
+     */
+    private void evictIdlePools() {
+        List<String> evicted = new ArrayList<>();
+        for (String name : pools.keySet()) {
+            pools.computeIfPresent(name, (key, manager) -> {
+                if (manager.isIdle(POOL_IDLE_TIMEOUT_MS)) {
+                    manager.close();
+                    evicted.add(key);
+                    return null;
+                }
+                return manager;
+            });
+        }
+        for (String name : evicted) {
+            if (name.startsWith(ADHOC_PREFIX) && !pools.containsKey(name)) {
+                removeTarget(name);
+            }
+            logger.info("SQL Server 连接池空闲超时，已回收: {}", name);
+        }
+    }
+
+    private void closePool(String name) {
+        SqlServerConnectionManager manager = pools.remove(name);
+        if (manager != null) {
+            manager.close();
+        }
+    }
+
+    /**
+     * 启动空闲回收线程，插件停止后再次使用时重新创建
+     */
+    private synchronized void ensureEvictor() {
+        if (evictor == null || evictor.isShutdown()) {
+            evictor = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "sqlserver-pool-evictor");
+                thread.setDaemon(true);
+                return thread;
+            });
+            evictor.scheduleWithFixedDelay(() -> {
+                try {
+                    evictIdlePools();
+                } catch (Exception e) {
+                    logger.warn("回收空闲连接池失败", e);
+                }
+            }, EVICT_INTERVAL_SECONDS, EVICT_INTERVAL_SECONDS, TimeUnit.SECONDS);
+        }
+    }
+
+    /**
+     * 关闭所有连接池（插件停止时调用），命名目标定义保留
+     */
+    public synchronized void shutdown() {
+        if (evictor != null) {
+            evictor.shutdownNow();
+        }
+        for (String name : new ArrayList<>(pools.keySet())) {
+            closePool(name);
+        }
+        logger.info("SQL Server 连接池已全部关闭");
+    }
+
+    /**
+     * 数据库凭据
+     */
+    private static class Credential {
+        private final String username;
+        private final String password;
+
+        Credential(String username, String password) {
+            this.username = username;
+            this.password = password;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Credential)) return false;
+            Credential that = (Credential) o;
+            return Objects.equals(username, that.username) && Objects.equals(password, that.password);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(username, password);
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package com.jt.plugins.sqlserver;
+
+import com.alibaba.fastjson.JSONObject;
+
+/**
+ * @BelongsProject: jt-server-monitor
+ * @BelongsPackage: com.jt.plugins.sqlserver
+ * @Author: 别来无恙qb
+ * @CreateTime: 2026-03-17  09:30
+ * @Description: SQL Server 监控目标定义（主机/端口/数据库/凭据ID），不包含密码
+ * @Version: 1.0
+ */
+public class SqlServerTarget {
+
+    private final String name;
+    private final String host;
+    private final int port;
+    private final String database;
+    private final String credentialId;
+    private final int connectionTimeout;
+
+    // 后台定时采集间隔（秒），0 表示不定时采集
+    private final int collectIntervalSeconds;
+
+    public SqlServerTarget(String name, String host, int port, String database, String credentialId, int connectionTimeout) {
+        this(name, host, port, database, credentialId, connectionTimeout, 0);
+    }
+
+    public SqlServerTarget(String name, String host, int port, String database, String credentialId,
+                           int connectionTimeout, int collectIntervalSeconds) {
+        this.name = name;
+        this.host = host;
+        this.port = port;
+        this.database = database;
+        this.credentialId = credentialId;
+        this.connectionTimeout = connectionTimeout;
+        this.collectIntervalSeconds = collectIntervalSeconds;
+    }
+
+    public String getName() { return name; }
+    public String getHost() { return host; }
+    public int getPort() { return port; }
+    public String getDatabase() { return database; }
+    public String getCredentialId() { return credentialId; }
+    public int getConnectionTimeout() { return connectionTimeout; }
+    public int getCollectIntervalSeconds() { return collectIntervalSeconds; }
+
+    /**
+     * 连接参数是否一致（一致时可复用已有连接池）
+     */
+    public boolean sameConnection(SqlServerTarget other) {
+        return other != null
+                && host.equals(other.host)
+                && port == other.port
+                && database.equals(other.database)
+                && credentialId.equals(other.credentialId)
+                && connectionTimeout == other.connectionTimeout;
+    }
+
+    public JSONObject toJSON() {
+        JSONObject json = new JSONObject();
+        json.put("name", name);
+        json.put("host", host);
+        json.put("port", port);
+        json.put("database", database);
+        json.put("credentialId", credentialId);
+        json.put("connectionTimeout", connectionTimeout);
+        json.put("collectInterval", collectIntervalSeconds);
+        return json;
+    }
+}
@@ -0,0 +1,53 @@
+package com.jt.plugins.storage;
+
+/**
+ * @BelongsProject: jt-server-monitor
+ * @BelongsPackage: com.jt.plugins.storage
+ * @Author: 别来无恙qb
+ * @CreateTime: 2026-03-19  09:15
+ * @Description: 按位读取（高位在前），与 BitWriter 对应
+ * @Version: 1.0
+ */
+class BitReader {
+
+    private final byte[] buffer;
+
+    // 已读取的位数
+    private int bitPosition;
+
+    BitReader(byte[] buffer) {
+        this.buffer = buffer;
+    }
+
+    boolean readBit() {
+        return readBits(1) == 1;
+    }
+
+    /**
+     * 读取 n 位（n 不超过 64），作为无符号数返回
+     */
+    long readBits(int n) {
+        long result = 0;
+        while (n > 0) {
+            int byteIndex = bitPosition >>> 3;
+            if (byteIndex >= buffer.length) {
+                throw new IllegalStateException("时序数据块已损坏：位流意外结束");
+            }
+            int available = 8 - (bitPosition & 7);
+            int take = Math.min(available, n);
+            int bits = ((buffer[byteIndex] & 0xff) >>> (available - take)) & ((1 << take) - 1);
+            result = (result << take) | bits;
+            bitPosition += take;
+            n -= take;
+        }
+        return result;
+    }
+
+    /**
+     * 读取 n 位有符号数（补码）
+     */
+    long readSigned(int n) {
+        long value = readBits(n);
+        return (value << (64 - n)) >> (64 - n);
+    }
+}
@@ -0,0 +1,45 @@
+package com.jt.plugins.storage;
+
+import java.util.Arrays;
+
+/**
+ * @BelongsProject: jt-server-monitor
+ * @BelongsPackage: com.jt.plugins.storage
+ * @Author: 别来无恙qb
+ * @CreateTime: 2026-03-19  09:10
+ * @Description: 按位写入缓冲区（高位在前）
+ * @Version: 1.0
+ */
+class BitWriter {
+
+    private byte[] buffer = new byte[256];
+
+    // 已写入的位数
+    private int bitPosition;
+
+    void writeBit(boolean bit) {
+        writeBits(bit ? 1 : 0, 1);
+    }
+
+    /**
+     * 写入 value 的低 n 位（n 不超过 64）
+     */
+    void writeBits(long value, int n) {
+        while (n > 0) {
+            int byteIndex = bitPosition >>> 3;
+            if (byteIndex >= buffer.length) {
+                buffer = Arrays.copyOf(buffer, buffer.length * 2);
+            }
+            int free = 8 - (bitPosition & 7);
+            int take = Math.min(free, n);
+            int bits = (int) ((value >>> (n - take)) & ((1 << take) - 1));
+            buffer[byteIndex] |= (byte) (bits << (free - take));
+            bitPosition += take;
+            n -= take;
+        }
+    }
+
+    byte[] toByteArray() {
+        return Arrays.copyOf(buffer, (bitPosition + 7) >>> 3);
+    }
+}
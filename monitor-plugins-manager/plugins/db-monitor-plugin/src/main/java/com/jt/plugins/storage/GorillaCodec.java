@@ -0,0 +1,152 @@
+package com.jt.plugins.storage;
+
+/**
+ * @BelongsProject: jt-server-monitor
+ * @BelongsPackage: com.jt.plugins.storage
+ * @Author: 别来无恙qb
+ * @CreateTime: 2026-03-19  09:30
+ * @Description: Gorilla 风格压缩编码 - 时间戳使用二阶差分（delta-of-delta），浮点值使用与前值异或
+ * @Version: 1.0
+ */
+public final class GorillaCodec {
+
+    private GorillaCodec() {
+    }
+
+    /**
+     * 编码时间戳列
+     * 首个时间戳原样写入 64 位，之后按二阶差分大小选择前缀：
+     * 0 -> 与上次间隔相同；10 -> 7 位；110 -> 9 位；1110 -> 12 位；1111 -> 32 位
+     */
+    public static byte[] encodeTimestamps(long[] timestamps, int count) {
+        BitWriter writer = new BitWriter();
+        if (count == 0) {
+            return writer.toByteArray();
+        }
+        writer.writeBits(timestamps[0], 64);
+        long previous = timestamps[0];
+        long previousDelta = 0;
+        for (int i = 1; i < count; i++) {
+            long delta = timestamps[i] - previous;
+            long dod = delta - previousDelta;
+            if (dod == 0) {
+                writer.writeBit(false);
+            } else if (dod >= -64 && dod <= 63) {
+                writer.writeBits(0b10, 2);
+                writer.writeBits(dod, 7);
+            } else if (dod >= -256 && dod <= 255) {
+                writer.writeBits(0b110, 3);
+                writer.writeBits(dod, 9);
+            } else if (dod >= -2048 && dod <= 2047) {
+                writer.writeBits(0b1110, 4);
+                writer.writeBits(dod, 12);
+            } else {
+                writer.writeBits(0b1111, 4);
+                writer.writeBits(dod, 32);
+            }
+            previousDelta = delta;
+            previous = timestamps[i];
+        }
+        return writer.toByteArray();
+    }
+
+    /**
+     * 解码时间戳列
+     */
+    public static long[] decodeTimestamps(byte[] data, int count) {
+        long[] timestamps = new long[count];
+        if (count == 0) {
+            return timestamps;
+        }
+        BitReader reader = new BitReader(data);
+        timestamps[0] = reader.readBits(64);
+        long previousDelta = 0;
+        for (int i = 1; i < count; i++) {
+            long dod;
+            if (!reader.readBit()) {
+                dod = 0;
+            } else if (!reader.readBit()) {
+                dod = reader.readSigned(7);
+            } else if (!reader.readBit()) {
+                dod = reader.readSigned(9);
+            } else if (!reader.readBit()) {
+                dod = reader.readSigned(12);
+            } else {
+                dod = reader.readSigned(32);
+            }
+            previousDelta += dod;
+            timestamps[i] = timestamps[i - 1] + previousDelta;
+        }
+        return timestamps;
+    }
+
+    /**
+     * 编码浮点值列
+     * 首个值原样写入 64 位；之后与前值异或：0 -> 相同；10 -> 有效位落在上一个窗口内；
+     * 11 -> 5 位前导零数 + 6 位有效位长度 + 有效位
+     */
+    public static byte[] encodeValues(double[] values, int count) {
+        BitWriter writer = new BitWriter();
+        if (count == 0) {
+            return writer.toByteArray();
+        }
+        long previous = Double.doubleToRawLongBits(values[0]);
+        writer.writeBits(previous, 64);
+        int previousLeading = -1;
+        int previousTrailing = 0;
+        for (int i = 1; i < count; i++) {
+            long current = Double.doubleToRawLongBits(values[i]);
+            long xor = current ^ previous;
+            if (xor == 0) {
+                writer.writeBit(false);
+            } else {
+                writer.writeBit(true);
+                int leading = Math.min(Long.numberOfLeadingZeros(xor), 31);
+                int trailing = Long.numberOfTrailingZeros(xor);
+                if (previousLeading >= 0 && leading >= previousLeading && trailing >= previousTrailing) {
+                    writer.writeBit(false);
+                    writer.writeBits(xor >>> previousTrailing, 64 - previousLeading - previousTrailing);
+                } else {
+                    int length = 64 - leading - trailing;
+                    writer.writeBit(true);
+                    writer.writeBits(leading, 5);
+                    // 长度范围 1-64，存储 length-1 以放入 6 位
+                    writer.writeBits(length - 1, 6);
+                    writer.writeBits(xor >>> trailing, length);
+                    previousLeading = leading;
+                    previousTrailing = trailing;
+                }
+            }
+            previous = current;
+        }
+        return writer.toByteArray();
+    }
+
+    /**
+     * 解码浮点值列
+     */
+    public static double[] decodeValues(byte[] data, int count) {
+        double[] values = new double[count];
+        if (count == 0) {
+            return values;
+        }
+        BitReader reader = new BitReader(data);
+        long previous = reader.readBits(64);
+        values[0] = Double.longBitsToDouble(previous);
+        int leading = 0;
+        int trailing = 0;
+        for (int i = 1; i < count; i++) {
+            if (reader.readBit()) {
+                if (reader.readBit()) {
+                    leading = (int) reader.readBits(5);
+                    int length = (int) reader.readBits(6) + 1;
+                    trailing = 64 - leading - length;
+                }
+                long meaningful = reader.readBits(64 - leading - trailing);
+                previous ^= meaningful << trailing;
+            }
+            values[i] = Double.longBitsToDouble(previous);
+        }
+        return values;
+    }
+}
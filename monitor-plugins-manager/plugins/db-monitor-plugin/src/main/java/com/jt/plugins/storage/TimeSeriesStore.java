@@ -0,0 +1,362 @@
+package com.jt.plugins.storage;
+
+import com.jt.plugins.common.log.PluginLogger;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.text.SimpleDateFormat;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * @BelongsProject: jt-server-monitor
+ * @BelongsPackage: com.jt.plugins.storage
+ * @Author: 别来无恙qb
+ * @CreateTime: 2026-03-19  10:00
+ * @Description: 单个目标的追加写列式时序存储
+ *
+ * 数据按天分文件（yyyyMMdd.tsd），文件由若干数据块顺序追加组成，每块格式：
+ * magic(int) | blockLength(int) | count(int) | firstTs(long) | lastTs(long) | columnCount(short)
+ * | tsLength(int) | 时间戳列(二阶差分) | 每列 [length(int) | 浮点列(异或压缩)]
+ * 查询时按块头时间范围跳过整块，只解码请求的列；列按位置对应指标，新指标只能追加在末尾，
+ * 旧数据块缺少的列读出为 NaN。最近未落盘的数据保存在内存缓冲区中，查询时一并返回。
+ * @Version: 1.0
+ */
+public class TimeSeriesStore {
+
+    private static final PluginLogger logger = PluginLogger.getLogger("db-monitor-plugin");
+
+    private static final int BLOCK_MAGIC = 0x54534442;
+
+    // 单个数据块最多包含的采样点数
+    private static final int BLOCK_POINTS = 120;
+
+    private static final String FILE_SUFFIX = ".tsd";
+
+    private final File directory;
+    private final int columnCount;
+
+    // 内存缓冲区（当前未落盘的数据块）
+    private final long[] bufferTimestamps = new long[BLOCK_POINTS];
+    private final double[][] bufferValues;
+    private int bufferSize;
+
+    public TimeSeriesStore(File directory, int columnCount) {
+        this.directory = directory;
+        this.columnCount = columnCount;
+        this.bufferValues = new double[columnCount][BLOCK_POINTS];
+        if (!directory.exists() && !directory.mkdirs()) {
+            logger.warn("创建时序数据目录失败: {}", directory.getAbsolutePath());
+        }
+    }
+
+    /**
+     * 追加一个采样点，缓冲区写满或跨天时落盘
+     */
+    public synchronized void append(long timestamp, double[] values) {
+        if (values.length != columnCount) {
+            throw new IllegalArgumentException("列数不匹配：期望 " + columnCount + "，实际 " + values.length);
+        }
+        if (bufferSize > 0 && (timestamp < bufferTimestamps[bufferSize - 1]
+                || !dayOf(timestamp).equals(dayOf(bufferTimestamps[0])))) {
+            flush();
+        }
+        bufferTimestamps[bufferSize] = timestamp;
+        for (int c = 0; c < columnCount; c++) {
+            bufferValues[c][bufferSize] = values[c];
+        }
+        bufferSize++;
+        if (bufferSize == BLOCK_POINTS) {
+            flush();
+        }
+    }
+
+    /**
+     * 缓冲区中最早的数据超过指定时长时落盘，降低进程异常退出时的数据丢失
+     */
+    public synchronized void flushIfOlderThan(long maxAgeMs) {
+        if (bufferSize > 0 && System.currentTimeMillis() - bufferTimestamps[0] > maxAgeMs) {
+            flush();
+        }
+    }
+
+    /**
+     * 把缓冲区编码为一个数据块追加到当天的文件
+     */
+    public synchronized void flush() {
+        if (bufferSize == 0) {
+            return;
+        }
+        File file = new File(directory, dayOf(bufferTimestamps[0]) + FILE_SUFFIX);
+        try {
+            ByteArrayOutputStream body = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(body);
+            out.writeInt(bufferSize);
+            out.writeLong(bufferTimestamps[0]);
+            out.writeLong(bufferTimestamps[bufferSize - 1]);
+            out.writeShort(columnCount);
+            byte[] timestamps = GorillaCodec.encodeTimestamps(bufferTimestamps, bufferSize);
+            out.writeInt(timestamps.length);
+            out.write(timestamps);
+            for (int c = 0; c < columnCount; c++) {
+                byte[] column = GorillaCodec.encodeValues(bufferValues[c], bufferSize);
+                out.writeInt(column.length);
+                out.write(column);
+            }
+            out.flush();
+
+            // 整块一次写入，异常退出时最多留下一个不完整的尾块，读取时会被忽略
+            ByteBuffer block = ByteBuffer.allocate(8 + body.size());
+            block.putInt(BLOCK_MAGIC);
+            block.putInt(body.size());
+            block.put(body.toByteArray());
+            try (FileOutputStream fos = new FileOutputStream(file, true)) {
+                fos.write(block.array());
+                fos.getFD().sync();
+            }
+        } catch (IOException e) {
+            // 丢弃本块：保留会使缓冲区停在满状态（后续 append 越界），且跨天后再写会落到错误的日期文件
+            logger.error("写入时序数据块失败，丢弃 {} 个采样点: {}", bufferSize, file.getAbsolutePath(), e);
+        } finally {
+            bufferSize = 0;
+        }
+    }
+
+    /**
+     * 查询时间范围内的原始采样点
+     * @param start 开始时间（含）
+     * @param end 结束时间（含）
+     * @param columns 需要的列下标
+     */
+    public synchronized Points query(long start, long end, int[] columns) {
+        Points points = new Points(columns.length);
+        long day = 24L * 60 * 60 * 1000;
+        // 按天遍历覆盖查询范围的文件（夏令时下相邻两步可能落在同一天，需去重）
+        Set<String> visited = new HashSet<>();
+        for (long t = start - day; t <= end + day; t += day) {
+            String name = dayOf(t);
+            File file = new File(directory, name + FILE_SUFFIX);
+            if (visited.add(name) && file.isFile()) {
+                readFile(file, start, end, columns, points);
+            }
+        }
+        for (int i = 0; i < bufferSize; i++) {
+            long ts = bufferTimestamps[i];
+            if (ts >= start && ts <= end) {
+                double[] row = new double[columns.length];
+                for (int k = 0; k < columns.length; k++) {
+                    int c = columns[k];
+                    row[k] = c < columnCount ? bufferValues[c][i] : Double.NaN;
+                }
+                points.add(ts, row);
+            }
+        }
+        return points;
+    }
+
+    private void readFile(File file, long start, long end, int[] columns, Points points) {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 64 * 1024))) {
+            long remaining = file.length();
+            while (remaining >= 8) {
+                int magic = in.readInt();
+                int length = in.readInt();
+                remaining -= 8;
+                if (magic != BLOCK_MAGIC || length < 0 || length > remaining) {
+                    logger.warn("时序数据文件尾部存在不完整的数据块，已忽略: {}", file.getName());
+                    return;
+                }
+                byte[] body = new byte[length];
+                in.readFully(body);
+                remaining -= length;
+                decodeBlock(ByteBuffer.wrap(body), start, end, columns, points);
+            }
+        } catch (EOFException e) {
+            logger.warn("时序数据文件意外结束: {}", file.getName());
+        } catch (Exception e) {
+            logger.error("读取时序数据文件失败: {}", file.getAbsolutePath(), e);
+        }
+    }
+
+    private void decodeBlock(ByteBuffer block, long start, long end, int[] columns, Points points) {
+        int count = block.getInt();
+        long firstTs = block.getLong();
+        long lastTs = block.getLong();
+        if (lastTs < start || firstTs > end) {
+            return;
+        }
+        int blockColumns = block.getShort();
+        byte[] tsBytes = new byte[block.getInt()];
+        block.get(tsBytes);
+        long[] timestamps = GorillaCodec.decodeTimestamps(tsBytes, count);
+
+        // 只解码请求的列，其余列按长度跳过
+        double[][] decoded = new double[columns.length][];
+        for (int c = 0; c < blockColumns; c++) {
+            int length = block.getInt();
+            int wanted = indexOf(columns, c);
+            if (wanted < 0) {
+                block.position(block.position() + length);
+                continue;
+            }
+            byte[] bytes = new byte[length];
+            block.get(bytes);
+            double[] values = GorillaCodec.decodeValues(bytes, count);
+            for (int k = 0; k < columns.length; k++) {
+                if (columns[k] == c) {
+                    decoded[k] = values;
+                }
+            }
+        }
+
+        for (int i = 0; i < count; i++) {
+            long ts = timestamps[i];
+            if (ts < start || ts > end) {
+                continue;
+            }
+            double[] row = new double[columns.length];
+            for (int k = 0; k < columns.length; k++) {
+                row[k] = decoded[k] != null ? decoded[k][i] : Double.NaN;
+            }
+            points.add(ts, row);
+        }
+    }
+
+    private static int indexOf(int[] array, int value) {
+        for (int i = 0; i < array.length; i++) {
+            if (array[i] == value) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 删除早于保留天数的数据文件
+     */
+    public synchronized void cleanup(int retentionDays) {
+        String oldest = dayOf(System.currentTimeMillis() - retentionDays * 24L * 60 * 60 * 1000);
+        File[] files = directory.listFiles((dir, name) -> name.endsWith(FILE_SUFFIX));
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            String day = file.getName().substring(0, file.getName().length() - FILE_SUFFIX.length());
+            if (day.compareTo(oldest) < 0 && file.delete()) {
+                logger.info("时序数据超过保留期限，已删除: {}", file.getAbsolutePath());
+            }
+        }
+    }
+
+    private static String dayOf(long timestamp) {
+        return new SimpleDateFormat("yyyyMMdd").format(new Date(timestamp));
+    }
+
+    /**
+     * 查询结果（按时间顺序的采样点）
+     */
+    public static class Points {
+        private final int width;
+        private long[] timestamps = new long[64];
+        private double[][] rows = new double[64][];
+        private int size;
+
+        Points(int width) {
+            this.width = width;
+        }
+
+        void add(long timestamp, double[] row) {
+            if (size == timestamps.length) {
+                timestamps = Arrays.copyOf(timestamps, size * 2);
+                rows = Arrays.copyOf(rows, size * 2);
+            }
+            timestamps[size] = timestamp;
+            rows[size] = row;
+            size++;
+        }
+
+        public int size() { return size; }
+        public int width() { return width; }
+        public long timestamp(int index) { return timestamps[index]; }
+        public double value(int index, int column) { return rows[index][column]; }
+
+        /**
+         * 按固定步长降采样，NaN（采集失败）不参与聚合
+         * @param start 第一个桶的起始时间
+         * @param end 结束时间
+         * @param step 步长（毫秒）
+         * @param aggregation avg/min/max/sum/last/count
+         * @return 每个非空桶一个点，时间戳为桶起始时间
+         */
+        public Points downsample(long start, long end, long step, String aggregation) {
+            int buckets = (int) ((end - start) / step + 1);
+            double[][] result = new double[buckets][width];
+            int[][] counts = new int[buckets][width];
+            long[][] lastTimes = new long[buckets][width];
+            for (int i = 0; i < size; i++) {
+                long ts = timestamps[i];
+                if (ts < start || ts > end) {
+                    continue;
+                }
+                int b = (int) ((ts - start) / step);
+                for (int c = 0; c < width; c++) {
+                    double v = rows[i][c];
+                    if (Double.isNaN(v)) {
+                        continue;
+                    }
+                    int n = counts[b][c]++;
+                    switch (aggregation) {
+                        case "min":
+                            result[b][c] = n == 0 ? v : Math.min(result[b][c], v);
+                            break;
+                        case "max":
+                            result[b][c] = n == 0 ? v : Math.max(result[b][c], v);
+                            break;
+                        case "last":
+                            if (n == 0 || ts >= lastTimes[b][c]) {
+                                result[b][c] = v;
+                                lastTimes[b][c] = ts;
+                            }
+                            break;
+                        default:
+                            // avg/sum/count 先累加
+                            result[b][c] += v;
+                            break;
+                    }
+                }
+            }
+
+            Points points = new Points(width);
+            for (int b = 0; b < buckets; b++) {
+                boolean any = false;
+                double[] row = result[b];
+                for (int c = 0; c < width; c++) {
+                    int n = counts[b][c];
+                    if (n == 0) {
+                        row[c] = "count".equals(aggregation) ? 0 : Double.NaN;
+                        continue;
+                    }
+                    any = true;
+                    if ("avg".equals(aggregation)) {
+                        row[c] = row[c] / n;
+                    } else if ("count".equals(aggregation)) {
+                        row[c] = n;
+                    }
+                }
+                if (any) {
+                    points.add(start + b * step, row);
+                }
+            }
+            return points;
+        }
+    }
+}
@@ -0,0 +1,213 @@
+package com.jt.plugins.storage;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONArray;
+import com.alibaba.fastjson.JSONObject;
+import com.jt.plugins.common.log.PluginLogger;
+import com.jt.plugins.model.SqlServerQueryDelta;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * @BelongsProject: jt-server-monitor
+ * @BelongsPackage: com.jt.plugins.storage
+ * @Author: 别来无恙qb
+ * @CreateTime: 2026-03-20  10:30
+ * @Description: 单个目标的 Top SQL 区间汇总存储
+ *
+ * 按天分文件（yyyyMMdd.jsonl），每行一条记录：
+ * 区间记录 {"s":开始,"e":结束,"q":[[query_hash,执行次数,CPU微秒,耗时微秒,逻辑读,逻辑写],...]}
+ * 文本记录 {"h":query_hash,"db":数据库,"t":语句} —— 每个查询每天只写一次，查询时与区间记录一起读出
+ * @Version: 1.0
+ */
+public class TopSqlRollupStore {
+
+    private static final PluginLogger logger = PluginLogger.getLogger("db-monitor-plugin");
+
+    private static final String FILE_SUFFIX = ".jsonl";
+
+    private final File directory;
+
+    // 当天文件中已写入文本的 query_hash
+    private String currentDay;
+    private final Set<Long> writtenTexts = new HashSet<>();
+
+    public TopSqlRollupStore(File directory) {
+        this.directory = directory;
+        if (!directory.exists() && !directory.mkdirs()) {
+            logger.warn("创建 Top SQL 数据目录失败: {}", directory.getAbsolutePath());
+        }
+    }
+
+    /**
+     * 追加一个区间的 Top 查询
+     */
+    public synchronized void append(long start, long end, List<SqlServerQueryDelta> top) {
+        String day = dayOf(end);
+        File file = new File(directory, day + FILE_SUFFIX);
+        if (!day.equals(currentDay)) {
+            currentDay = day;
+            writtenTexts.clear();
+            // 进程重启后继续写当天文件时，恢复已写入的文本
+            if (file.isFile()) {
+                readFile(file, Long.MIN_VALUE, Long.MAX_VALUE, null, writtenTexts, null);
+            }
+        }
+
+        StringBuilder lines = new StringBuilder();
+        JSONArray queries = new JSONArray();
+        for (SqlServerQueryDelta delta : top) {
+            JSONArray q = new JSONArray();
+            q.add(delta.getQueryHash());
+            q.add(delta.getExecutions());
+            q.add(delta.getCpuTimeUs());
+            q.add(delta.getElapsedTimeUs());
+            q.add(delta.getLogicalReads());
+            q.add(delta.getLogicalWrites());
+            queries.add(q);
+            if (delta.getSqlText() != null && writtenTexts.add(delta.getQueryHash())) {
+                JSONObject text = new JSONObject(true);
+                text.put("h", delta.getQueryHash());
+                text.put("db", delta.getDatabaseName());
+                text.put("t", delta.getSqlText());
+                lines.append(text.toJSONString()).append('\n');
+            }
+        }
+        JSONObject interval = new JSONObject(true);
+        interval.put("s", start);
+        interval.put("e", end);
+        interval.put("q", queries);
+        lines.append(interval.toJSONString()).append('\n');
+
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(file, true), StandardCharsets.UTF_8)) {
+            writer.write(lines.toString());
+        } catch (IOException e) {
+            logger.error("写入 Top SQL 数据失败: {}", file.getAbsolutePath(), e);
+        }
+    }
+
+    /**
+     * 汇总结束时间落在 (start, end] 内的区间
+     */
+    public synchronized Summary query(long start, long end) {
+        Summary summary = new Summary();
+        Map<Long, String[]> texts = new HashMap<>();
+        long day = 24L * 60 * 60 * 1000;
+        Set<String> visited = new HashSet<>();
+        for (long t = start - day; t <= end + day; t += day) {
+            String name = dayOf(t);
+            File file = new File(directory, name + FILE_SUFFIX);
+            if (visited.add(name) && file.isFile()) {
+                readFile(file, start, end, summary, null, texts);
+            }
+        }
+        for (SqlServerQueryDelta delta : summary.queries.values()) {
+            String[] text = texts.get(delta.getQueryHash());
+            if (text != null) {
+                delta.setDatabaseName(text[0]);
+                delta.setSqlText(text[1]);
+            }
+        }
+        return summary;
+    }
+
+    private void readFile(File file, long start, long end, Summary summary, Set<Long> textHashes,
+                          Map<Long, String[]> texts) {
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isEmpty()) {
+                    continue;
+                }
+                JSONObject record;
+                try {
+                    record = JSON.parseObject(line);
+                } catch (Exception e) {
+                    // 异常退出可能留下不完整的尾行
+                    continue;
+                }
+                if (record.containsKey("t")) {
+                    long hash = record.getLongValue("h");
+                    if (textHashes != null) {
+                        textHashes.add(hash);
+                    }
+                    if (texts != null) {
+                        texts.put(hash, new String[]{record.getString("db"), record.getString("t")});
+                    }
+                } else if (summary != null) {
+                    long e = record.getLongValue("e");
+                    if (e > start && e <= end) {
+                        summary.add(record.getLongValue("s"), e, record.getJSONArray("q"));
+                    }
+                }
+            }
+        } catch (IOException e) {
+            logger.error("读取 Top SQL 数据失败: {}", file.getAbsolutePath(), e);
+        }
+    }
+
+    /**
+     * 删除早于保留天数的数据文件
+     */
+    public synchronized void cleanup(int retentionDays) {
+        String oldest = dayOf(System.currentTimeMillis() - retentionDays * 24L * 60 * 60 * 1000);
+        File[] files = directory.listFiles((dir, name) -> name.endsWith(FILE_SUFFIX));
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            String day = file.getName().substring(0, file.getName().length() - FILE_SUFFIX.length());
+            if (day.compareTo(oldest) < 0 && file.delete()) {
+                logger.info("Top SQL 数据超过保留期限，已删除: {}", file.getAbsolutePath());
+            }
+        }
+    }
+
+    private static String dayOf(long timestamp) {
+        return new SimpleDateFormat("yyyyMMdd").format(new Date(timestamp));
+    }
+
+    /**
+     * 时间范围内各查询的累计增量
+     */
+    public static class Summary {
+        private final Map<Long, SqlServerQueryDelta> queries = new HashMap<>();
+        private int intervals;
+        private long firstStart = Long.MAX_VALUE;
+        private long lastEnd = Long.MIN_VALUE;
+
+        void add(long start, long end, JSONArray rows) {
+            intervals++;
+            firstStart = Math.min(firstStart, start);
+            lastEnd = Math.max(lastEnd, end);
+            for (int i = 0; i < rows.size(); i++) {
+                JSONArray q = rows.getJSONArray(i);
+                queries.computeIfAbsent(q.getLongValue(0), SqlServerQueryDelta::new)
+                        .add(q.getLongValue(1), q.getLongValue(2), q.getLongValue(3),
+                                q.getLongValue(4), q.getLongValue(5));
+            }
+        }
+
+        public int getIntervals() { return intervals; }
+        public long getFirstStart() { return intervals > 0 ? firstStart : 0L; }
+        public long getLastEnd() { return intervals > 0 ? lastEnd : 0L; }
+        public List<SqlServerQueryDelta> getQueries() { return new ArrayList<>(queries.values()); }
+    }
+}
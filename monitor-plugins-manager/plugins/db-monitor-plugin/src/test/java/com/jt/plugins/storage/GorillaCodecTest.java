@@ -0,0 +1,186 @@
+package com.jt.plugins.storage;
+
+import org.junit.Test;
+
+import java.text.SimpleDateFormat;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @BelongsProject: jt-server-monitor
+ * @BelongsPackage: com.jt.plugins.storage
+ * @Author: 别来无恙qb
+ * @CreateTime: 2026-03-30  10:00
+ * @Description: GorillaCodec 与 BitWriter/BitReader 编解码往返测试
+ * @Version: 1.0
+ */
+public class GorillaCodecTest {
+
+    // 与 TimeSeriesStore 的单块点数一致
+    private static final int BLOCK_POINTS = 120;
+
+    @Test
+    public void bitsRoundTripAcrossByteBoundaries() {
+        BitWriter writer = new BitWriter();
+        writer.writeBit(true);
+        writer.writeBits(0b101, 3);
+        writer.writeBits(-5, 7);
+        writer.writeBits(0x1234_5678_9ABC_DEF0L, 64);
+        writer.writeBit(false);
+        writer.writeBits(Long.MIN_VALUE, 64);
+        writer.writeBits(-1L, 64);
+        writer.writeBits(0x3FF, 10);
+
+        BitReader reader = new BitReader(writer.toByteArray());
+        assertTrue(reader.readBit());
+        assertEquals(0b101, reader.readBits(3));
+        assertEquals(-5, reader.readSigned(7));
+        assertEquals(0x1234_5678_9ABC_DEF0L, reader.readBits(64));
+        assertFalse(reader.readBit());
+        assertEquals(Long.MIN_VALUE, reader.readBits(64));
+        assertEquals(-1L, reader.readBits(64));
+        assertEquals(0x3FF, reader.readBits(10));
+    }
+
+    @Test
+    public void bitWriterGrowsBeyondInitialBuffer() {
+        BitWriter writer = new BitWriter();
+        for (int i = 0; i < 1000; i++) {
+            writer.writeBits(i, 13);
+        }
+        byte[] bytes = writer.toByteArray();
+        assertEquals((1000 * 13 + 7) / 8, bytes.length);
+
+        BitReader reader = new BitReader(bytes);
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(i, reader.readBits(13));
+        }
+    }
+
+    @Test
+    public void readingPastEndFails() {
+        BitWriter writer = new BitWriter();
+        writer.writeBits(0xFF, 8);
+        BitReader reader = new BitReader(writer.toByteArray());
+        reader.readBits(8);
+        assertThrows(IllegalStateException.class, reader::readBit);
+    }
+
+    @Test
+    public void emptyColumns() {
+        assertEquals(0, GorillaCodec.decodeTimestamps(GorillaCodec.encodeTimestamps(new long[0], 0), 0).length);
+        assertEquals(0, GorillaCodec.decodeValues(GorillaCodec.encodeValues(new double[0], 0), 0).length);
+    }
+
+    @Test
+    public void fullBlockRoundTrip() {
+        Random random = new Random(42);
+        long[] timestamps = new long[BLOCK_POINTS];
+        double[] values = new double[BLOCK_POINTS];
+        long ts = 1_774_000_000_000L;
+        double value = 50;
+        for (int i = 0; i < BLOCK_POINTS; i++) {
+            // 15 秒采集间隔，带少量抖动和偶尔的长间隔（采集超时）
+            ts += 15_000 + random.nextInt(200) - 100 + (i % 37 == 0 ? 45_000 : 0);
+            timestamps[i] = ts;
+            value += random.nextGaussian();
+            values[i] = i % 10 == 0 ? Math.rint(value) : value;
+        }
+
+        assertArrayEquals(timestamps, GorillaCodec.decodeTimestamps(
+                GorillaCodec.encodeTimestamps(timestamps, BLOCK_POINTS), BLOCK_POINTS));
+        assertBitsEqual(values, GorillaCodec.decodeValues(
+                GorillaCodec.encodeValues(values, BLOCK_POINTS), BLOCK_POINTS));
+    }
+
+    @Test
+    public void partialBlockIgnoresTrailingSlots() {
+        long[] timestamps = new long[BLOCK_POINTS];
+        double[] values = new double[BLOCK_POINTS];
+        for (int i = 0; i < BLOCK_POINTS; i++) {
+            timestamps[i] = 1000L * i;
+            values[i] = i;
+        }
+        int count = 17;
+        long[] decodedTs = GorillaCodec.decodeTimestamps(GorillaCodec.encodeTimestamps(timestamps, count), count);
+        double[] decodedValues = GorillaCodec.decodeValues(GorillaCodec.encodeValues(values, count), count);
+        assertEquals(count, decodedTs.length);
+        for (int i = 0; i < count; i++) {
+            assertEquals(timestamps[i], decodedTs[i]);
+            assertEquals(values[i], decodedValues[i], 0.0);
+        }
+    }
+
+    @Test
+    public void nanAndSpecialValuesKeepTheirBits() {
+        double[] values = {
+                Double.NaN, Double.NaN, 1.5, Double.NaN, -0.0, 0.0,
+                Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY, Double.MIN_VALUE, Double.MAX_VALUE,
+                Double.longBitsToDouble(0x7ff8_0000_0000_0001L), -1.0, Double.NaN
+        };
+        assertBitsEqual(values, GorillaCodec.decodeValues(GorillaCodec.encodeValues(values, values.length), values.length));
+    }
+
+    @Test
+    public void repeatedValuesUseOneBitEach() {
+        double[] values = new double[BLOCK_POINTS];
+        long[] timestamps = new long[BLOCK_POINTS];
+        for (int i = 0; i < BLOCK_POINTS; i++) {
+            values[i] = 98.76;
+            timestamps[i] = 1_774_000_000_000L + 15_000L * i;
+        }
+
+        byte[] encodedValues = GorillaCodec.encodeValues(values, BLOCK_POINTS);
+        byte[] encodedTimestamps = GorillaCodec.encodeTimestamps(timestamps, BLOCK_POINTS);
+        // 首个值 64 位，之后每点 1 位；时间戳第二个点 4+32 位（首个间隔），之后间隔不变每点 1 位
+        assertEquals((64 + BLOCK_POINTS - 1 + 7) / 8, encodedValues.length);
+        assertEquals((64 + 36 + BLOCK_POINTS - 2 + 7) / 8, encodedTimestamps.length);
+
+        assertBitsEqual(values, GorillaCodec.decodeValues(encodedValues, BLOCK_POINTS));
+        assertArrayEquals(timestamps, GorillaCodec.decodeTimestamps(encodedTimestamps, BLOCK_POINTS));
+    }
+
+    @Test
+    public void timestampsAcrossDayBoundary() throws Exception {
+        SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSS");
+        long midnight = format.parse("2026-03-20 00:00:00.000").getTime();
+        long[] timestamps = {
+                midnight - 30_000, midnight - 15_000, midnight - 1, midnight, midnight + 1,
+                // 跨天后停采一段时间再恢复：二阶差分分别落入 9 位、12 位与 32 位区间
+                midnight + 200, midnight + 2_000, midnight + 3_600_000,
+                // 时钟回拨一小段
+                midnight + 3_599_000, midnight + 3_614_000, midnight + 86_400_000
+        };
+        assertArrayEquals(timestamps, GorillaCodec.decodeTimestamps(
+                GorillaCodec.encodeTimestamps(timestamps, timestamps.length), timestamps.length));
+    }
+
+    @Test
+    public void timestampDeltaOfDeltaPrefixBoundaries() {
+        long[] dods = {0, -64, 63, -65, 64, -256, 255, -257, 256, -2048, 2047, -2049, 2048,
+                Integer.MIN_VALUE, Integer.MAX_VALUE};
+        long[] timestamps = new long[dods.length + 2];
+        long delta = 15_000L;
+        timestamps[0] = 1_774_000_000_000L;
+        timestamps[1] = timestamps[0] + delta;
+        for (int i = 0; i < dods.length; i++) {
+            delta += dods[i];
+            timestamps[i + 2] = timestamps[i + 1] + delta;
+        }
+        assertArrayEquals(timestamps, GorillaCodec.decodeTimestamps(
+                GorillaCodec.encodeTimestamps(timestamps, timestamps.length), timestamps.length));
+    }
+
+    private static void assertBitsEqual(double[] expected, double[] actual) {
+        assertEquals(expected.length, actual.length);
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals("第 " + i + " 个值不一致",
+                    Double.doubleToRawLongBits(expected[i]), Double.doubleToRawLongBits(actual[i]));
+        }
+    }
+}
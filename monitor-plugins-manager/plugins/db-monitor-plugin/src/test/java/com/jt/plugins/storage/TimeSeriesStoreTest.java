@@ -0,0 +1,113 @@
+package com.jt.plugins.storage;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @BelongsProject: jt-server-monitor
+ * @BelongsPackage: com.jt.plugins.storage
+ * @Author: 别来无恙qb
+ * @CreateTime: 2026-03-30  10:30
+ * @Description: TimeSeriesStore 数据块落盘与查询测试
+ * @Version: 1.0
+ */
+public class TimeSeriesStoreTest {
+
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+
+    @Test
+    public void fullBlocksAndBufferAreQueried() {
+        TimeSeriesStore store = new TimeSeriesStore(temp.getRoot(), 2);
+        long start = midnight("2026-03-20") + 60 * 60 * 1000L;
+        int count = 120 * 2 + 30;
+        for (int i = 0; i < count; i++) {
+            store.append(start + i * 1000L, new double[]{i, i % 3 == 0 ? Double.NaN : -i});
+        }
+
+        TimeSeriesStore.Points points = store.query(start, start + count * 1000L, new int[]{1, 0});
+        assertEquals(count, points.size());
+        for (int i = 0; i < count; i++) {
+            assertEquals(start + i * 1000L, points.timestamp(i));
+            assertEquals(i, points.value(i, 1), 0.0);
+            assertEquals(i % 3 == 0 ? Double.NaN : -i, points.value(i, 0), 0.0);
+        }
+    }
+
+    @Test
+    public void blocksAreSplitAtDayBoundary() {
+        TimeSeriesStore store = new TimeSeriesStore(temp.getRoot(), 1);
+        long midnight = midnight("2026-03-21");
+        long[] timestamps = {midnight - 2000, midnight - 1, midnight, midnight + 1000};
+        for (long ts : timestamps) {
+            store.append(ts, new double[]{ts - midnight});
+        }
+        store.flush();
+
+        assertTrue(new File(temp.getRoot(), "20260320.tsd").isFile());
+        assertTrue(new File(temp.getRoot(), "20260321.tsd").isFile());
+
+        TimeSeriesStore reopened = new TimeSeriesStore(temp.getRoot(), 1);
+        TimeSeriesStore.Points points = reopened.query(midnight - 60_000, midnight + 60_000, new int[]{0});
+        assertEquals(timestamps.length, points.size());
+        for (int i = 0; i < timestamps.length; i++) {
+            assertEquals(timestamps[i], points.timestamp(i));
+            assertEquals(timestamps[i] - midnight, points.value(i, 0), 0.0);
+        }
+
+        // 只查询后一天时跳过前一天的数据块
+        assertEquals(2, reopened.query(midnight, midnight + 60_000, new int[]{0}).size());
+    }
+
+    @Test
+    public void appendKeepsWorkingWhenFlushFails() throws Exception {
+        // 数据目录是一个普通文件，所有落盘都会失败
+        File notADirectory = temp.newFile("tsdb");
+        TimeSeriesStore store = new TimeSeriesStore(notADirectory, 1);
+        long start = midnight("2026-03-22");
+        for (int i = 0; i < 120 * 3 + 5; i++) {
+            store.append(start + i * 1000L, new double[]{i});
+        }
+
+        // 写满的块落盘失败后被丢弃，缓冲区只剩最近未满一块的数据
+        TimeSeriesStore.Points points = store.query(start, start + 3600_000L, new int[]{0});
+        assertEquals(5, points.size());
+        assertEquals(360, points.value(0, 0), 0.0);
+    }
+
+    @Test
+    public void downsampleSkipsNaN() {
+        TimeSeriesStore store = new TimeSeriesStore(temp.getRoot(), 1);
+        long start = midnight("2026-03-23");
+        double[] values = {1, Double.NaN, 3, 10, Double.NaN, Double.NaN};
+        for (int i = 0; i < values.length; i++) {
+            store.append(start + i * 1000L, new double[]{values[i]});
+        }
+
+        TimeSeriesStore.Points raw = store.query(start, start + 5999, new int[]{0});
+        TimeSeriesStore.Points avg = raw.downsample(start, start + 5999, 3000, "avg");
+        assertEquals(2, avg.size());
+        assertEquals(2.0, avg.value(0, 0), 0.0);
+        assertEquals(10.0, avg.value(1, 0), 0.0);
+
+        TimeSeriesStore.Points count = raw.downsample(start, start + 5999, 3000, "count");
+        assertEquals(2.0, count.value(0, 0), 0.0);
+        assertEquals(1.0, count.value(1, 0), 0.0);
+    }
+
+    private static long midnight(String day) {
+        try {
+            return new SimpleDateFormat("yyyy-MM-dd").parse(day).getTime();
+        } catch (ParseException e) {
+            throw new IllegalArgumentException(e);
+        }
+    }
+}
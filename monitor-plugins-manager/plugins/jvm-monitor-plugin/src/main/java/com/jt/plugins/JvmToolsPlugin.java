@@ -7,6 +7,8 @@ import com.jt.plugins.common.result.ResultMsg;
 import com.jt.plugins.core.SpringPlugin;
 import com.jt.plugins.extension.JvmToolsProvider;
 import com.jt.plugins.extension.SpringConfiguration;
+import com.jt.plugins.utils.attach.AttachApiUtil;
+import com.jt.plugins.utils.heap.HeapDumpJobManager;
 import org.pf4j.Extension;
 import org.pf4j.PluginWrapper;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -44,6 +46,21 @@ public class JvmToolsPlugin extends SpringPlugin {
         return applicationContext;
     }
 
+    @Override
+    public void stop() {
+        // 释放缓存的JMX连接
+        AttachApiUtil.closeAllConnections();
+        // 停止堆转储任务
+        HeapDumpJobManager.getInstance().shutdown();
+        super.stop();
+    }
+
+    @Override
+    public boolean isBusy() {
+        // 堆转储任务在后台线程执行，完成前不允许空闲卸载
+        return HeapDumpJobManager.getInstance().hasRunningJobs();
+    }
+
     @Extension
     public static class JvmToolsExtension implements ActionExtension {
 
@@ -70,5 +87,20 @@ public class JvmToolsPlugin extends SpringPlugin {
             return jvmToolsProvider.execute(extensionRequestParam);
         }
 
+        @Override
+        public long cacheTtlMs(String targetAction) {
+            return jvmToolsProvider.cacheTtlMs(targetAction);
+        }
+
+        @Override
+        public long timeoutMs(String targetAction) {
+            return jvmToolsProvider.timeoutMs(targetAction);
+        }
+
+        @Override
+        public boolean readOnly(String targetAction) {
+            return jvmToolsProvider.readOnly(targetAction);
+        }
+
     }
 }
\ No newline at end of file
@@ -15,4 +15,10 @@ import com.jt.plugins.common.result.ResultMsg;
 
 public interface JvmToolsProvider {
     ResultMsg<JSONObject> execute(ExtensionRequestParam extensionRequestParam);
+
+    long cacheTtlMs(String targetAction);
+
+    long timeoutMs(String targetAction);
+
+    boolean readOnly(String targetAction);
 }
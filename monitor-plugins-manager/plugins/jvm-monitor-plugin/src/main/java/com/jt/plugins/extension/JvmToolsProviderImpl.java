@@ -2,23 +2,25 @@ package com.jt.plugins.extension;
 
 import com.alibaba.fastjson.JSONArray;
 import com.alibaba.fastjson.JSONObject;
+import com.jt.plugins.common.annotation.ActionDispatcher;
 import com.jt.plugins.common.annotation.ActionHandler;
-import com.jt.plugins.common.file.PluginFileStorage;
+import com.jt.plugins.common.file.DownloadTokenRegistry;
 import com.jt.plugins.common.http.ExtensionRequestParam;
 import com.jt.plugins.common.log.PluginLogger;
+import com.jt.plugins.common.metrics.MetricsRegistry;
 import com.jt.plugins.common.result.ResultMsg;
 import com.jt.plugins.utils.attach.AttachApiUtil;
+import com.jt.plugins.utils.heap.HeapDumpJob;
+import com.jt.plugins.utils.heap.HeapDumpJobManager;
+import com.jt.plugins.utils.heap.HprofSummarizer;
 import com.sun.tools.attach.VirtualMachine;
 import com.sun.tools.attach.VirtualMachineDescriptor;
 
-import javax.management.remote.JMXConnector;
 import java.io.File;
 import java.lang.management.ManagementFactory;
-import java.lang.reflect.Method;
-import java.util.HashMap;
+import java.lang.invoke.MethodHandles;
 import java.util.List;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 
 /**
  * @BelongsProject: jt-server-monitor
@@ -38,71 +40,34 @@ public class JvmToolsProviderImpl implements JvmToolsProvider {
     // 插件日志记录器
     private static final PluginLogger logger = PluginLogger.getLogger("jvm-monitor-plugin");
 
-    // 插件文件存储管理器
-    private static final PluginFileStorage fileStorage = PluginFileStorage.getStorage("jvm-monitor-plugin");
+    // dumpHeap 同步等待上限，需小于该动作 600 秒的执行超时
+    private static final long DUMP_HEAP_WAIT_MS = 540_000L;
 
-    // 缓存方法映射，避免每次反射查找
-    private static final Map<String, Method> ACTION_HANDLERS = new HashMap<>();
-
-    // JMX连接缓存
-    private static final Map<String, JMXConnector> JMX_CONNECTORS = new ConcurrentHashMap<>();
-
-    // 在类加载时初始化方法映射
-    static {
-        Method[] methods = JvmToolsProviderImpl.class.getDeclaredMethods();
-        for (Method method : methods) {
-            ActionHandler annotation = method.getAnnotation(ActionHandler.class);
-            if (annotation != null) {
-                ACTION_HANDLERS.put(annotation.value(), method);
-            }
-        }
-    }
+    // 处理方法在类加载时一次性绑定，按 targetAction 直接调用
+    private static final ActionDispatcher DISPATCHER =
+            ActionDispatcher.create(MethodHandles.lookup(), JvmToolsProviderImpl.class, "JVM监控", logger);
 
     @Override
     public ResultMsg<JSONObject> execute(ExtensionRequestParam extensionRequestParam) {
-        String targetAction = extensionRequestParam.getTargetAction();
-        logger.info("开始执行JVM监控操作: {}", targetAction);
-
-        // 参数校验
-        if (targetAction == null || targetAction.isEmpty()) {
-            logger.warn("操作类型不能为空");
-            return ResultMsg.fail("操作类型不能为空");
-        }
+        return DISPATCHER.dispatch(this, extensionRequestParam);
+    }
 
-        // 根据targetAction查找对应的处理方法
-        Method handlerMethod = ACTION_HANDLERS.get(targetAction);
+    @Override
+    public long cacheTtlMs(String targetAction) {
+        return DISPATCHER.getCacheTtlMs(targetAction);
+    }
 
-        if (handlerMethod != null) {
-            try {
-                // 调用对应的方法处理请求
-                logger.info("调用处理方法: {}", handlerMethod.getName());
-                ResultMsg<JSONObject> result = (ResultMsg<JSONObject>) handlerMethod.invoke(this, extensionRequestParam);
-                logger.info("JVM监控操作执行完成: {}", targetAction);
-                return result;
-            } catch (Exception e) {
-                logger.error("执行JVM监控操作失败: {}", targetAction, e);
-                // 区分不同类型的异常并抛出相应的错误信息
-                Throwable cause = e.getCause();
-                if (cause != null) {
-                    if (cause instanceof SecurityException) {
-                        return ResultMsg.fail("权限不足，无法访问目标JVM进程：" + cause.getMessage());
-                    } else if (cause instanceof IllegalArgumentException) {
-                        return ResultMsg.fail("参数错误：" + cause.getMessage());
-                    } else if (cause instanceof IllegalStateException) {
-                        return ResultMsg.fail("状态错误：" + cause.getMessage());
-                    } else {
-                        return ResultMsg.fail("执行操作失败：" + cause.getMessage());
-                    }
-                }
-                return ResultMsg.fail("执行操作失败：" + e.getMessage());
-            }
-        }
+    @Override
+    public long timeoutMs(String targetAction) {
+        return DISPATCHER.getTimeoutMs(targetAction);
+    }
 
-        logger.warn("不支持的操作类型: {}", targetAction);
-        return ResultMsg.fail("不支持的操作类型：" + targetAction);
+    @Override
+    public boolean readOnly(String targetAction) {
+        return DISPATCHER.isReadOnly(targetAction);
     }
 
-    @ActionHandler("ping")
+    @ActionHandler(value = "ping", readOnly = true)
     private ResultMsg<JSONObject> handlePing(ExtensionRequestParam request) {
         logger.debug("处理ping请求");
         try {
@@ -113,6 +78,40 @@ public class JvmToolsProviderImpl implements JvmToolsProvider {
         }
     }
 
+    /**
+     * 获取监控系统自身的运行指标（主程序与所有插件共用的指标注册表）
+     *
+     * @param request 请求参数（无特殊参数）
+     * @return 各计数器当前值与各耗时直方图的统计；Prometheus 格式见主程序 /metrics
+     *
+     * 返回数据结构说明：
+     * {
+     *   "counters": [                        // 计数器
+     *     {
+     *       "name": "jt_extension_action_total",     // 指标名称
+     *       "labels": {"plugin": "jvm-monitor-plugin", "action": "getJvmInfo", "outcome": "executed"}, // 标签
+     *       "value": 128                     // 累计值
+     *     }
+     *   ],
+     *   "timers": [                          // 耗时直方图
+     *     {
+     *       "name": "jt_extension_action",   // 指标名称
+     *       "labels": {"plugin": "jvm-monitor-plugin", "action": "getJvmInfo"}, // 标签
+     *       "count": 128,                    // 记录次数
+     *       "avgMs": 12.5,                   // 平均耗时 (毫秒)
+     *       "p50Ms": 10.2,                   // 50 分位耗时 (毫秒)
+     *       "p90Ms": 21.0,                   // 90 分位耗时 (毫秒)
+     *       "p99Ms": 48.1,                   // 99 分位耗时 (毫秒)
+     *       "maxMs": 63.4                    // 最大耗时 (毫秒)
+     *     }
+     *   ]
+     * }
+     */
+    @ActionHandler(value = "getSelfMetrics", readOnly = true)
+    private ResultMsg<JSONObject> handleGetSelfMetrics(ExtensionRequestParam request) {
+        return ResultMsg.success(MetricsRegistry.snapshot());
+    }
+
     /**
      * 获取当前服务器所有 Java 进程信息（PID、进程名称等）
      *
@@ -134,7 +133,7 @@ public class JvmToolsProviderImpl implements JvmToolsProvider {
      *   "total": 2                           // Java 进程总数
      * }
      */
-    @ActionHandler("getJavaProcesses")
+    @ActionHandler(value = "getJavaProcesses", cacheTtlMs = 2000)
     private ResultMsg<JSONObject> handleGetJavaProcesses(ExtensionRequestParam request) {
         logger.info("开始获取Java进程信息");
         try {
@@ -224,7 +223,7 @@ public class JvmToolsProviderImpl implements JvmToolsProvider {
      *   }
      * }
      */
-    @ActionHandler("getJvmInfo")
+    @ActionHandler(value = "getJvmInfo", cacheTtlMs = 1000)
     private ResultMsg<JSONObject> handleGetJvmInfo(ExtensionRequestParam request) {
         String pid = request.getParameter("pid");
         logger.info("开始获取JVM信息，PID: {}", pid);
@@ -311,31 +310,32 @@ public class JvmToolsProviderImpl implements JvmToolsProvider {
     }
 
     /**
-     * Dump 目标 JVM 进程堆内存
+     * Dump 目标 JVM 进程堆内存（同步等待版 startHeapDump，走同一任务队列、配额与同进程互斥限制）
      *
      * @param request 请求参数：
      *                - pid: 目标进程 ID（特殊值"self"表示当前进程）
-     *                - filePath: 堆文件保存路径（如"D:/dump/heap.bin"，未传入则使用默认路径）
      *                - live: 是否只Dump存活对象（true/false，默认true）
      * @return 生成的堆转储文件路径
      *
      * 返回数据结构说明：
      * {
-     *   "dumpPath": "D:\\storage\\jvm-monitor-plugin\\heap_dump_12345_1772700000000.hprof"
+     *   "jobId": "3f2b...",                  // 堆转储任务ID，可用于 getHeapDumpJob 下载或 summarizeHeapDump 分析
+     *   "dumpPath": "D:\\storage\\jvm-monitor-plugin\\heapdump\\heap_dump_12345_1772700000000.hprof"
      *              // 堆转储文件的完整路径
      * }
      *
      * 注意：
-     * - 生成的文件是 HPROF 二进制格式，可用 MAT、JVisualVM 等工具分析
+     * - 生成的文件是 HPROF 二进制格式（不压缩），可用 MAT、JVisualVM 等工具分析
+     * - 文件固定写入插件堆转储目录，受存储配额管理，超出配额时自动清理最旧的文件；不再支持 filePath 参数
+     * - 等待超过 DUMP_HEAP_WAIT_MS 仍未完成时返回失败，任务继续在后台执行，可通过 getHeapDumpJob 查询
      * - live=true 时只会 dump存活的对象，文件较小但需要暂停 JVM
      * - live=false 时会 dump 所有对象（包括垃圾），文件较大但不需要暂停 JVM
      */
-    @ActionHandler("dumpHeap")
+    @ActionHandler(value = "dumpHeap", timeoutMs = 600000)
     private ResultMsg<JSONObject> handleDumpHeap(ExtensionRequestParam request) {
         String pid = request.getParameter("pid");
         String filePath = request.getParameter("filePath");
-        String liveStr = request.getParameter("live", "true"); // 默认只Dump存活对象
-        boolean live = Boolean.parseBoolean(liveStr);
+        boolean live = Boolean.parseBoolean(request.getParameter("live", "true")); // 默认只Dump存活对象
 
         logger.info("开始执行堆转储，PID: {}, Live: {}", pid, live);
 
@@ -344,54 +344,259 @@ public class JvmToolsProviderImpl implements JvmToolsProvider {
             logger.warn("参数错误：PID不能为空");
             return ResultMsg.fail("参数错误：PID不能为空");
         }
+        if (filePath != null && !filePath.isEmpty()) {
+            return ResultMsg.fail("参数错误：不支持指定filePath，堆转储文件统一写入插件堆转储目录");
+        }
 
         try {
             // 处理当前进程特殊标识，获取真实PID
             String actualPid = "self".equals(pid) ? getCurrentProcessId() : pid;
             logger.debug("实际PID: {}", actualPid);
 
-            // 若未传入filePath，生成默认路径（插件存储目录 + heap.hprof）
-            if (filePath == null || filePath.isEmpty()) {
-                String timestamp = String.valueOf(System.currentTimeMillis());
-                String defaultFileName = "heap_dump_" + actualPid + "_" + timestamp + ".hprof";
-                // 使用插件文件存储管理器创建文件
-                File dumpFile = fileStorage.createFile(defaultFileName);
-                filePath = dumpFile.getAbsolutePath();
-                logger.debug("使用默认文件路径: {}", filePath);
+            HeapDumpJob job = HeapDumpJobManager.getInstance().submit(actualPid, live, false, true);
+            if (!job.awaitFinished(DUMP_HEAP_WAIT_MS, TimeUnit.MILLISECONDS)) {
+                return ResultMsg.fail("堆转储仍在执行，请通过getHeapDumpJob查询，任务ID：" + job.getJobId());
             }
-
-            // 确保目标目录存在（若目录不存在则创建）
-            File dumpFile = new File(filePath);
-            File parentDir = dumpFile.getParentFile();
-            if (parentDir != null && !parentDir.exists()) {
-                parentDir.mkdirs(); // 创建多级目录
-                logger.debug("创建目录: {}", parentDir.getAbsolutePath());
+            if (job.getStatus() != HeapDumpJob.Status.COMPLETED) {
+                return ResultMsg.fail("堆内存Dump失败：" + job.getErrorMessage());
             }
 
-            // 调用AttachApiUtil执行堆Dump
-            String resultPath = AttachApiUtil.dumpHeap(actualPid, filePath, live);
+            String resultPath = job.getResultFile().getAbsolutePath();
             JSONObject data = new JSONObject();
+            data.put("jobId", job.getJobId());
             data.put("dumpPath", resultPath);
             logger.info("堆转储完成，文件路径: {}", resultPath);
             return ResultMsg.success(data, "堆内存Dump成功，文件路径：" + resultPath);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return ResultMsg.fail("堆内存Dump等待被中断，任务继续在后台执行");
         } catch (Exception e) {
             logger.error("堆内存Dump失败", e);
             // 根据异常类型返回更具体的错误信息
-            if (e instanceof SecurityException) {
-                return ResultMsg.fail("权限不足，无法执行堆转储：" + e.getMessage());
-            } else if (e instanceof IllegalArgumentException) {
+            if (e instanceof IllegalStateException) {
+                return ResultMsg.fail("状态错误：" + e.getMessage());
+            } else {
+                return ResultMsg.fail("堆内存Dump失败：" + e.getMessage());
+            }
+        }
+    }
+
+
+    /**
+     * 异步堆转储：提交后台任务，立即返回任务ID，完成后可通过 getHeapDumpJob 获取下载地址
+     *
+     * @param request 请求参数：
+     *                - pid: 目标进程 ID（特殊值"self"表示当前进程）
+     *                - live: 是否只Dump存活对象（true/false，默认true）
+     *                - compress: 是否gzip压缩（true/false，默认true）
+     *                - keepRaw: 压缩后是否保留原始hprof文件（true/false，默认false，summarizeHeapDump 需要原始文件）
+     * @return 任务信息
+     *
+     * 返回数据结构说明：
+     * {
+     *   "jobId": "3f2b...",                  // 任务ID
+     *   "pid": "12345",
+     *   "live": true,
+     *   "compress": true,
+     *   "status": "PENDING",                 // PENDING/DUMPING/COMPRESSING/COMPLETED/FAILED
+     *   "progress": 0,                       // 估算进度 (0-100)
+     *   "createTime": 1772700000000
+     * }
+     *
+     * 注意：同一进程同一时间只允许一个进行中的任务；堆转储目录有存储配额，超出时自动清理最旧的文件
+     */
+    @ActionHandler("startHeapDump")
+    private ResultMsg<JSONObject> handleStartHeapDump(ExtensionRequestParam request) {
+        String pid = request.getParameter("pid");
+        boolean live = Boolean.parseBoolean(request.getParameter("live", "true"));
+        boolean compress = Boolean.parseBoolean(request.getParameter("compress", "true"));
+        boolean keepRaw = Boolean.parseBoolean(request.getParameter("keepRaw", "false"));
+        logger.info("开始提交堆转储任务，PID: {}, Live: {}, Compress: {}", pid, live, compress);
+
+        if (pid == null || pid.isEmpty()) {
+            logger.warn("参数错误：PID不能为空");
+            return ResultMsg.fail("参数错误：PID不能为空");
+        }
+
+        try {
+            String actualPid = "self".equals(pid) ? getCurrentProcessId() : pid;
+            HeapDumpJob job = HeapDumpJobManager.getInstance().submit(actualPid, live, compress, keepRaw);
+            return ResultMsg.success(job.toJSON(), "堆转储任务已提交");
+        } catch (Exception e) {
+            logger.error("提交堆转储任务失败", e);
+            if (e instanceof IllegalStateException) {
+                return ResultMsg.fail("状态错误：" + e.getMessage());
+            } else {
+                return ResultMsg.fail("提交堆转储任务失败：" + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * 查询堆转储任务状态，任务完成时返回带令牌的下载地址（支持 Range 断点续传）
+     *
+     * @param request 请求参数：
+     *                - jobId: 任务ID
+     *                - expireSeconds: 下载令牌有效期秒数（默认3600）
+     * @return 任务信息
+     *
+     * 返回数据结构说明：
+     * {
+     *   "jobId": "3f2b...",
+     *   "status": "COMPLETED",
+     *   "progress": 100,
+     *   "rawSize": 17179869184,              // 原始 hprof 大小 (字节)
+     *   "filePath": "D:\\storage\\jvm-monitor-plugin\\heapdump\\heap_dump_12345_1772700000000.hprof.gz",
+     *   "fileSize": 2147483648,              // 结果文件大小 (字节)
+     *   "downloadUrl": "/api/download/9a8b...", // 仅 COMPLETED 时返回
+     *   "errorMessage": null                 // 失败原因
+     * }
+     */
+    @ActionHandler(value = "getHeapDumpJob", readOnly = true)
+    private ResultMsg<JSONObject> handleGetHeapDumpJob(ExtensionRequestParam request) {
+        String jobId = request.getParameter("jobId");
+        if (jobId == null || jobId.isEmpty()) {
+            return ResultMsg.fail("参数错误：jobId不能为空");
+        }
+
+        try {
+            HeapDumpJob job = HeapDumpJobManager.getInstance().getJob(jobId);
+            if (job == null) {
+                return ResultMsg.fail("参数错误：任务不存在：" + jobId);
+            }
+            JSONObject data = job.toJSON();
+            if (job.getStatus() == HeapDumpJob.Status.COMPLETED) {
+                int expireSeconds = getIntParameter(request, "expireSeconds", 3600, 60, 86400);
+                String token = HeapDumpJobManager.getInstance().issueDownloadToken(jobId, expireSeconds);
+                data.put("downloadUrl", DownloadTokenRegistry.downloadUrl(token));
+            }
+            return ResultMsg.success(data, "堆转储任务查询成功");
+        } catch (Exception e) {
+            logger.error("查询堆转储任务失败，任务ID: {}", jobId, e);
+            if (e instanceof IllegalArgumentException) {
                 return ResultMsg.fail("参数错误：" + e.getMessage());
             } else if (e instanceof IllegalStateException) {
-                return ResultMsg.fail("无法连接到目标JVM进程，可能进程已终止：" + e.getMessage());
+                return ResultMsg.fail("状态错误：" + e.getMessage());
+            } else {
+                return ResultMsg.fail("查询堆转储任务失败：" + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * 列出最近的堆转储任务
+     *
+     * @param request 请求参数（无特殊参数）
+     * @return 任务列表
+     *
+     * 返回数据结构说明：
+     * {
+     *   "jobs": [ { "jobId": "3f2b...", "pid": "12345", "status": "DUMPING", "progress": 35 } ],
+     *   "total": 1
+     * }
+     */
+    @ActionHandler(value = "listHeapDumpJobs", readOnly = true)
+    private ResultMsg<JSONObject> handleListHeapDumpJobs(ExtensionRequestParam request) {
+        try {
+            JSONArray jobs = new JSONArray();
+            for (HeapDumpJob job : HeapDumpJobManager.getInstance().listJobs()) {
+                jobs.add(job.toJSON());
+            }
+            JSONObject result = new JSONObject();
+            result.put("jobs", jobs);
+            result.put("total", jobs.size());
+            return ResultMsg.success(result, "堆转储任务列表获取成功");
+        } catch (Exception e) {
+            logger.error("获取堆转储任务列表失败", e);
+            return ResultMsg.fail("获取堆转储任务列表失败：" + e.getMessage());
+        }
+    }
+
+    /**
+     * 堆转储摘要：在服务器端顺序扫描 HPROF 文件，输出类直方图、最大数组和重复字符串，无需下载到本地用 MAT 分析
+     *
+     * @param request 请求参数（filePath 与 jobId 二选一）：
+     *                - filePath: hprof 文件路径，仅限插件堆转储目录（heapdump）下的文件，可只传文件名（不支持 .gz 压缩文件）
+     *                - jobId: 堆转储任务ID（需以 compress=false 或 keepRaw=true 提交，保留原始 hprof）
+     *                - topN: 直方图/最大数组/重复字符串各自返回条数（默认30，范围1-500）
+     *                - analyzeStrings: 是否统计重复字符串（true/false，默认true，需要额外扫描一遍文件）
+     * @return 堆转储摘要
+     *
+     * 返回数据结构说明：
+     * {
+     *   "filePath": "D:\\storage\\jvm-monitor-plugin\\heapdump\\heap_dump_12345_1772700000000.hprof",
+     *   "fileSize": 17179869184,             // 文件大小 (字节)
+     *   "idSize": 8,                         // 对象ID字节数
+     *   "classCount": 15678,                 // 类数量
+     *   "totalInstances": 123456789,         // 对象总数（含数组）
+     *   "totalShallowBytes": 16106127360,    // 浅堆总大小估算 (字节)
+     *   "classHistogram": [                  // 类直方图（按浅堆大小降序）
+     *     {"className": "byte[]", "instances": 3456789, "shallowSize": 4294967296}
+     *   ],
+     *   "largestArrays": [                   // 最大数组
+     *     {"objectId": "0x7f0a1b2c", "className": "long[]", "length": 3000000, "shallowSize": 24000020}
+     *   ],
+     *   "duplicateStrings": [                // 重复字符串（按浪费字节降序）
+     *     {"preview": "application/json", "count": 50000, "valueBytes": 16, "wastedBytes": 1799964}
+     *   ],
+     *   "stringCount": 8765432,              // String 对象总数
+     *   "stringsSampled": 1000000,           // 参与重复统计的 String 数量（有上限）
+     *   "stringSampleTruncated": true,       // 是否因上限只统计了部分 String
+     *   "elapsedMs": 183000                  // 分析耗时 (毫秒)
+     * }
+     *
+     * 注意：浅堆大小按对象头 2*idSize 估算，与 MAT 结果可能存在少量偏差
+     */
+    @ActionHandler(value = "summarizeHeapDump", timeoutMs = 1800000)
+    private ResultMsg<JSONObject> handleSummarizeHeapDump(ExtensionRequestParam request) {
+        String filePath = request.getParameter("filePath");
+        String jobId = request.getParameter("jobId");
+        boolean analyzeStrings = Boolean.parseBoolean(request.getParameter("analyzeStrings", "true"));
+        logger.info("开始分析堆转储文件，filePath: {}, jobId: {}", filePath, jobId);
+
+        try {
+            int topN = getIntParameter(request, "topN", 30, 1, 500);
+
+            File hprofFile;
+            if (filePath != null && !filePath.isEmpty()) {
+                hprofFile = HeapDumpJobManager.getInstance().resolveDumpFile(filePath);
+            } else if (jobId != null && !jobId.isEmpty()) {
+                HeapDumpJob job = HeapDumpJobManager.getInstance().getJob(jobId);
+                if (job == null) {
+                    return ResultMsg.fail("参数错误：任务不存在：" + jobId);
+                }
+                if (job.getStatus() != HeapDumpJob.Status.COMPLETED) {
+                    return ResultMsg.fail("状态错误：任务尚未完成，当前状态：" + job.getStatus());
+                }
+                hprofFile = job.getRawFile();
+            } else {
+                return ResultMsg.fail("参数错误：filePath和jobId不能同时为空");
+            }
+
+            if (!hprofFile.isFile()) {
+                return ResultMsg.fail("参数错误：hprof文件不存在（压缩任务需以keepRaw=true提交）：" + hprofFile.getAbsolutePath());
+            }
+            if (hprofFile.getName().endsWith(".gz")) {
+                return ResultMsg.fail("参数错误：不支持分析压缩后的堆转储文件");
+            }
+
+            JSONObject summary = new HprofSummarizer(hprofFile, topN, analyzeStrings).summarize();
+            logger.info("堆转储分析完成，文件: {}，耗时: {}ms", hprofFile.getAbsolutePath(), summary.getLongValue("elapsedMs"));
+            return ResultMsg.success(summary, "堆转储分析成功");
+        } catch (Exception e) {
+            logger.error("堆转储分析失败", e);
+            if (e instanceof IllegalArgumentException) {
+                return ResultMsg.fail("参数错误：" + e.getMessage());
+            } else if (e instanceof IllegalStateException) {
+                return ResultMsg.fail("状态错误：" + e.getMessage());
             } else if (e instanceof java.io.IOException) {
                 return ResultMsg.fail("文件操作失败：" + e.getMessage());
             } else {
-                return ResultMsg.fail("堆内存Dump失败：" + e.getMessage());
+                return ResultMsg.fail("堆转储分析失败：" + e.getMessage());
             }
         }
     }
 
-
     /**
      * 获取目标 JVM 进程活跃线程数量
      *
@@ -406,7 +611,7 @@ public class JvmToolsProviderImpl implements JvmToolsProvider {
      *
      * 注意：活跃线程数包括守护线程和非守护线程
      */
-    @ActionHandler("getActiveThreadCount")
+    @ActionHandler(value = "getActiveThreadCount", readOnly = true)
     private ResultMsg<JSONObject> handleGetActiveThreadCount(ExtensionRequestParam request) {
         String pid = request.getParameter("pid");
         logger.info("开始获取活跃线程数，PID: {}", pid);
@@ -490,7 +695,7 @@ public class JvmToolsProviderImpl implements JvmToolsProvider {
      *   }
      * }
      */
-    @ActionHandler("getGcLogInfo")
+    @ActionHandler(value = "getGcLogInfo", readOnly = true)
     private ResultMsg<JSONObject> handleGetGcLogInfo(ExtensionRequestParam request) {
         String pid = request.getParameter("pid");
         String hoursAgoStr = request.getParameter("hoursAgo");
@@ -571,6 +776,186 @@ public class JvmToolsProviderImpl implements JvmToolsProvider {
         }
     }
 
+    /**
+     * 线程转储聚合分析：多次采样线程堆栈，相同堆栈归并、统计热点帧、锁竞争并检测死锁
+     *
+     * @param request 请求参数：
+     *                - pid: 目标进程 ID（特殊值"self"表示当前进程）
+     *                - samples: 采样次数（默认3，范围1-20）
+     *                - intervalMs: 采样间隔毫秒（默认1000，范围0-10000）
+     *                - depth: 堆栈深度（默认64，范围1-256）
+     *                - topN: 堆栈分组/热点帧/锁各自返回条数（默认20，范围1-200）
+     * @return 聚合后的线程分析结果
+     *
+     * 返回数据结构说明：
+     * {
+     *   "pid": "12345",
+     *   "sampleCount": 3,                    // 采样次数
+     *   "threadSamples": 135,                // 所有采样的线程总数
+     *   "distinctStacks": 18,                // 不同堆栈数量
+     *   "stateCounts": {"RUNNABLE": 40, "WAITING": 80, "BLOCKED": 15},
+     *   "stackGroups": [                     // 相同堆栈分组（按出现次数降序）
+     *     {
+     *       "fingerprint": "9f1c3a2b4d5e6f70", // 堆栈指纹
+     *       "count": 30,                     // 出现次数
+     *       "ratio": 0.22,                   // 占所有线程采样比例
+     *       "states": {"BLOCKED": 30},       // 状态分布
+     *       "threadNames": ["http-nio-8080-exec-1"], // 示例线程名（最多5个）
+     *       "frames": ["com.example.Service.lock:42", "..."] // 代表帧（最多20帧）
+     *     }
+     *   ],
+     *   "hotFrames": [                       // 热点帧（按包含次数降序）
+     *     {"frame": "com.example.Dao.query:88", "selfCount": 12, "totalCount": 45}
+     *   ],
+     *   "contendedLocks": [                  // 锁竞争（按阻塞次数降序）
+     *     {
+     *       "lock": "java.lang.Object@1b6d3586",
+     *       "ownerThreadId": 57,
+     *       "ownerThreadName": "worker-3",
+     *       "blockedCount": 30,              // 所有采样中阻塞在该锁上的次数
+     *       "waitingCount": 0,               // 等待（wait/park）该锁的次数
+     *       "maxBlockedInSample": 10         // 单次采样中最大阻塞线程数
+     *     }
+     *   ],
+     *   "deadlocks": {
+     *     "detected": false,
+     *     "deadlockedThreads": [],           // findDeadlockedThreads 结果
+     *     "monitorDeadlockedThreads": []     // findMonitorDeadlockedThreads 结果
+     *   }
+     * }
+     */
+    // 最多 20 次采样、间隔 10 秒，采样间隔合计约 190 秒，另留出每次转储本身的耗时
+    @ActionHandler(value = "threadDumpAnalysis", timeoutMs = 240000, readOnly = true)
+    private ResultMsg<JSONObject> handleThreadDumpAnalysis(ExtensionRequestParam request) {
+        String pid = request.getParameter("pid");
+        logger.info("开始线程转储分析，PID: {}", pid);
+
+        if (pid == null || pid.isEmpty()) {
+            logger.warn("参数错误：PID不能为空");
+            return ResultMsg.fail("参数错误：PID不能为空");
+        }
+
+        try {
+            int samples = getIntParameter(request, "samples", 3, 1, 20);
+            int intervalMs = getIntParameter(request, "intervalMs", 1000, 0, 10000);
+            int depth = getIntParameter(request, "depth", 64, 1, 256);
+            int topN = getIntParameter(request, "topN", 20, 1, 200);
+
+            // 处理当前进程特殊标识
+            if ("self".equals(pid)) {
+                pid = getCurrentProcessId();
+                logger.debug("转换self为实际PID: {}", pid);
+            }
+
+            JSONObject result = AttachApiUtil.analyzeThreadDumps(pid, samples, intervalMs, depth, topN);
+            logger.info("线程转储分析完成，PID: {}，采样次数: {}", pid, samples);
+            return ResultMsg.success(result, "线程转储分析成功");
+        } catch (Exception e) {
+            logger.error("线程转储分析失败，PID: {}", pid, e);
+            if (e instanceof SecurityException) {
+                return ResultMsg.fail("权限不足，无法获取线程信息：" + e.getMessage());
+            } else if (e instanceof IllegalArgumentException) {
+                return ResultMsg.fail("参数错误：" + e.getMessage());
+            } else if (e instanceof IllegalStateException) {
+                return ResultMsg.fail("无法连接到目标JVM进程，可能进程已终止：" + e.getMessage());
+            } else {
+                return ResultMsg.fail("线程转储分析失败：" + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * 按 CPU 占用获取 Top 线程（替代 top -H + jstack）
+     *
+     * @param request 请求参数：
+     *                - pid: 目标进程 ID（特殊值"self"表示当前进程）
+     *                - sampleMs: 首次调用时两次采样间隔毫秒（默认1000，范围100-10000）
+     *                - maxSampleAgeMs: 上次采样的最大可用时长毫秒，超过则重新双采样（默认60000）
+     *                - topN: 返回线程数（默认10，范围1-100）
+     *                - depth: 堆栈深度（默认20，范围1-256）
+     * @return CPU 占用最高的线程及其堆栈
+     *
+     * 返回数据结构说明：
+     * {
+     *   "pid": "12345",
+     *   "incremental": true,                 // 是否基于上一次调用的采样增量计算
+     *   "intervalMs": 5012,                  // 实际采样间隔 (毫秒)
+     *   "threadCount": 86,                   // 当前线程总数
+     *   "totalCpuPercent": 135.2,            // 所有线程 CPU 合计（100 表示占满一个核）
+     *   "threads": [
+     *     {
+     *       "threadId": 57,
+     *       "threadName": "worker-3",
+     *       "state": "RUNNABLE",
+     *       "cpuPercent": 98.5,              // 采样区间内的 CPU 占用（单核百分比）
+     *       "deltaCpuMs": 4937.1,            // 采样区间内消耗的 CPU 时间 (毫秒)
+     *       "cpuTimeMs": 1234567,            // 线程累计 CPU 时间 (毫秒)
+     *       "stackTrace": ["com.example.Worker.loop(Worker.java:42)", "..."]
+     *     }
+     *   ]
+     * }
+     *
+     * 注意：采样基准保存在缓存的 JMX 连接上，连续调用时只需一次采样即可得到区间数据
+     */
+    @ActionHandler(value = "topThreads", readOnly = true)
+    private ResultMsg<JSONObject> handleTopThreads(ExtensionRequestParam request) {
+        String pid = request.getParameter("pid");
+        logger.info("开始获取CPU占用Top线程，PID: {}", pid);
+
+        if (pid == null || pid.isEmpty()) {
+            logger.warn("参数错误：PID不能为空");
+            return ResultMsg.fail("参数错误：PID不能为空");
+        }
+
+        try {
+            int sampleMs = getIntParameter(request, "sampleMs", 1000, 100, 10000);
+            int maxSampleAgeMs = getIntParameter(request, "maxSampleAgeMs", 60000, 1000, 3600000);
+            int topN = getIntParameter(request, "topN", 10, 1, 100);
+            int depth = getIntParameter(request, "depth", 20, 1, 256);
+
+            // 处理当前进程特殊标识
+            if ("self".equals(pid)) {
+                pid = getCurrentProcessId();
+                logger.debug("转换self为实际PID: {}", pid);
+            }
+
+            JSONObject result = AttachApiUtil.getTopThreads(pid, sampleMs, maxSampleAgeMs, topN, depth);
+            logger.info("成功获取CPU占用Top线程，PID: {}", pid);
+            return ResultMsg.success(result, "Top线程获取成功");
+        } catch (Exception e) {
+            logger.error("获取CPU占用Top线程失败，PID: {}", pid, e);
+            if (e instanceof SecurityException) {
+                return ResultMsg.fail("权限不足，无法获取线程信息：" + e.getMessage());
+            } else if (e instanceof IllegalArgumentException) {
+                return ResultMsg.fail("参数错误：" + e.getMessage());
+            } else if (e instanceof IllegalStateException) {
+                return ResultMsg.fail("状态错误：" + e.getMessage());
+            } else {
+                return ResultMsg.fail("获取Top线程失败：" + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * 读取整数参数并校验范围
+     */
+    private int getIntParameter(ExtensionRequestParam request, String name, int defaultValue, int min, int max) {
+        String value = request.getParameter(name);
+        if (value == null || value.isEmpty()) {
+            return defaultValue;
+        }
+        int result;
+        try {
+            result = Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(name + "必须是有效的数字");
+        }
+        if (result < min || result > max) {
+            throw new IllegalArgumentException(name + "必须在" + min + "到" + max + "之间");
+        }
+        return result;
+    }
+
     /**
      * 生成时间范围描述
      */
@@ -2,25 +2,101 @@ package com.jt.plugins.utils.attach;
 
 import com.alibaba.fastjson.JSONArray;
 import com.alibaba.fastjson.JSONObject;
-import com.sun.management.HotSpotDiagnosticMXBean;
+import com.jt.plugins.common.metrics.Counter;
+import com.jt.plugins.common.metrics.LatencyHistogram;
+import com.jt.plugins.common.metrics.MetricsRegistry;
 
+import javax.management.Attribute;
+import javax.management.AttributeList;
 import javax.management.MBeanServerConnection;
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
 import javax.management.remote.JMXConnector;
 import javax.management.remote.JMXConnectorFactory;
 import javax.management.remote.JMXServiceURL;
 import java.io.File;
+import java.io.IOException;
 import java.lang.management.*;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class AttachApiUtil {
 
+    // 远程 JMX 地址前缀，以此开头的目标直接走 JMXServiceURL 连接
+    private static final String REMOTE_TARGET_PREFIX = "service:jmx:";
+
+    // 连接空闲超过该时长后关闭（毫秒）
+    private static final long CONNECTION_IDLE_TIMEOUT = 10 * 60 * 1000L;
+
+    // JMX连接缓存（key：PID 或远程 JMX 地址）
+    private static final Map<String, CompletableFuture<JmxConnectionHolder>> CONNECTIONS = new ConcurrentHashMap<>();
+
+    // 建立连接（attach 或远程连接）耗时与连接失效后的重连次数
+    private static final LatencyHistogram CONNECT_TIMER = MetricsRegistry.timer("jt_jmx_connect");
+    private static final Counter RECONNECT_COUNTER = MetricsRegistry.counter("jt_jmx_reconnect_total");
+
+    // 各操作的调用耗时（操作名 -> jt_jmx_call 计时器），每个操作只解析一次
+    private static final Map<String, LatencyHistogram> CALL_TIMERS = new ConcurrentHashMap<>();
+
+    // 多 MBean 读取线程上限与排队上限
+    private static final int MAX_READ_THREADS = 8;
+    private static final int MAX_READ_QUEUE = 64;
+
+    // 多 MBean 并发读取线程池
+    private static ExecutorService readExecutor;
+
+    // 常用 ObjectName
+    private static final ObjectName MEMORY_NAME = objectName(ManagementFactory.MEMORY_MXBEAN_NAME);
+    private static final ObjectName THREAD_NAME = objectName(ManagementFactory.THREAD_MXBEAN_NAME);
+    private static final ObjectName OS_NAME = objectName(ManagementFactory.OPERATING_SYSTEM_MXBEAN_NAME);
+    private static final ObjectName RUNTIME_NAME = objectName(ManagementFactory.RUNTIME_MXBEAN_NAME);
+    private static final ObjectName CLASS_LOADING_NAME = objectName(ManagementFactory.CLASS_LOADING_MXBEAN_NAME);
+    private static final ObjectName HOTSPOT_DIAGNOSTIC_NAME = objectName("com.sun.management:type=HotSpotDiagnostic");
+    private static final ObjectName MEMORY_POOL_PATTERN = objectName(ManagementFactory.MEMORY_POOL_MXBEAN_DOMAIN_TYPE + ",*");
+    private static final ObjectName GC_PATTERN = objectName(ManagementFactory.GARBAGE_COLLECTOR_MXBEAN_DOMAIN_TYPE + ",*");
+
+    // 批量读取的属性名
+    private static final String[] MEMORY_ATTRS = {"HeapMemoryUsage", "NonHeapMemoryUsage"};
+    private static final String[] THREAD_ATTRS = {"ThreadCount", "PeakThreadCount", "DaemonThreadCount", "TotalStartedThreadCount"};
+    private static final String[] OS_ATTRS = {"Name", "Arch", "AvailableProcessors", "SystemLoadAverage", "ProcessCpuLoad", "SystemCpuLoad"};
+    private static final String[] RUNTIME_ATTRS = {"Uptime", "StartTime"};
+    private static final String[] CLASS_LOADING_ATTRS = {"LoadedClassCount", "TotalLoadedClassCount", "UnloadedClassCount"};
+    private static final String[] MEMORY_POOL_ATTRS = {"Type", "Usage"};
+    private static final String[] GC_ATTRS = {"CollectionCount", "CollectionTime"};
+
+    /**
+     * JMX 调用回调
+     */
+    @FunctionalInterface
+    public interface JmxCall<T> {
+        T call(JmxConnectionHolder holder) throws Exception;
+    }
+
     /**
-     * 建立 JMX 连接
+     * 建立 JMX 连接（本地进程通过 Attach，远程目标通过 JMXServiceURL）
      */
-    private static MBeanServerConnection connectViaAttach(String pid) throws Exception {
+    private static JMXConnector connect(String target) throws Exception {
+        if (target.startsWith(REMOTE_TARGET_PREFIX)) {
+            return JMXConnectorFactory.connect(new JMXServiceURL(target));
+        }
+
         // 1. attach 到目标 JVM
-        com.sun.tools.attach.VirtualMachine vm = com.sun.tools.attach.VirtualMachine.attach(pid);
+        com.sun.tools.attach.VirtualMachine vm = com.sun.tools.attach.VirtualMachine.attach(target);
 
         try {
             // 2. 确保 management agent 已加载
@@ -36,84 +112,285 @@ public class AttachApiUtil {
 
             // 3. 建立 JMX 连接
             JMXServiceURL jmxUrl = new JMXServiceURL(address);
-            JMXConnector connector = JMXConnectorFactory.connect(jmxUrl);
-            return connector.getMBeanServerConnection();
+            return JMXConnectorFactory.connect(jmxUrl);
         } finally {
             vm.detach();
         }
     }
 
     /**
-     * 获取详细 JVM 信息（堆内存、线程、CPU、GC）
+     * 获取缓存的 JMX 连接并占用，不存在时新建，调用结束后必须 {@link JmxConnectionHolder#release()}
+     * 同一目标并发获取时只建立一次连接，其余调用等待同一次连接的结果；建立连接不持有全局锁，
+     * 某个目标 attach 缓慢或挂起只影响该目标的调用
      */
-    public static JSONObject getJvmInfo(String pid) throws Exception {
-        MBeanServerConnection mbsc = connectViaAttach(pid);
+    private static JmxConnectionHolder acquireConnection(String target) throws Exception {
+        evictIdleConnections();
 
-        JSONObject result = new JSONObject();
+        while (true) {
+            CompletableFuture<JmxConnectionHolder> future = CONNECTIONS.get(target);
+            if (future == null) {
+                CompletableFuture<JmxConnectionHolder> created = new CompletableFuture<>();
+                future = CONNECTIONS.putIfAbsent(target, created);
+                if (future == null) {
+                    future = created;
+                    long start = System.nanoTime();
+                    try {
+                        created.complete(new JmxConnectionHolder(target, connect(target)));
+                        CONNECT_TIMER.recordNanos(System.nanoTime() - start);
+                    } catch (Exception | Error e) {
+                        // 连接失败不缓存，下次调用重新连接
+                        CONNECTIONS.remove(target, created);
+                        created.completeExceptionally(e);
+                    }
+                }
+            }
+
+            JmxConnectionHolder holder;
+            try {
+                holder = future.get();
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof Exception) {
+                    throw (Exception) cause;
+                }
+                throw (Error) cause;
+            }
+            if (holder.acquire()) {
+                return holder;
+            }
+            // 连接刚被空闲清理回收，重新获取
+            CONNECTIONS.remove(target, future);
+        }
+    }
+
+    /**
+     * 在缓存连接上执行只读调用；连接失效（IOException）时关闭并重连一次
+     * @param operation 操作名称（记录为 jt_jmx_call 耗时指标的标签）
+     */
+    public static <T> T withConnection(String target, String operation, JmxCall<T> call) throws Exception {
+        return execute(target, operation, true, call);
+    }
+
+    /**
+     * 在缓存连接上执行有副作用的调用（堆转储、GC 等）；连接失效时只关闭连接，不重试，
+     * 调用可能已在目标 JVM 中执行，重试会重复执行
+     */
+    public static <T> T invokeOnce(String target, String operation, JmxCall<T> call) throws Exception {
+        return execute(target, operation, false, call);
+    }
+
+    private static <T> T execute(String target, String operation, boolean retryable, JmxCall<T> call) throws Exception {
+        LatencyHistogram timer = callTimer(operation);
+        long start = System.nanoTime();
+        try {
+            JmxConnectionHolder holder = acquireConnection(target);
+            try {
+                return call.call(holder);
+            } catch (IOException | java.lang.reflect.UndeclaredThrowableException e) {
+                // MXBean 代理会把 IOException 包装为 UndeclaredThrowableException
+                if (!(e instanceof IOException) && !(e.getCause() instanceof IOException)) {
+                    throw e;
+                }
+                closeConnection(target, holder);
+                if (!retryable) {
+                    throw e;
+                }
+                RECONNECT_COUNTER.increment();
+            } finally {
+                holder.release();
+            }
+
+            JmxConnectionHolder retry = acquireConnection(target);
+            try {
+                return call.call(retry);
+            } finally {
+                retry.release();
+            }
+        } finally {
+            timer.recordNanos(System.nanoTime() - start);
+        }
+    }
+
+    private static LatencyHistogram callTimer(String operation) {
+        LatencyHistogram timer = CALL_TIMERS.get(operation);
+        return timer != null ? timer
+                : CALL_TIMERS.computeIfAbsent(operation, op -> MetricsRegistry.timer("jt_jmx_call", "operation", op));
+    }
+
+    /**
+     * 关闭指定目标的失效连接（连接已被替换时不处理）
+     */
+    private static void closeConnection(String target, JmxConnectionHolder holder) {
+        CompletableFuture<JmxConnectionHolder> future = CONNECTIONS.get(target);
+        if (future != null && connected(future) == holder) {
+            CONNECTIONS.remove(target, future);
+        }
+        holder.close();
+    }
+
+    /**
+     * 关闭指定目标的连接
+     */
+    public static void closeConnection(String target) {
+        CompletableFuture<JmxConnectionHolder> future = CONNECTIONS.remove(target);
+        if (future != null) {
+            // 正在建立的连接完成后再关闭
+            future.thenAccept(JmxConnectionHolder::close);
+        }
+    }
+
+    /**
+     * 关闭所有连接并停止读取线程池（插件停止时调用）
+     */
+    public static void closeAllConnections() {
+        for (String target : new ArrayList<>(CONNECTIONS.keySet())) {
+            closeConnection(target);
+        }
+        synchronized (AttachApiUtil.class) {
+            if (readExecutor != null) {
+                readExecutor.shutdownNow();
+            }
+        }
+    }
+
+    /**
+     * 清理空闲连接：只回收没有调用占用、空闲超时的连接，正在建立的连接不处理
+     */
+    private static void evictIdleConnections() {
+        Iterator<Map.Entry<String, CompletableFuture<JmxConnectionHolder>>> it = CONNECTIONS.entrySet().iterator();
+        while (it.hasNext()) {
+            JmxConnectionHolder holder = connected(it.next().getValue());
+            if (holder != null && holder.retireIfIdle(CONNECTION_IDLE_TIMEOUT)) {
+                it.remove();
+                holder.close();
+            }
+        }
+    }
+
+    /**
+     * 已建立的连接，正在建立或建立失败时为 null
+     */
+    private static JmxConnectionHolder connected(CompletableFuture<JmxConnectionHolder> future) {
+        return future.isDone() && !future.isCompletedExceptionally() ? future.join() : null;
+    }
+
+    /**
+     * 采集 JVM 指标快照
+     * 每个 MBean 只做一次 getAttributes 批量读取；内存池/GC 的 ObjectName 按模式查询一次后随连接缓存，
+     * 各内存池/GC 的读取并发发出
+     */
+    public static JvmMetricsSnapshot collectMetrics(String target) throws Exception {
+        return withConnection(target, "collectMetrics", AttachApiUtil::collectMetrics);
+    }
+
+    private static JvmMetricsSnapshot collectMetrics(JmxConnectionHolder holder) throws Exception {
+        MBeanServerConnection mbsc = holder.getConnection();
+        JvmMetricsSnapshot snapshot = new JvmMetricsSnapshot();
+        snapshot.setTimestamp(System.currentTimeMillis());
 
         // 1. 堆 & 非堆
-        MemoryMXBean memoryMXBean = ManagementFactory.newPlatformMXBeanProxy(
-                mbsc, ManagementFactory.MEMORY_MXBEAN_NAME, MemoryMXBean.class);
-        result.put("heapMemory", memoryMXBean.getHeapMemoryUsage());
-        result.put("nonHeapMemory", memoryMXBean.getNonHeapMemoryUsage());
-
-        // 2. 各内存池
-        JSONArray pools = new JSONArray();
-        for (MemoryPoolMXBean pool : ManagementFactory.getPlatformMXBeans(mbsc, MemoryPoolMXBean.class)) {
-            JSONObject poolObj = new JSONObject();
-            poolObj.put("name", pool.getName());
-            poolObj.put("type", pool.getType().toString());
-            poolObj.put("usage", pool.getUsage());
-            pools.add(poolObj);
-        }
-        result.put("memoryPools", pools);
-
-        // 3. GC 信息
-        JSONArray gcs = new JSONArray();
-        for (GarbageCollectorMXBean gc : ManagementFactory.getPlatformMXBeans(mbsc, GarbageCollectorMXBean.class)) {
-            JSONObject gcObj = new JSONObject();
-            gcObj.put("name", gc.getName());
-            gcObj.put("count", gc.getCollectionCount());
-            gcObj.put("time", gc.getCollectionTime());
-            gcs.add(gcObj);
-        }
-        result.put("garbageCollectors", gcs);
-
-        // 4. 线程信息
-        ThreadMXBean threadMXBean = ManagementFactory.newPlatformMXBeanProxy(
-                mbsc, ManagementFactory.THREAD_MXBEAN_NAME, ThreadMXBean.class);
-        result.put("threadCount", threadMXBean.getThreadCount());
-        result.put("peakThreadCount", threadMXBean.getPeakThreadCount());
-
-        // 5. CPU 信息
-        OperatingSystemMXBean osBean = ManagementFactory.newPlatformMXBeanProxy(
-                mbsc, ManagementFactory.OPERATING_SYSTEM_MXBEAN_NAME, OperatingSystemMXBean.class);
-        result.put("osName", osBean.getName());
-        result.put("arch", osBean.getArch());
-        result.put("availableProcessors", osBean.getAvailableProcessors());
-        result.put("systemLoadAverage", osBean.getSystemLoadAverage());
+        Map<String, Object> memory = getAttributes(mbsc, MEMORY_NAME, MEMORY_ATTRS);
+        MemoryUsage heap = toMemoryUsage(memory.get("HeapMemoryUsage"));
+        if (heap != null) {
+            snapshot.setHeapInit(heap.getInit());
+            snapshot.setHeapUsed(heap.getUsed());
+            snapshot.setHeapCommitted(heap.getCommitted());
+            snapshot.setHeapMax(heap.getMax());
+        }
+        MemoryUsage nonHeap = toMemoryUsage(memory.get("NonHeapMemoryUsage"));
+        if (nonHeap != null) {
+            snapshot.setNonHeapInit(nonHeap.getInit());
+            snapshot.setNonHeapUsed(nonHeap.getUsed());
+            snapshot.setNonHeapCommitted(nonHeap.getCommitted());
+            snapshot.setNonHeapMax(nonHeap.getMax());
+        }
 
-        return result;
+        // 2. 线程信息
+        Map<String, Object> thread = getAttributes(mbsc, THREAD_NAME, THREAD_ATTRS);
+        snapshot.setThreadCount(intValue(thread.get("ThreadCount"), 0));
+        snapshot.setPeakThreadCount(intValue(thread.get("PeakThreadCount"), 0));
+        snapshot.setDaemonThreadCount(intValue(thread.get("DaemonThreadCount"), 0));
+        snapshot.setTotalStartedThreadCount(longValue(thread.get("TotalStartedThreadCount"), 0));
+
+        // 3. CPU / 操作系统信息（ProcessCpuLoad、SystemCpuLoad 为 com.sun 扩展属性，可能不存在）
+        Map<String, Object> os = getAttributes(mbsc, OS_NAME, OS_ATTRS);
+        snapshot.setOsName((String) os.get("Name"));
+        snapshot.setArch((String) os.get("Arch"));
+        snapshot.setAvailableProcessors(intValue(os.get("AvailableProcessors"), 0));
+        snapshot.setSystemLoadAverage(doubleValue(os.get("SystemLoadAverage"), -1));
+        snapshot.setProcessCpuLoad(doubleValue(os.get("ProcessCpuLoad"), -1));
+        snapshot.setSystemCpuLoad(doubleValue(os.get("SystemCpuLoad"), -1));
+
+        // 4. 运行时 & 类加载
+        Map<String, Object> runtime = getAttributes(mbsc, RUNTIME_NAME, RUNTIME_ATTRS);
+        snapshot.setUptime(longValue(runtime.get("Uptime"), 0));
+        snapshot.setStartTime(longValue(runtime.get("StartTime"), 0));
+
+        Map<String, Object> classLoading = getAttributes(mbsc, CLASS_LOADING_NAME, CLASS_LOADING_ATTRS);
+        snapshot.setLoadedClassCount(intValue(classLoading.get("LoadedClassCount"), 0));
+        snapshot.setTotalLoadedClassCount(longValue(classLoading.get("TotalLoadedClassCount"), 0));
+        snapshot.setUnloadedClassCount(longValue(classLoading.get("UnloadedClassCount"), 0));
+
+        // 5. 各内存池（名称取自 ObjectName，无需额外读取 Name 属性）
+        ObjectName[] poolNames = holder.getMemoryPoolNames();
+        if (poolNames == null) {
+            poolNames = queryNames(mbsc, MEMORY_POOL_PATTERN);
+            holder.setMemoryPoolNames(poolNames);
+        }
+        List<Map<String, Object>> pools = getAttributes(mbsc, poolNames, MEMORY_POOL_ATTRS);
+        snapshot.initPools(poolNames.length);
+        for (int i = 0; i < poolNames.length; i++) {
+            Map<String, Object> pool = pools.get(i);
+            snapshot.getPoolNames()[i] = poolNames[i].getKeyProperty("name");
+            snapshot.getPoolTypes()[i] = pool.get("Type") != null ? pool.get("Type").toString() : null;
+            MemoryUsage usage = toMemoryUsage(pool.get("Usage"));
+            if (usage != null) {
+                snapshot.getPoolInit()[i] = usage.getInit();
+                snapshot.getPoolUsed()[i] = usage.getUsed();
+                snapshot.getPoolCommitted()[i] = usage.getCommitted();
+                snapshot.getPoolMax()[i] = usage.getMax();
+            }
+        }
+
+        // 6. GC 信息
+        ObjectName[] gcNames = holder.getGcNames();
+        if (gcNames == null) {
+            gcNames = queryNames(mbsc, GC_PATTERN);
+            holder.setGcNames(gcNames);
+        }
+        List<Map<String, Object>> gcs = getAttributes(mbsc, gcNames, GC_ATTRS);
+        snapshot.initGcs(gcNames.length);
+        for (int i = 0; i < gcNames.length; i++) {
+            Map<String, Object> gc = gcs.get(i);
+            snapshot.getGcNames()[i] = gcNames[i].getKeyProperty("name");
+            snapshot.getGcCounts()[i] = longValue(gc.get("CollectionCount"), -1);
+            snapshot.getGcTimes()[i] = longValue(gc.get("CollectionTime"), -1);
+        }
+
+        return snapshot;
+    }
+
+    /**
+     * 获取详细 JVM 信息（堆内存、线程、CPU、GC）
+     */
+    public static JSONObject getJvmInfo(String pid) throws Exception {
+        return collectMetrics(pid).toJSON();
     }
 
     /**
      * 执行 GC
      */
     public static void triggerGC(String pid) throws Exception {
-        MBeanServerConnection mbsc = connectViaAttach(pid);
-        MemoryMXBean memoryMXBean = ManagementFactory.newPlatformMXBeanProxy(
-                mbsc, ManagementFactory.MEMORY_MXBEAN_NAME, MemoryMXBean.class);
-        memoryMXBean.gc();
+        invokeOnce(pid, "gc", holder -> holder.getConnection().invoke(MEMORY_NAME, "gc", null, null));
     }
 
     /**
      * Dump 堆
      */
     public static String dumpHeap(String pid, String filePath, boolean live) throws Exception {
-        MBeanServerConnection mbsc = connectViaAttach(pid);
-        HotSpotDiagnosticMXBean hsDiag = ManagementFactory.newPlatformMXBeanProxy(
-                mbsc, "com.sun.management:type=HotSpotDiagnostic", HotSpotDiagnosticMXBean.class);
-        hsDiag.dumpHeap(filePath, live);
+        invokeOnce(pid, "dumpHeap", holder -> holder.getConnection().invoke(HOTSPOT_DIAGNOSTIC_NAME, "dumpHeap",
+                new Object[]{filePath, live},
+                new String[]{String.class.getName(), boolean.class.getName()}));
         return filePath;
     }
 
@@ -125,59 +402,42 @@ public class AttachApiUtil {
      * @return GC日志信息JSON对象
      */
     public static JSONObject getGcLogInfo(String pid, long startTime, long endTime) throws Exception {
-        MBeanServerConnection mbsc = connectViaAttach(pid);
-        
+        JvmMetricsSnapshot snapshot = collectMetrics(pid);
+
         JSONObject result = new JSONObject();
         JSONArray gcEvents = new JSONArray();
-        
-        // 获取所有GarbageCollectorMXBean
-        List<GarbageCollectorMXBean> gcBeans = ManagementFactory.getPlatformMXBeans(mbsc, GarbageCollectorMXBean.class);
-        
-        long totalGcCount = 0;
-        long totalGcTime = 0;
-        
-        for (GarbageCollectorMXBean gcBean : gcBeans) {
+
+        for (int i = 0; i < snapshot.getGcNames().length; i++) {
+            long count = snapshot.getGcCounts()[i];
+            long time = snapshot.getGcTimes()[i];
+
             JSONObject gcStat = new JSONObject();
-            gcStat.put("name", gcBean.getName());
-            gcStat.put("collectionCount", gcBean.getCollectionCount());
-            gcStat.put("collectionTime", gcBean.getCollectionTime());
-            gcStat.put("avgCollectionTime", 
-                  gcBean.getCollectionCount() > 0 ? 
-                  (double) gcBean.getCollectionTime() / gcBean.getCollectionCount() : 0);
-        
+            gcStat.put("name", snapshot.getGcNames()[i]);
+            gcStat.put("collectionCount", count);
+            gcStat.put("collectionTime", time);
+            gcStat.put("avgCollectionTime", count > 0 ? (double) time / count : 0);
             gcEvents.add(gcStat);
-        
-            totalGcCount += gcBean.getCollectionCount();
-            totalGcTime += gcBean.getCollectionTime();
         }
-        
-        // 获取内存池信息
+        long totalGcCount = snapshot.getTotalGcCount();
+        long totalGcTime = snapshot.getTotalGcTime();
+
+        // 内存池信息
         JSONArray memoryPools = new JSONArray();
-        List<MemoryPoolMXBean> poolBeans = ManagementFactory.getPlatformMXBeans(mbsc, MemoryPoolMXBean.class);
-        
-        for (MemoryPoolMXBean poolBean : poolBeans) {
+        for (int i = 0; i < snapshot.getPoolNames().length; i++) {
+            long used = snapshot.getPoolUsed()[i];
+            long max = snapshot.getPoolMax()[i];
+
             JSONObject poolInfo = new JSONObject();
-            poolInfo.put("name", poolBean.getName());
-            poolInfo.put("type", poolBean.getType().toString());
-        
-            // 获取内存使用情况
-            MemoryUsage usage = poolBean.getUsage();
-            if (usage != null) {
-                poolInfo.put("used", usage.getUsed());
-                poolInfo.put("max", usage.getMax());
-                poolInfo.put("committed", usage.getCommitted());
-                poolInfo.put("init", usage.getInit());
-                poolInfo.put("usagePercentage", 
-                        usage.getMax() > 0 ? (double) usage.getUsed() / usage.getMax() * 100 : 0);
-            }
-        
+            poolInfo.put("name", snapshot.getPoolNames()[i]);
+            poolInfo.put("type", snapshot.getPoolTypes()[i]);
+            poolInfo.put("used", used);
+            poolInfo.put("max", max);
+            poolInfo.put("committed", snapshot.getPoolCommitted()[i]);
+            poolInfo.put("init", snapshot.getPoolInit()[i]);
+            poolInfo.put("usagePercentage", max > 0 ? (double) used / max * 100 : 0);
             memoryPools.add(poolInfo);
         }
-        
-        // 获取操作系统信息
-        OperatingSystemMXBean osBean = ManagementFactory.newPlatformMXBeanProxy(
-            mbsc, ManagementFactory.OPERATING_SYSTEM_MXBEAN_NAME, OperatingSystemMXBean.class);
-    
+
         // 组装结果
         result.put("pid", pid);
         result.put("timeRange", new JSONObject()
@@ -187,15 +447,15 @@ public class AttachApiUtil {
         result.put("gcStatistics", gcEvents);
         result.put("memoryPools", memoryPools);
         result.put("systemInfo", new JSONObject()
-        .fluentPut("osName", osBean.getName())
-        .fluentPut("arch", osBean.getArch())
-        .fluentPut("availableProcessors", osBean.getAvailableProcessors())
-        .fluentPut("systemLoadAverage", osBean.getSystemLoadAverage()));
+        .fluentPut("osName", snapshot.getOsName())
+        .fluentPut("arch", snapshot.getArch())
+        .fluentPut("availableProcessors", snapshot.getAvailableProcessors())
+        .fluentPut("systemLoadAverage", snapshot.getSystemLoadAverage()));
         result.put("summary", new JSONObject()
         .fluentPut("totalGcCollections", totalGcCount)
         .fluentPut("totalGcTimeMs", totalGcTime)
         .fluentPut("avgGcIntervalMs", totalGcCount > 0 ? (endTime - startTime) / totalGcCount : 0));
-    
+
         return result;
     }
 
@@ -203,12 +463,12 @@ public class AttachApiUtil {
      * 获取线程转储（保持原有方法）
      */
     public static JSONArray getThreadDump(String pid) throws Exception {
-        MBeanServerConnection mbsc = connectViaAttach(pid);
-        ThreadMXBean threadMXBean = ManagementFactory.newPlatformMXBeanProxy(
-                mbsc, ManagementFactory.THREAD_MXBEAN_NAME, ThreadMXBean.class);
-
-        long[] ids = threadMXBean.getAllThreadIds();
-        ThreadInfo[] infos = threadMXBean.getThreadInfo(ids, 100);
+        ThreadInfo[] infos = withConnection(pid, "threadDump", holder -> {
+            ThreadMXBean threadMXBean = ManagementFactory.newPlatformMXBeanProxy(
+                    holder.getConnection(), ManagementFactory.THREAD_MXBEAN_NAME, ThreadMXBean.class);
+            long[] ids = threadMXBean.getAllThreadIds();
+            return threadMXBean.getThreadInfo(ids, 100);
+        });
 
         JSONArray arr = new JSONArray();
         for (ThreadInfo info : infos) {
@@ -223,4 +483,256 @@ public class AttachApiUtil {
         return arr;
     }
 
+    /**
+     * 多次采样线程转储并聚合分析
+     * @param pid 进程ID
+     * @param samples 采样次数
+     * @param intervalMs 采样间隔（毫秒）
+     * @param depth 每个线程的堆栈深度
+     * @param topN 每类结果保留条数
+     */
+    public static JSONObject analyzeThreadDumps(String pid, int samples, long intervalMs, int depth, int topN) throws Exception {
+        ThreadDumpAnalyzer analyzer = new ThreadDumpAnalyzer();
+        for (int i = 0; i < samples; i++) {
+            if (i > 0) {
+                Thread.sleep(intervalMs);
+            }
+            ThreadInfo[] infos = withConnection(pid, "threadDump", holder -> {
+                ThreadMXBean threadMXBean = ManagementFactory.newPlatformMXBeanProxy(
+                        holder.getConnection(), ManagementFactory.THREAD_MXBEAN_NAME, ThreadMXBean.class);
+                return threadMXBean.getThreadInfo(threadMXBean.getAllThreadIds(), depth);
+            });
+            analyzer.addSample(infos);
+        }
+
+        // 死锁检测只在最后一次采样后执行
+        ThreadInfo[][] deadlocks = withConnection(pid, "findDeadlocks", holder -> {
+            ThreadMXBean threadMXBean = ManagementFactory.newPlatformMXBeanProxy(
+                    holder.getConnection(), ManagementFactory.THREAD_MXBEAN_NAME, ThreadMXBean.class);
+            long[] deadlocked = threadMXBean.findDeadlockedThreads();
+            long[] monitorDeadlocked = threadMXBean.findMonitorDeadlockedThreads();
+            return new ThreadInfo[][]{
+                    deadlocked != null ? threadMXBean.getThreadInfo(deadlocked, depth) : null,
+                    monitorDeadlocked != null ? threadMXBean.getThreadInfo(monitorDeadlocked, depth) : null
+            };
+        });
+
+        JSONObject result = analyzer.toJSON(topN, deadlocks[0], deadlocks[1]);
+        result.put("pid", pid);
+        result.put("intervalMs", intervalMs);
+        result.put("depth", depth);
+        return result;
+    }
+
+    /**
+     * 按 CPU 占用统计 Top 线程
+     * 与连接上保存的上一次采样做差；无可用的上一次采样（或已超过 maxSampleAgeMs）时先采样一次并等待 sampleMs
+     * @param pid 进程ID
+     * @param sampleMs 首次调用时两次采样的间隔（毫秒）
+     * @param maxSampleAgeMs 上一次采样的最大可用时长（毫秒）
+     * @param topN 返回线程数
+     * @param depth 堆栈深度
+     */
+    public static JSONObject getTopThreads(String pid, long sampleMs, long maxSampleAgeMs, int topN, int depth) throws Exception {
+        return withConnection(pid, "topThreads", holder -> {
+            com.sun.management.ThreadMXBean threadMXBean = ManagementFactory.newPlatformMXBeanProxy(
+                    holder.getConnection(), ManagementFactory.THREAD_MXBEAN_NAME, com.sun.management.ThreadMXBean.class);
+            if (!threadMXBean.isThreadCpuTimeSupported() || !threadMXBean.isThreadCpuTimeEnabled()) {
+                throw new IllegalStateException("目标JVM未启用线程CPU时间统计");
+            }
+
+            // 同一连接上的采样串行执行，保证增量基准一致
+            synchronized (holder) {
+                ThreadCpuSample previous = holder.getThreadCpuSample();
+                boolean incremental = previous != null
+                        && System.nanoTime() - previous.getSampleNanos() <= maxSampleAgeMs * 1_000_000L;
+                if (!incremental) {
+                    previous = sampleThreadCpu(threadMXBean);
+                    Thread.sleep(sampleMs);
+                }
+                ThreadCpuSample current = sampleThreadCpu(threadMXBean);
+                holder.setThreadCpuSample(current);
+
+                long elapsedNanos = Math.max(current.getSampleNanos() - previous.getSampleNanos(), 1);
+                long[] ids = current.getThreadIds();
+                long[] times = current.getCpuTimes();
+
+                // 计算每个线程的 CPU 增量（新线程以 0 为基准）
+                long[] deltas = new long[ids.length];
+                long totalDelta = 0;
+                for (int i = 0; i < ids.length; i++) {
+                    if (times[i] < 0) {
+                        deltas[i] = -1;
+                        continue;
+                    }
+                    long before = previous.cpuTimeOf(ids[i]);
+                    deltas[i] = times[i] - Math.max(before, 0);
+                    totalDelta += deltas[i];
+                }
+
+                // 选出 Top N 下标
+                Integer[] order = new Integer[ids.length];
+                for (int i = 0; i < order.length; i++) {
+                    order[i] = i;
+                }
+                java.util.Arrays.sort(order, (a, b) -> Long.compare(deltas[b], deltas[a]));
+                int size = Math.min(topN, order.length);
+                long[] topIds = new long[size];
+                for (int i = 0; i < size; i++) {
+                    topIds[i] = ids[order[i]];
+                }
+
+                // 一次调用取回 Top 线程的堆栈
+                ThreadInfo[] infos = size > 0 ? threadMXBean.getThreadInfo(topIds, depth) : new ThreadInfo[0];
+
+                JSONArray threads = new JSONArray();
+                for (int i = 0; i < size; i++) {
+                    int index = order[i];
+                    if (deltas[index] < 0) {
+                        break;
+                    }
+                    ThreadInfo info = infos[i];
+                    JSONObject obj = new JSONObject();
+                    obj.put("threadId", ids[index]);
+                    obj.put("threadName", info != null ? info.getThreadName() : null);
+                    obj.put("state", info != null ? info.getThreadState().toString() : "TERMINATED");
+                    obj.put("cpuPercent", (double) deltas[index] / elapsedNanos * 100);
+                    obj.put("deltaCpuMs", deltas[index] / 1_000_000.0);
+                    obj.put("cpuTimeMs", times[index] / 1_000_000L);
+                    JSONArray stack = new JSONArray();
+                    if (info != null) {
+                        for (StackTraceElement element : info.getStackTrace()) {
+                            stack.add(element.toString());
+                        }
+                    }
+                    obj.put("stackTrace", stack);
+                    threads.add(obj);
+                }
+
+                JSONObject result = new JSONObject();
+                result.put("pid", pid);
+                result.put("incremental", incremental);
+                result.put("intervalMs", elapsedNanos / 1_000_000L);
+                result.put("threadCount", ids.length);
+                result.put("totalCpuPercent", (double) totalDelta / elapsedNanos * 100);
+                result.put("threads", threads);
+                return result;
+            }
+        });
+    }
+
+    /**
+     * 一次批量读取所有线程的 CPU 时间
+     */
+    private static ThreadCpuSample sampleThreadCpu(com.sun.management.ThreadMXBean threadMXBean) {
+        long[] ids = threadMXBean.getAllThreadIds();
+        long[] times = threadMXBean.getThreadCpuTime(ids);
+        return ThreadCpuSample.of(System.nanoTime(), ids, times);
+    }
+
+    /**
+     * 批量读取属性，返回 属性名 -> 值（不存在的属性不会出现在结果中）
+     */
+    private static Map<String, Object> getAttributes(MBeanServerConnection mbsc, ObjectName name, String[] attrs) throws Exception {
+        AttributeList list = mbsc.getAttributes(name, attrs);
+        Map<String, Object> values = new HashMap<>(attrs.length * 2);
+        for (Attribute attribute : list.asList()) {
+            values.put(attribute.getName(), attribute.getValue());
+        }
+        return values;
+    }
+
+    /**
+     * 读取一组 MBean 的同一组属性，结果与 names 顺序一致
+     * JMX 没有跨 MBean 的批量读取接口，第一个在调用线程中读取，其余提交到读取线程池并发发出，
+     * 总耗时约为一次往返而不是 MBean 个数次往返
+     */
+    private static List<Map<String, Object>> getAttributes(MBeanServerConnection mbsc, ObjectName[] names,
+                                                           String[] attrs) throws Exception {
+        List<Map<String, Object>> values = new ArrayList<>(names.length);
+        if (names.length == 0) {
+            return values;
+        }
+        ExecutorService executor = getReadExecutor();
+        List<Future<Map<String, Object>>> futures = new ArrayList<>(names.length - 1);
+        try {
+            for (int i = 1; i < names.length; i++) {
+                ObjectName name = names[i];
+                futures.add(executor.submit(() -> getAttributes(mbsc, name, attrs)));
+            }
+            values.add(getAttributes(mbsc, names[0], attrs));
+            for (Future<Map<String, Object>> future : futures) {
+                values.add(future.get());
+            }
+            return values;
+        } catch (ExecutionException e) {
+            // 还原原始异常，连接失效（IOException）时由 execute 重连
+            Throwable cause = e.getCause();
+            if (cause instanceof Exception) {
+                throw (Exception) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw e;
+        } finally {
+            for (Future<Map<String, Object>> future : futures) {
+                future.cancel(false);
+            }
+        }
+    }
+
+    /**
+     * 获取多 MBean 读取线程池，插件停止后再次使用时重新创建
+     * 满载时由调用线程直接读取：调用方本就需要等待全部结果，只是退化为逐个读取
+     */
+    private static synchronized ExecutorService getReadExecutor() {
+        if (readExecutor == null || readExecutor.isShutdown()) {
+            AtomicInteger counter = new AtomicInteger();
+            ThreadPoolExecutor pool = new ThreadPoolExecutor(MAX_READ_THREADS, MAX_READ_THREADS, 60L, TimeUnit.SECONDS,
+                    new ArrayBlockingQueue<>(MAX_READ_QUEUE),
+                    r -> {
+                        Thread thread = new Thread(r, "jmx-reader-" + counter.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    },
+                    new ThreadPoolExecutor.CallerRunsPolicy());
+            pool.allowCoreThreadTimeOut(true);
+            readExecutor = pool;
+        }
+        return readExecutor;
+    }
+
+    /**
+     * 按名称排序查询 ObjectName，保证多次快照的数组下标一致
+     */
+    private static ObjectName[] queryNames(MBeanServerConnection mbsc, ObjectName pattern) throws Exception {
+        Set<ObjectName> names = new TreeSet<>(mbsc.queryNames(pattern, null));
+        return names.toArray(new ObjectName[0]);
+    }
+
+    private static MemoryUsage toMemoryUsage(Object value) {
+        return value instanceof CompositeData ? MemoryUsage.from((CompositeData) value) : null;
+    }
+
+    private static int intValue(Object value, int defaultValue) {
+        return value instanceof Number ? ((Number) value).intValue() : defaultValue;
+    }
+
+    private static long longValue(Object value, long defaultValue) {
+        return value instanceof Number ? ((Number) value).longValue() : defaultValue;
+    }
+
+    private static double doubleValue(Object value, double defaultValue) {
+        return value instanceof Number ? ((Number) value).doubleValue() : defaultValue;
+    }
+
+    private static ObjectName objectName(String name) {
+        try {
+            return new ObjectName(name);
+        } catch (Exception e) {
+            throw new IllegalArgumentException("无效的ObjectName: " + name, e);
+        }
+    }
+
 }
@@ -0,0 +1,101 @@
+package com.jt.plugins.utils.attach;
+
+import javax.management.MBeanServerConnection;
+import javax.management.ObjectName;
+import javax.management.remote.JMXConnector;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * @BelongsProject: jt-server-monitor
+ * @BelongsPackage: com.jt.plugins.utils.attach
+ * @Author: 别来无恙qb
+ * @CreateTime: 2026-03-10  10:12
+ * @Description: 可复用的 JMX 连接（按目标缓存，避免每次请求重新 attach）
+ * @Version: 1.0
+ */
+public class JmxConnectionHolder {
+
+    // 连接目标（本地PID 或 service:jmx: 远程地址）
+    private final String target;
+
+    private final JMXConnector connector;
+
+    private final MBeanServerConnection connection;
+
+    private final long createTime;
+
+    private volatile long lastAccessTime;
+
+    // 正在使用该连接的调用数，-1 表示已被空闲清理回收
+    private final AtomicInteger leases = new AtomicInteger();
+
+    // 上一次线程 CPU 采样（topThreads 增量计算使用）
+    private volatile ThreadCpuSample threadCpuSample;
+
+    // 内存池与垃圾收集器的 ObjectName（按名称排序），平台 MBean 在 JVM 启动后固定，每个连接只查询一次
+    private volatile ObjectName[] memoryPoolNames;
+    private volatile ObjectName[] gcNames;
+
+    public JmxConnectionHolder(String target, JMXConnector connector) throws IOException {
+        this.target = target;
+        this.connector = connector;
+        this.connection = connector.getMBeanServerConnection();
+        this.createTime = System.currentTimeMillis();
+        this.lastAccessTime = this.createTime;
+    }
+
+    public String getTarget() { return target; }
+    public MBeanServerConnection getConnection() { return connection; }
+    public long getCreateTime() { return createTime; }
+    public long getLastAccessTime() { return lastAccessTime; }
+    public ThreadCpuSample getThreadCpuSample() { return threadCpuSample; }
+    public void setThreadCpuSample(ThreadCpuSample threadCpuSample) { this.threadCpuSample = threadCpuSample; }
+    public ObjectName[] getMemoryPoolNames() { return memoryPoolNames; }
+    public void setMemoryPoolNames(ObjectName[] memoryPoolNames) { this.memoryPoolNames = memoryPoolNames; }
+    public ObjectName[] getGcNames() { return gcNames; }
+    public void setGcNames(ObjectName[] gcNames) { this.gcNames = gcNames; }
+
+    /**
+     * 占用连接，调用结束后必须 {@link #release()}
+     * @return 连接已被空闲清理回收时返回 false，需重新获取连接
+     */
+    public boolean acquire() {
+        int value;
+        do {
+            value = leases.get();
+            if (value < 0) {
+                return false;
+            }
+        } while (!leases.compareAndSet(value, value + 1));
+        this.lastAccessTime = System.currentTimeMillis();
+        return true;
+    }
+
+    /**
+     * 释放占用，空闲时间从调用结束时开始计算
+     */
+    public void release() {
+        this.lastAccessTime = System.currentTimeMillis();
+        leases.decrementAndGet();
+    }
+
+    /**
+     * 连接没有被占用且空闲超过指定时长时标记为已回收，之后不能再被占用
+     * @return 是否已回收（调用方负责关闭）
+     */
+    public boolean retireIfIdle(long idleMillis) {
+        return System.currentTimeMillis() - lastAccessTime > idleMillis && leases.compareAndSet(0, -1);
+    }
+
+    /**
+     * 关闭底层连接，忽略关闭异常
+     */
+    public void close() {
+        try {
+            connector.close();
+        } catch (IOException ignored) {
+            // 目标进程可能已退出，关闭失败无需处理
+        }
+    }
+}
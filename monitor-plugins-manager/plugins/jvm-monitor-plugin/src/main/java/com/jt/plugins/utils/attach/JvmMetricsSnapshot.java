@@ -0,0 +1,229 @@
+package com.jt.plugins.utils.attach;
+
+import com.alibaba.fastjson.JSONArray;
+import com.alibaba.fastjson.JSONObject;
+
+/**
+ * @BelongsProject: jt-server-monitor
+ * @BelongsPackage: com.jt.plugins.utils.attach
+ * @Author: 别来无恙qb
+ * @CreateTime: 2026-03-10  10:20
+ * @Description: JVM 指标快照（扁平结构，基本类型字段，便于复用和序列化）
+ * @Version: 1.0
+ */
+public class JvmMetricsSnapshot {
+
+    // 采集时间戳（毫秒）
+    private long timestamp;
+
+    // 堆内存
+    private long heapInit;
+    private long heapUsed;
+    private long heapCommitted;
+    private long heapMax;
+
+    // 非堆内存
+    private long nonHeapInit;
+    private long nonHeapUsed;
+    private long nonHeapCommitted;
+    private long nonHeapMax;
+
+    // 线程
+    private int threadCount;
+    private int peakThreadCount;
+    private int daemonThreadCount;
+    private long totalStartedThreadCount;
+
+    // 类加载
+    private int loadedClassCount;
+    private long totalLoadedClassCount;
+    private long unloadedClassCount;
+
+    // 运行时
+    private long uptime;
+    private long startTime;
+
+    // 操作系统 / CPU（-1 表示目标 JVM 不支持该属性）
+    private String osName;
+    private String arch;
+    private int availableProcessors;
+    private double systemLoadAverage = -1;
+    private double processCpuLoad = -1;
+    private double systemCpuLoad = -1;
+
+    // 内存池（按下标对齐）
+    private String[] poolNames = new String[0];
+    private String[] poolTypes = new String[0];
+    private long[] poolInit = new long[0];
+    private long[] poolUsed = new long[0];
+    private long[] poolCommitted = new long[0];
+    private long[] poolMax = new long[0];
+
+    // GC 收集器（按下标对齐）
+    private String[] gcNames = new String[0];
+    private long[] gcCounts = new long[0];
+    private long[] gcTimes = new long[0];
+
+    // Getters and Setters
+    public long getTimestamp() { return timestamp; }
+    public void setTimestamp(long timestamp) { this.timestamp = timestamp; }
+    public long getHeapInit() { return heapInit; }
+    public void setHeapInit(long heapInit) { this.heapInit = heapInit; }
+    public long getHeapUsed() { return heapUsed; }
+    public void setHeapUsed(long heapUsed) { this.heapUsed = heapUsed; }
+    public long getHeapCommitted() { return heapCommitted; }
+    public void setHeapCommitted(long heapCommitted) { this.heapCommitted = heapCommitted; }
+    public long getHeapMax() { return heapMax; }
+    public void setHeapMax(long heapMax) { this.heapMax = heapMax; }
+    public long getNonHeapInit() { return nonHeapInit; }
+    public void setNonHeapInit(long nonHeapInit) { this.nonHeapInit = nonHeapInit; }
+    public long getNonHeapUsed() { return nonHeapUsed; }
+    public void setNonHeapUsed(long nonHeapUsed) { this.nonHeapUsed = nonHeapUsed; }
+    public long getNonHeapCommitted() { return nonHeapCommitted; }
+    public void setNonHeapCommitted(long nonHeapCommitted) { this.nonHeapCommitted = nonHeapCommitted; }
+    public long getNonHeapMax() { return nonHeapMax; }
+    public void setNonHeapMax(long nonHeapMax) { this.nonHeapMax = nonHeapMax; }
+    public int getThreadCount() { return threadCount; }
+    public void setThreadCount(int threadCount) { this.threadCount = threadCount; }
+    public int getPeakThreadCount() { return peakThreadCount; }
+    public void setPeakThreadCount(int peakThreadCount) { this.peakThreadCount = peakThreadCount; }
+    public int getDaemonThreadCount() { return daemonThreadCount; }
+    public void setDaemonThreadCount(int daemonThreadCount) { this.daemonThreadCount = daemonThreadCount; }
+    public long getTotalStartedThreadCount() { return totalStartedThreadCount; }
+    public void setTotalStartedThreadCount(long totalStartedThreadCount) { this.totalStartedThreadCount = totalStartedThreadCount; }
+    public int getLoadedClassCount() { return loadedClassCount; }
+    public void setLoadedClassCount(int loadedClassCount) { this.loadedClassCount = loadedClassCount; }
+    public long getTotalLoadedClassCount() { return totalLoadedClassCount; }
+    public void setTotalLoadedClassCount(long totalLoadedClassCount) { this.totalLoadedClassCount = totalLoadedClassCount; }
+    public long getUnloadedClassCount() { return unloadedClassCount; }
+    public void setUnloadedClassCount(long unloadedClassCount) { this.unloadedClassCount = unloadedClassCount; }
+    public long getUptime() { return uptime; }
+    public void setUptime(long uptime) { this.uptime = uptime; }
+    public long getStartTime() { return startTime; }
+    public void setStartTime(long startTime) { this.startTime = startTime; }
+    public String getOsName() { return osName; }
+    public void setOsName(String osName) { this.osName = osName; }
+    public String getArch() { return arch; }
+    public void setArch(String arch) { this.arch = arch; }
+    public int getAvailableProcessors() { return availableProcessors; }
+    public void setAvailableProcessors(int availableProcessors) { this.availableProcessors = availableProcessors; }
+    public double getSystemLoadAverage() { return systemLoadAverage; }
+    public void setSystemLoadAverage(double systemLoadAverage) { this.systemLoadAverage = systemLoadAverage; }
+    public double getProcessCpuLoad() { return processCpuLoad; }
+    public void setProcessCpuLoad(double processCpuLoad) { this.processCpuLoad = processCpuLoad; }
+    public double getSystemCpuLoad() { return systemCpuLoad; }
+    public void setSystemCpuLoad(double systemCpuLoad) { this.systemCpuLoad = systemCpuLoad; }
+    public String[] getPoolNames() { return poolNames; }
+    public String[] getPoolTypes() { return poolTypes; }
+    public long[] getPoolInit() { return poolInit; }
+    public long[] getPoolUsed() { return poolUsed; }
+    public long[] getPoolCommitted() { return poolCommitted; }
+    public long[] getPoolMax() { return poolMax; }
+    public String[] getGcNames() { return gcNames; }
+    public long[] getGcCounts() { return gcCounts; }
+    public long[] getGcTimes() { return gcTimes; }
+
+    /**
+     * 按数量初始化内存池数组
+     */
+    public void initPools(int size) {
+        this.poolNames = new String[size];
+        this.poolTypes = new String[size];
+        this.poolInit = new long[size];
+        this.poolUsed = new long[size];
+        this.poolCommitted = new long[size];
+        this.poolMax = new long[size];
+    }
+
+    /**
+     * 按数量初始化 GC 收集器数组
+     */
+    public void initGcs(int size) {
+        this.gcNames = new String[size];
+        this.gcCounts = new long[size];
+        this.gcTimes = new long[size];
+    }
+
+    /**
+     * GC 总次数
+     */
+    public long getTotalGcCount() {
+        long total = 0;
+        for (long count : gcCounts) {
+            total += Math.max(count, 0);
+        }
+        return total;
+    }
+
+    /**
+     * GC 总耗时（毫秒）
+     */
+    public long getTotalGcTime() {
+        long total = 0;
+        for (long time : gcTimes) {
+            total += Math.max(time, 0);
+        }
+        return total;
+    }
+
+    /**
+     * 转换为 JSON（字段名与原 getJvmInfo 返回结构保持兼容）
+     */
+    public JSONObject toJSON() {
+        JSONObject json = new JSONObject();
+        json.put("timestamp", timestamp);
+        json.put("heapMemory", usageJSON(heapInit, heapUsed, heapCommitted, heapMax));
+        json.put("nonHeapMemory", usageJSON(nonHeapInit, nonHeapUsed, nonHeapCommitted, nonHeapMax));
+        json.put("heapMemoryUsagePercent", heapMax > 0 ? (double) heapUsed / heapMax * 100 : 0);
+
+        JSONArray pools = new JSONArray();
+        for (int i = 0; i < poolNames.length; i++) {
+            JSONObject poolObj = new JSONObject();
+            poolObj.put("name", poolNames[i]);
+            poolObj.put("type", poolTypes[i]);
+            poolObj.put("usage", usageJSON(poolInit[i], poolUsed[i], poolCommitted[i], poolMax[i]));
+            pools.add(poolObj);
+        }
+        json.put("memoryPools", pools);
+
+        JSONArray gcs = new JSONArray();
+        for (int i = 0; i < gcNames.length; i++) {
+            JSONObject gcObj = new JSONObject();
+            gcObj.put("name", gcNames[i]);
+            gcObj.put("count", gcCounts[i]);
+            gcObj.put("time", gcTimes[i]);
+            gcs.add(gcObj);
+        }
+        json.put("garbageCollectors", gcs);
+
+        json.put("threadCount", threadCount);
+        json.put("peakThreadCount", peakThreadCount);
+        json.put("daemonThreadCount", daemonThreadCount);
+        json.put("totalStartedThreadCount", totalStartedThreadCount);
+
+        json.put("classLoading", new JSONObject()
+                .fluentPut("loadedClassCount", loadedClassCount)
+                .fluentPut("totalLoadedClassCount", totalLoadedClassCount)
+                .fluentPut("unloadedClassCount", unloadedClassCount));
+        json.put("cpuLoad", new JSONObject()
+                .fluentPut("processCpuLoad", processCpuLoad)
+                .fluentPut("systemCpuLoad", systemCpuLoad));
+        json.put("uptime", uptime);
+        json.put("startTime", startTime);
+
+        json.put("osName", osName);
+        json.put("arch", arch);
+        json.put("availableProcessors", availableProcessors);
+        json.put("systemLoadAverage", systemLoadAverage);
+        return json;
+    }
+
+    private static JSONObject usageJSON(long init, long used, long committed, long max) {
+        JSONObject usage = new JSONObject();
+        usage.put("init", init);
+        usage.put("used", used);
+        usage.put("committed", committed);
+        usage.put("max", max);
+        return usage;
+    }
+}
@@ -0,0 +1,60 @@
+package com.jt.plugins.utils.attach;
+
+import java.util.Arrays;
+
+/**
+ * @BelongsProject: jt-server-monitor
+ * @BelongsPackage: com.jt.plugins.utils.attach
+ * @Author: 别来无恙qb
+ * @CreateTime: 2026-03-12  09:40
+ * @Description: 线程 CPU 时间采样（线程ID 与 CPU 时间按下标对齐，ID 升序便于二分查找）
+ * @Version: 1.0
+ */
+public class ThreadCpuSample {
+
+    // 采样时刻（System.nanoTime）
+    private final long sampleNanos;
+
+    // 线程ID（升序）
+    private final long[] threadIds;
+
+    // 线程累计 CPU 时间（纳秒，-1 表示线程已结束或不支持）
+    private final long[] cpuTimes;
+
+    public ThreadCpuSample(long sampleNanos, long[] threadIds, long[] cpuTimes) {
+        this.sampleNanos = sampleNanos;
+        this.threadIds = threadIds;
+        this.cpuTimes = cpuTimes;
+    }
+
+    /**
+     * 按线程ID排序后构建采样
+     */
+    public static ThreadCpuSample of(long sampleNanos, long[] ids, long[] times) {
+        int n = ids.length;
+        long[][] pairs = new long[n][];
+        for (int i = 0; i < n; i++) {
+            pairs[i] = new long[]{ids[i], times[i]};
+        }
+        Arrays.sort(pairs, (a, b) -> Long.compare(a[0], b[0]));
+        long[] sortedIds = new long[n];
+        long[] sortedTimes = new long[n];
+        for (int i = 0; i < n; i++) {
+            sortedIds[i] = pairs[i][0];
+            sortedTimes[i] = pairs[i][1];
+        }
+        return new ThreadCpuSample(sampleNanos, sortedIds, sortedTimes);
+    }
+
+    public long getSampleNanos() { return sampleNanos; }
+    public long[] getThreadIds() { return threadIds; }
+    public long[] getCpuTimes() { return cpuTimes; }
+
+    /**
+     * 获取指定线程的 CPU 时间，不存在返回 -1
+     */
+    public long cpuTimeOf(long threadId) {
+        int index = Arrays.binarySearch(threadIds, threadId);
+        return index >= 0 ? cpuTimes[index] : -1;
+    }
+}
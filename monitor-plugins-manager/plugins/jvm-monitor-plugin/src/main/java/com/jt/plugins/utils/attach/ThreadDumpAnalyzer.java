@@ -0,0 +1,270 @@
+package com.jt.plugins.utils.attach;
+
+import com.alibaba.fastjson.JSONArray;
+import com.alibaba.fastjson.JSONObject;
+
+import java.lang.management.LockInfo;
+import java.lang.management.ThreadInfo;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * @BelongsProject: jt-server-monitor
+ * @BelongsPackage: com.jt.plugins.utils.attach
+ * @Author: 别来无恙qb
+ * @CreateTime: 2026-03-11  14:05
+ * @Description: 线程转储聚合分析（相同堆栈归并、热点帧、锁竞争、死锁）
+ * @Version: 1.0
+ */
+public class ThreadDumpAnalyzer {
+
+    // 每个堆栈分组保留的代表帧数量
+    private static final int GROUP_FRAME_LIMIT = 20;
+
+    // 每个堆栈分组保留的示例线程名数量
+    private static final int GROUP_THREAD_NAME_LIMIT = 5;
+
+    // 堆栈分组：指纹 -> 分组
+    private final Map<Long, StackGroup> groups = new HashMap<>();
+
+    // 热点帧：帧描述 -> [自身次数, 包含次数]
+    private final Map<String, long[]> frames = new HashMap<>();
+
+    // 锁竞争：锁标识 -> 锁统计
+    private final Map<String, LockStat> locks = new HashMap<>();
+
+    // 线程状态分布（所有采样累加）
+    private final Map<String, Integer> stateCounts = new LinkedHashMap<>();
+
+    private int sampleCount;
+    private long threadSamples;
+
+    /**
+     * 堆栈分组
+     */
+    private static class StackGroup {
+        private final long fingerprint;
+        private final StackTraceElement[] frames;
+        private final Map<String, Integer> states = new HashMap<>();
+        private final Set<String> threadNames = new HashSet<>();
+        private int count;
+
+        StackGroup(long fingerprint, StackTraceElement[] stack) {
+            this.fingerprint = fingerprint;
+            int size = Math.min(stack.length, GROUP_FRAME_LIMIT);
+            this.frames = new StackTraceElement[size];
+            System.arraycopy(stack, 0, this.frames, 0, size);
+        }
+    }
+
+    /**
+     * 锁统计
+     */
+    private static class LockStat {
+        private final String lockName;
+        private long ownerId = -1;
+        private String ownerName;
+        private int blockedCount;
+        private int waitingCount;
+        private int maxBlockedInSample;
+
+        LockStat(String lockName) {
+            this.lockName = lockName;
+        }
+    }
+
+    /**
+     * 加入一次采样
+     */
+    public void addSample(ThreadInfo[] infos) {
+        sampleCount++;
+        Map<String, Integer> blockedInSample = new HashMap<>();
+
+        for (ThreadInfo info : infos) {
+            if (info == null) continue;
+            threadSamples++;
+
+            String state = info.getThreadState().toString();
+            stateCounts.merge(state, 1, Integer::sum);
+
+            StackTraceElement[] stack = info.getStackTrace();
+            addStack(info, state, stack);
+            addFrames(stack);
+
+            LockInfo lockInfo = info.getLockInfo();
+            if (lockInfo != null) {
+                String lockKey = lockInfo.getClassName() + "@" + Integer.toHexString(lockInfo.getIdentityHashCode());
+                LockStat stat = locks.computeIfAbsent(lockKey, LockStat::new);
+                if (info.getLockOwnerId() >= 0) {
+                    stat.ownerId = info.getLockOwnerId();
+                    stat.ownerName = info.getLockOwnerName();
+                }
+                if (info.getThreadState() == Thread.State.BLOCKED) {
+                    stat.blockedCount++;
+                    blockedInSample.merge(lockKey, 1, Integer::sum);
+                } else {
+                    stat.waitingCount++;
+                }
+            }
+        }
+
+        for (Map.Entry<String, Integer> entry : blockedInSample.entrySet()) {
+            LockStat stat = locks.get(entry.getKey());
+            stat.maxBlockedInSample = Math.max(stat.maxBlockedInSample, entry.getValue());
+        }
+    }
+
+    private void addStack(ThreadInfo info, String state, StackTraceElement[] stack) {
+        long fingerprint = fingerprint(stack);
+        StackGroup group = groups.get(fingerprint);
+        if (group == null) {
+            group = new StackGroup(fingerprint, stack);
+            groups.put(fingerprint, group);
+        }
+        group.count++;
+        group.states.merge(state, 1, Integer::sum);
+        if (group.threadNames.size() < GROUP_THREAD_NAME_LIMIT) {
+            group.threadNames.add(info.getThreadName());
+        }
+    }
+
+    private void addFrames(StackTraceElement[] stack) {
+        if (stack.length == 0) {
+            return;
+        }
+        // 栈顶帧计入自身次数
+        frames.computeIfAbsent(frameKey(stack[0]), k -> new long[2])[0]++;
+        // 同一堆栈中重复出现的帧（递归）只计一次包含次数
+        Set<String> seen = new HashSet<>();
+        for (StackTraceElement element : stack) {
+            String key = frameKey(element);
+            if (seen.add(key)) {
+                frames.computeIfAbsent(key, k -> new long[2])[1]++;
+            }
+        }
+    }
+
+    /**
+     * 堆栈指纹（64位 FNV-1a）
+     */
+    private static long fingerprint(StackTraceElement[] stack) {
+        long hash = 0xcbf29ce484222325L;
+        for (StackTraceElement element : stack) {
+            hash ^= element.getClassName().hashCode();
+            hash *= 0x100000001b3L;
+            hash ^= element.getMethodName().hashCode();
+            hash *= 0x100000001b3L;
+            hash ^= element.getLineNumber();
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    private static String frameKey(StackTraceElement element) {
+        return element.getClassName() + "." + element.getMethodName()
+                + (element.getLineNumber() >= 0 ? ":" + element.getLineNumber() : "");
+    }
+
+    /**
+     * 输出聚合结果
+     * @param topN 堆栈分组/热点帧/锁各自保留的条数
+     * @param deadlocked 死锁线程信息（来自 findDeadlockedThreads，可为空）
+     * @param monitorDeadlocked 监视器死锁线程信息（来自 findMonitorDeadlockedThreads，可为空）
+     */
+    public JSONObject toJSON(int topN, ThreadInfo[] deadlocked, ThreadInfo[] monitorDeadlocked) {
+        JSONObject result = new JSONObject();
+        result.put("sampleCount", sampleCount);
+        result.put("threadSamples", threadSamples);
+        result.put("distinctStacks", groups.size());
+        result.put("stateCounts", stateCounts);
+
+        // 1. 堆栈分组（按出现次数降序）
+        List<StackGroup> groupList = new ArrayList<>(groups.values());
+        groupList.sort((a, b) -> Integer.compare(b.count, a.count));
+        JSONArray stackGroups = new JSONArray();
+        for (int i = 0; i < Math.min(topN, groupList.size()); i++) {
+            StackGroup group = groupList.get(i);
+            JSONObject obj = new JSONObject();
+            obj.put("fingerprint", Long.toHexString(group.fingerprint));
+            obj.put("count", group.count);
+            obj.put("ratio", threadSamples > 0 ? (double) group.count / threadSamples : 0);
+            obj.put("states", group.states);
+            obj.put("threadNames", group.threadNames);
+            List<String> frameList = new ArrayList<>(group.frames.length);
+            for (StackTraceElement element : group.frames) {
+                frameList.add(frameKey(element));
+            }
+            obj.put("frames", frameList);
+            stackGroups.add(obj);
+        }
+        result.put("stackGroups", stackGroups);
+
+        // 2. 热点帧（按包含次数降序）
+        List<Map.Entry<String, long[]>> frameList = new ArrayList<>(frames.entrySet());
+        frameList.sort((a, b) -> Long.compare(b.getValue()[1], a.getValue()[1]));
+        JSONArray hotFrames = new JSONArray();
+        for (int i = 0; i < Math.min(topN, frameList.size()); i++) {
+            Map.Entry<String, long[]> entry = frameList.get(i);
+            hotFrames.add(new JSONObject()
+                    .fluentPut("frame", entry.getKey())
+                    .fluentPut("selfCount", entry.getValue()[0])
+                    .fluentPut("totalCount", entry.getValue()[1]));
+        }
+        result.put("hotFrames", hotFrames);
+
+        // 3. 锁竞争（按阻塞次数降序，只保留有阻塞或有持有者的锁）
+        List<LockStat> lockList = new ArrayList<>();
+        for (LockStat stat : locks.values()) {
+            if (stat.blockedCount > 0 || stat.ownerId >= 0) {
+                lockList.add(stat);
+            }
+        }
+        lockList.sort((a, b) -> Integer.compare(b.blockedCount, a.blockedCount));
+        JSONArray contendedLocks = new JSONArray();
+        for (int i = 0; i < Math.min(topN, lockList.size()); i++) {
+            LockStat stat = lockList.get(i);
+            contendedLocks.add(new JSONObject()
+                    .fluentPut("lock", stat.lockName)
+                    .fluentPut("ownerThreadId", stat.ownerId)
+                    .fluentPut("ownerThreadName", stat.ownerName)
+                    .fluentPut("blockedCount", stat.blockedCount)
+                    .fluentPut("waitingCount", stat.waitingCount)
+                    .fluentPut("maxBlockedInSample", stat.maxBlockedInSample));
+        }
+        result.put("contendedLocks", contendedLocks);
+
+        // 4. 死锁
+        JSONObject deadlocks = new JSONObject();
+        deadlocks.put("deadlockedThreads", deadlockJSON(deadlocked));
+        deadlocks.put("monitorDeadlockedThreads", deadlockJSON(monitorDeadlocked));
+        deadlocks.put("detected", (deadlocked != null && deadlocked.length > 0)
+                || (monitorDeadlocked != null && monitorDeadlocked.length > 0));
+        result.put("deadlocks", deadlocks);
+        return result;
+    }
+
+    private static JSONArray deadlockJSON(ThreadInfo[] infos) {
+        JSONArray arr = new JSONArray();
+        if (infos == null) {
+            return arr;
+        }
+        for (ThreadInfo info : infos) {
+            if (info == null) continue;
+            StackTraceElement[] stack = info.getStackTrace();
+            arr.add(new JSONObject()
+                    .fluentPut("threadId", info.getThreadId())
+                    .fluentPut("threadName", info.getThreadName())
+                    .fluentPut("state", info.getThreadState().toString())
+                    .fluentPut("waitingLock", info.getLockName())
+                    .fluentPut("lockOwnerId", info.getLockOwnerId())
+                    .fluentPut("lockOwnerName", info.getLockOwnerName())
+                    .fluentPut("topFrame", stack.length > 0 ? frameKey(stack[0]) : null));
+        }
+        return arr;
+    }
+}
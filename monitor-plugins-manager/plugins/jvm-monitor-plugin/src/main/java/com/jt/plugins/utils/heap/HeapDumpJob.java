@@ -0,0 +1,142 @@
+package com.jt.plugins.utils.heap;
+
+import com.alibaba.fastjson.JSONObject;
+
+import java.io.File;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @BelongsProject: jt-server-monitor
+ * @BelongsPackage: com.jt.plugins.utils.heap
+ * @Author: 别来无恙qb
+ * @CreateTime: 2026-03-13  10:30
+ * @Description: 堆转储后台任务
+ * @Version: 1.0
+ */
+public class HeapDumpJob {
+
+    /**
+     * 任务状态
+     */
+    public enum Status {
+        PENDING, DUMPING, COMPRESSING, COMPLETED, FAILED
+    }
+
+    private final String jobId;
+    private final String pid;
+    private final boolean live;
+    private final boolean compress;
+    private final boolean keepRaw;
+    private final File rawFile;
+    private final long createTime;
+
+    // 开始 Dump 时的堆使用量，用于估算 Dump 进度
+    private volatile long expectedSize;
+
+    private volatile Status status = Status.PENDING;
+    private volatile long startTime;
+    private volatile long endTime;
+    private volatile long rawSize;
+    private volatile long compressedBytesRead;
+    private volatile File resultFile;
+    private volatile String errorMessage;
+
+    // 任务结束（完成或失败）时释放，供同步等待的调用方使用
+    private final CountDownLatch finished = new CountDownLatch(1);
+
+    public HeapDumpJob(String jobId, String pid, boolean live, boolean compress, boolean keepRaw, File rawFile) {
+        this.jobId = jobId;
+        this.pid = pid;
+        this.live = live;
+        this.compress = compress;
+        this.keepRaw = keepRaw;
+        this.rawFile = rawFile;
+        this.createTime = System.currentTimeMillis();
+    }
+
+    public String getJobId() { return jobId; }
+    public String getPid() { return pid; }
+    public boolean isLive() { return live; }
+    public boolean isCompress() { return compress; }
+    public boolean isKeepRaw() { return keepRaw; }
+    public File getRawFile() { return rawFile; }
+    public long getCreateTime() { return createTime; }
+    public Status getStatus() { return status; }
+    public void setStatus(Status status) {
+        this.status = status;
+        if (isFinished()) {
+            finished.countDown();
+        }
+    }
+    public long getExpectedSize() { return expectedSize; }
+    public void setExpectedSize(long expectedSize) { this.expectedSize = expectedSize; }
+    public long getStartTime() { return startTime; }
+    public void setStartTime(long startTime) { this.startTime = startTime; }
+    public long getEndTime() { return endTime; }
+    public void setEndTime(long endTime) { this.endTime = endTime; }
+    public long getRawSize() { return rawSize; }
+    public void setRawSize(long rawSize) { this.rawSize = rawSize; }
+    public long getCompressedBytesRead() { return compressedBytesRead; }
+    public void setCompressedBytesRead(long compressedBytesRead) { this.compressedBytesRead = compressedBytesRead; }
+    public File getResultFile() { return resultFile; }
+    public void setResultFile(File resultFile) { this.resultFile = resultFile; }
+    public String getErrorMessage() { return errorMessage; }
+    public void setErrorMessage(String errorMessage) { this.errorMessage = errorMessage; }
+
+    public boolean isFinished() {
+        return status == Status.COMPLETED || status == Status.FAILED;
+    }
+
+    /**
+     * 等待任务结束
+     * @return 超时前任务已结束返回 true
+     */
+    public boolean awaitFinished(long timeout, TimeUnit unit) throws InterruptedException {
+        return finished.await(timeout, unit);
+    }
+
+    /**
+     * 估算进度（0-100）：Dump 阶段按文件增长/堆使用量估算占前 50%，压缩阶段按已读字节占后 50%
+     */
+    public int getProgress() {
+        switch (status) {
+            case PENDING:
+                return 0;
+            case DUMPING:
+                long expected = expectedSize;
+                long written = rawFile.length();
+                int dumpPercent = expected > 0 ? (int) Math.min(99, written * 100 / expected) : 0;
+                return compress ? dumpPercent / 2 : dumpPercent;
+            case COMPRESSING:
+                long total = rawSize;
+                return 50 + (total > 0 ? (int) Math.min(49, compressedBytesRead * 50 / total) : 0);
+            default:
+                return 100;
+        }
+    }
+
+    public JSONObject toJSON() {
+        JSONObject json = new JSONObject();
+        json.put("jobId", jobId);
+        json.put("pid", pid);
+        json.put("live", live);
+        json.put("compress", compress);
+        json.put("status", status.name());
+        json.put("progress", getProgress());
+        json.put("createTime", createTime);
+        json.put("startTime", startTime);
+        json.put("endTime", endTime);
+        json.put("rawSize", rawSize);
+        File result = resultFile;
+        if (result != null) {
+            json.put("filePath", result.getAbsolutePath());
+            json.put("fileSize", result.length());
+        }
+        if (keepRaw || !compress) {
+            json.put("rawFilePath", rawFile.getAbsolutePath());
+        }
+        json.put("errorMessage", errorMessage);
+        return json;
+    }
+}
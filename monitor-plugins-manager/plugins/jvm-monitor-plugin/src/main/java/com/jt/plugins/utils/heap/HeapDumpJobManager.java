@@ -0,0 +1,340 @@
+package com.jt.plugins.utils.heap;
+
+import com.jt.plugins.common.file.DownloadTokenRegistry;
+import com.jt.plugins.common.file.PluginFileStorage;
+import com.jt.plugins.common.log.PluginLogger;
+import com.jt.plugins.utils.attach.AttachApiUtil;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * @BelongsProject: jt-server-monitor
+ * @BelongsPackage: com.jt.plugins.utils.heap
+ * @Author: 别来无恙qb
+ * @CreateTime: 2026-03-13  10:45
+ * @Description: 堆转储后台任务管理器 - 异步 Dump、流式 gzip 压缩、存储配额与自动清理
+ * @Version: 1.0
+ */
+public class HeapDumpJobManager {
+
+    private static final PluginLogger logger = PluginLogger.getLogger("jvm-monitor-plugin");
+
+    private static final PluginFileStorage fileStorage = PluginFileStorage.getStorage("jvm-monitor-plugin");
+
+    // 堆转储存放子目录
+    private static final String DUMP_DIR_NAME = "heapdump";
+
+    // 堆转储目录配额（MB），可通过系统属性覆盖
+    private static final long QUOTA_BYTES = Long.getLong("jvm.monitor.heapDumpQuotaMb", 20480L) * 1024 * 1024;
+
+    // 压缩读写缓冲区大小
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    // 内存中保留的任务记录数量上限
+    private static final int MAX_JOB_RECORDS = 50;
+
+    private final Map<String, HeapDumpJob> jobs = new ConcurrentHashMap<>();
+
+    // 进程ID -> 该进程进行中的任务，同一进程同时只允许一个任务
+    private final Map<String, HeapDumpJob> activeJobs = new ConcurrentHashMap<>();
+
+    // 堆转储会暂停目标 JVM 并占用大量磁盘 IO，同一时间只执行一个任务
+    private ExecutorService executor;
+
+    private final File dumpDir = fileStorage.createDirectory(DUMP_DIR_NAME);
+
+    /**
+     * 单例实例
+     */
+    private static class SingletonHolder {
+        private static final HeapDumpJobManager INSTANCE = new HeapDumpJobManager();
+    }
+
+    public static HeapDumpJobManager getInstance() {
+        return SingletonHolder.INSTANCE;
+    }
+
+    private HeapDumpJobManager() {
+        logger.info("堆转储任务管理器初始化完成，目录: {}，配额: {}MB", dumpDir.getAbsolutePath(), QUOTA_BYTES / 1024 / 1024);
+    }
+
+    /**
+     * 提交堆转储任务
+     * @param pid 进程ID
+     * @param live 是否只 Dump 存活对象
+     * @param compress 是否 gzip 压缩
+     * @param keepRaw 压缩后是否保留原始 hprof 文件
+     * @return 任务
+     */
+    public HeapDumpJob submit(String pid, boolean live, boolean compress, boolean keepRaw) {
+        String jobId = UUID.randomUUID().toString().replace("-", "");
+        File rawFile = new File(dumpDir, "heap_dump_" + pid + "_" + System.currentTimeMillis() + ".hprof");
+        HeapDumpJob job = new HeapDumpJob(jobId, pid, live, compress, keepRaw, rawFile);
+        // 检查与登记在同一次原子操作中完成，并发提交同一进程时只有一个成功
+        HeapDumpJob active = activeJobs.merge(pid, job, (existing, created) -> existing.isFinished() ? created : existing);
+        if (active != job) {
+            throw new IllegalStateException("进程 " + pid + " 已有进行中的堆转储任务：" + active.getJobId());
+        }
+        pruneJobRecords();
+
+        jobs.put(jobId, job);
+        try {
+            getExecutor().submit(() -> runJob(job));
+        } catch (RejectedExecutionException e) {
+            jobs.remove(jobId);
+            activeJobs.remove(pid, job);
+            throw new IllegalStateException("堆转储任务管理器已关闭", e);
+        }
+        logger.info("堆转储任务已提交，任务ID: {}，PID: {}", jobId, pid);
+        return job;
+    }
+
+    /**
+     * 是否有未结束的堆转储任务
+     */
+    public boolean hasRunningJobs() {
+        for (HeapDumpJob job : jobs.values()) {
+            if (!job.isFinished()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 获取任务执行器，插件停止后再次启动时重新创建
+     */
+    private synchronized ExecutorService getExecutor() {
+        if (executor == null || executor.isShutdown()) {
+            executor = Executors.newSingleThreadExecutor(r -> {
+                Thread thread = new Thread(r, "heap-dump-worker");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return executor;
+    }
+
+    /**
+     * 获取任务
+     */
+    public HeapDumpJob getJob(String jobId) {
+        return jobs.get(jobId);
+    }
+
+    /**
+     * 获取所有任务（按创建时间倒序）
+     */
+    public List<HeapDumpJob> listJobs() {
+        List<HeapDumpJob> list = new ArrayList<>(jobs.values());
+        list.sort(Comparator.comparingLong(HeapDumpJob::getCreateTime).reversed());
+        return list;
+    }
+
+    /**
+     * 解析堆转储目录下的文件，规范化后不在堆转储目录内的路径一律拒绝
+     * @param path 文件路径（绝对路径或相对堆转储目录的文件名）
+     * @return 规范化后的文件
+     */
+    public File resolveDumpFile(String path) throws IOException {
+        File file = new File(path);
+        if (!file.isAbsolute()) {
+            file = new File(dumpDir, path);
+        }
+        File canonical = file.getCanonicalFile();
+        File canonicalDir = dumpDir.getCanonicalFile();
+        if (!canonicalDir.equals(canonical.getParentFile())) {
+            throw new IllegalArgumentException("只允许访问堆转储目录下的文件：" + canonicalDir.getAbsolutePath());
+        }
+        return canonical;
+    }
+
+    /**
+     * 为已完成任务的结果文件生成下载令牌
+     * @return 令牌
+     */
+    public String issueDownloadToken(String jobId, int expireSeconds) {
+        HeapDumpJob job = jobs.get(jobId);
+        if (job == null) {
+            throw new IllegalArgumentException("任务不存在：" + jobId);
+        }
+        if (job.getStatus() != HeapDumpJob.Status.COMPLETED) {
+            throw new IllegalStateException("任务尚未完成，当前状态：" + job.getStatus());
+        }
+        File file = job.getResultFile();
+        if (file == null || !file.isFile()) {
+            throw new IllegalStateException("堆转储文件已被清理");
+        }
+        return DownloadTokenRegistry.issue(file, expireSeconds);
+    }
+
+    /**
+     * 执行任务：Dump -> 压缩 -> 配额清理
+     */
+    private void runJob(HeapDumpJob job) {
+        if (job.isFinished()) {
+            // 插件停止时已标记为未执行
+            return;
+        }
+        job.setStartTime(System.currentTimeMillis());
+        File gzFile = new File(job.getRawFile().getAbsolutePath() + ".gz");
+        File tmpFile = new File(gzFile.getAbsolutePath() + ".tmp");
+        try {
+            // 1. 以当前堆使用量估算文件大小，并预先腾出空间
+            try {
+                job.setExpectedSize(AttachApiUtil.collectMetrics(job.getPid()).getHeapUsed());
+            } catch (Exception e) {
+                logger.warn("获取堆使用量失败，无法估算进度，PID: {}", job.getPid());
+            }
+            enforceQuota(job.getExpectedSize());
+
+            // 2. Dump
+            job.setStatus(HeapDumpJob.Status.DUMPING);
+            AttachApiUtil.dumpHeap(job.getPid(), job.getRawFile().getAbsolutePath(), job.isLive());
+            if (!job.getRawFile().isFile()) {
+                throw new IllegalStateException("堆转储文件不在本机（远程目标），无法继续处理");
+            }
+            job.setRawSize(job.getRawFile().length());
+            logger.info("堆转储完成，任务ID: {}，文件大小: {}", job.getJobId(), job.getRawSize());
+
+            // 3. 流式压缩
+            if (job.isCompress()) {
+                job.setStatus(HeapDumpJob.Status.COMPRESSING);
+                compress(job, tmpFile);
+                if (!tmpFile.renameTo(gzFile)) {
+                    throw new IOException("重命名压缩文件失败：" + tmpFile.getAbsolutePath());
+                }
+                if (!job.isKeepRaw()) {
+                    job.getRawFile().delete();
+                }
+                job.setResultFile(gzFile);
+                logger.info("堆转储压缩完成，任务ID: {}，压缩后大小: {}", job.getJobId(), gzFile.length());
+            } else {
+                job.setResultFile(job.getRawFile());
+            }
+
+            job.setStatus(HeapDumpJob.Status.COMPLETED);
+        } catch (Exception e) {
+            logger.error("堆转储任务失败，任务ID: {}", job.getJobId(), e);
+            job.setErrorMessage(e.getMessage());
+            job.setStatus(HeapDumpJob.Status.FAILED);
+            tmpFile.delete();
+            job.getRawFile().delete();
+        } finally {
+            job.setEndTime(System.currentTimeMillis());
+            activeJobs.remove(job.getPid(), job);
+        }
+        enforceQuota(0);
+    }
+
+    /**
+     * 以固定大小缓冲区把原始文件流式写入 gzip，内存占用与文件大小无关
+     */
+    private void compress(HeapDumpJob job, File target) throws IOException {
+        byte[] buffer = new byte[BUFFER_SIZE];
+        long read = 0;
+        try (InputStream in = new FileInputStream(job.getRawFile());
+             OutputStream out = new GZIPOutputStream(new BufferedOutputStream(new FileOutputStream(target), BUFFER_SIZE), BUFFER_SIZE)) {
+            int n;
+            while ((n = in.read(buffer)) != -1) {
+                out.write(buffer, 0, n);
+                read += n;
+                job.setCompressedBytesRead(read);
+            }
+        }
+    }
+
+    /**
+     * 按配额清理最旧的堆转储文件，跳过进行中任务正在使用的文件
+     * @param reserveBytes 需要额外预留的空间
+     */
+    private synchronized void enforceQuota(long reserveBytes) {
+        File[] files = dumpDir.listFiles(File::isFile);
+        if (files == null) {
+            return;
+        }
+
+        Set<String> inUse = new HashSet<>();
+        for (HeapDumpJob job : jobs.values()) {
+            if (!job.isFinished()) {
+                inUse.add(job.getRawFile().getAbsolutePath());
+                inUse.add(job.getRawFile().getAbsolutePath() + ".gz");
+                inUse.add(job.getRawFile().getAbsolutePath() + ".gz.tmp");
+            }
+        }
+
+        long total = reserveBytes;
+        for (File file : files) {
+            total += file.length();
+        }
+        if (total <= QUOTA_BYTES) {
+            return;
+        }
+
+        Arrays.sort(files, Comparator.comparingLong(File::lastModified));
+        for (File file : files) {
+            if (total <= QUOTA_BYTES) {
+                break;
+            }
+            if (inUse.contains(file.getAbsolutePath())) {
+                continue;
+            }
+            long size = file.length();
+            if (file.delete()) {
+                total -= size;
+                DownloadTokenRegistry.revokeFile(file);
+                logger.info("超出堆转储存储配额，已清理文件: {}，大小: {}", file.getName(), size);
+            }
+        }
+    }
+
+    /**
+     * 只保留最近的任务记录
+     */
+    private void pruneJobRecords() {
+        List<HeapDumpJob> list = listJobs();
+        for (int i = MAX_JOB_RECORDS; i < list.size(); i++) {
+            HeapDumpJob job = list.get(i);
+            if (job.isFinished()) {
+                jobs.remove(job.getJobId());
+            }
+        }
+    }
+
+    /**
+     * 停止任务执行器（插件停止时调用）
+     */
+    public synchronized void shutdown() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+        // 排队中的任务不会再执行，标记为失败以免一直占用进程
+        for (HeapDumpJob job : activeJobs.values()) {
+            if (job.getStartTime() == 0) {
+                job.setErrorMessage("插件已停止，任务未执行");
+                job.setStatus(HeapDumpJob.Status.FAILED);
+                activeJobs.remove(job.getPid(), job);
+            }
+        }
+        logger.info("堆转储任务管理器已关闭");
+    }
+}
@@ -0,0 +1,161 @@
+package com.jt.plugins.utils.heap;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * @BelongsProject: jt-server-monitor
+ * @BelongsPackage: com.jt.plugins.utils.heap
+ * @Author: 别来无恙qb
+ * @CreateTime: 2026-03-16  09:20
+ * @Description: HPROF 顺序读取器（分窗口内存映射，支持超过 2GB 的文件）
+ * @Version: 1.0
+ */
+public class HprofMappedReader implements Closeable {
+
+    // 单个映射窗口大小
+    private static final long WINDOW_SIZE = 256L * 1024 * 1024;
+
+    private final RandomAccessFile file;
+    private final FileChannel channel;
+    private final long size;
+
+    private MappedByteBuffer buffer;
+    private long bufferStart;
+    private long position;
+
+    // 对象ID字节数（4 或 8），读取文件头后设置
+    private int idSize = 8;
+
+    public HprofMappedReader(File hprofFile) throws IOException {
+        this.file = new RandomAccessFile(hprofFile, "r");
+        this.channel = file.getChannel();
+        this.size = channel.size();
+    }
+
+    public long size() { return size; }
+    public long position() { return position; }
+    public int getIdSize() { return idSize; }
+    public void setIdSize(int idSize) { this.idSize = idSize; }
+
+    public boolean hasRemaining() {
+        return position < size;
+    }
+
+    /**
+     * 移动到指定位置（只修改位置，读取时按需重新映射）
+     */
+    public void seek(long newPosition) {
+        this.position = newPosition;
+    }
+
+    public void skip(long n) {
+        this.position += n;
+    }
+
+    /**
+     * 保证当前位置起 n 个字节在映射窗口内
+     */
+    private void ensure(int n) throws IOException {
+        if (buffer != null && position >= bufferStart && position + n <= bufferStart + buffer.limit()) {
+            return;
+        }
+        if (position + n > size) {
+            throw new EOFException("HPROF文件意外结束，位置: " + position);
+        }
+        long length = Math.min(WINDOW_SIZE, size - position);
+        buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+        bufferStart = position;
+    }
+
+    private int offset() {
+        return (int) (position - bufferStart);
+    }
+
+    public int u1() throws IOException {
+        ensure(1);
+        int value = buffer.get(offset()) & 0xff;
+        position += 1;
+        return value;
+    }
+
+    public int u2() throws IOException {
+        ensure(2);
+        int value = buffer.getShort(offset()) & 0xffff;
+        position += 2;
+        return value;
+    }
+
+    public int i4() throws IOException {
+        ensure(4);
+        int value = buffer.getInt(offset());
+        position += 4;
+        return value;
+    }
+
+    public long u4() throws IOException {
+        return i4() & 0xffffffffL;
+    }
+
+    public long i8() throws IOException {
+        ensure(8);
+        long value = buffer.getLong(offset());
+        position += 8;
+        return value;
+    }
+
+    /**
+     * 读取对象ID
+     */
+    public long id() throws IOException {
+        return idSize == 4 ? u4() : i8();
+    }
+
+    /**
+     * 读取字节数组
+     */
+    public void readFully(byte[] dst, int off, int len) throws IOException {
+        while (len > 0) {
+            int chunk = Math.min(len, 64 * 1024);
+            ensure(chunk);
+            int bufferOffset = offset();
+            for (int i = 0; i < chunk; i++) {
+                dst[off + i] = buffer.get(bufferOffset + i);
+            }
+            position += chunk;
+            off += chunk;
+            len -= chunk;
+        }
+    }
+
+    /**
+     * 对接下来 n 个字节计算 64 位 FNV-1a 哈希（不分配内存）
+     */
+    public long hash(long n) throws IOException {
+        long hash = 0xcbf29ce484222325L;
+        while (n > 0) {
+            int chunk = (int) Math.min(n, 64 * 1024);
+            ensure(chunk);
+            int bufferOffset = offset();
+            for (int i = 0; i < chunk; i++) {
+                hash ^= buffer.get(bufferOffset + i) & 0xff;
+                hash *= 0x100000001b3L;
+            }
+            position += chunk;
+            n -= chunk;
+        }
+        return hash;
+    }
+
+    @Override
+    public void close() throws IOException {
+        buffer = null;
+        channel.close();
+        file.close();
+    }
+}
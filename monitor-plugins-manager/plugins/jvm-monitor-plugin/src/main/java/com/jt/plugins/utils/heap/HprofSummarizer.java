@@ -0,0 +1,571 @@
+package com.jt.plugins.utils.heap;
+
+import com.alibaba.fastjson.JSONArray;
+import com.alibaba.fastjson.JSONObject;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * @BelongsProject: jt-server-monitor
+ * @BelongsPackage: com.jt.plugins.utils.heap
+ * @Author: 别来无恙qb
+ * @CreateTime: 2026-03-16  10:10
+ * @Description: HPROF 堆转储摘要（类直方图、最大数组、重复字符串）
+ * 顺序扫描文件，不构建对象图：
+ * 第一遍统计类直方图和最大数组，并记录 String.value 引用的数组ID（有上限）；
+ * 第二遍只对这些数组内容计算哈希，统计重复字符串。内存占用与堆大小无关。
+ * @Version: 1.0
+ */
+public class HprofSummarizer {
+
+    // 顶层记录类型
+    private static final int TAG_UTF8 = 0x01;
+    private static final int TAG_LOAD_CLASS = 0x02;
+    private static final int TAG_HEAP_DUMP = 0x0C;
+    private static final int TAG_HEAP_DUMP_SEGMENT = 0x1C;
+
+    // 堆转储子记录类型
+    private static final int ROOT_UNKNOWN = 0xFF;
+    private static final int ROOT_JNI_GLOBAL = 0x01;
+    private static final int ROOT_JNI_LOCAL = 0x02;
+    private static final int ROOT_JAVA_FRAME = 0x03;
+    private static final int ROOT_NATIVE_STACK = 0x04;
+    private static final int ROOT_STICKY_CLASS = 0x05;
+    private static final int ROOT_THREAD_BLOCK = 0x06;
+    private static final int ROOT_MONITOR_USED = 0x07;
+    private static final int ROOT_THREAD_OBJECT = 0x08;
+    private static final int CLASS_DUMP = 0x20;
+    private static final int INSTANCE_DUMP = 0x21;
+    private static final int OBJ_ARRAY_DUMP = 0x22;
+    private static final int PRIM_ARRAY_DUMP = 0x23;
+
+    // 基本类型
+    private static final int TYPE_OBJECT = 2;
+    private static final int TYPE_CHAR = 5;
+    private static final int TYPE_BYTE = 8;
+    private static final String[] PRIMITIVE_ARRAY_NAMES = new String[12];
+
+    static {
+        PRIMITIVE_ARRAY_NAMES[4] = "boolean[]";
+        PRIMITIVE_ARRAY_NAMES[5] = "char[]";
+        PRIMITIVE_ARRAY_NAMES[6] = "float[]";
+        PRIMITIVE_ARRAY_NAMES[7] = "double[]";
+        PRIMITIVE_ARRAY_NAMES[8] = "byte[]";
+        PRIMITIVE_ARRAY_NAMES[9] = "short[]";
+        PRIMITIVE_ARRAY_NAMES[10] = "int[]";
+        PRIMITIVE_ARRAY_NAMES[11] = "long[]";
+    }
+
+    // 参与重复字符串统计的 String 数量上限（控制内存）
+    private static final int MAX_STRING_SAMPLES = 1_000_000;
+
+    // 重复字符串预览长度
+    private static final int PREVIEW_LENGTH = 80;
+
+    // 保存预览的重复字符串数量上限
+    private static final int MAX_PREVIEWS = 10_000;
+
+    private final File hprofFile;
+    private final int topN;
+    private final boolean analyzeStrings;
+
+    private int idSize;
+
+    // 符号表：UTF8 id -> 字符串
+    private final Map<Long, String> utf8 = new HashMap<>();
+    // 类对象ID -> 类名ID
+    private final Map<Long, Long> classNameIds = new HashMap<>();
+    // String 类对象ID 及 value 字段在实例数据中的偏移
+    private long stringClassId = -1;
+    private int stringValueOffset = -1;
+
+    // 直方图：键（类对象ID，基本类型数组用负的类型编号）-> [实例数, 浅堆大小]
+    private final Map<Long, long[]> histogram = new HashMap<>();
+
+    // 最大数组（小顶堆）：[数组ID, 类键, 元素数, 浅堆大小]
+    private final PriorityQueue<long[]> largestArrays = new PriorityQueue<>((a, b) -> Long.compare(a[3], b[3]));
+
+    // String.value 引用的数组ID（仅在分析重复字符串时分配）
+    private final LongHashSet stringValueIds;
+    private long stringCount;
+    private boolean stringSampleTruncated;
+
+    // 重复字符串：内容哈希 -> [次数, 字节长度]
+    private final LongCountMap duplicateCounts;
+    private final Map<Long, String> previews = new HashMap<>();
+
+    private long totalInstances;
+    private long totalShallowBytes;
+
+    public HprofSummarizer(File hprofFile, int topN, boolean analyzeStrings) {
+        this.hprofFile = hprofFile;
+        this.topN = topN;
+        this.analyzeStrings = analyzeStrings;
+        this.stringValueIds = analyzeStrings ? new LongHashSet(MAX_STRING_SAMPLES) : null;
+        this.duplicateCounts = analyzeStrings ? new LongCountMap(MAX_STRING_SAMPLES) : null;
+    }
+
+    /**
+     * 执行分析
+     */
+    public JSONObject summarize() throws IOException {
+        long start = System.currentTimeMillis();
+        try (HprofMappedReader reader = new HprofMappedReader(hprofFile)) {
+            long bodyStart = readHeader(reader);
+
+            // 第一遍：直方图、最大数组、String.value 引用
+            scan(reader, bodyStart, false);
+
+            // 第二遍：重复字符串
+            if (analyzeStrings && stringValueIds.size() > 0) {
+                scan(reader, bodyStart, true);
+            }
+        }
+        JSONObject result = toJSON();
+        result.put("elapsedMs", System.currentTimeMillis() - start);
+        return result;
+    }
+
+    /**
+     * 读取文件头："JAVA PROFILE 1.0.x\0" + u4 idSize + u8 时间戳
+     */
+    private long readHeader(HprofMappedReader reader) throws IOException {
+        StringBuilder format = new StringBuilder();
+        int c;
+        while ((c = reader.u1()) != 0) {
+            format.append((char) c);
+            if (format.length() > 32) {
+                throw new IllegalArgumentException("不是有效的HPROF文件");
+            }
+        }
+        if (!format.toString().startsWith("JAVA PROFILE")) {
+            throw new IllegalArgumentException("不是有效的HPROF文件：" + format);
+        }
+        idSize = (int) reader.u4();
+        if (idSize != 4 && idSize != 8) {
+            throw new IllegalArgumentException("不支持的ID长度：" + idSize);
+        }
+        reader.setIdSize(idSize);
+        reader.i8();
+        return reader.position();
+    }
+
+    /**
+     * 扫描顶层记录
+     */
+    private void scan(HprofMappedReader reader, long bodyStart, boolean stringPass) throws IOException {
+        reader.seek(bodyStart);
+        while (reader.hasRemaining()) {
+            int tag = reader.u1();
+            reader.u4(); // 时间偏移
+            long length = reader.u4();
+            long end = reader.position() + length;
+
+            if (!stringPass && tag == TAG_UTF8) {
+                long id = reader.id();
+                byte[] bytes = new byte[(int) (length - idSize)];
+                reader.readFully(bytes, 0, bytes.length);
+                utf8.put(id, new String(bytes, StandardCharsets.UTF_8));
+            } else if (!stringPass && tag == TAG_LOAD_CLASS) {
+                reader.u4();
+                long classId = reader.id();
+                reader.u4();
+                long nameId = reader.id();
+                classNameIds.put(classId, nameId);
+                if ("java/lang/String".equals(utf8.get(nameId))) {
+                    stringClassId = classId;
+                }
+            } else if (tag == TAG_HEAP_DUMP || tag == TAG_HEAP_DUMP_SEGMENT) {
+                scanHeapDump(reader, end, stringPass);
+            }
+            reader.seek(end);
+        }
+    }
+
+    /**
+     * 扫描堆转储子记录
+     */
+    private void scanHeapDump(HprofMappedReader reader, long end, boolean stringPass) throws IOException {
+        while (reader.position() < end) {
+            int subTag = reader.u1();
+            switch (subTag) {
+                case ROOT_UNKNOWN:
+                case ROOT_STICKY_CLASS:
+                case ROOT_MONITOR_USED:
+                    reader.skip(idSize);
+                    break;
+                case ROOT_JNI_GLOBAL:
+                    reader.skip(idSize * 2L);
+                    break;
+                case ROOT_JNI_LOCAL:
+                case ROOT_JAVA_FRAME:
+                case ROOT_THREAD_OBJECT:
+                    reader.skip(idSize + 8L);
+                    break;
+                case ROOT_NATIVE_STACK:
+                case ROOT_THREAD_BLOCK:
+                    reader.skip(idSize + 4L);
+                    break;
+                case CLASS_DUMP:
+                    readClassDump(reader, stringPass);
+                    break;
+                case INSTANCE_DUMP:
+                    readInstance(reader, stringPass);
+                    break;
+                case OBJ_ARRAY_DUMP:
+                    readObjectArray(reader, stringPass);
+                    break;
+                case PRIM_ARRAY_DUMP:
+                    readPrimitiveArray(reader, stringPass);
+                    break;
+                default:
+                    throw new IllegalStateException("无法识别的堆转储记录类型：0x" + Integer.toHexString(subTag)
+                            + "，位置：" + (reader.position() - 1));
+            }
+        }
+    }
+
+    private void readClassDump(HprofMappedReader reader, boolean stringPass) throws IOException {
+        long classId = reader.id();
+        reader.u4();
+        reader.skip(idSize * 6L); // super, loader, signers, protection domain, reserved x2
+        reader.u4();              // instance size
+
+        // 常量池
+        int constantPoolSize = reader.u2();
+        for (int i = 0; i < constantPoolSize; i++) {
+            reader.u2();
+            reader.skip(typeSize(reader.u1()));
+        }
+        // 静态字段
+        int staticCount = reader.u2();
+        for (int i = 0; i < staticCount; i++) {
+            reader.skip(idSize);
+            reader.skip(typeSize(reader.u1()));
+        }
+        // 实例字段（本类字段在前，父类字段在后）
+        int fieldCount = reader.u2();
+        int offset = 0;
+        for (int i = 0; i < fieldCount; i++) {
+            long nameId = reader.id();
+            int type = reader.u1();
+            if (!stringPass && classId == stringClassId && type == TYPE_OBJECT && "value".equals(utf8.get(nameId))) {
+                stringValueOffset = offset;
+            }
+            offset += typeSize(type);
+        }
+    }
+
+    private void readInstance(HprofMappedReader reader, boolean stringPass) throws IOException {
+        reader.id();
+        reader.u4();
+        long classId = reader.id();
+        long dataLength = reader.u4();
+        long dataEnd = reader.position() + dataLength;
+
+        if (!stringPass) {
+            addHistogram(classId, headerSize() + dataLength);
+            if (analyzeStrings && classId == stringClassId && stringValueOffset >= 0) {
+                stringCount++;
+                reader.skip(stringValueOffset);
+                long valueId = reader.id();
+                if (valueId != 0 && !stringValueIds.add(valueId)) {
+                    stringSampleTruncated = true;
+                }
+            }
+        }
+        reader.seek(dataEnd);
+    }
+
+    private void readObjectArray(HprofMappedReader reader, boolean stringPass) throws IOException {
+        long arrayId = reader.id();
+        reader.u4();
+        long length = reader.u4();
+        long classId = reader.id();
+        long shallow = headerSize() + 4 + length * idSize;
+        if (!stringPass) {
+            addHistogram(classId, shallow);
+            addLargestArray(arrayId, classId, length, shallow);
+        }
+        reader.skip(length * idSize);
+    }
+
+    private void readPrimitiveArray(HprofMappedReader reader, boolean stringPass) throws IOException {
+        long arrayId = reader.id();
+        reader.u4();
+        long length = reader.u4();
+        int type = reader.u1();
+        long dataLength = length * typeSize(type);
+
+        if (!stringPass) {
+            long shallow = headerSize() + 4 + dataLength;
+            addHistogram(-type, shallow);
+            addLargestArray(arrayId, -type, length, shallow);
+            reader.skip(dataLength);
+            return;
+        }
+
+        if ((type == TYPE_CHAR || type == TYPE_BYTE) && stringValueIds.contains(arrayId)) {
+            long contentStart = reader.position();
+            long hash = reader.hash(dataLength) ^ dataLength;
+            int count = duplicateCounts.increment(hash, dataLength);
+            // 出现第二次时保存预览
+            if (count == 2 && previews.size() < MAX_PREVIEWS) {
+                long after = reader.position();
+                reader.seek(contentStart);
+                int previewBytes = (int) Math.min(dataLength, PREVIEW_LENGTH * (type == TYPE_CHAR ? 2L : 1L));
+                byte[] bytes = new byte[previewBytes];
+                reader.readFully(bytes, 0, previewBytes);
+                previews.put(hash, new String(bytes, type == TYPE_CHAR ? StandardCharsets.UTF_16BE : StandardCharsets.ISO_8859_1));
+                reader.seek(after);
+            }
+        } else {
+            reader.skip(dataLength);
+        }
+    }
+
+    private void addHistogram(long classKey, long shallow) {
+        long[] stat = histogram.get(classKey);
+        if (stat == null) {
+            stat = new long[2];
+            histogram.put(classKey, stat);
+        }
+        stat[0]++;
+        stat[1] += shallow;
+        totalInstances++;
+        totalShallowBytes += shallow;
+    }
+
+    private void addLargestArray(long arrayId, long classKey, long length, long shallow) {
+        if (largestArrays.size() < topN) {
+            largestArrays.add(new long[]{arrayId, classKey, length, shallow});
+        } else if (largestArrays.peek()[3] < shallow) {
+            largestArrays.poll();
+            largestArrays.add(new long[]{arrayId, classKey, length, shallow});
+        }
+    }
+
+    /**
+     * 对象头估算：64 位 ID 按 16 字节，32 位 ID 按 8 字节
+     */
+    private int headerSize() {
+        return idSize * 2;
+    }
+
+    private int typeSize(int type) {
+        switch (type) {
+            case TYPE_OBJECT:
+                return idSize;
+            case 4:
+            case 8:
+                return 1;
+            case 5:
+            case 9:
+                return 2;
+            case 6:
+            case 10:
+                return 4;
+            case 7:
+            case 11:
+                return 8;
+            default:
+                throw new IllegalStateException("无法识别的基本类型：" + type);
+        }
+    }
+
+    private String className(long classKey) {
+        if (classKey < 0) {
+            return PRIMITIVE_ARRAY_NAMES[(int) -classKey];
+        }
+        Long nameId = classNameIds.get(classKey);
+        String name = nameId != null ? utf8.get(nameId) : null;
+        return name != null ? name.replace('/', '.') : "0x" + Long.toHexString(classKey);
+    }
+
+    private JSONObject toJSON() {
+        JSONObject result = new JSONObject();
+        result.put("filePath", hprofFile.getAbsolutePath());
+        result.put("fileSize", hprofFile.length());
+        result.put("idSize", idSize);
+        result.put("classCount", classNameIds.size());
+        result.put("totalInstances", totalInstances);
+        result.put("totalShallowBytes", totalShallowBytes);
+
+        // 1. 类直方图（按浅堆大小降序）
+        List<Map.Entry<Long, long[]>> entries = new ArrayList<>(histogram.entrySet());
+        entries.sort((a, b) -> Long.compare(b.getValue()[1], a.getValue()[1]));
+        JSONArray classHistogram = new JSONArray();
+        for (int i = 0; i < Math.min(topN, entries.size()); i++) {
+            Map.Entry<Long, long[]> entry = entries.get(i);
+            classHistogram.add(new JSONObject()
+                    .fluentPut("className", className(entry.getKey()))
+                    .fluentPut("instances", entry.getValue()[0])
+                    .fluentPut("shallowSize", entry.getValue()[1]));
+        }
+        result.put("classHistogram", classHistogram);
+
+        // 2. 最大数组
+        List<long[]> arrays = new ArrayList<>(largestArrays);
+        arrays.sort((a, b) -> Long.compare(b[3], a[3]));
+        JSONArray largest = new JSONArray();
+        for (long[] array : arrays) {
+            largest.add(new JSONObject()
+                    .fluentPut("objectId", "0x" + Long.toHexString(array[0]))
+                    .fluentPut("className", className(array[1]))
+                    .fluentPut("length", array[2])
+                    .fluentPut("shallowSize", array[3]));
+        }
+        result.put("largestArrays", largest);
+
+        // 3. 重复字符串（按浪费字节降序）
+        if (analyzeStrings) {
+            JSONArray duplicates = new JSONArray();
+            for (long[] dup : duplicateCounts.topByWaste(topN)) {
+                long count = dup[1];
+                long bytes = dup[2];
+                duplicates.add(new JSONObject()
+                        .fluentPut("preview", previews.get(dup[0]))
+                        .fluentPut("count", count)
+                        .fluentPut("valueBytes", bytes)
+                        .fluentPut("wastedBytes", (count - 1) * (bytes + headerSize() + 4)));
+            }
+            result.put("duplicateStrings", duplicates);
+            result.put("stringCount", stringCount);
+            result.put("stringsSampled", stringValueIds.size());
+            result.put("stringSampleTruncated", stringSampleTruncated);
+        }
+        return result;
+    }
+
+    /**
+     * 开放寻址 long 集合（固定容量，满后不再加入）
+     */
+    static class LongHashSet {
+        private final long[] keys;
+        private final boolean[] used;
+        private final int capacity;
+        private final int mask;
+        private int size;
+
+        LongHashSet(int capacity) {
+            this.capacity = capacity;
+            int slots = Integer.highestOneBit(capacity * 2 - 1) << 1;
+            this.keys = new long[slots];
+            this.used = new boolean[slots];
+            this.mask = slots - 1;
+        }
+
+        /**
+         * @return 是否加入成功（已存在或已满返回 false）
+         */
+        boolean add(long key) {
+            int index = mix(key) & mask;
+            while (used[index]) {
+                if (keys[index] == key) {
+                    return true;
+                }
+                index = (index + 1) & mask;
+            }
+            if (size >= capacity) {
+                return false;
+            }
+            used[index] = true;
+            keys[index] = key;
+            size++;
+            return true;
+        }
+
+        boolean contains(long key) {
+            int index = mix(key) & mask;
+            while (used[index]) {
+                if (keys[index] == key) {
+                    return true;
+                }
+                index = (index + 1) & mask;
+            }
+            return false;
+        }
+
+        int size() {
+            return size;
+        }
+    }
+
+    /**
+     * 开放寻址计数表：键 -> [次数, 字节长度]（固定容量，满后新键不再计数）
+     */
+    static class LongCountMap {
+        private final long[] keys;
+        private final int[] counts;
+        private final long[] lengths;
+        private final int capacity;
+        private final int mask;
+        private int size;
+
+        LongCountMap(int capacity) {
+            this.capacity = capacity;
+            int slots = Integer.highestOneBit(capacity * 2 - 1) << 1;
+            this.keys = new long[slots];
+            this.counts = new int[slots];
+            this.lengths = new long[slots];
+            this.mask = slots - 1;
+        }
+
+        /**
+         * @return 计数后的次数，表满且为新键时返回 0
+         */
+        int increment(long key, long length) {
+            int index = mix(key) & mask;
+            while (counts[index] > 0) {
+                if (keys[index] == key) {
+                    return ++counts[index];
+                }
+                index = (index + 1) & mask;
+            }
+            if (size >= capacity) {
+                return 0;
+            }
+            keys[index] = key;
+            counts[index] = 1;
+            lengths[index] = length;
+            size++;
+            return 1;
+        }
+
+        /**
+         * 按浪费字节 (count-1)*length 取前 n 个：[键, 次数, 字节长度]
+         */
+        List<long[]> topByWaste(int n) {
+            PriorityQueue<long[]> heap = new PriorityQueue<>((a, b) -> Long.compare(waste(a), waste(b)));
+            for (int i = 0; i < keys.length; i++) {
+                if (counts[i] < 2) continue;
+                long[] entry = {keys[i], counts[i], lengths[i]};
+                if (heap.size() < n) {
+                    heap.add(entry);
+                } else if (waste(heap.peek()) < waste(entry)) {
+                    heap.poll();
+                    heap.add(entry);
+                }
+            }
+            List<long[]> list = new ArrayList<>(heap);
+            list.sort((a, b) -> Long.compare(waste(b), waste(a)));
+            return list;
+        }
+
+        private static long waste(long[] entry) {
+            return (entry[1] - 1) * entry[2];
+        }
+    }
+
+    private static int mix(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+}
@@ -0,0 +1,350 @@
+package com.jt.plugins.utils.heap;
+
+import com.alibaba.fastjson.JSONArray;
+import com.alibaba.fastjson.JSONObject;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThrows;
+
+/**
+ * @BelongsProject: jt-server-monitor
+ * @BelongsPackage: com.jt.plugins.utils.heap
+ * @Author: 别来无恙qb
+ * @CreateTime: 2026-03-30  11:00
+ * @Description: HprofSummarizer 解析测试 - 按 HPROF 格式构造小型堆转储文件，校验直方图、最大数组与重复字符串
+ * @Version: 1.0
+ */
+public class HprofSummarizerTest {
+
+    private static final int TYPE_OBJECT = 2;
+    private static final int TYPE_CHAR = 5;
+    private static final int TYPE_BYTE = 8;
+    private static final int TYPE_INT = 10;
+
+    // 符号与类对象ID
+    private static final long NAME_STRING = 0x101;
+    private static final long NAME_VALUE = 0x102;
+    private static final long NAME_HASH = 0x103;
+    private static final long NAME_ORDER = 0x104;
+    private static final long NAME_OBJECT_ARRAY = 0x105;
+    private static final long CLASS_STRING = 0x201;
+    private static final long CLASS_ORDER = 0x202;
+    private static final long CLASS_OBJECT_ARRAY = 0x203;
+
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+
+    @Test
+    public void summarizesHistogramArraysAndDuplicateStrings() throws IOException {
+        File file = writeHeapDump(8);
+
+        JSONObject result = new HprofSummarizer(file, 10, true).summarize();
+
+        assertEquals(8, result.getIntValue("idSize"));
+        assertEquals(3, result.getIntValue("classCount"));
+        // 4 个 String、2 个 Order、1 个 Object[]、4 个 byte[]、1 个 char[]、1 个 int[]
+        assertEquals(13, result.getLongValue("totalInstances"));
+
+        JSONObject strings = find(result.getJSONArray("classHistogram"), "java.lang.String");
+        assertEquals(4, strings.getLongValue("instances"));
+        // 对象头 16 字节 + 实例数据（value 引用 8 字节 + hash 4 字节）
+        assertEquals(4 * (16 + 12), strings.getLongValue("shallowSize"));
+        JSONObject orders = find(result.getJSONArray("classHistogram"), "com.example.Order");
+        assertEquals(2, orders.getLongValue("instances"));
+        assertEquals(2 * (16 + 4), orders.getLongValue("shallowSize"));
+        JSONObject bytes = find(result.getJSONArray("classHistogram"), "byte[]");
+        assertEquals(4, bytes.getLongValue("instances"));
+        assertEquals(3 * (16 + 4 + 5) + (16 + 4 + 5000), bytes.getLongValue("shallowSize"));
+
+        JSONArray largest = result.getJSONArray("largestArrays");
+        JSONObject first = largest.getJSONObject(0);
+        assertEquals("byte[]", first.getString("className"));
+        assertEquals(5000, first.getLongValue("length"));
+        assertEquals("0x404", first.getString("objectId"));
+        JSONObject second = largest.getJSONObject(1);
+        assertEquals("int[]", second.getString("className"));
+        assertEquals(300, second.getLongValue("length"));
+        assertEquals(3, find(largest, "[Ljava.lang.Object;").getLongValue("length"));
+
+        // 两个不同 String 的 value 数组内容都是 "hello"，计为重复；两个 String 共享的同一数组只计一次，
+        // 未被 String 引用的 char[] 不参与统计
+        assertEquals(4, result.getLongValue("stringCount"));
+        assertEquals(3, result.getLongValue("stringsSampled"));
+        assertFalse(result.getBooleanValue("stringSampleTruncated"));
+        JSONArray duplicates = result.getJSONArray("duplicateStrings");
+        assertEquals(1, duplicates.size());
+        JSONObject duplicate = duplicates.getJSONObject(0);
+        assertEquals("hello", duplicate.getString("preview"));
+        assertEquals(2, duplicate.getLongValue("count"));
+        assertEquals(5, duplicate.getLongValue("valueBytes"));
+        assertEquals(5 + 16 + 4, duplicate.getLongValue("wastedBytes"));
+    }
+
+    @Test
+    public void supportsFourByteIdentifiers() throws IOException {
+        File file = writeHeapDump(4);
+
+        JSONObject result = new HprofSummarizer(file, 2, false).summarize();
+
+        assertEquals(4, result.getIntValue("idSize"));
+        assertEquals(13, result.getLongValue("totalInstances"));
+        JSONObject bytes = find(result.getJSONArray("classHistogram"), "byte[]");
+        assertEquals(3 * (8 + 4 + 5) + (8 + 4 + 5000), bytes.getLongValue("shallowSize"));
+        assertEquals(2, result.getJSONArray("largestArrays").size());
+        assertFalse(result.containsKey("duplicateStrings"));
+    }
+
+    @Test
+    public void rejectsNonHprofFile() throws IOException {
+        File file = temp.newFile("not.hprof");
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            out.write("PK\u0003\u0004 not a heap dump\0".getBytes(StandardCharsets.ISO_8859_1));
+        }
+        assertThrows(IllegalArgumentException.class, () -> new HprofSummarizer(file, 10, true).summarize());
+    }
+
+    private static JSONObject find(JSONArray array, String className) {
+        for (int i = 0; i < array.size(); i++) {
+            JSONObject json = array.getJSONObject(i);
+            if (className.equals(json.getString("className"))) {
+                return json;
+            }
+        }
+        throw new AssertionError("未找到 " + className + "：" + array);
+    }
+
+    /**
+     * 构造堆转储：String(value, hash) 两个字段，Order(int) 一个字段；
+     * 堆记录分成两个 HEAP_DUMP_SEGMENT，并穿插各类 GC Root 记录
+     */
+    private File writeHeapDump(int idSize) throws IOException {
+        Hprof hprof = new Hprof(idSize);
+        hprof.utf8(NAME_STRING, "java/lang/String");
+        hprof.utf8(NAME_VALUE, "value");
+        hprof.utf8(NAME_HASH, "hash");
+        hprof.utf8(NAME_ORDER, "com/example/Order");
+        hprof.utf8(NAME_OBJECT_ARRAY, "[Ljava/lang/Object;");
+        hprof.loadClass(CLASS_STRING, NAME_STRING);
+        hprof.loadClass(CLASS_ORDER, NAME_ORDER);
+        hprof.loadClass(CLASS_OBJECT_ARRAY, NAME_OBJECT_ARRAY);
+
+        Segment first = hprof.segment();
+        first.rootUnknown(0x301);
+        first.rootJniGlobal(0x302, 0x303);
+        first.rootJavaFrame(0x304);
+        first.rootThreadBlock(0x305);
+        first.classDump(CLASS_STRING, new long[]{NAME_VALUE, NAME_HASH}, new int[]{TYPE_OBJECT, TYPE_INT});
+        first.classDump(CLASS_ORDER, new long[]{NAME_ORDER}, new int[]{TYPE_INT});
+        first.instance(0x401, CLASS_STRING, first.id(0x501), first.u4(0));
+        first.instance(0x402, CLASS_STRING, first.id(0x502), first.u4(0));
+        first.instance(0x403, CLASS_STRING, first.id(0x503), first.u4(0));
+        // 两个 String 共享同一个 value 数组，只计一次
+        first.instance(0x405, CLASS_STRING, first.id(0x503), first.u4(0));
+        first.instance(0x406, CLASS_ORDER, first.u4(7));
+        first.instance(0x407, CLASS_ORDER, first.u4(8));
+        hprof.end(first);
+
+        Segment second = hprof.segment();
+        second.rootStickyClass(CLASS_STRING);
+        second.primitiveArray(0x501, TYPE_BYTE, "hello".getBytes(StandardCharsets.ISO_8859_1));
+        second.primitiveArray(0x502, TYPE_BYTE, "world".getBytes(StandardCharsets.ISO_8859_1));
+        second.primitiveArray(0x503, TYPE_BYTE, "hello".getBytes(StandardCharsets.ISO_8859_1));
+        second.primitiveArray(0x404, TYPE_BYTE, new byte[5000]);
+        second.primitiveArray(0x504, TYPE_CHAR, "hello".getBytes(StandardCharsets.UTF_16BE));
+        second.primitiveArray(0x505, TYPE_INT, new byte[300 * 4]);
+        second.objectArray(0x506, CLASS_OBJECT_ARRAY, new long[]{0x401, 0x402, 0});
+        hprof.end(second);
+
+        File file = temp.newFile("heap_" + idSize + ".hprof");
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            out.write(hprof.toByteArray());
+        }
+        return file;
+    }
+
+    /**
+     * HPROF 顶层记录写入
+     */
+    private static class Hprof {
+        private final int idSize;
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        private final DataOutputStream out = new DataOutputStream(bytes);
+
+        Hprof(int idSize) throws IOException {
+            this.idSize = idSize;
+            out.write("JAVA PROFILE 1.0.2\0".getBytes(StandardCharsets.ISO_8859_1));
+            out.writeInt(idSize);
+            out.writeLong(System.currentTimeMillis());
+        }
+
+        void utf8(long id, String value) throws IOException {
+            byte[] text = value.getBytes(StandardCharsets.UTF_8);
+            record(0x01, idSize + text.length);
+            writeId(out, idSize, id);
+            out.write(text);
+        }
+
+        void loadClass(long classId, long nameId) throws IOException {
+            record(0x02, 4 + idSize + 4 + idSize);
+            out.writeInt(1);
+            writeId(out, idSize, classId);
+            out.writeInt(0);
+            writeId(out, idSize, nameId);
+        }
+
+        Segment segment() {
+            return new Segment(idSize);
+        }
+
+        void end(Segment segment) throws IOException {
+            byte[] body = segment.bytes.toByteArray();
+            record(0x1C, body.length);
+            out.write(body);
+        }
+
+        byte[] toByteArray() throws IOException {
+            // 文件末尾的 HEAP DUMP END 记录
+            record(0x2C, 0);
+            out.flush();
+            return bytes.toByteArray();
+        }
+
+        private void record(int tag, int length) throws IOException {
+            out.writeByte(tag);
+            out.writeInt(0);
+            out.writeInt(length);
+        }
+    }
+
+    /**
+     * 堆转储子记录写入
+     */
+    private static class Segment {
+        private final int idSize;
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        private final DataOutputStream out = new DataOutputStream(bytes);
+
+        Segment(int idSize) {
+            this.idSize = idSize;
+        }
+
+        byte[] id(long id) throws IOException {
+            ByteArrayOutputStream value = new ByteArrayOutputStream();
+            writeId(new DataOutputStream(value), idSize, id);
+            return value.toByteArray();
+        }
+
+        byte[] u4(int value) {
+            return new byte[]{(byte) (value >>> 24), (byte) (value >>> 16), (byte) (value >>> 8), (byte) value};
+        }
+
+        void rootUnknown(long objectId) throws IOException {
+            out.writeByte(0xFF);
+            writeId(out, idSize, objectId);
+        }
+
+        void rootStickyClass(long objectId) throws IOException {
+            out.writeByte(0x05);
+            writeId(out, idSize, objectId);
+        }
+
+        void rootJniGlobal(long objectId, long refId) throws IOException {
+            out.writeByte(0x01);
+            writeId(out, idSize, objectId);
+            writeId(out, idSize, refId);
+        }
+
+        void rootJavaFrame(long objectId) throws IOException {
+            out.writeByte(0x03);
+            writeId(out, idSize, objectId);
+            out.writeInt(1);
+            out.writeInt(0);
+        }
+
+        void rootThreadBlock(long objectId) throws IOException {
+            out.writeByte(0x06);
+            writeId(out, idSize, objectId);
+            out.writeInt(1);
+        }
+
+        void classDump(long classId, long[] fieldNames, int[] fieldTypes) throws IOException {
+            out.writeByte(0x20);
+            writeId(out, idSize, classId);
+            out.writeInt(1);
+            for (int i = 0; i < 6; i++) {
+                writeId(out, idSize, 0);
+            }
+            out.writeInt(0);
+            // 一个 int 常量
+            out.writeShort(1);
+            out.writeShort(0);
+            out.writeByte(TYPE_INT);
+            out.writeInt(42);
+            // 一个对象静态字段
+            out.writeShort(1);
+            writeId(out, idSize, 0x999);
+            out.writeByte(TYPE_OBJECT);
+            writeId(out, idSize, 0);
+            out.writeShort(fieldNames.length);
+            for (int i = 0; i < fieldNames.length; i++) {
+                writeId(out, idSize, fieldNames[i]);
+                out.writeByte(fieldTypes[i]);
+            }
+        }
+
+        void instance(long objectId, long classId, byte[]... fields) throws IOException {
+            int length = 0;
+            for (byte[] field : fields) {
+                length += field.length;
+            }
+            out.writeByte(0x21);
+            writeId(out, idSize, objectId);
+            out.writeInt(1);
+            writeId(out, idSize, classId);
+            out.writeInt(length);
+            for (byte[] field : fields) {
+                out.write(field);
+            }
+        }
+
+        void objectArray(long arrayId, long classId, long[] elements) throws IOException {
+            out.writeByte(0x22);
+            writeId(out, idSize, arrayId);
+            out.writeInt(1);
+            out.writeInt(elements.length);
+            writeId(out, idSize, classId);
+            for (long element : elements) {
+                writeId(out, idSize, element);
+            }
+        }
+
+        void primitiveArray(long arrayId, int type, byte[] data) throws IOException {
+            int elementSize = type == TYPE_CHAR ? 2 : type == TYPE_INT ? 4 : 1;
+            out.writeByte(0x23);
+            writeId(out, idSize, arrayId);
+            out.writeInt(1);
+            out.writeInt(data.length / elementSize);
+            out.writeByte(type);
+            out.write(data);
+        }
+    }
+
+    private static void writeId(DataOutputStream out, int idSize, long id) throws IOException {
+        if (idSize == 8) {
+            out.writeLong(id);
+        } else {
+            out.writeInt((int) id);
+        }
+    }
+}
@@ -67,5 +67,20 @@ public class LogCleanPlugin extends SpringPlugin {
 			return logCleanProvider.execute(extensionRequestParam);
 		}
 
+		@Override
+		public long cacheTtlMs(String targetAction) {
+			return logCleanProvider.cacheTtlMs(targetAction);
+		}
+
+		@Override
+		public long timeoutMs(String targetAction) {
+			return logCleanProvider.timeoutMs(targetAction);
+		}
+
+		@Override
+		public boolean readOnly(String targetAction) {
+			return logCleanProvider.readOnly(targetAction);
+		}
+
 	}
 }
@@ -3,6 +3,7 @@ package com.jt.plugins.extension;
 import com.alibaba.fastjson.JSONObject;
 import com.jt.plugins.utils.CacheManager;
 import com.jt.plugins.utils.DeduplicationOrchestrator;
+import com.jt.plugins.common.annotation.ActionDispatcher;
 import com.jt.plugins.common.annotation.ActionHandler;
 import com.jt.plugins.common.file.PluginFileStorage;
 import com.jt.plugins.common.http.ExtensionRequestParam;
@@ -14,16 +15,14 @@ import com.jt.plugins.utils.clean.FolderCleaner;
 
 import java.io.File;
 import java.io.IOException;
-import java.lang.reflect.Method;
+import java.lang.invoke.MethodHandles;
 import java.nio.file.Files;
 import java.time.Instant;
 import java.time.ZoneId;
 import java.time.ZonedDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.Arrays;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 
 /**
  * @BelongsProject: jt-server-monitor
@@ -40,66 +39,32 @@ public class LogCleanProviderImpl implements LogCleanProvider {
     // 插件文件存储管理器
     private static final PluginFileStorage fileStorage = PluginFileStorage.getStorage("log-clean-plugin");
 
-    // 缓存方法映射，避免每次反射查找
-    private static final Map<String, Method> ACTION_HANDLERS = new HashMap<>();
-
-    // 在类加载时初始化方法映射
-    static {
-        Method[] methods = LogCleanProviderImpl.class.getDeclaredMethods();
-        for (Method method : methods) {
-            ActionHandler annotation = method.getAnnotation(ActionHandler.class);
-            if (annotation != null) {
-                ACTION_HANDLERS.put(annotation.value(), method);
-            }
-        }
-    }
+    // 处理方法在类加载时一次性绑定，按 targetAction 直接调用
+    private static final ActionDispatcher DISPATCHER =
+            ActionDispatcher.create(MethodHandles.lookup(), LogCleanProviderImpl.class, "日志清理", logger);
 
     @Override
     public ResultMsg<JSONObject> execute(ExtensionRequestParam extensionRequestParam) {
-        String targetAction = extensionRequestParam.getTargetAction();
-        logger.info("开始执行日志监控操作: {}", targetAction);
-
-        // 参数校验
-        if (targetAction == null || targetAction.isEmpty()) {
-            logger.warn("操作类型不能为空");
-            return ResultMsg.fail("操作类型不能为空");
-        }
+        return DISPATCHER.dispatch(this, extensionRequestParam);
+    }
 
-        // 根据targetAction查找对应的处理方法
-        Method handlerMethod = ACTION_HANDLERS.get(targetAction);
+    @Override
+    public long cacheTtlMs(String targetAction) {
+        return DISPATCHER.getCacheTtlMs(targetAction);
+    }
 
-        if (handlerMethod != null) {
-            try {
-                // 调用对应的方法处理请求
-                logger.info("调用处理方法: {}", handlerMethod.getName());
-                ResultMsg<JSONObject> result = (ResultMsg<JSONObject>) handlerMethod.invoke(this, extensionRequestParam);
-                logger.info("日志清理操作执行完成: {}", targetAction);
-                return result;
-            } catch (Exception e) {
-                logger.error("执行日志清理操作失败: {}", targetAction, e);
-                // 区分不同类型的异常并抛出相应的错误信息
-                Throwable cause = e.getCause();
-                if (cause != null) {
-                    if (cause instanceof SecurityException) {
-                        return ResultMsg.fail("权限不足，无法访问目标JVM进程：" + cause.getMessage());
-                    } else if (cause instanceof IllegalArgumentException) {
-                        return ResultMsg.fail("参数错误：" + cause.getMessage());
-                    } else if (cause instanceof IllegalStateException) {
-                        return ResultMsg.fail("状态错误：" + cause.getMessage());
-                    } else {
-                        return ResultMsg.fail("执行操作失败：" + cause.getMessage());
-                    }
-                }
-                return ResultMsg.fail("执行操作失败：" + e.getMessage());
-            }
-        }
+    @Override
+    public long timeoutMs(String targetAction) {
+        return DISPATCHER.getTimeoutMs(targetAction);
+    }
 
-        logger.warn("不支持的操作类型: {}", targetAction);
-        return ResultMsg.fail("不支持的操作类型：" + targetAction);
+    @Override
+    public boolean readOnly(String targetAction) {
+        return DISPATCHER.isReadOnly(targetAction);
     }
 
 
-    @ActionHandler("ping")
+    @ActionHandler(value = "ping", readOnly = true)
     private ResultMsg<JSONObject> handlePing(ExtensionRequestParam request) {
         logger.debug("处理ping请求");
         try {
@@ -190,7 +155,7 @@ public class LogCleanProviderImpl implements LogCleanProvider {
      *    javax.naming.NameNotFoundException: ms_message -- service jboss.naming.context.java.ms_message
      * 【日志结束：2026-01-14 17:30:13】
      */
-    @ActionHandler("contentWash")
+    @ActionHandler(value = "contentWash", timeoutMs = 600000)
     public ResultMsg<JSONObject> handleContentWash(ExtensionRequestParam request) {
         logger.debug("处理日志内容清洗请求");
         
@@ -391,7 +356,7 @@ public class LogCleanProviderImpl implements LogCleanProvider {
      *   "details": "清理完成（修改时间在 7 天以前），删除了 156 个文件和 12 个文件夹，总大小：1.2 GB"
      * }
      */
-    @ActionHandler("cleanFolder")
+    @ActionHandler(value = "cleanFolder", timeoutMs = 600000)
     public ResultMsg<JSONObject> handleCleanFolder(ExtensionRequestParam request) {
         logger.debug("处理文件夹清理请求");
         
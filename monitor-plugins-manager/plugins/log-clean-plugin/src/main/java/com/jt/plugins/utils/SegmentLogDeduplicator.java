@@ -1,6 +1,8 @@
 package com.jt.plugins.utils;
 
 import com.jt.plugins.common.log.PluginLogger;
+import com.jt.plugins.common.metrics.LatencyHistogram;
+import com.jt.plugins.common.metrics.MetricsRegistry;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.time.format.DateTimeParseException;
@@ -27,6 +29,12 @@ public class SegmentLogDeduplicator {
 
     private static final PluginLogger logger = PluginLogger.getLogger("log-clean-plugin");
 
+    // 段落去重耗时
+    private static final LatencyHistogram SEGMENT_TIMER = MetricsRegistry.timer("jt_logclean_dedup", "engine", "segment");
+
+    // 段落全局去重耗时
+    private static final LatencyHistogram SEGMENT_GLOBAL_TIMER = MetricsRegistry.timer("jt_logclean_dedup", "engine", "segment_global");
+
     // 段落边界模式
     private static final Pattern START_PATTERN = Pattern.compile("【日志开始：(\\d{4}-\\d{2}-\\d{2}\\s+\\d{2}:\\d{2}:\\d{2})】");
     private static final Pattern END_PATTERN = Pattern.compile("【日志结束：(\\d{4}-\\d{2}-\\d{2}\\s+\\d{2}:\\d{2}:\\d{2})】");
@@ -74,6 +82,7 @@ public class SegmentLogDeduplicator {
         }
 
         long endTime = System.currentTimeMillis();
+        SEGMENT_TIMER.recordMillis(endTime - startTime);
         logger.info("段落日志去重完成 - 原始段落数: {}, 去重后: {}, 重复段落数: {}, 耗时: {}ms",
                 segments.size(), uniqueSegments.size(), duplicateCount, (endTime - startTime));
 
@@ -111,6 +120,7 @@ public class SegmentLogDeduplicator {
         }
         
         long endTime = System.currentTimeMillis();
+        SEGMENT_GLOBAL_TIMER.recordMillis(endTime - startTime);
         logger.info("段落日志全局去重完成 - 原始段落数: {}, 去重后: {}, 重复段落数: {}, 耗时: {}ms",
                segments.size(), uniqueSegments.size(), duplicateCount, (endTime - startTime));
         
@@ -1,5 +1,7 @@
 package com.jt.plugins.utils;
 import com.jt.plugins.common.log.PluginLogger;
+import com.jt.plugins.common.metrics.LatencyHistogram;
+import com.jt.plugins.common.metrics.MetricsRegistry;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
@@ -26,6 +28,12 @@ public class SemanticAnalyzer {
 
     private static final PluginLogger logger = PluginLogger.getLogger("log-clean-plugin");
 
+    // 语义去重耗时
+    private static final LatencyHistogram SEMANTIC_TIMER = MetricsRegistry.timer("jt_logclean_dedup", "engine", "semantic");
+
+    // 全局语义去重耗时
+    private static final LatencyHistogram SEMANTIC_GLOBAL_TIMER = MetricsRegistry.timer("jt_logclean_dedup", "engine", "semantic_global");
+
     // 时间模式
     private static final Pattern TIME_PATTERN = Pattern.compile("\\d{4}-\\d{2}-\\d{2}[\\sT]\\d{2}:\\d{2}:\\d{2}(?:\\.\\d{1,3})?");
     private static final Pattern LEVEL_PATTERN = Pattern.compile("\\b(ERROR|WARN|INFO|DEBUG|TRACE)\\b", Pattern.CASE_INSENSITIVE);
@@ -77,6 +85,7 @@ public class SemanticAnalyzer {
         }
 
         long endTime = System.currentTimeMillis();
+        SEMANTIC_TIMER.recordMillis(endTime - startTime);
         logger.info("语义去重完成 - 原始行数: {}, 去重后: {}, 重复行数: {}, 耗时: {}ms",
                 lines.size(), result.size(), duplicateCount, (endTime - startTime));
 
@@ -116,6 +125,7 @@ public class SemanticAnalyzer {
         }
         
         long endTime = System.currentTimeMillis();
+        SEMANTIC_GLOBAL_TIMER.recordMillis(endTime - startTime);
         logger.info("全局语义去重完成 - 原始行数: {}, 去重后: {}, 重复行数: {}, 耗时: {}ms",
                lines.size(), result.size(), duplicateCount, (endTime - startTime));
         
@@ -1,6 +1,8 @@
 package com.jt.plugins.utils;
 
 import com.jt.plugins.common.log.PluginLogger;
+import com.jt.plugins.common.metrics.LatencyHistogram;
+import com.jt.plugins.common.metrics.MetricsRegistry;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.LinkedHashMap;
@@ -26,6 +28,9 @@ public class TimeBasedDeduplicator {
 
     private static final PluginLogger logger = PluginLogger.getLogger("log-clean-plugin");
 
+    // 时间去重耗时
+    private static final LatencyHistogram TIME_TIMER = MetricsRegistry.timer("jt_logclean_dedup", "engine", "time");
+
     private static final Pattern TIME_PATTERN = Pattern.compile("\\d{4}-\\d{2}-\\d{2}[\\sT]\\d{2}:\\d{2}:\\d{2}(?:\\.\\d{1,3})?");
 
     /**
@@ -70,6 +75,7 @@ public class TimeBasedDeduplicator {
         }
 
         long endTime = System.currentTimeMillis();
+        TIME_TIMER.recordMillis(endTime - startTime);
         logger.info("时间去重完成 - 原始行数: {}, 去重后: {}, 重复行数: {}, 耗时: {}ms",
                 lines.size(), result.size(), duplicateCount, (endTime - startTime));
 
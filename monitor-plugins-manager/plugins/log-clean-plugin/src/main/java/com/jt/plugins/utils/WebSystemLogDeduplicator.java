@@ -1,6 +1,8 @@
 package com.jt.plugins.utils;
 
 import com.jt.plugins.common.log.PluginLogger;
+import com.jt.plugins.common.metrics.LatencyHistogram;
+import com.jt.plugins.common.metrics.MetricsRegistry;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
@@ -27,6 +29,12 @@ public class WebSystemLogDeduplicator {
 
     private static final PluginLogger logger = PluginLogger.getLogger("log-clean-plugin");
 
+    // WEB系统日志去重耗时
+    private static final LatencyHistogram WEB_TIMER = MetricsRegistry.timer("jt_logclean_dedup", "engine", "web");
+
+    // WEB系统日志全局去重耗时
+    private static final LatencyHistogram WEB_GLOBAL_TIMER = MetricsRegistry.timer("jt_logclean_dedup", "engine", "web_global");
+
     // 日志格式模式定义
     private static final Pattern SEPARATOR_PATTERN = Pattern.compile("\\*{10,}\\【([^】]+)系统】\\*{10,}");
     private static final Pattern START_TIME_PATTERN = Pattern.compile("【日志开始：(\\d{4}-\\d{2}-\\d{2}\\s+\\d{2}:\\d{2}:\\d{2})】");
@@ -86,6 +94,7 @@ public class WebSystemLogDeduplicator {
         }
         
         long endTime = System.currentTimeMillis();
+        WEB_TIMER.recordMillis(endTime - startTime);
         logger.info("WEB系统日志去重完成 - 原始段落数: {}, 去重后: {}, 重复段落数: {}, 耗时: {}ms",
                segments.size(), uniqueSegments.size(), duplicateCount, (endTime - startTime));
         
@@ -123,6 +132,7 @@ public class WebSystemLogDeduplicator {
         }
         
         long endTime = System.currentTimeMillis();
+        WEB_GLOBAL_TIMER.recordMillis(endTime - startTime);
         logger.info("WEB系统日志全局去重完成 - 原始段落数: {}, 去重后: {}, 重复段落数: {}, 耗时: {}ms",
                segments.size(), uniqueSegments.size(), duplicateCount, (endTime - startTime));
         
@@ -21,7 +21,10 @@ public class Pf4jConfiguration {
     @Bean
     @ConditionalOnMissingBean
     public PluginManager pluginManager(Pf4jManagerProperties pf4jManagerProperties) {
-        return new SpringPluginManager(Paths.get(pf4jManagerProperties.getPath()));
+        SpringPluginManager pluginManager = new SpringPluginManager(Paths.get(pf4jManagerProperties.getPath()));
+        pluginManager.setStartupThreads(pf4jManagerProperties.getStartupThreads());
+        pluginManager.setLazyStart(pf4jManagerProperties.isLazy());
+        return pluginManager;
     }
 
 }
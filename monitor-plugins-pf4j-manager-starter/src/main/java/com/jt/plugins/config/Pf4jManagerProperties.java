@@ -18,6 +18,21 @@ public class Pf4jManagerProperties {
      */
     private String path;
 
+    /**
+     * 并行启动插件的线程数，0 表示按 CPU 核数（最多 8），1 表示按顺序串行启动
+     */
+    private int startupThreads;
+
+    /**
+     * 是否按需启动插件：启动时只加载、解析插件，首次调用其扩展时才启动
+     */
+    private boolean lazy;
+
+    /**
+     * 按需启动的插件空闲多久（分钟）后停止并卸载，0 表示不自动停止
+     */
+    private int idleTimeoutMinutes = 30;
+
     public boolean isEnabled() {
         return enabled;
     }
@@ -33,4 +48,28 @@ public class Pf4jManagerProperties {
     public void setPath(String path) {
         this.path = path;
     }
+
+    public int getStartupThreads() {
+        return startupThreads;
+    }
+
+    public void setStartupThreads(int startupThreads) {
+        this.startupThreads = startupThreads;
+    }
+
+    public boolean isLazy() {
+        return lazy;
+    }
+
+    public void setLazy(boolean lazy) {
+        this.lazy = lazy;
+    }
+
+    public int getIdleTimeoutMinutes() {
+        return idleTimeoutMinutes;
+    }
+
+    public void setIdleTimeoutMinutes(int idleTimeoutMinutes) {
+        this.idleTimeoutMinutes = idleTimeoutMinutes;
+    }
 }